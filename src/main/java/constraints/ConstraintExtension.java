@@ -58,7 +58,7 @@ public abstract class ConstraintExtension extends Constraint implements TagAC, T
 	 * Various filtering algorithms for extension (table) constraints
 	 */
 	public static enum Extension {
-		V, VA, STR0, STR1, STR2, STR3, STR1N, STR2N, CT, CMDDO, CMDDS; // , RPWC, RPWC2;
+		V, VA, STR0, STR1, STR2, STR3, STR1N, STR2N, CT, CTN, CMDDO, CMDDS, AUTO; // , RPWC, RPWC2;
 	}
 
 	/**********************************************************************************************
@@ -208,11 +208,75 @@ public abstract class ConstraintExtension extends Constraint implements TagAC, T
 	 ***** Static members
 	 *********************************************************************************************/
 
-	private static ConstraintExtension build(Problem pb, Variable[] scp, boolean positive, boolean starred) {
+	/**
+	 * Relative costs of the elementary operations performed by propagators, as used by the cost model for selecting automatically table propagators:
+	 * a word operation (CT), a tuple visit (STR2) and a constraint check (generic filtering with residues)
+	 */
+	private static final double COST_WORD = 1, COST_TUPLE = 2, COST_CHECK = 4;
+
+	/**
+	 * The maximal sizes of the Cartesian product of domains for representing binary and ternary tables by bit vectors (Bits) and matrices (Matrix3D)
+	 */
+	private static final double BITS_LIMIT = 1 << 22, MATRIX_LIMIT = 1 << 20;
+
+	/**
+	 * The maximal number of words for the masks of CT; beyond this limit, memory is too large and another propagator must be chosen
+	 */
+	private static final long MASKS_LIMIT = 1L << 24;
+
+	/**
+	 * The arity from which MDDs (whose nodes can be shared) are preferred to STR3 when tables are too large for CT
+	 */
+	private static final int MDD_ARITY = 8;
+
+	/**
+	 * Returns the table propagator that is selected, from a cost model, for a constraint with the specified scope and the specified characteristics of
+	 * tuples. The cost of one propagator call is estimated from the arity, the number of tuples, the sizes of domains and the tightness (proportion of
+	 * supports among all possible tuples): about (nTuples/64)*sum(d) word operations for CT, nTuples*r tuple visits for STR2, and sum(d)/tightness
+	 * constraint checks for generic filtering (with bit vectors for binary tables, sum(d)*(d/64) word operations are enough).
+	 * 
+	 * @param scp
+	 *            the scope of the constraint
+	 * @param positive
+	 *            indicates if tuples are supports or conflicts
+	 * @param starred
+	 *            indicates if the star is present in tuples
+	 * @param nTuples
+	 *            the number of tuples
+	 * @param options
+	 *            the options concerning extension constraints
+	 * @return the table propagator selected from a cost model
+	 */
+	private static Extension select(Variable[] scp, boolean positive, boolean starred, int nTuples, OptionsExtension options) {
+		if (!positive)
+			return options.largeNegative != -1 && nTuples >= options.largeNegative ? Extension.CTN : Extension.V;
+		int r = scp.length;
+		int[] sizes = Stream.of(scp).mapToInt(x -> x.dom.initSize()).toArray();
+		long sumSizes = IntStream.of(sizes).asLongStream().sum(), nWords = (nTuples + 63) / 64;
+		double space = IntStream.of(sizes).asDoubleStream().reduce(1, (a, b) -> a * b);
+		double costCT = COST_WORD * nWords * sumSizes, costSTR2 = COST_TUPLE * nTuples * r;
+		if (!starred && r <= 3 && space <= (r == 2 ? BITS_LIMIT : MATRIX_LIMIT)) {
+			double nChecks = r == 2 ? Math.ceil(IntStream.of(sizes).max().getAsInt() / 64.0)
+					: Math.min(space / Math.max(nTuples, 1), space / IntStream.of(sizes).min().getAsInt());
+			if (COST_CHECK * sumSizes * nChecks <= Math.min(costCT, costSTR2))
+				return Extension.V;
+		}
+		if (nWords * sumSizes > MASKS_LIMIT)
+			return starred ? Extension.STR2 : r >= MDD_ARITY ? Extension.CMDDO : Extension.STR3;
+		return costCT <= costSTR2 ? Extension.CT : Extension.STR2;
+	}
+
+	private static ConstraintExtension build(Problem pb, Variable[] scp, boolean positive, boolean starred, int nTuples) {
 		OptionsExtension options = pb.head.control.extension;
 		control(scp.length > 1);
 		Set<Class<?>> classes = pb.head.availableClasses.get(ConstraintExtension.class);
-		String className = (positive ? options.positive : options.negative).toString();
+		Extension algorithm = positive ? options.positive : options.negative;
+		boolean automatic = algorithm == Extension.AUTO;
+		if (automatic)
+			algorithm = select(scp, positive, starred, nTuples, options);
+		else if (!positive && algorithm == Extension.V && options.largeNegative != -1 && nTuples >= options.largeNegative)
+			algorithm = Extension.CTN; // CT-Neg is used by default for large negative tables
+		String className = algorithm.toString();
 		className = className.equals("V") || className.equals("VA") ? "Extension" + className : className;
 		if (starred) {
 			control(positive);
@@ -221,7 +285,7 @@ public abstract class ConstraintExtension extends Constraint implements TagAC, T
 			// currently, only STR2, STR2S, CT, CT2 and MDDSHORT
 			return c;
 		}
-		if (scp.length == 2 && options.generic2)
+		if (scp.length == 2 && options.generic2 && !automatic)
 			return new ExtensionV(pb, scp); // return new STR2(pb, scp);
 		return (ConstraintExtension) Reflector.buildObject(className, classes, pb, scp);
 	}
@@ -289,7 +353,7 @@ public abstract class ConstraintExtension extends Constraint implements TagAC, T
 			m = reverseTuples(scp, m);
 			positive = !positive;
 		}
-		ConstraintExtension c = positive && m.length <= pb.head.control.extension.small ? new STR0(pb, scp) : build(pb, scp, positive, starred);
+		ConstraintExtension c = positive && m.length <= pb.head.control.extension.small ? new STR0(pb, scp) : build(pb, scp, positive, starred, m.length);
 		c.storeTuples(m, positive);
 		return c;
 	}
@@ -12,7 +12,9 @@ package constraints;
 
 import static utility.Kit.control;
 
+import java.lang.invoke.MethodHandle;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Stream;
@@ -24,10 +26,12 @@ import org.xcsp.common.predicates.TreeEvaluator.F2Evaluator;
 import org.xcsp.common.predicates.XNodeParent;
 
 import constraints.intension.KeyCanonizer;
+import constraints.intension.TreeCompiler;
 import interfaces.ConstraintRegister;
 import interfaces.Tags.TagCallCompleteFiltering;
 import problem.Problem;
 import utility.Kit;
+import variables.Domain;
 import variables.Variable;
 import variables.Variable.VariableInteger;
 
@@ -56,6 +60,16 @@ public final class ConstraintIntension extends Constraint implements TagCallComp
 			return registeredCtrs;
 		}
 
+		/**
+		 * The method handle, of type (int[])long, obtained by compiling the tree; null if the tree is interpreted (with the evaluators of the super class)
+		 */
+		private MethodHandle compiledTree;
+
+		/**
+		 * The cache of evaluations of tuples of indexes, shared by all registered constraints; null if evaluations are not memoized
+		 */
+		private EvaluationCache cache;
+
 		/**
 		 * Builds an intension structure for the specified Boolean expression tree
 		 * 
@@ -66,6 +80,20 @@ public final class ConstraintIntension extends Constraint implements TagCallComp
 			super(tree);
 		}
 
+		/**
+		 * Builds an intension structure for the specified Boolean expression tree, which is compiled if the specified Boolean is true (and the
+		 * operators of the tree can be compiled)
+		 * 
+		 * @param tree
+		 *            a Boolean expression tree
+		 * @param compile
+		 *            indicates if the tree must be compiled
+		 */
+		public IntensionStructure(XNodeParent<? extends IVar> tree, boolean compile) {
+			super(tree);
+			this.compiledTree = compile ? TreeCompiler.compile(tree) : null;
+		}
+
 		/**
 		 * Builds an intension structure for the specified Boolean expression tree, while using the specified map of
 		 * symbols because symbolic variables are involved
@@ -78,15 +106,167 @@ public final class ConstraintIntension extends Constraint implements TagCallComp
 		public IntensionStructure(XNodeParent<? extends IVar> tree, Map<String, Integer> mapOfSymbols) {
 			super(tree, mapOfSymbols);
 		}
+
+		/**
+		 * Returns true if the specified tuple (of values) satisfies the Boolean expression tree
+		 * 
+		 * @param t
+		 *            a tuple of values
+		 * @return true if the specified tuple satisfies the Boolean expression tree
+		 */
+		public boolean isSatisfiedBy(int[] t) {
+			if (compiledTree == null)
+				return evaluate(t) == 1; // recall that 1 stands for true
+			try {
+				return (long) compiledTree.invokeExact(t) == 1;
+			} catch (Throwable e) {
+				throw e instanceof RuntimeException ? (RuntimeException) e : new RuntimeException(e);
+			}
+		}
+	}
+
+	/**
+	 * A bounded cache of evaluations of tuples of indexes, shared by all constraints registered with an intension structure (these constraints having the
+	 * same initial domains, the indexes of values are interpreted identically). Tuples are packed into long keys and stored with their evaluation in an
+	 * array, with open addressing (a few linear probes); when no slot is available, the entry found at the first probe is evicted. The cache is first
+	 * used during a trial period, and abandoned if the observed hit rate is too low.
+	 */
+	public static final class EvaluationCache {
+
+		/**
+		 * The number of entries (slots) of the cache
+		 */
+		private static final int CAPACITY = 1 << 16;
+
+		/**
+		 * The maximal number of probes when looking for a key
+		 */
+		private static final int PROBES = 4;
+
+		/**
+		 * The number of lookups made before deciding whether the cache must be kept
+		 */
+		private static final int TRIAL = 1 << 15;
+
+		/**
+		 * The minimal hit rate, observed since the first lookup, for keeping the cache once the trial period is over
+		 */
+		private static final double MIN_HIT_RATE = 0.25;
+
+		/**
+		 * The value of empty slots (packed keys are non-negative, and so are entries)
+		 */
+		private static final long EMPTY = -1;
+
+		/**
+		 * Builds and returns a cache for the specified domains, or null if tuples of indexes cannot be packed into 62 bits
+		 * 
+		 * @param doms
+		 *            the domains of the variables of a constraint
+		 * @return a cache for evaluations of tuples of indexes, or null
+		 */
+		public static EvaluationCache buildFor(Domain[] doms) {
+			int[] shifts = new int[doms.length];
+			int nBits = 0;
+			for (int i = 0; i < doms.length; i++) {
+				shifts[i] = nBits;
+				nBits += 32 - Integer.numberOfLeadingZeros(doms[i].initSize() - 1);
+			}
+			return nBits > 62 ? null : new EvaluationCache(shifts);
+		}
+
+		/**
+		 * shifts[i] is the position of the first bit used in packed keys for the ith index of tuples
+		 */
+		private final int[] shifts;
+
+		/**
+		 * The entries of the cache; an entry is a packed key (shifted by one bit) with the evaluation (0 or 1) as lowest bit
+		 */
+		private final long[] entries;
+
+		/**
+		 * The numbers of lookups and hits, used to compute the observed hit rate
+		 */
+		private long nLookups, nHits;
+
+		private EvaluationCache(int[] shifts) {
+			this.shifts = shifts;
+			this.entries = new long[CAPACITY];
+			Arrays.fill(entries, EMPTY);
+		}
+
+		private long keyOf(int[] t) {
+			long key = 0;
+			for (int i = 0; i < t.length; i++)
+				key |= ((long) t[i]) << shifts[i];
+			return key;
+		}
+
+		private static int slotOf(long key) {
+			long h = key * 0x9E3779B97F4A7C15L;
+			return (int) (h >>> 48) & (CAPACITY - 1);
+		}
+
+		/**
+		 * Returns 1 (resp., 0) if the evaluation of the specified key is true (resp., false) and recorded in the cache, and -1 otherwise
+		 */
+		private int get(long key) {
+			nLookups++;
+			for (int k = 0, slot = slotOf(key); k < PROBES; k++, slot = (slot + 1) & (CAPACITY - 1)) {
+				long entry = entries[slot];
+				if (entry == EMPTY)
+					return -1;
+				if ((entry >>> 1) == key) {
+					nHits++;
+					return (int) (entry & 1);
+				}
+			}
+			return -1;
+		}
+
+		private void put(long key, boolean satisfied) {
+			int first = slotOf(key), target = first; // by default, the entry at the first probe is evicted
+			for (int k = 0, slot = first; k < PROBES; k++, slot = (slot + 1) & (CAPACITY - 1))
+				if (entries[slot] == EMPTY) {
+					target = slot;
+					break;
+				}
+			entries[target] = (key << 1) | (satisfied ? 1 : 0);
+		}
+
+		/**
+		 * Returns true if the trial period is over, while the observed hit rate is too low. This is called after misses only, which is why the end of the
+		 * trial period is not tested with an equality (the lookup ending it may be a hit).
+		 */
+		private boolean unprofitable() {
+			return nLookups >= TRIAL && nHits < MIN_HIT_RATE * nLookups;
+		}
 	}
 
 	/**********************************************************************************************
 	 * Class members
 	 *********************************************************************************************/
 
+	@Override
+	public boolean checkIndexes(int[] t) {
+		EvaluationCache cache = treeEvaluator.cache;
+		if (cache == null)
+			return super.checkIndexes(t);
+		long key = cache.keyOf(t);
+		int evaluation = cache.get(key);
+		if (evaluation != -1)
+			return evaluation == 1;
+		boolean satisfied = super.checkIndexes(t);
+		cache.put(key, satisfied);
+		if (cache.unprofitable())
+			treeEvaluator.cache = null;
+		return satisfied;
+	}
+
 	@Override
 	public final boolean isSatisfiedBy(int[] t) {
-		return treeEvaluator.evaluate(t) == 1; // recall that 1 stands for true
+		return treeEvaluator.isSatisfiedBy(t);
 	}
 
 	/**
@@ -134,9 +314,13 @@ public final class ConstraintIntension extends Constraint implements TagCallComp
 		this.keyCanonizer = scp.length > 30 || tree.size() > 200 ? null : new KeyCanonizer(tree); // TODO hard coding
 		String key = defineKey(keyCanonizer == null ? tree.toPostfixExpression(tree.vars()) : keyCanonizer.key());
 		Map<String, IntensionStructure> map = pb.head.structureSharing.mapForIntension;
-		this.treeEvaluator = map.computeIfAbsent(key,s -> scp[0] instanceof VariableInteger ? new IntensionStructure(tree) : new IntensionStructure(tree, pb.symbolic.mapOfSymbols));
+		this.treeEvaluator = map.computeIfAbsent(key, s -> scp[0] instanceof VariableInteger ? new IntensionStructure(tree, pb.head.control.intension.compile)
+				: new IntensionStructure(tree, pb.symbolic.mapOfSymbols));
 		control(Stream.of(treeEvaluator.evaluators).noneMatch(e -> e instanceof F1Evaluator || e instanceof F2Evaluator));
 		treeEvaluator.register(this);
+		int memoizationLimit = pb.head.control.intension.memoizationLimit;
+		if (treeEvaluator.registeredCtrs.size() == 1 && memoizationLimit != -1 && tree.size() >= memoizationLimit)
+			treeEvaluator.cache = EvaluationCache.buildFor(doms);
 	}
 }
 
@@ -34,8 +34,8 @@ import variables.Domain;
 import variables.Variable;
 
 /**
- * This is the code for CHybrid to deal with so-called hybrid/smart tables. The code follows a Simple Tabular Reduction (STR) general scheme. See "The Smart
- * Table Constraint", CPAIOR 2015: 271-287, by J.-B. Mairy, Y. Deville, and C. Lecoutre. <br />
+ * This is the root class of filtering algorithms for so-called hybrid/smart tables, notably CHybridSTR (following a Simple Tabular Reduction (STR) general
+ * scheme) and CTHybrid. See "The Smart Table Constraint", CPAIOR 2015: 271-287, by J.-B. Mairy, Y. Deville, and C. Lecoutre. <br />
  * IMPORTANT: the code is under revision, and is planned to be finalized within the end of year 2021.
  * 
  * 
@@ -43,7 +43,7 @@ import variables.Variable;
  * 
  * @author Christophe Lecoutre
  */
-public final class CHybrid extends ExtensionSpecific {
+public abstract class CHybrid extends ExtensionSpecific {
 
 	/**********************************************************************************************
 	 * Static methods
@@ -51,47 +51,47 @@ public final class CHybrid extends ExtensionSpecific {
 
 	public static Constraint allEqual(Problem pb, Variable[] list) {
 		HybridTuple ht = new HybridTuple(IntStream.range(1, list.length).mapToObj(i -> eq(list[0], list[i])));
-		return new CHybrid(pb, list, ht);
+		return new CHybridSTR(pb, list, ht);
 	}
 
 	public static Constraint notAllEqual(Problem pb, Variable[] list) {
 		Stream<HybridTuple> hts = IntStream.range(1, list.length).mapToObj(i -> new HybridTuple(ne(list[0], list[i])));
-		return new CHybrid(pb, list, hts);
+		return new CHybridSTR(pb, list, hts);
 	}
 
 	public static Constraint atMost1(Problem pb, Variable[] list, Variable value) {
 		control(!value.presentIn(list), () -> "Not handled for the moment");
 		Stream<HybridTuple> hts = IntStream.range(0, list.length)
 				.mapToObj(i -> new HybridTuple(IntStream.range(0, list.length).filter(j -> j != i).mapToObj(j -> ne(value, list[j]))));
-		return new CHybrid(pb, pb.distinctSorted(pb.vars(list, value)), hts);
+		return new CHybridSTR(pb, pb.distinctSorted(pb.vars(list, value)), hts);
 	}
 
 	public static Constraint element(Problem pb, Variable[] list, Variable index, Variable value) {
 		Variable[] scp = pb.distinct(pb.vars(list, index, value));
 		control(index.dom.firstValue() == 0 && scp.length == list.length + 2, () -> "Not handled for the moment");
 		Stream<HybridTuple> hts = IntStream.range(0, list.length).mapToObj(i -> new HybridTuple(eq(index, i), eq(list[i], value)));
-		return new CHybrid(pb, scp, hts);
+		return new CHybridSTR(pb, scp, hts);
 	}
 
 	public static Constraint minimum(Problem pb, Variable[] list, Variable min) {
 		control(!min.presentIn(list), () -> "Not handled for the moment");
 		Stream<HybridTuple> hts = IntStream.range(0, list.length)
 				.mapToObj(i -> new HybridTuple(IntStream.range(0, list.length).mapToObj(j -> j != i ? le(list[i], list[j]) : eq(list[i], min))));
-		return new CHybrid(pb, pb.distinctSorted(pb.vars(list, min)), hts);
+		return new CHybridSTR(pb, pb.distinctSorted(pb.vars(list, min)), hts);
 	}
 
 	public static Constraint maximum(Problem pb, Variable[] list, Variable max) {
 		control(!max.presentIn(list), () -> "Not handled for the moment");
 		Stream<HybridTuple> hts = IntStream.range(0, list.length)
 				.mapToObj(i -> new HybridTuple(IntStream.range(0, list.length).mapToObj(j -> j != i ? ge(list[i], list[j]) : eq(list[i], max))));
-		return new CHybrid(pb, pb.distinctSorted(pb.vars(list, max)), hts);
+		return new CHybridSTR(pb, pb.distinctSorted(pb.vars(list, max)), hts);
 	}
 
 	public static Constraint lexicographicL(Problem pb, Variable[] t1, Variable[] t2, boolean strict) {
 		control(t1.length == t2.length);
 		Stream<HybridTuple> hts = IntStream.range(0, t1.length).mapToObj(i -> new HybridTuple(
 				IntStream.range(0, i + 1).mapToObj(j -> j < i ? eq(t1[j], t2[j]) : i == t1.length - 1 ? le(t1[i], t2[i]) : lt(t1[i], t2[i]))));
-		return new CHybrid(pb, pb.distinctSorted(pb.vars(t1, t2)), hts);
+		return new CHybridSTR(pb, pb.distinctSorted(pb.vars(t1, t2)), hts);
 	}
 
 	// 1D, widths being constants
@@ -99,14 +99,14 @@ public final class CHybrid extends ExtensionSpecific {
 	public static Constraint noOverlap(Problem pb, Variable x1, Variable x2, int w1, int w2) {
 		HybridTuple ht1 = new HybridTuple(ge(x2, add(x1, w1))); // x2 >= x1 + w1
 		HybridTuple ht2 = new HybridTuple(ge(x1, add(x2, w2))); // x1 >= x2 + w2
-		return new CHybrid(pb, pb.vars(x1, x2), ht1, ht2);
+		return new CHybridSTR(pb, pb.vars(x1, x2), ht1, ht2);
 	}
 
 	public static Constraint noOverlap(Problem pb, Variable x1, Variable x2, int w1, int w2, Variable aux) {
 		control(aux.dom.initiallyRange(2));
 		HybridTuple ht1 = new HybridTuple(eq(aux, 0), ge(x2, add(x1, w1))); // x2 >= x1 + w1
 		HybridTuple ht2 = new HybridTuple(eq(aux, 1), ge(x1, add(x2, w2))); // x1 >= x2 + w2
-		return new CHybrid(pb, pb.vars(x1, x2, aux), ht1, ht2);
+		return new CHybridSTR(pb, pb.vars(x1, x2, aux), ht1, ht2);
 	}
 
 	// 1D, widths being variables
@@ -114,14 +114,14 @@ public final class CHybrid extends ExtensionSpecific {
 	public static Constraint noOverlap(Problem pb, Variable x1, Variable x2, Variable w1, Variable w2) {
 		HybridTuple ht1 = new HybridTuple(ge(x2, add(x1, w1))); // x2 >= x1 + w1
 		HybridTuple ht2 = new HybridTuple(ge(x1, add(x2, w2))); // x1 >= x2 + w2
-		return new CHybrid(pb, pb.vars(x1, x2, w1, w2), ht1, ht2);
+		return new CHybridSTR(pb, pb.vars(x1, x2, w1, w2), ht1, ht2);
 	}
 
 	public static Constraint noOverlap(Problem pb, Variable x1, Variable x2, Variable w1, Variable w2, Variable aux) {
 		control(aux.dom.initiallyRange(2));
 		HybridTuple ht1 = new HybridTuple(eq(aux, 0), ge(x2, add(x1, w1))); // x2 >= x1 + w1
 		HybridTuple ht2 = new HybridTuple(eq(aux, 1), ge(x1, add(x2, w2))); // x1 >= x2 + w2
-		return new CHybrid(pb, pb.vars(x1, x2, w1, w2, aux), ht1, ht2);
+		return new CHybridSTR(pb, pb.vars(x1, x2, w1, w2, aux), ht1, ht2);
 	}
 
 	// 2D, widths and lengths being constants
@@ -131,7 +131,7 @@ public final class CHybrid extends ExtensionSpecific {
 		HybridTuple ht2 = new HybridTuple(ge(x1, add(x2, w2))); // x1 >= x2 + w2
 		HybridTuple ht3 = new HybridTuple(ge(y2, add(y1, h1))); // y2 >= y1 + h1
 		HybridTuple ht4 = new HybridTuple(ge(y1, add(y2, h2))); // y1 >= y2 + h2
-		return new CHybrid(pb, pb.vars(x1, y1, x2, y2), ht1, ht2, ht3, ht4);
+		return new CHybridSTR(pb, pb.vars(x1, y1, x2, y2), ht1, ht2, ht3, ht4);
 	}
 
 	public static Constraint noOverlap(Problem pb, Variable x1, Variable y1, Variable x2, Variable y2, int w1, int h1, int w2, int h2, Variable aux) {
@@ -140,7 +140,7 @@ public final class CHybrid extends ExtensionSpecific {
 		HybridTuple ht2 = new HybridTuple(eq(aux, 1), ge(x1, add(x2, w2))); // x1 >= x2 + w2
 		HybridTuple ht3 = new HybridTuple(eq(aux, 2), ge(y2, add(y1, h1))); // y2 >= y1 + h1
 		HybridTuple ht4 = new HybridTuple(eq(aux, 3), ge(y1, add(y2, h2))); // y1 >= y2 + h2
-		return new CHybrid(pb, pb.vars(x1, y1, x2, y2, aux), ht1, ht2, ht3, ht4);
+		return new CHybridSTR(pb, pb.vars(x1, y1, x2, y2, aux), ht1, ht2, ht3, ht4);
 	}
 
 	// 2D, widths being variables and lengths being constants
@@ -150,7 +150,7 @@ public final class CHybrid extends ExtensionSpecific {
 		HybridTuple ht2 = new HybridTuple(ge(x1, add(x2, w2))); // x1 >= x2 + w2
 		HybridTuple ht3 = new HybridTuple(ge(y2, add(y1, h1))); // y2 >= y1 + h1
 		HybridTuple ht4 = new HybridTuple(ge(y1, add(y2, h2))); // y1 >= y2 + h2
-		return new CHybrid(pb, pb.vars(x1, y1, x2, y2, w1, w2), ht1, ht2, ht3, ht4);
+		return new CHybridSTR(pb, pb.vars(x1, y1, x2, y2, w1, w2), ht1, ht2, ht3, ht4);
 	}
 
 	public static Constraint noOverlap(Problem pb, Variable x1, Variable y1, Variable x2, Variable y2, Variable w1, int h1, Variable w2, int h2, Variable aux) {
@@ -159,7 +159,7 @@ public final class CHybrid extends ExtensionSpecific {
 		HybridTuple ht2 = new HybridTuple(eq(aux, 1), ge(x1, add(x2, w2))); // x1 >= x2 + w2
 		HybridTuple ht3 = new HybridTuple(eq(aux, 2), ge(y2, add(y1, h1))); // y2 >= y1 + h1
 		HybridTuple ht4 = new HybridTuple(eq(aux, 3), ge(y1, add(y2, h2))); // y1 >= y2 + h2
-		return new CHybrid(pb, pb.vars(x1, y1, x2, y2, w1, w2, aux), ht1, ht2, ht3, ht4);
+		return new CHybridSTR(pb, pb.vars(x1, y1, x2, y2, w1, w2, aux), ht1, ht2, ht3, ht4);
 	}
 
 	// 2D, widths and lengths being variables
@@ -169,7 +169,7 @@ public final class CHybrid extends ExtensionSpecific {
 		HybridTuple ht2 = new HybridTuple(ge(x1, add(x2, w2))); // x1 >= x2 + w2
 		HybridTuple ht3 = new HybridTuple(ge(y2, add(y1, h1))); // y2 >= y1 + h1
 		HybridTuple ht4 = new HybridTuple(ge(y1, add(y2, h2))); // y1 >= y2 + h2
-		return new CHybrid(pb, pb.vars(x1, y1, x2, y2, w1, h1, w2, h2), ht1, ht2, ht3, ht4);
+		return new CHybridSTR(pb, pb.vars(x1, y1, x2, y2, w1, h1, w2, h2), ht1, ht2, ht3, ht4);
 	}
 
 	public static Constraint noOverlap(Problem pb, Variable x1, Variable y1, Variable x2, Variable y2, Variable w1, Variable h1, Variable w2, Variable h2,
@@ -179,7 +179,7 @@ public final class CHybrid extends ExtensionSpecific {
 		HybridTuple ht2 = new HybridTuple(eq(aux, 1), ge(x1, add(x2, w2))); // x1 >= x2 + w2
 		HybridTuple ht3 = new HybridTuple(eq(aux, 2), ge(y2, add(y1, h1))); // y2 >= y1 + h1
 		HybridTuple ht4 = new HybridTuple(eq(aux, 3), ge(y1, add(y2, h2))); // y1 >= y2 + h2
-		return new CHybrid(pb, pb.vars(x1, y1, x2, y2, w1, h1, w2, h2, aux), ht1, ht2, ht3, ht4);
+		return new CHybridSTR(pb, pb.vars(x1, y1, x2, y2, w1, h1, w2, h2, aux), ht1, ht2, ht3, ht4);
 	}
 
 	// special case (TODO : to be checked if this remains relevant/interesting)
@@ -194,7 +194,7 @@ public final class CHybrid extends ExtensionSpecific {
 		HybridTuple ht6 = new HybridTuple(eq(h1, h1.dom.lastValue()), ge(y2, add(y1, h1.dom.lastValue())));
 		HybridTuple ht7 = new HybridTuple(eq(h2, h2.dom.firstValue()), ge(y1, add(y2, h2.dom.firstValue())));
 		HybridTuple ht8 = new HybridTuple(eq(h2, h2.dom.lastValue()), ge(y1, add(y2, h2.dom.lastValue())));
-		return new CHybrid(pb, pb.vars(x1, y1, x2, y2, w1, h1, w2, h2), ht1, ht2, ht3, ht4, ht5, ht6, ht7, ht8);
+		return new CHybridSTR(pb, pb.vars(x1, y1, x2, y2, w1, h1, w2, h2), ht1, ht2, ht3, ht4, ht5, ht6, ht7, ht8);
 	}
 
 	public static Constraint distinctVectors(Problem pb, Variable[] t1, Variable[] t2) {
@@ -204,7 +204,7 @@ public final class CHybrid extends ExtensionSpecific {
 		Variable[] tt2 = match ? IntStream.range(0, t1.length).filter(i -> t1[i] != t2[i]).mapToObj(i -> t2[i]).toArray(Variable[]::new) : t2;
 		control(tt1.length == tt2.length);
 		Stream<HybridTuple> hts = IntStream.range(0, tt1.length).mapToObj(i -> new HybridTuple(ne(tt1[i], tt2[i])));
-		return new CHybrid(pb, pb.distinctSorted(pb.vars(tt1, tt2)), hts);
+		return new CHybridSTR(pb, pb.distinctSorted(pb.vars(tt1, tt2)), hts);
 	}
 
 	/**********************************************************************************************
@@ -216,14 +216,12 @@ public final class CHybrid extends ExtensionSpecific {
 	@Override
 	public void afterProblemConstruction(int n) {
 		super.afterProblemConstruction(n);
-		this.set = new SetDenseReversible(hybridTuples.length, n + 1);
 		this.lastSizesStack = new int[n + 1][scp.length];
 		Arrays.fill(lastSizesStack[0], UNINITIALIZED);
 	}
 
 	@Override
 	public void restoreBefore(int depth) {
-		set.restoreLimitAtLevel(depth);
 		lastDepth = Math.max(0, Math.min(lastDepth, depth - 1));
 		backtrack = true;
 	}
@@ -237,11 +235,6 @@ public final class CHybrid extends ExtensionSpecific {
 	 */
 	public final HybridTuple[] hybridTuples;
 
-	/**
-	 * The reversible dense set storing the indexes (of hybrid tuples) of the current table
-	 */
-	protected SetDenseReversible set;
-
 	/**
 	 * The sparse sets used during filtering: nac[x] is the sparse set for indexes (of values) of x, which have not been found a support yet (nac stands for not
 	 * arc-consistent).
@@ -402,20 +395,75 @@ public final class CHybrid extends ExtensionSpecific {
 		return true;
 	}
 
-	@Override
-	public boolean runPropagator(Variable dummy) {
-		int depth = problem.solver.depth();
-		beforeFiltering();
-		for (int i = set.limit; i >= 0; i--) {
-			HybridTuple hybridTuple = hybridTuples[set.dense[i]];
-			if (!options.discardHybridEntailment && hybridTuple.isEntailed()) 
-				return entailed();
-			if (hybridTuple.isValid(sVal, sValSize)) {
-				sSupSize = hybridTuple.collect(sSup, sSupSize);
-			} else
-				set.removeAtPosition(i, depth);
+	/**********************************************************************************************
+	 * CHybridSTR
+	 *********************************************************************************************/
+
+	/**
+	 * The filtering algorithm following a Simple Tabular Reduction (STR) general scheme: the hybrid tuples of the current table are stored in a reversible
+	 * dense set, and are checked for validity and collected for supports in turn.
+	 */
+	public static final class CHybridSTR extends CHybrid {
+
+		@Override
+		public void afterProblemConstruction(int n) {
+			super.afterProblemConstruction(n);
+			this.set = new SetDenseReversible(hybridTuples.length, n + 1);
+		}
+
+		@Override
+		public void restoreBefore(int depth) {
+			super.restoreBefore(depth);
+			set.restoreLimitAtLevel(depth);
+		}
+
+		/**
+		 * The reversible dense set storing the indexes (of hybrid tuples) of the current table
+		 */
+		private SetDenseReversible set;
+
+		/**
+		 * Builds a hybrid table constraint, with an STR-based filtering method
+		 * 
+		 * @param pb
+		 *            the problem to which the constraint is attached
+		 * @param scp
+		 *            the scope of the constraint
+		 * @param hybridTuples
+		 *            the hybrid tuples of the constraint
+		 */
+		public CHybridSTR(Problem pb, Variable[] scp, HybridTuple... hybridTuples) {
+			super(pb, scp, hybridTuples);
 		}
-		return updateDomains();
-	}
 
+		/**
+		 * Builds a hybrid table constraint, with an STR-based filtering method
+		 * 
+		 * @param pb
+		 *            the problem to which the constraint is attached
+		 * @param scp
+		 *            the scope of the constraint
+		 * @param hybridTuples
+		 *            the hybrid tuples of the constraint
+		 */
+		public CHybridSTR(Problem pb, Variable[] scp, Stream<HybridTuple> hybridTuples) {
+			this(pb, scp, hybridTuples.toArray(HybridTuple[]::new));
+		}
+
+		@Override
+		public boolean runPropagator(Variable dummy) {
+			int depth = problem.solver.depth();
+			beforeFiltering();
+			for (int i = set.limit; i >= 0; i--) {
+				HybridTuple hybridTuple = hybridTuples[set.dense[i]];
+				if (!options.discardHybridEntailment && hybridTuple.isEntailed())
+					return entailed();
+				if (hybridTuple.isValid(sVal, sValSize)) {
+					sSupSize = hybridTuple.collect(sSup, sSupSize);
+				} else
+					set.removeAtPosition(i, depth);
+			}
+			return updateDomains();
+		}
+	}
 }
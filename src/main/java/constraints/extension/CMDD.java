@@ -10,6 +10,8 @@
 
 package constraints.extension;
 
+import static constraints.extension.structures.MDD.F;
+import static constraints.extension.structures.MDD.T;
 import static utility.Kit.control;
 
 import java.util.Arrays;
@@ -212,27 +214,27 @@ public abstract class CMDD extends ExtensionSpecific implements TagPositive {
 		return false;
 	}
 
-	protected abstract boolean recursiveExploration(Node node);
+	protected abstract boolean recursiveExploration(int node);
 
 	/**
 	 * Explores the MDD from the specified node so as to find supports
 	 * 
 	 * @param node
-	 *            a node in the MDD
+	 *            the id of a node in the MDD
 	 * @return true if the terminal (true) node can be reached (while following valid branches) from the specified node
 	 */
-	protected boolean explore(Node node) {
-		if (node == Node.nodeT || trueNodes[node.num] == trueTimestamp)
+	protected boolean explore(int node) {
+		if (node == T || trueNodes[node] == trueTimestamp)
 			return true;
-		if (node == Node.nodeF || (set != null && set.contains(node.num)) || (set == null && falseNodes[node.num] == falseTimestamp))
+		if (node == F || (set != null && set.contains(node)) || (set == null && falseNodes[node] == falseTimestamp))
 			return false;
 		boolean supported = recursiveExploration(node);
 		if (supported)
-			trueNodes[node.num] = trueTimestamp;
+			trueNodes[node] = trueTimestamp;
 		else if (set != null)
-			set.add(node.num, problem.solver.depth());
+			set.add(node, problem.solver.depth());
 		else
-			falseNodes[node.num] = falseTimestamp;
+			falseNodes[node] = falseTimestamp;
 		return supported;
 	}
 
@@ -284,25 +286,25 @@ public abstract class CMDD extends ExtensionSpecific implements TagPositive {
 		}
 
 		@Override
-		protected boolean recursiveExploration(Node node) {
-			Domain dom = scp[node.level].dom;
+		protected boolean recursiveExploration(int node) {
+			int level = mdd.levels[node], offset = mdd.offsets[node];
+			int[] sons = mdd.sons, orders = mdd.orders;
+			Domain dom = scp[level].dom;
 			boolean supported = false, finished = false;
-			if (dom.size() < node.nRelevantSons() || node.classes == null) {
+			if (dom.size() < mdd.nRelevantSons[node]) {
 				for (int a = dom.first(); a != -1 && !finished; a = dom.next(a)) {
-					if (explore(node.sons[a])) {
+					if (explore(sons[offset + a])) {
 						supported = true;
-						finished = manageSuccessfulExploration(node.level, a);
+						finished = manageSuccessfulExploration(level, a);
 					}
 				}
 			} else {
-				search: for (int[] childsClass : node.classes) {
-					for (int a : childsClass) {
-						if (dom.contains(a) && explore(node.sons[a])) {
-							supported = true;
-							finished = manageSuccessfulExploration(node.level, a);
-							if (finished)
-								break search;
-						}
+				// value indexes are considered by classes (i.e., grouped by sons)
+				for (int j = offset, last = offset + mdd.nRelevantSons[node]; j < last && !finished; j++) {
+					int a = orders[j];
+					if (dom.contains(a) && explore(sons[offset + a])) {
+						supported = true;
+						finished = manageSuccessfulExploration(level, a);
 					}
 				}
 			}
@@ -345,18 +347,20 @@ public abstract class CMDD extends ExtensionSpecific implements TagPositive {
 		}
 
 		@Override
-		protected boolean recursiveExploration(Node node) {
-			Domain dom = scp[node.level].dom;
+		protected boolean recursiveExploration(int node) {
+			int level = mdd.levels[node], offset = mdd.offsets[node];
+			int[] sons = mdd.sons;
+			Domain dom = scp[level].dom;
 			boolean supported = false, finished = false;
 			// if (dom.size() < node.nSonsDifferentFromNodeF()) {
-			if (explore(node.sons[node.sons.length - 1])) {
+			if (explore(sons[mdd.offsets[node + 1] - 1])) {
 				supported = true;
-				manageSuccessfulExploration(node.level, Constants.STAR);
+				manageSuccessfulExploration(level, Constants.STAR);
 			}
 			for (int a = dom.first(); a != -1 && !finished; a = dom.next(a)) {
-				if (explore(node.sons[a])) {
+				if (explore(sons[offset + a])) {
 					supported = true;
-					finished = manageSuccessfulExploration(node.level, a);
+					finished = manageSuccessfulExploration(level, a);
 				}
 			}
 			// } else {
@@ -12,15 +12,16 @@ package constraints.extension;
 
 import static utility.Kit.control;
 
-import java.util.Arrays;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 import org.xcsp.common.Constants;
 
 import constraints.extension.structures.Table;
+import constraints.extension.structures.Table.Column;
 import interfaces.Tags.TagStarredCompatible;
 import problem.Problem;
+import sets.SetBitReversible;
 import sets.SetDenseReversible;
 import utility.Bit;
 import variables.Domain;
@@ -46,29 +47,30 @@ public class CT extends STR1Optimized implements TagStarredCompatible {
 	public final void afterProblemConstruction(int n) {
 		super.afterProblemConstruction(n);
 
-		int nWords = (int) Math.ceil(tuples.length / 64.0);
-		this.current = new long[nWords];
+		this.currentTable = new SetBitReversible(nTuples, n + 1);
+		this.current = currentTable.words;
+		this.nonZeros = currentTable.nonZeros;
+		int nWords = current.length;
 		this.tmp = new long[nWords];
 		this.tmp2 = new long[nWords];
-		this.lastWord1Then0 = tuples.length % 64 != 0 ? Bit.bitsAt1To(tuples.length % 64) : Bit.ALL_LONG_BITS_TO_1;
-		this.lastWord0Then1 = tuples.length % 64 != 0 ? Bit.bitsAt1From(tuples.length % 64) : 0L;
-		fillTo1(current);
 
 		this.starred = ((Table) extStructure()).starred;
 		this.masks = Stream.of(scp).map(x -> new long[x.dom.initSize()][nWords]).toArray(long[][][]::new);
 		if (!this.starred) {
 			for (int x = 0; x < scp.length; x++) {
 				long[][] mask = masks[x];
-				for (int j = 0; j < tuples.length; j++)
-					Bit.setTo1(mask[tuples[j][x]], j);
+				Column column = columns[x];
+				for (int j = 0; j < nTuples; j++)
+					Bit.setTo1(mask[column.get(j)], j);
 				maskCompression(mask);
 			}
 		} else {
 			for (int x = 0; x < scp.length; x++) {
 				long[][] mask = masks[x];
-				for (int j = 0; j < tuples.length; j++)
-					if (tuples[j][x] != Constants.STAR)
-						Bit.setTo1(mask[tuples[j][x]], j);
+				Column column = columns[x];
+				for (int j = 0; j < nTuples; j++)
+					if (column.get(j) != Constants.STAR)
+						Bit.setTo1(mask[column.get(j)], j);
 					else
 						for (int a = 0; a < mask.length; a++)
 							Bit.setTo1(mask[a], j);
@@ -77,20 +79,15 @@ public class CT extends STR1Optimized implements TagStarredCompatible {
 			this.masksS = Stream.of(scp).map(x -> new long[x.dom.initSize()][nWords]).toArray(long[][][]::new);
 			for (int x = 0; x < scp.length; x++) {
 				long[][] mask = masksS[x];
-				for (int j = 0; j < tuples.length; j++)
-					if (tuples[j][x] != Constants.STAR)
-						Bit.setTo1(mask[tuples[j][x]], j);
+				Column column = columns[x];
+				for (int j = 0; j < nTuples; j++)
+					if (column.get(j) != Constants.STAR)
+						Bit.setTo1(mask[column.get(j)], j);
 				maskCompression(mask);
 			}
 		}
 
-		this.stackedWords = new long[nWords * factorStacked];
-		this.stackedIndexes = new int[nWords * factorStacked];
-		this.stackStructure = new int[nWords * factorStack];
-		this.modifiedWords = new boolean[nWords];
-
 		this.deltaSizes = new int[scp.length];
-		this.nonZeros = new SetDenseReversible(current.length, n + 1);
 		this.residues = Variable.litterals(scp).intArray();
 		this.firstCall = true;
 	}
@@ -98,14 +95,7 @@ public class CT extends STR1Optimized implements TagStarredCompatible {
 	@Override
 	public final void restoreBefore(int depth) {
 		super.restoreBefore(depth);
-		if (topStack != -1 && stackStructure[topStack - 1] == depth) {
-			for (int i = stackStructure[topStack] - 1; i >= 0; i--)
-				current[stackedIndexes[topStacked - i]] = stackedWords[topStacked - i];
-			topStacked -= stackStructure[topStack];
-			topStack -= 2;
-		}
-		nonZeros.restoreLimitAtLevel(depth);
-		lastSafeNumber = -1;
+		currentTable.restoreBefore(depth);
 		// if (depth == 0) afterProblemConstruction(); // TODO necessary when using aggressive runs
 	}
 
@@ -114,14 +104,24 @@ public class CT extends STR1Optimized implements TagStarredCompatible {
 	 *********************************************************************************************/
 
 	/**
-	 * The current table (used as bit vector)
+	 * The current table (reversible sparse bit-set)
+	 */
+	protected SetBitReversible currentTable;
+
+	/**
+	 * The words of the current table (shortcut)
 	 */
-	private long[] current;
+	protected long[] current;
+
+	/**
+	 * Reversible dense set indicating the words of the current table that are currently not 0 (shortcut)
+	 */
+	protected SetDenseReversible nonZeros;
 
 	/**
 	 * masks[x][a] gives the mask for (x,a), used when filtering
 	 */
-	private long[][][] masks;
+	protected long[][][] masks;
 
 	/**
 	 * masksS[x][a] gives the mask* for (x,a), used when filtering; this is useful for short tables
@@ -138,35 +138,11 @@ public class CT extends STR1Optimized implements TagStarredCompatible {
 	 */
 	private long[] tmp2;
 
-	/**
-	 * A constant to be used with the last word
-	 */
-	private long lastWord0Then1;
-
-	private long lastWord1Then0;
-
-	int factorStacked = 10, factorStack = 10; // factors used for enlarging arrays when necessary
-	long[] stackedWords; // stores the values of the words that have been stacked
-	int[] stackedIndexes; // stores the indexes of the words that have been stacked
-	int[] stackStructure; // stores, in sequence, pairs (d,nb) with d the depth where nb words have been stacked
-	int topStacked = -1, topStack = -1;
-
-	/**
-	 * modifiedWords[i] indicates if the ith word has already been modified (and stored for future use when
-	 * backtracking)
-	 */
-	private boolean[] modifiedWords;
-
 	/**
 	 * deltaSizes[x] indicates how many values are in the delta set of x
 	 */
 	private int[] deltaSizes;
 
-	/**
-	 * Reversible dense set indicating the words that are currently not 0
-	 */
-	private SetDenseReversible nonZeros;
-
 	/**
 	 * residues[x][a] is the index of the word where a support was found the last time for (x,a)
 	 */
@@ -192,20 +168,9 @@ public class CT extends STR1Optimized implements TagStarredCompatible {
 		control(extOptions.decremental, "true is required for CT for the moment");
 	}
 
-	private void fillTo1(long[] t) {
-		Arrays.fill(t, Bit.ALL_LONG_BITS_TO_1);
-		t[t.length - 1] = lastWord1Then0;
-	}
-
-	private void fillTo0(long[] t) {
-		for (int i = nonZeros.limit; i >= 0; i--)
-			t[nonZeros.dense[i]] = 0L;
-		t[t.length - 1] = lastWord0Then1;
-	}
-
 	@Override
 	protected final void manageLastPastVar() {
-		// we no more refer to lastSafeNumber because it may have been modified earlier in beforeFiltering
+		// we do not refer to lastSafeNumber: the last past variable is detected through lastSizes
 		Variable lastPast = problem.solver.futVars.lastPast();
 		int x = lastPast == null ? -1 : positionOf(lastPast);
 		if (x != -1 && lastSizes[x] != 1) {
@@ -218,15 +183,7 @@ public class CT extends STR1Optimized implements TagStarredCompatible {
 	@Override
 	protected final void beforeFiltering() {
 		initRestorationStructuresBeforeFiltering();
-		if (lastSafeNumber != problem.solver.stats.safeNumber()) {
-			// Arrays.fill(modifiedWords, false);
-			for (int i = nonZeros.limit; i >= 0; i--)
-				modifiedWords[nonZeros.dense[i]] = false;
-			if (topStack != -1 && stackStructure[topStack - 1] == problem.solver.depth())
-				for (int i = stackStructure[topStack] - 1; i >= 0; i--)
-					modifiedWords[stackedIndexes[topStacked - i]] = true;
-			lastSafeNumber = problem.solver.stats.safeNumber();
-		}
+		currentTable.resetModifiedWords(problem.solver.stats.safeNumber(), problem.solver.depth());
 		sValSize = sSupSize = 0;
 		manageLastPastVar();
 		for (int i = futvars.limit; i >= 0; i--) {
@@ -254,7 +211,7 @@ public class CT extends STR1Optimized implements TagStarredCompatible {
 		firstCall = false;
 		lastSizes = lastSizesStack[0];
 		lastDepth = 0;
-		fillTo0(tmp);
+		currentTable.fillTo0(tmp);
 		for (int x = 0; x < scp.length; x++) {
 			Domain dom = doms[x];
 			int cnt = 0;
@@ -278,6 +235,16 @@ public class CT extends STR1Optimized implements TagStarredCompatible {
 					nonZeros.removeAtPosition(i, 0);
 			}
 		}
+		return initialFiltering();
+	}
+
+	/**
+	 * Filters the domains of the variables in the scope of the constraint when the propagator is called for the first
+	 * time, once the current table has been restricted to valid tuples
+	 * 
+	 * @return false if an inconsistency (empty domain) is detected
+	 */
+	protected boolean initialFiltering() {
 		for (int x = 0; x < scp.length; x++) {
 			Domain dom = doms[x];
 			for (int a = dom.first(); a != -1; a = dom.next(a)) {
@@ -292,31 +259,8 @@ public class CT extends STR1Optimized implements TagStarredCompatible {
 		return true;
 	}
 
-	private void wordModified(int index, long oldValue) {
-		if (modifiedWords[index]) {
-			assert stackStructure[topStack - 1] == problem.solver.depth()
-					&& IntStream.range(0, stackStructure[topStack]).anyMatch(i -> stackedIndexes[topStacked - i] == index);
-			return;
-		}
-		int depth = problem.solver.depth();
-		if (topStack == -1 || stackStructure[topStack - 1] != depth) {
-			if (topStack + 3 >= stackStructure.length)
-				stackStructure = Arrays.copyOf(stackStructure, current.length * (factorStack *= 2));
-			stackStructure[++topStack] = depth;
-			stackStructure[++topStack] = 1; // first modified word at this level
-		} else
-			stackStructure[topStack]++; // another modified word at this level
-		if (topStacked + 3 >= stackedWords.length) {
-			stackedWords = Arrays.copyOf(stackedWords, current.length * (factorStacked *= 2));
-			stackedIndexes = Arrays.copyOf(stackedIndexes, current.length * factorStacked);
-		}
-		stackedWords[++topStacked] = oldValue;
-		stackedIndexes[topStacked] = index;
-		modifiedWords[index] = true;
-	}
-
 	@Override
-	protected final boolean updateDomains() {
+	protected boolean updateDomains() {
 		// we update domains (inconsistency is no more possible)
 		for (int i = sSupSize - 1; i >= 0; i--) {
 			int x = sSup[i];
@@ -336,13 +280,22 @@ public class CT extends STR1Optimized implements TagStarredCompatible {
 		return true;
 	}
 
+	/**
+	 * Called when the current table becomes empty during filtering
+	 * 
+	 * @return false since an inconsistency is detected (for positive tables)
+	 */
+	protected boolean whenNoTupleLeft() {
+		return doms[0].fail();
+	}
+
 	@Override
 	public final boolean runPropagator(Variable z) {
 		if (firstCall)
 			return firstCall();
 		beforeFiltering();
 		// we compute in tmp the bit vector denoting all deleted tuples (and then we inverse it)
-		fillTo0(tmp);
+		currentTable.fillTo0(tmp);
 		for (int i = sValSize - 1; i >= 0; i--) {
 			int x = sVal[i];
 			Domain dom = doms[x];
@@ -354,7 +307,7 @@ public class CT extends STR1Optimized implements TagStarredCompatible {
 			} else if (dom.size() == 1) {
 				Bit.orInverse(tmp, masks[x][dom.first()], nonZeros);
 			} else {
-				fillTo0(tmp2);
+				currentTable.fillTo0(tmp2);
 				for (int a = dom.first(); a != -1; a = dom.next(a))
 					Bit.or(tmp2, masks[x][a], nonZeros);
 				Bit.orInverse(tmp, tmp2, nonZeros); // Bit.or(tmp, Bit.inverse(tmp2, nonZeros), nonZeros);
@@ -364,16 +317,10 @@ public class CT extends STR1Optimized implements TagStarredCompatible {
 		int depth = problem.solver.depth();
 		for (int i = nonZeros.limit; i >= 0; i--) {
 			int j = nonZeros.dense[i];
-			long l = current[j] & ~tmp[j]; // we inverse tmp here
-			if (current[j] != l) {
-				wordModified(j, current[j]);
-				current[j] = l;
-				if (l == 0L)
-					nonZeros.removeAtPosition(i, depth);
-			}
+			currentTable.updateWord(i, current[j] & ~tmp[j], depth); // we inverse tmp here
 		}
-		if (nonZeros.size() == 0)
-			return z.dom.fail(); // inconsistency detected
+		if (nonZeros.size() == 0) // no more valid tuples
+			return whenNoTupleLeft();
 		return updateDomains();
 	}
 
@@ -0,0 +1,239 @@
+/*
+ * This file is part of the constraint solver ACE (AbsCon Essence). 
+ *
+ * Copyright (c) 2021. All rights reserved.
+ * Christophe Lecoutre, CRIL, Univ. Artois and CNRS. 
+ * 
+ * Licensed under the MIT License.
+ * See LICENSE file in the project root for full license information.
+ */
+
+package constraints.extension;
+
+import static utility.Kit.control;
+
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import constraints.extension.structures.TableHybrid.HybridTuple;
+import problem.Problem;
+import sets.SetBitReversible;
+import sets.SetDenseReversible;
+import sets.SetSparse;
+import utility.Bit;
+import variables.Domain;
+import variables.Variable;
+
+/**
+ * This is the code for CT-Hybrid, a Compact-Table approach for filtering hybrid/smart tables, in the spirit of: Hélène Verhaeghe, Christophe Lecoutre, Yves
+ * Deville, Pierre Schaus: Extending Compact-Table to Basic Smart Tables. CP 2017: 297-314. <br />
+ * Masks are precomputed for each literal (x,a) from the underlying starred tuples and the unary restrictions. Complex (binary, ternary and multiple)
+ * restrictions are handled in a STR-like manner, but only for the hybrid tuples that are still present in the current table (bit vector).
+ *
+ * @author Christophe Lecoutre
+ */
+public final class CTHybrid extends CHybrid {
+
+	/**********************************************************************************************
+	 * Implementing Interfaces
+	 *********************************************************************************************/
+
+	@Override
+	public void afterProblemConstruction(int n) {
+		super.afterProblemConstruction(n);
+		int nTuples = hybridTuples.length;
+		this.currentTable = new SetBitReversible(nTuples, n + 1);
+		this.current = currentTable.words;
+		this.nonZeros = currentTable.nonZeros;
+		int nWords = current.length;
+		this.tmp = new long[nWords];
+
+		this.masks = Stream.of(scp).map(x -> new long[x.dom.initSize()][nWords]).toArray(long[][][]::new);
+		this.complexTuples = new long[nWords];
+		long[][] complex = new long[scp.length][nWords]; // complex[x] is the mask of tuples with a complex restriction involving x
+		for (int j = 0; j < nTuples; j++) {
+			HybridTuple hybridTuple = hybridTuples[j];
+			for (int x = 0; x < scp.length; x++) {
+				if (hybridTuple.involvesComplexRestriction(x)) {
+					Bit.setTo1(complex[x], j);
+					Bit.setTo1(complexTuples, j);
+				}
+				for (int a = 0; a < masks[x].length; a++)
+					if (hybridTuple.isCompatible(x, a))
+						Bit.setTo1(masks[x][a], j);
+			}
+		}
+		this.hasComplexTuples = IntStream.range(0, nWords).anyMatch(i -> complexTuples[i] != 0L);
+		// for supports, we only consider in masksS[x] the tuples that do not involve x in complex restrictions
+		this.masksS = new long[scp.length][][];
+		for (int x = 0; x < scp.length; x++) {
+			long[] cx = complex[x];
+			masksS[x] = IntStream.range(0, nWords).allMatch(i -> cx[i] == 0L) ? masks[x]
+					: Stream.of(masks[x]).map(m -> IntStream.range(0, nWords).mapToLong(i -> m[i] & ~cx[i]).toArray()).toArray(long[][]::new);
+		}
+		this.residues = Variable.litterals(scp).intArray();
+	}
+
+	@Override
+	public void restoreBefore(int depth) {
+		super.restoreBefore(depth);
+		currentTable.restoreBefore(depth);
+	}
+
+	/**********************************************************************************************
+	 * Class members
+	 *********************************************************************************************/
+
+	/**
+	 * The maximal number of non-zero words of the current table for checking entailment (scanning hybrid tuples is too costly otherwise)
+	 */
+	private static final int ENTAILMENT_WORDS_LIMIT = 2;
+
+	/**
+	 * The current table (reversible sparse bit-set)
+	 */
+	private SetBitReversible currentTable;
+
+	/**
+	 * The words of the current table (shortcut)
+	 */
+	private long[] current;
+
+	/**
+	 * Reversible dense set indicating the words of the current table that are currently not 0 (shortcut)
+	 */
+	private SetDenseReversible nonZeros;
+
+	/**
+	 * masks[x][a] gives the mask for (x,a), i.e., the hybrid tuples compatible with (x,a) when complex restrictions are ignored
+	 */
+	private long[][][] masks;
+
+	/**
+	 * masksS[x][a] gives the mask for (x,a) used when looking for supports: hybrid tuples where x is involved in a complex restriction are discarded
+	 */
+	private long[][][] masksS;
+
+	/**
+	 * The mask of hybrid tuples involving at least one complex restriction
+	 */
+	private long[] complexTuples;
+
+	/**
+	 * Indicates if at least one hybrid tuple involves a complex restriction
+	 */
+	private boolean hasComplexTuples;
+
+	/**
+	 * A buffer, used as bit vector during filtering
+	 */
+	private long[] tmp;
+
+	/**
+	 * residues[x][a] is the index of the word where a support was found the last time for (x,a)
+	 */
+	private int[][] residues;
+
+	/**
+	 * Builds a hybrid table constraint, with CT-Hybrid as specific filtering method
+	 *
+	 * @param pb
+	 *            the problem to which the constraint is attached
+	 * @param scp
+	 *            the scope of the constraint
+	 * @param hybridTuples
+	 *            the hybrid tuples of the constraint
+	 */
+	public CTHybrid(Problem pb, Variable[] scp, HybridTuple... hybridTuples) {
+		super(pb, scp, hybridTuples);
+		control(hybridTuples.length > 0);
+	}
+
+	/**
+	 * Builds a hybrid table constraint, with CT-Hybrid as specific filtering method
+	 * 
+	 * @param pb
+	 *            the problem to which the constraint is attached
+	 * @param scp
+	 *            the scope of the constraint
+	 * @param hybridTuples
+	 *            the hybrid tuples of the constraint
+	 */
+	public CTHybrid(Problem pb, Variable[] scp, Stream<HybridTuple> hybridTuples) {
+		this(pb, scp, hybridTuples.toArray(HybridTuple[]::new));
+	}
+
+	@Override
+	public boolean runPropagator(Variable z) {
+		int depth = problem.solver.depth();
+		beforeFiltering();
+		currentTable.resetModifiedWords(problem.solver.stats.safeNumber(), depth);
+		// we update the current table with respect to the domains of variables whose size has changed
+		for (int i = sValSize - 1; i >= 0; i--) {
+			int x = sVal[i];
+			Domain dom = doms[x];
+			long[] filter = null;
+			if (dom.size() == 1)
+				filter = masks[x][dom.single()];
+			else {
+				currentTable.fillTo0(tmp);
+				for (int a = dom.first(); a != -1; a = dom.next(a))
+					Bit.or(tmp, masks[x][a], nonZeros);
+				filter = tmp;
+			}
+			for (int k = nonZeros.limit; k >= 0; k--) {
+				int j = nonZeros.dense[k];
+				currentTable.updateWord(k, current[j] & filter[j], depth);
+			}
+		}
+		// we check the validity of the remaining hybrid tuples involving complex restrictions
+		if (hasComplexTuples)
+			for (int k = nonZeros.limit; k >= 0; k--) {
+				int j = nonZeros.dense[k];
+				long l = current[j];
+				for (long w = l & complexTuples[j]; w != 0L; w &= w - 1) {
+					int bit = Long.numberOfTrailingZeros(w);
+					if (!hybridTuples[j * 64 + bit].isValid(sVal, sValSize))
+						l &= ~(1L << bit);
+				}
+				currentTable.updateWord(k, l, depth);
+			}
+		if (nonZeros.size() == 0)
+			return z.dom.fail();
+		if (!options.discardHybridEntailment && nonZeros.size() <= ENTAILMENT_WORDS_LIMIT)
+			for (int k = nonZeros.limit; k >= 0; k--) {
+				int j = nonZeros.dense[k];
+				for (long w = current[j]; w != 0L; w &= w - 1)
+					if (hybridTuples[j * 64 + Long.numberOfTrailingZeros(w)].isEntailed())
+						return entailed();
+			}
+		// we look for supports through masks (and residues)
+		for (int i = sSupSize - 1; i >= 0; i--) {
+			int x = sSup[i];
+			SetSparse nacx = nac[x];
+			for (int k = nacx.limit; k >= 0; k--) {
+				int a = nacx.dense[k];
+				int r = residues[x][a];
+				if ((current[r] & masksS[x][a][r]) != 0L)
+					nacx.remove(a);
+				else {
+					r = Bit.firstNonNullIntersectionIndex(current, masksS[x][a], nonZeros);
+					if (r != -1) {
+						residues[x][a] = r;
+						nacx.remove(a);
+					}
+				}
+			}
+			if (nacx.isEmpty())
+				sSup[i] = sSup[--sSupSize];
+		}
+		// we look for supports through the remaining hybrid tuples involving complex restrictions
+		if (hasComplexTuples)
+			for (int k = nonZeros.limit; k >= 0 && sSupSize > 0; k--) {
+				int j = nonZeros.dense[k];
+				for (long w = current[j] & complexTuples[j]; w != 0L && sSupSize > 0; w &= w - 1)
+					sSupSize = hybridTuples[j * 64 + Long.numberOfTrailingZeros(w)].collect(sSup, sSupSize);
+			}
+		return updateDomains();
+	}
+}
@@ -0,0 +1,100 @@
+/*
+ * This file is part of the constraint solver ACE (AbsCon Essence). 
+ *
+ * Copyright (c) 2021. All rights reserved.
+ * Christophe Lecoutre, CRIL, Univ. Artois and CNRS. 
+ * 
+ * Licensed under the MIT License.
+ * See LICENSE file in the project root for full license information.
+ */
+
+package constraints.extension;
+
+import interfaces.Tags.TagNegative;
+import problem.Problem;
+import utility.Bit;
+import variables.Domain;
+import variables.Variable;
+
+/**
+ * This is the code for CT-Neg (Compact-Table for negative tables), as described in: Hélène Verhaeghe, Christophe
+ * Lecoutre, Pierre Schaus: Extending Compact-Table to Negative and Short Tables. AAAI 2017: 3951-3957. The current
+ * table (bit vector) contains the valid conflicts, and a value (x,a) is removed as soon as the number of valid conflicts
+ * involving (x,a) is equal to the number of valid tuples involving (x,a), i.e., the size of the Cartesian product of
+ * the domains of the other variables.
+ *
+ * @author Christophe Lecoutre
+ */
+public final class CTN extends CT implements TagNegative {
+
+	/**
+	 * limits[x] is, during filtering, the number of valid tuples for any value of x (computed before any removal)
+	 */
+	private final long[] limits;
+
+	/**
+	 * Builds an extension constraint, with CT-Neg as specific filtering method
+	 *
+	 * @param pb
+	 *            the problem to which the constraint is attached
+	 * @param scp
+	 *            the scope of the constraint
+	 */
+	public CTN(Problem pb, Variable[] scp) {
+		super(pb, scp);
+		this.limits = new long[scp.length];
+	}
+
+	@Override
+	protected boolean initialFiltering() {
+		if (nonZeros.size() == 0)
+			return entailed();
+		sSupSize = 0;
+		for (int x = 0; x < scp.length; x++) {
+			sSup[sSupSize++] = x;
+			lastSizes[x] = doms[x].size();
+		}
+		return updateDomains();
+	}
+
+	@Override
+	protected boolean whenNoTupleLeft() {
+		return entailed(); // no more valid conflicts
+	}
+
+	@Override
+	protected boolean updateDomains() {
+		int nConflicts = Bit.count1(current, nonZeros);
+		if (nConflicts == Domain.nValidTuplesBounded(doms))
+			return doms[0].fail(); // all valid tuples are conflicts
+		// limits must be computed before any removal (the status of values cannot change because of other removals)
+		for (int i = sSupSize - 1; i >= 0; i--) {
+			int x = sSup[i];
+			limits[x] = Domain.nValidTuplesBounded(doms, x);
+			if (nConflicts < limits[x])
+				sSup[i] = sSup[--sSupSize]; // all values of x are necessarily supported
+		}
+		for (int i = sSupSize - 1; i >= 0; i--) {
+			int x = sSup[i];
+			Domain dom = doms[x];
+			for (int a = dom.first(); a != -1; a = dom.next(a))
+				if (Bit.count1Intersection(current, masks[x][a], nonZeros) == limits[x] && dom.remove(a) == false)
+					return false;
+		}
+		// contrary to CT, removed values may still occur in tuples of the current table: these tuples are discarded
+		int depth = problem.solver.depth();
+		for (int i = sSupSize - 1; i >= 0; i--) {
+			int x = sSup[i];
+			Domain dom = doms[x];
+			for (int cnt = lastSizes[x] - dom.size(), a = dom.lastRemoved(); cnt > 0; cnt--, a = dom.prevRemoved(a)) {
+				long[] mask = masks[x][a];
+				for (int k = nonZeros.limit; k >= 0; k--) {
+					int j = nonZeros.dense[k];
+					currentTable.updateWord(k, current[j] & ~mask[j], depth);
+				}
+			}
+			lastSizes[x] = dom.size();
+		}
+		return true;
+	}
+}
@@ -18,6 +18,7 @@ import java.util.Arrays;
 import constraints.ConstraintExtension.ExtensionSpecific;
 import constraints.extension.structures.ExtensionStructure;
 import constraints.extension.structures.Table;
+import constraints.extension.structures.Table.Column;
 import problem.Problem;
 import sets.SetDense;
 import variables.Variable;
@@ -37,9 +38,10 @@ public class STR0 extends ExtensionSpecific {
 	@Override
 	public void afterProblemConstruction(int n) {
 		super.afterProblemConstruction(n);
-		this.tuples = ((Table) extStructure()).tuples;
-		control(tuples.length > 0);
-		this.set = new SetDense(tuples.length, true);
+		Table table = (Table) extStructure();
+		this.columns = table.columns;
+		control(table.nTuples > 0);
+		this.set = new SetDense(table.nTuples, true);
 	}
 
 	@Override
@@ -52,9 +54,9 @@ public class STR0 extends ExtensionSpecific {
 	 *********************************************************************************************/
 
 	/**
-	 * The tuples of the table (redundant field)
+	 * The tuples of the table, recorded column-wise (redundant field)
 	 */
-	protected int[][] tuples;
+	protected Column[] columns;
 
 	/**
 	 * The reversible dense set storing the indexes (of tuples) of the current table
@@ -129,17 +131,18 @@ public class STR0 extends ExtensionSpecific {
 
 	boolean universal;
 
-	private boolean isValidTuple(int[] t) {
+	private boolean isValidTuple(int k) {
 		// for (int i = sValSize - 1; i >= 0; i--) {
 		// int x = sVal[i];
 		// if (tuple[x] != STAR && !doms[x].contains(tuple[x]))
 		// return false;
 		// }
 		universal = true;
-		for (int x = t.length - 1; x >= 0; x--) {
-			if (t[x] == STAR)
+		for (int x = columns.length - 1; x >= 0; x--) {
+			int a = columns[x].get(k);
+			if (a == STAR)
 				continue;
-			if (!doms[x].contains(t[x]))
+			if (!doms[x].contains(a))
 				return false;
 			if (doms[x].size() > 1)
 				universal = false;
@@ -167,13 +170,13 @@ public class STR0 extends ExtensionSpecific {
 	public boolean runPropagator(Variable dummy) {
 		beforeFiltering();
 		for (int i = set.limit; i >= 0; i--) {
-			int[] tuple = tuples[set.dense[i]];
-			if (isValidTuple(tuple)) {
+			int k = set.dense[i];
+			if (isValidTuple(k)) {
 				if (universal)
 					return entailed();
 				for (int j = sSupSize - 1; j >= 0; j--) {
 					int x = sSup[j];
-					int a = tuple[x];
+					int a = columns[x].get(k);
 					if (a == STAR) {
 						cnts[x] = 0;
 						sSup[j] = sSup[--sSupSize];
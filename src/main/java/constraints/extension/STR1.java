@@ -17,6 +17,7 @@ import java.util.Arrays;
 import constraints.ConstraintExtension.ExtensionSpecific;
 import constraints.extension.structures.ExtensionStructure;
 import constraints.extension.structures.Table;
+import constraints.extension.structures.Table.Column;
 import problem.Problem;
 import sets.SetDenseReversible;
 import variables.Variable;
@@ -38,10 +39,12 @@ public class STR1 extends ExtensionSpecific {
 	@Override
 	public void afterProblemConstruction(int n) {
 		super.afterProblemConstruction(n);
-		this.tuples = ((Table) extStructure()).tuples;
-		control(this.tuples.length > 0);
+		Table table = (Table) extStructure();
+		this.columns = table.columns;
+		this.nTuples = table.nTuples;
+		control(nTuples > 0);
 		if (!(this instanceof CT)) // because CT (technically a subclass of STR1) has very specific structures
-			this.set = new SetDenseReversible(tuples.length, n + 1);
+			this.set = new SetDenseReversible(nTuples, n + 1);
 	}
 
 	@Override
@@ -55,9 +58,14 @@ public class STR1 extends ExtensionSpecific {
 	 *********************************************************************************************/
 
 	/**
-	 * The tuples of the table (redundant field)
+	 * The tuples of the table, recorded column-wise (redundant field)
 	 */
-	protected int[][] tuples;
+	protected Column[] columns;
+
+	/**
+	 * The number of tuples of the table (redundant field)
+	 */
+	protected int nTuples;
 
 	/**
 	 * The reversible dense set storing the indexes (of tuples) of the current table
@@ -107,6 +115,20 @@ public class STR1 extends ExtensionSpecific {
 		return new Table(this);
 	}
 
+	/**
+	 * Returns true if the kth tuple of the table is valid
+	 * 
+	 * @param k
+	 *            the position of a tuple in the table
+	 * @return true if the kth tuple of the table is valid
+	 */
+	protected final boolean isValid(int k) {
+		for (int x = columns.length - 1; x >= 0; x--)
+			if (!doms[x].contains(columns[x].get(k)))
+				return false;
+		return true;
+	}
+
 	/**
 	 * Performs some initializations before starting the filtering process.
 	 */
@@ -142,11 +164,11 @@ public class STR1 extends ExtensionSpecific {
 		int depth = problem.solver.depth();
 		beforeFiltering();
 		for (int i = set.limit; i >= 0; i--) {
-			int[] tuple = tuples[set.dense[i]];
-			if (isValid(tuple)) {
+			int k = set.dense[i];
+			if (isValid(k)) {
 				for (int j = futvars.limit; j >= 0; j--) {
 					int x = futvars.dense[j];
-					int a = tuple[x];
+					int a = columns[x].get(k);
 					if (!ac[x][a]) {
 						cnt--;
 						cnts[x]--;
@@ -54,11 +54,11 @@ public final class STR1N extends STR1 implements TagNegative {
 		int depth = problem.solver.depth();
 		beforeFiltering();
 		for (int i = set.limit; i >= 0; i--) {
-			int[] tuple = tuples[set.dense[i]];
-			if (isValid(tuple)) {
+			int k = set.dense[i];
+			if (isValid(k)) {
 				for (int j = futvars.limit; j >= 0; j--) {
 					int x = futvars.dense[j];
-					int a = tuple[x];
+					int a = columns[x].get(k);
 					nConflicts[x][a]++;
 				}
 			} else
@@ -14,6 +14,7 @@ import static org.xcsp.common.Constants.STAR;
 
 import java.util.stream.Stream;
 
+import constraints.extension.structures.Table;
 import interfaces.Tags.TagStarredCompatible;
 import problem.Problem;
 import utility.Kit;
@@ -40,10 +41,11 @@ public final class STR2 extends STR1Optimized implements TagStarredCompatible {
 		super(pb, scp);
 	}
 
-	private boolean isValidTuple(int[] tuple) {
+	private boolean isValidTuple(int k) {
 		for (int i = sValSize - 1; i >= 0; i--) {
 			int x = sVal[i];
-			if (tuple[x] != STAR && !doms[x].contains(tuple[x]))
+			int a = columns[x].get(k);
+			if (a != STAR && !doms[x].contains(a))
 				return false;
 		}
 		return true;
@@ -51,7 +53,7 @@ public final class STR2 extends STR1Optimized implements TagStarredCompatible {
 
 	private boolean controlValidTuples() {
 		for (int i = set.limit; i >= 0; i--) {
-			int[] tuple = tuples[set.dense[i]];
+			int[] tuple = ((Table) extStructure()).tuple(set.dense[i]);
 			for (int j = tuple.length - 1; j >= 0; j--)
 				if (tuple[j] != STAR && !doms[j].contains(tuple[j])) {
 					System.out.println(this + " at " + problem.solver.depth() + "\n" + Kit.join(tuple));
@@ -67,11 +69,11 @@ public final class STR2 extends STR1Optimized implements TagStarredCompatible {
 		int depth = problem.solver.depth();
 		beforeFiltering();
 		for (int i = set.limit; i >= 0; i--) {
-			int[] tuple = tuples[set.dense[i]];
-			if (isValidTuple(tuple)) {
+			int k = set.dense[i];
+			if (isValidTuple(k)) {
 				for (int j = sSupSize - 1; j >= 0; j--) {
 					int x = sSup[j];
-					int a = tuple[x];
+					int a = columns[x].get(k);
 					if (a == STAR) {
 						cnts[x] = 0;
 						sSup[j] = sSup[--sSupSize];
@@ -88,11 +88,11 @@ public final class STR2N extends STR1Optimized implements TagNegative {
 		int depth = problem.solver.depth();
 		initializeStructuresBeforeFiltering();
 		for (int i = set.limit; i >= 0; i--) {
-			int[] tuple = tuples[set.dense[i]];
-			if (isValid(tuple)) {
+			int k = set.dense[i];
+			if (isValid(k)) {
 				for (int j = sSupSize - 1; j >= 0; j--) {
 					int x = sSup[j];
-					int a = tuple[x];
+					int a = columns[x].get(k);
 					nMaxConflicts[x] = Math.max(nMaxConflicts[x], ++nConflicts[x][a]);
 					if (nConflicts[x][a] == nValidTuples[x]) {
 						if (scp[x].dom.remove(a) == false)
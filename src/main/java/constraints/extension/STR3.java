@@ -48,7 +48,7 @@ public final class STR3 extends ExtensionSpecific implements TagPositive, Observ
 	public void afterProblemConstruction(int n) {
 		super.afterProblemConstruction(n);
 		this.table = (TableAugmented) extStructure();
-		this.set = new SetSparseReversible(table.tuples.length, n + 1);
+		this.set = new SetSparseReversible(table.nTuples, n + 1);
 
 		int nValues = Variable.nInitValuesFor(scp);
 		this.separatorsMaps = IntStream.rangeClosed(0, n).mapToObj(i -> new SetSparseMapSTR3(nValues)).toArray(SetSparseMapSTR3[]::new);
@@ -102,17 +102,17 @@ public final class STR3 extends ExtensionSpecific implements TagPositive, Observ
 
 		private void buildSubtables() {
 			Variable[] scp = firstRegisteredCtr().scp;
-			if (tuples.length >= Short.MAX_VALUE) {
+			if (nTuples >= Short.MAX_VALUE) {
 				List<Integer>[][] tmp = Variable.litterals(scp).listArray();
-				for (int tid = 0; tid < tuples.length; tid++)
-					for (int x = 0; x < scp.length; x++)
-						tmp[x][tuples[tid][x]].add(tid);
+				for (int x = 0; x < scp.length; x++)
+					for (int tid = 0; tid < nTuples; tid++)
+						tmp[x][columns[x].get(tid)].add(tid);
 				subtables = Stream.of(tmp).map(m -> Kit.intArray2D(m)).toArray(int[][][]::new);
 			} else {
 				List<Short>[][] tmp = Variable.litterals(scp).listArray();
-				for (int tid = 0; tid < tuples.length; tid++)
-					for (int x = 0; x < scp.length; x++)
-						tmp[x][tuples[tid][x]].add((short) tid);
+				for (int x = 0; x < scp.length; x++)
+					for (int tid = 0; tid < nTuples; tid++)
+						tmp[x][columns[x].get(tid)].add((short) tid);
 				subtablesShort = Stream.of(tmp).map(m -> Kit.shortArray2D(m)).toArray(short[][][]::new);
 			}
 		}
@@ -303,6 +303,13 @@ public final class STR3 extends ExtensionSpecific implements TagPositive, Observ
 		return true;
 	}
 
+	private boolean isValid(int tid) {
+		for (int x = scp.length - 1; x >= 0; x--)
+			if (!doms[x].contains(table.columns[x].get(tid)))
+				return false;
+		return true;
+	}
+
 	private boolean filterAtPreprocessing() {
 		int cnt = 0;
 		for (int i = 0; i < scp.length; i++) {
@@ -310,10 +317,10 @@ public final class STR3 extends ExtensionSpecific implements TagPositive, Observ
 			Arrays.fill(ac[i], false);
 		}
 		for (int i = set.limit; i >= 0; i--) {
-			int[] tuple = table.tuples[set.dense[i]];
-			if (isValid(tuple)) {
+			int tid = set.dense[i];
+			if (isValid(tid)) {
 				for (int x = scp.length - 1; x >= 0; x--) {
-					int a = tuple[x];
+					int a = table.columns[x].get(tid);
 					if (!ac[x][a]) {
 						cnt--;
 						cnts[x]--;
@@ -413,12 +420,12 @@ public final class STR3 extends ExtensionSpecific implements TagPositive, Observ
 		supressInvalidTuples();
 		if (table.subtables != null) {
 			for (int i = set.limit + 1; i <= limitBefore; i++) {
-				int[] tuple = table.tuples[set.dense[i]]; // suppressed tuple
+				int tid = set.dense[i]; // suppressed tuple
 				LocalSetSparseByte dependencies = deps[set.dense[i]];
 				for (int j = dependencies.limit; j >= 0; j--) {
 					byte x = dependencies.dense[j];
 					if (!scp[x].assigned()) {
-						int a = tuple[x];
+						int a = table.columns[x].get(tid);
 						if (scp[x].dom.contains(a)) {
 							int[] subtable = table.subtables[x][a];
 							int separator = separators[x][a], p = separator;
@@ -442,12 +449,12 @@ public final class STR3 extends ExtensionSpecific implements TagPositive, Observ
 			}
 		} else {
 			for (int i = set.limit + 1; i <= limitBefore; i++) {
-				int[] supressedTuple = table.tuples[set.dense[i]];
+				int tid = set.dense[i]; // suppressed tuple
 				LocalSetSparseByte dependencies = deps[set.dense[i]];
 				for (int j = dependencies.limit; j >= 0; j--) {
 					byte x = dependencies.dense[j];
 					if (!scp[x].assigned()) {
-						int a = supressedTuple[x];
+						int a = table.columns[x].get(tid);
 						if (scp[x].dom.contains(a)) {
 							short[] subtable = table.subtablesShort[x][a];
 							short separator = separatorsShort[x][a], p = separator;
@@ -16,6 +16,7 @@ import static org.xcsp.common.Constants.STAR;
 import static utility.Kit.control;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
@@ -293,6 +294,11 @@ public final class MDD extends ExtensionStructure {
 		 */
 		public final int level;
 
+		/**
+		 * The id of this node in the compact representation of the MDD (see compile()), or -1 if the node has not been compiled yet
+		 */
+		private int id = -1;
+
 		/**
 		 * The children (sons) of this node
 		 */
@@ -303,17 +309,6 @@ public final class MDD extends ExtensionStructure {
 		 */
 		public boolean starred;
 
-		/**
-		 * Equivalence classes among sons of the node; sonsClasses[i][j] is the index of the jth son in the ith equivalence class. Two indexes belong to the
-		 * same class iff they reach the same child.
-		 */
-		public int[][] classes;
-
-		/**
-		 * The number of sons that are different from the False terminal node. This is used as a cache (and useful when exploring with a MDD)
-		 */
-		private Integer nRelevantSons;
-
 		/**
 		 * Object used temporarily when building an MDD from an automaton or a KnapsSack; This can be an Integer or a String.
 		 */
@@ -326,13 +321,6 @@ public final class MDD extends ExtensionStructure {
 			return this == nodeF || this == nodeT;
 		}
 
-		/**
-		 * @return the number of sons that are different from the False terminal node
-		 */
-		public int nRelevantSons() {
-			return nRelevantSons != null ? nRelevantSons : (nRelevantSons = (int) Stream.of(sons).filter(c -> c != nodeF).count());
-		}
-
 		/**
 		 * Returns the number of internal nodes (i.e., other than terminal ones) that can be reached from this node. Nodes whose id is in the specifies set must
 		 * be ignored (because already counted)
@@ -439,20 +427,6 @@ public final class MDD extends ExtensionStructure {
 			return found;
 		}
 
-		/**
-		 * Builds the equivalence classes of the sons of the node
-		 */
-		private void buildSonsClasses() {
-			if (isLeaf() || classes != null)
-				return; // already built
-			boolean discardClassForNodeF = true; // hard coding (to be replaced by a solver option?)
-			Map<Node, List<Integer>> map = IntStream.range(0, sons.length).filter(i -> !discardClassForNodeF || sons[i] != nodeF).boxed()
-					.collect(Collectors.groupingBy(i -> sons[i]));
-			classes = map.values().stream().map(list -> Kit.intArray(list)).toArray(int[][]::new);
-			for (Node son : sons)
-				son.buildSonsClasses();
-		}
-
 		public boolean canReachNodeT() {
 			return canReachNodeT(new LinkedHashSet<Integer>(), new LinkedHashSet<Integer>());
 		}
@@ -480,7 +454,6 @@ public final class MDD extends ExtensionStructure {
 		private int finalizeRoot() {
 			control(level == 0); // must be called on a root
 			canReachNodeT(new LinkedHashSet<Integer>(), new LinkedHashSet<Integer>()); // if root built from transitions, necessary ?
-			buildSonsClasses();
 			int nNodes = renameNodes(1, new LinkedHashMap<Integer, Node>()) + 1;
 			// System.out.println("MDD : nNodes=" + nNodes + " nBuiltNodes=" + (Node.nCreatedNodes - Node.nNodesBefore));
 			display();
@@ -498,7 +471,7 @@ public final class MDD extends ExtensionStructure {
 			return reductionMap.computeIfAbsent(hk, k -> this);
 		}
 
-		private void display(int[] cnts, boolean displayClasses) {
+		private void display(int[] cnts) {
 			if (this.isLeaf())
 				return;
 			Kit.log.fine(num + "@" + level + " => ");
@@ -507,17 +480,11 @@ public final class MDD extends ExtensionStructure {
 			if (sons == null)
 				return;
 			Kit.log.fine("{" + Stream.of(sons).map(child -> child.num + "").collect(Collectors.joining(",")) + "}");
-			if (displayClasses) {
-				if (classes != null)
-					for (int i = 0; i < classes.length; i++)
-						Kit.log.fine("class " + i + " => {" + Kit.join(classes[i]) + "}");
-				Kit.log.fine("nSonsNotNodeF=" + nRelevantSons);
-			}
-			// Stream.of(sons).filter(s -> s.num > num).forEach(s -> s.display(cnts, displayClasses));
+			// Stream.of(sons).filter(s -> s.num > num).forEach(s -> s.display(cnts));
 		}
 
 		public void display() {
-			display(null, false);
+			display(null);
 		}
 
 		public int displayTuples(Domain[] doms, int[] currTuple, int currLevel, int cnt) {
@@ -534,18 +501,6 @@ public final class MDD extends ExtensionStructure {
 			return cnt;
 		}
 
-		public void collectCompressedTuples(List<int[][]> list, int[][] m, int level) {
-			if (this == nodeT)
-				list.add(Stream.of(m).map(t -> t.clone()).toArray(int[][]::new));
-			if (isLeaf())
-				return;
-			for (int i = 0; i < classes.length; i++) {
-				m[level] = classes[i];
-				Node representativeChild = sons[classes[i][0]];
-				representativeChild.collectCompressedTuples(list, m, level + 1);
-			}
-		}
-
 		public Node filter(int[][] values, int prevVal) {
 			if (isLeaf())
 				return this;
@@ -609,28 +564,38 @@ public final class MDD extends ExtensionStructure {
 	 * Class members
 	 *********************************************************************************************/
 
-	private boolean checkWhenStarred(int[] t, int level, Node node) {
-		if (node == nodeT)
+	/**
+	 * The id of the False terminal node
+	 */
+	public static final int F = 0;
+
+	/**
+	 * The id of the True terminal node
+	 */
+	public static final int T = 1;
+
+	private boolean checkWhenStarred(int[] t, int level, int node) {
+		if (node == T)
 			return true;
-		if (node == nodeF)
+		if (node == F)
 			return false;
-		return checkWhenStarred(t, level + 1, node.sons[t[level]]) || checkWhenStarred(t, level + 1, node.sons[node.sons.length - 1]);
+		return checkWhenStarred(t, level + 1, sons[offsets[node] + t[level]]) || checkWhenStarred(t, level + 1, sons[offsets[node + 1] - 1]);
 	}
 
 	@Override
 	public boolean checkIndexes(int[] t) {
-		if (root.starred)
+		if (starred)
 			return checkWhenStarred(t, 0, root);
-		Node node = root;
-		for (int i = 0; !node.isLeaf(); i++)
-			node = node.sons[t[i]];
-		return node == nodeT;
+		int node = root;
+		for (int i = 0; node > T; i++)
+			node = sons[offsets[node] + t[i]];
+		return node == T;
 	}
 
 	/**
-	 * The root node of the MDD
+	 * The id of the root node of the MDD
 	 */
-	public Node root;
+	public int root;
 
 	/**
 	 * The arity of the MDD
@@ -638,15 +603,172 @@ public final class MDD extends ExtensionStructure {
 	public final int arity;
 
 	/**
-	 * The number of nodes in the MDD (used as a cache)
+	 * Indicates if the last son of each node is a special son for * (used for CMDDS)
 	 */
-	private Integer nNodes;
+	public boolean starred;
+
+	/**
+	 * The number of nodes in the MDD, including the two terminal nodes (whose ids are F and T). Nodes are identified by integers, from 0 to nNodes-1
+	 */
+	private int nNodes;
+
+	/**
+	 * levels[i] is the level of the node whose id is i
+	 */
+	public int[] levels;
+
+	/**
+	 * offsets[i] is the position, in arrays sons and orders, of the first son of the node whose id is i. The sons of this node are at positions from
+	 * offsets[i] to offsets[i+1] (excluded).
+	 */
+	public int[] offsets;
+
+	/**
+	 * sons[offsets[i] + a] is the id of the son of the node whose id is i for the value index a (the last son being for * when the MDD is starred)
+	 */
+	public int[] sons;
+
+	/**
+	 * nRelevantSons[i] is the number of sons, different from the False terminal node, of the node whose id is i
+	 */
+	public int[] nRelevantSons;
+
+	/**
+	 * orders[offsets[i] + j], for j from 0 to nRelevantSons[i] (excluded), gives the value indexes leading to a son (of the node whose id is i) different from
+	 * the False terminal node, grouped by equivalence classes: two value indexes are in the same class iff they reach the same son.
+	 */
+	public int[] orders;
 
 	/**
 	 * @return the number of nodes in the MDD
 	 */
-	public Integer nNodes() {
-		return nNodes != null ? nNodes : (nNodes = 2 + root.nInternalNodes(new LinkedHashSet<Integer>()));
+	public int nNodes() {
+		return nNodes;
+	}
+
+	/**
+	 * Builds the compact representation of the MDD from the specified root node. Nodes are hash-consed (using a unique table) while being numbered in
+	 * post-order, so that two equivalent nodes (same level and same sons) are merged, and nodes that cannot reach the True terminal node are replaced by the
+	 * False terminal node. The flat arrays are filled directly, the unique table only containing ids of nodes, and the graph of objects (nodes) is consumed
+	 * during compilation: the sons of a node are released as soon as this node is compiled. Note that the builders (from tuples, automata, ...) still
+	 * produce a graph of objects first, so that the peak memory during construction is the one of this graph.
+	 * 
+	 * @param rootNode
+	 *            the root node of the MDD (graph of objects)
+	 */
+	private void compile(Node rootNode) {
+		this.starred = rootNode.starred;
+		this.levels = new int[1024];
+		this.offsets = new int[1025];
+		this.sons = new int[4096];
+		this.uniqueTable = new int[1024];
+		this.nNodes = 2; // for F and T (terminal nodes have no sons)
+		this.root = compileNode(rootNode);
+		this.uniqueTable = null;
+		control(root != F, "Empty MDD");
+		this.levels = Arrays.copyOf(levels, nNodes);
+		this.offsets = Arrays.copyOf(offsets, nNodes + 1);
+		this.sons = Arrays.copyOf(sons, offsets[nNodes]);
+		this.nRelevantSons = new int[nNodes];
+		this.orders = new int[sons.length];
+		// value indexes are grouped by sons (a kind of counting sort, with groups ordered by first appearance)
+		int[] stamps = Kit.repeat(-1, nNodes), groups = new int[nNodes], starts = new int[IntStream.range(0, nNodes).map(i -> offsets[i + 1] - offsets[i]).max().getAsInt()];
+		for (int i = T + 1; i < nNodes; i++) {
+			int offset = offsets[i], nSons = offsets[i + 1] - offset, nGroups = 0;
+			for (int a = 0; a < nSons; a++) {
+				int son = sons[offset + a];
+				if (son == F)
+					continue;
+				if (stamps[son] != i) {
+					stamps[son] = i;
+					groups[son] = nGroups;
+					starts[nGroups++] = 0;
+				}
+				starts[groups[son]]++;
+			}
+			int sum = 0;
+			for (int g = 0; g < nGroups; g++) {
+				int cnt = starts[g];
+				starts[g] = sum;
+				sum += cnt;
+			}
+			for (int a = 0; a < nSons; a++)
+				if (sons[offset + a] != F)
+					orders[offset + starts[groups[sons[offset + a]]]++] = a;
+			nRelevantSons[i] = sum;
+		}
+		Kit.log.fine("MDD : nNodes=" + nNodes);
+	}
+
+	/**
+	 * The unique table used during compilation: an open-addressing hash table (with linear probing) of the ids of internal nodes, whose hash codes are
+	 * computed from the flat arrays (levels and sons). As F is never recorded, it denotes an empty bucket.
+	 */
+	private int[] uniqueTable;
+
+	private int compileNode(Node node) {
+		if (node == nodeF)
+			return F;
+		if (node == nodeT)
+			return T;
+		if (node.id != -1)
+			return node.id;
+		int[] t = new int[node.sons.length];
+		boolean relevant = false;
+		for (int a = 0; a < t.length; a++)
+			relevant |= (t[a] = compileNode(node.sons[a])) != F;
+		node.id = relevant ? uniqueNode(node.level, t) : F;
+		node.sons = null; // the graph below this node is no more needed
+		return node.id;
+	}
+
+	private static int hash(int level, int[] t, int from, int to) {
+		int h = level;
+		for (int i = from; i < to; i++)
+			h = h * 31 + t[i];
+		h ^= h >>> 16;
+		h *= 0x85ebca6b;
+		return h ^ (h >>> 13);
+	}
+
+	private int uniqueNode(int level, int[] t) {
+		int mask = uniqueTable.length - 1;
+		for (int i = hash(level, t, 0, t.length) & mask;; i = (i + 1) & mask) {
+			int id = uniqueTable[i];
+			if (id == F) {
+				id = uniqueTable[i] = newNode(level, t);
+				if ((nNodes - 2) * 2 > uniqueTable.length)
+					rehash();
+				return id;
+			}
+			if (levels[id] == level && Arrays.equals(sons, offsets[id], offsets[id + 1], t, 0, t.length))
+				return id;
+		}
+	}
+
+	private void rehash() {
+		uniqueTable = new int[uniqueTable.length * 2];
+		int mask = uniqueTable.length - 1;
+		for (int id = T + 1; id < nNodes; id++) {
+			int i = hash(levels[id], sons, offsets[id], offsets[id + 1]) & mask;
+			while (uniqueTable[i] != F)
+				i = (i + 1) & mask;
+			uniqueTable[i] = id;
+		}
+	}
+
+	private int newNode(int level, int[] t) {
+		if (nNodes + 1 >= levels.length) {
+			levels = Arrays.copyOf(levels, levels.length * 2);
+			offsets = Arrays.copyOf(offsets, levels.length + 1);
+		}
+		int offset = offsets[nNodes];
+		if (offset + t.length > sons.length)
+			sons = Arrays.copyOf(sons, Math.max(sons.length * 2, offset + t.length));
+		levels[nNodes] = level;
+		System.arraycopy(t, 0, sons, offset, t.length);
+		offsets[nNodes + 1] = offset + t.length;
+		return nNodes++;
 	}
 
 	public MDD(CMDD c) {
@@ -656,23 +778,23 @@ public final class MDD extends ExtensionStructure {
 
 	public MDD(CMDD c, Node root) {
 		this(c);
-		this.root = root;
-		control(root.starred == (c instanceof CMDDS));
+		compile(root);
+		control(starred == (c instanceof CMDDS));
 	}
 
 	public MDD(CMDDO c, Automaton automaton) {
 		this(c);
-		this.root = Node.buildRootFromAutomaton(automaton, c.doms);
+		compile(Node.buildRootFromAutomaton(automaton, c.doms));
 	}
 
 	public MDD(CMDDO c, Transition[] transitions) {
 		this(c);
-		this.root = Node.buildRootFromTransitions(transitions, c.doms);
+		compile(Node.buildRootFromTransitions(transitions, c.doms));
 	}
 
 	public MDD(CMDDO c, int[] coeffs, Object limits) {
 		this(c);
-		this.root = Node.buildRootFromKnapsack(coeffs, limits, Variable.initDomainValues(c.scp));
+		compile(Node.buildRootFromKnapsack(coeffs, limits, Variable.initDomainValues(c.scp)));
 		// displayTuples();
 	}
 
@@ -680,12 +802,26 @@ public final class MDD extends ExtensionStructure {
 	public void storeTuples(int[][] tuples, boolean positive) {
 		control(positive && tuples.length > 0);
 		Constraint c = firstRegisteredCtr();
-		this.root = Node.buildRootFromTuples(tuples, positive, c.doms, c instanceof CMDDS, true); // last parameter: using a solver option?
+		compile(Node.buildRootFromTuples(tuples, positive, c.doms, c instanceof CMDDS, true)); // last parameter: using a solver option?
+	}
+
+	private int displayTuples(Domain[] doms, int node, int[] currTuple, int currLevel, int cnt) {
+		if (node == T) {
+			Kit.log.info(Kit.join(currTuple));
+			return cnt + 1;
+		}
+		if (node == F)
+			return cnt;
+		for (int i = offsets[node]; i < offsets[node + 1]; i++) {
+			currTuple[currLevel] = starred && i == offsets[node + 1] - 1 ? Constants.STAR : doms[currLevel].toVal(i - offsets[node]);
+			cnt = displayTuples(doms, sons[i], currTuple, currLevel + 1, cnt);
+		}
+		return cnt;
 	}
 
 	public void displayTuples() {
 		Domain[] doms = Stream.of(firstRegisteredCtr().scp).map(x -> x.dom).toArray(Domain[]::new);
-		int cnt = root.displayTuples(doms, new int[doms.length], 0, 0);
+		int cnt = displayTuples(doms, root, new int[doms.length], 0, 0);
 		Kit.log.info(" => " + cnt + " tuples");
 	}
 
@@ -729,38 +865,38 @@ public final class MDD extends ExtensionStructure {
 			return auxiliaryLevelMaps[splitLevel].computeIfAbsent(nodeId, k -> auxiliaryLevelMaps[splitLevel].size());
 		}
 
-		private void getTuples(Node node, int splitLevel, int[] currentTuple, int currentLevel, int stoppingLevel) {
-			if (node == nodeF)
+		private void getTuples(int node, int splitLevel, int[] currentTuple, int currentLevel, int stoppingLevel) {
+			if (node == F)
 				return;
 			if (stoppingLevel == -1) {
-				if (node == nodeT)
+				if (node == T)
 					splitSets[splitLevel].add(currentTuple.clone());
 				else
-					for (int i = 0; i < node.sons.length; i++) {
-						currentTuple[currentLevel] = i;
-						getTuples(node.sons[i], splitLevel, currentTuple, currentLevel + 1, stoppingLevel);
+					for (int i = offsets[node]; i < offsets[node + 1]; i++) {
+						currentTuple[currentLevel] = i - offsets[node];
+						getTuples(sons[i], splitLevel, currentTuple, currentLevel + 1, stoppingLevel);
 					}
 			} else {
-				assert node != nodeT && stoppingLevel != -1;
+				assert node != T && stoppingLevel != -1;
 				if (currentLevel == stoppingLevel) {
-					currentTuple[currentLevel] = getAuxiliaryLevelNodeId(node.num, splitLevel);
+					currentTuple[currentLevel] = getAuxiliaryLevelNodeId(node, splitLevel);
 					splitSets[splitLevel].add(currentTuple.clone());
 
 					// System.out.println("splitLevel = " + splitLevel + "currentLevel=" + currentLevel);
 					split2(node, splitLevel + 1);
 				} else
-					for (int i = 0; i < node.sons.length; i++) {
-						currentTuple[currentLevel] = i;
-						getTuples(node.sons[i], splitLevel, currentTuple, currentLevel + 1, stoppingLevel);
+					for (int i = offsets[node]; i < offsets[node + 1]; i++) {
+						currentTuple[currentLevel] = i - offsets[node];
+						getTuples(sons[i], splitLevel, currentTuple, currentLevel + 1, stoppingLevel);
 					}
 			}
 		}
 
-		public void split2(Node startingNode, int splitLevel) {
+		public void split2(int startingNode, int splitLevel) {
 			int[] currentTuple = new int[splitMode[splitLevel]];
 			int currentLevel = 0;
 			if (splitLevel > 0)
-				currentTuple[currentLevel++] = getAuxiliaryLevelNodeId(startingNode.num, splitLevel - 1);
+				currentTuple[currentLevel++] = getAuxiliaryLevelNodeId(startingNode, splitLevel - 1);
 			getTuples(startingNode, splitLevel, currentTuple, currentLevel, (splitLevel == splitSets.length - 1 ? -1 : splitMode[splitLevel] - 1));
 		}
 
@@ -777,10 +913,25 @@ public final class MDD extends ExtensionStructure {
 		}
 	}
 
+	private void collectCompressedTuples(int node, List<int[][]> list, int[][] m, int level) {
+		if (node == T)
+			list.add(Stream.of(m).map(t -> t.clone()).toArray(int[][]::new));
+		if (node <= T)
+			return;
+		int offset = offsets[node];
+		for (int j = 0; j < nRelevantSons[node];) {
+			int son = sons[offset + orders[offset + j]], k = j;
+			while (k < nRelevantSons[node] && sons[offset + orders[offset + k]] == son)
+				k++;
+			m[level] = Arrays.copyOfRange(orders, offset + j, offset + k);
+			collectCompressedTuples(son, list, m, level + 1);
+			j = k;
+		}
+	}
+
 	public int[][][] toCompressedTable() {
-		// root.buildSonsClasses();
 		LinkedList<int[][]> list = new LinkedList<>();
-		root.collectCompressedTuples(list, new int[firstRegisteredCtr().scp.length][], 0);
+		collectCompressedTuples(root, list, new int[firstRegisteredCtr().scp.length][], 0);
 		return list.stream().toArray(int[][][]::new);
 	}
 
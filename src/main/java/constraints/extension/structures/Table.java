@@ -11,8 +11,22 @@
 package constraints.extension.structures;
 
 import static org.xcsp.common.Constants.STAR;
+import static org.xcsp.common.Constants.STAR_BYTE;
+import static org.xcsp.common.Constants.STAR_SHORT;
 import static utility.Kit.control;
 
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.LinkedHashMap;
@@ -25,13 +39,14 @@ import org.xcsp.common.Utilities;
 
 import constraints.Constraint;
 import constraints.ConstraintExtension;
+import interfaces.Tags.TagStarredCompatible;
 import utility.Kit;
 import variables.Domain;
 import variables.Variable;
 
 /**
- * This is the class for the tabular forms of extension structures. All supports (allowed tuples) or all conflicts (disallowed tuples) are simply recorded in an
- * array. Note that tuples are recorded with indexes (of values).
+ * This is the class for the tabular forms of extension structures. All supports (allowed tuples) or all conflicts (disallowed tuples) are simply recorded
+ * column-wise in flat primitive arrays. Note that tuples are recorded with indexes (of values).
  * 
  * @author Christophe Lecoutre
  */
@@ -265,6 +280,155 @@ public class Table extends ExtensionStructure {
 		return tuples.stream().toArray(int[][]::new);
 	}
 
+	/**********************************************************************************************
+	 * Inner classes for columns
+	 *********************************************************************************************/
+
+	/**
+	 * A column of a table, i.e., the sequence of indexes (of values) taken by a variable in all tuples of the table. Indexes are recorded in a single
+	 * primitive array (byte, short or int) whose width is chosen from the initial size of the domain of the variable; the other two arrays are null. There is
+	 * only one class of columns so that calls to get() in the loops of propagators are monomorphic (and inlined).
+	 */
+	public static final class Column {
+
+		/**
+		 * Builds and returns a column for the specified tuples and the specified position (of variable)
+		 * 
+		 * @param tuples
+		 *            the tuples of a table (with indexes of values)
+		 * @param x
+		 *            the position of a variable in the scope of the constraint
+		 * @param domSize
+		 *            the initial size of the domain of the variable
+		 * @return a column for the specified tuples and the specified position (of variable)
+		 */
+		public static Column build(int[][] tuples, int x, int domSize) {
+			Column column = new Column(domSize, tuples.length);
+			for (int k = 0; k < tuples.length; k++)
+				column.set(k, tuples[k][x]);
+			return column;
+		}
+
+		/**
+		 * Builds and returns a column for the specified encoded tuples and the specified position (of variable). Each tuple is encoded as a number in a
+		 * mixed radix system where the digit of the variable is given by (code / weight) % (domSize + 1), the value domSize denoting STAR.
+		 * 
+		 * @param codes
+		 *            the codes of the tuples of a table
+		 * @param nTuples
+		 *            the number of tuples (the first cells of the array codes)
+		 * @param weight
+		 *            the weight of the variable in the mixed radix system
+		 * @param domSize
+		 *            the initial size of the domain of the variable
+		 * @return a column for the specified encoded tuples and the specified position (of variable)
+		 */
+		private static Column build(long[] codes, int nTuples, long weight, int domSize) {
+			Column column = new Column(domSize, nTuples);
+			for (int k = 0; k < nTuples; k++) {
+				int a = (int) (codes[k] / weight % (domSize + 1));
+				column.set(k, a == domSize ? STAR : a);
+			}
+			return column;
+		}
+
+		/**
+		 * Reads and returns a column from the specified buffer, as written by writeTo()
+		 * 
+		 * @param buffer
+		 *            a buffer (typically, mapped on a file), whose content is copied
+		 * @param nTuples
+		 *            the number of tuples of the table
+		 * @return a column read from the specified buffer
+		 */
+		private static Column readFrom(ByteBuffer buffer, int nTuples) {
+			int width = buffer.get();
+			if (width == Byte.BYTES) {
+				byte[] t = new byte[nTuples];
+				buffer.get(t);
+				return new Column(t, null, null);
+			}
+			if (width == Short.BYTES) {
+				short[] t = new short[nTuples];
+				buffer.asShortBuffer().get(t);
+				buffer.position(buffer.position() + nTuples * Short.BYTES);
+				return new Column(null, t, null);
+			}
+			control(width == Integer.BYTES, "Bad format");
+			int[] t = new int[nTuples];
+			buffer.asIntBuffer().get(t);
+			buffer.position(buffer.position() + nTuples * Integer.BYTES);
+			return new Column(null, null, t);
+		}
+
+		private final byte[] bytes;
+
+		private final short[] shorts;
+
+		private final int[] ints;
+
+		private Column(byte[] bytes, short[] shorts, int[] ints) {
+			this.bytes = bytes;
+			this.shorts = shorts;
+			this.ints = ints;
+		}
+
+		private Column(int domSize, int nTuples) {
+			this(domSize <= STAR_BYTE ? new byte[nTuples] : null, STAR_BYTE < domSize && domSize <= STAR_SHORT ? new short[nTuples] : null,
+					domSize > STAR_SHORT ? new int[nTuples] : null);
+		}
+
+		private void set(int k, int a) {
+			if (bytes != null)
+				bytes[k] = a == STAR ? STAR_BYTE : (byte) a;
+			else if (shorts != null)
+				shorts[k] = a == STAR ? STAR_SHORT : (short) a;
+			else
+				ints[k] = a;
+		}
+
+		/**
+		 * Returns the index (of value) in the kth tuple of the table, or STAR
+		 * 
+		 * @param k
+		 *            the position of a tuple in the table
+		 * @return the index (of value) in the kth tuple of the table, or STAR
+		 */
+		public int get(int k) {
+			if (bytes != null) {
+				byte a = bytes[k];
+				return a == STAR_BYTE ? STAR : a;
+			}
+			if (shorts != null) {
+				short a = shorts[k];
+				return a == STAR_SHORT ? STAR : a;
+			}
+			return ints[k];
+		}
+
+		/**
+		 * Writes the column on the specified stream (the width of the primitive type first)
+		 * 
+		 * @param out
+		 *            an output stream
+		 * @throws IOException
+		 */
+		private void writeTo(DataOutputStream out) throws IOException {
+			if (bytes != null) {
+				out.writeByte(Byte.BYTES);
+				out.write(bytes);
+			} else if (shorts != null) {
+				out.writeByte(Short.BYTES);
+				for (short a : shorts)
+					out.writeShort(a);
+			} else {
+				out.writeByte(Integer.BYTES);
+				for (int a : ints)
+					out.writeInt(a);
+			}
+		}
+	}
+
 	/**********************************************************************************************
 	 * Class members
 	 *********************************************************************************************/
@@ -272,22 +436,48 @@ public class Table extends ExtensionStructure {
 	@Override
 	public boolean checkIndexes(int[] t) {
 		if (starred) { // if starred, then necessarily positive table (for the moment)
-			extern: for (int[] tuple : tuples) {
-				for (int i = 0; i < tuple.length; i++)
-					if (tuple[i] != STAR && tuple[i] != t[i])
+			extern: for (int k = 0; k < nTuples; k++) {
+				for (int x = 0; x < t.length; x++) {
+					int a = columns[x].get(k);
+					if (a != STAR && a != t[x])
 						continue extern;
+				}
 				return true;
 			}
 			return false;
 		}
-		return (Arrays.binarySearch(tuples, t, Utilities.lexComparatorInt) >= 0) == positive; // costly but not used
-																								// during filtering
+		// costly but not used during filtering
+		for (int left = 0, right = nTuples - 1; left <= right;) {
+			int k = (left + right) >>> 1, cmp = compare(k, t);
+			if (cmp == 0)
+				return positive;
+			if (cmp < 0)
+				left = k + 1;
+			else
+				right = k - 1;
+		}
+		return !positive;
 	}
 
+	private int compare(int k, int[] t) {
+		for (int x = 0; x < t.length; x++) {
+			int a = columns[x].get(k);
+			if (a != t[x])
+				return a < t[x] ? -1 : 1;
+		}
+		return 0;
+	}
+
+	/**
+	 * The set of supports or conflicts, recorded column-wise: columns[x] gives the indexes (of values) taken by the xth variable of the scope in all tuples.
+	 * Tuples are ordered lexicographically and the kth tuple is then given by columns[0].get(k), columns[1].get(k), ...
+	 */
+	public Column[] columns;
+
 	/**
-	 * The set of supports or conflicts; tuples[k] is the kth tuple of the table
+	 * The number of tuples (supports or conflicts) in the table
 	 */
-	public int[][] tuples;
+	public int nTuples;
 
 	/**
 	 * Indicates if tuples are supports or conflicts
@@ -309,35 +499,311 @@ public class Table extends ExtensionStructure {
 		super(c);
 	}
 
+	/**
+	 * Returns the kth tuple of the table (built from the columns)
+	 * 
+	 * @param k
+	 *            the position of a tuple in the table
+	 * @return the kth tuple of the table
+	 */
+	public int[] tuple(int k) {
+		return Stream.of(columns).mapToInt(column -> column.get(k)).toArray();
+	}
+
 	@Override
 	public void storeTuples(int[][] m, boolean positive) {
-		this.starred = false;
-		if (m.length == 0)
-			this.tuples = new int[0][];
-		else {
+		File file = cacheFile(m, positive);
+		if (file == null || !file.exists() || !loadFrom(file)) {
 			Domain[] doms = firstRegisteredCtr().doms;
-			this.tuples = new int[m.length][doms.length];
-			for (int j = 0; j < doms.length; j++) {
-				for (int i = 0; i < m.length; i++) {
-					int v = m[i][j];
-					assert m[i].length == doms.length;
-					assert v == STAR || doms[j].toIdx(v) != -1 : Kit.join(m[i]) + " j=" + j + " " + firstRegisteredCtr() + " " + doms[j];
-					if (v == STAR)
-						this.starred = true;
-					this.tuples[i][j] = v == STAR ? STAR : doms[j].toIdx(v);
+			this.positive = positive;
+			this.starred = Stream.of(m).anyMatch(t -> IntStream.of(t).anyMatch(v -> v == STAR));
+			control(!starred || positive);
+			long[] weights = weights(doms);
+			if (weights != null && !isCompressible(m.length)) {
+				// tuples are directly encoded as long numbers (sorted and without duplicates), avoiding a copy of the tuples with indexes
+				long[] codes = new long[m.length];
+				for (int k = 0; k < m.length; k++)
+					for (int x = 0; x < doms.length; x++)
+						codes[k] += (m[k][x] == STAR ? doms[x].initSize() : doms[x].toIdx(m[k][x])) * weights[x];
+				Arrays.sort(codes);
+				int cnt = codes.length == 0 ? 0 : 1;
+				for (int k = 1; k < codes.length; k++)
+					if (codes[k] != codes[cnt - 1])
+						codes[cnt++] = codes[k]; // duplicates are removed; useful for algorithms counting conflicts, as e.g., CTN
+				this.nTuples = cnt;
+				this.columns = IntStream.range(0, doms.length).mapToObj(x -> Column.build(codes, nTuples, weights[x], doms[x].initSize())).toArray(Column[]::new);
+			} else {
+				int[][] tuples = new int[m.length][doms.length];
+				for (int j = 0; j < doms.length; j++) {
+					for (int i = 0; i < m.length; i++) {
+						int v = m[i][j];
+						assert m[i].length == doms.length;
+						assert v == STAR || doms[j].toIdx(v) != -1 : Kit.join(m[i]) + " j=" + j + " " + firstRegisteredCtr() + " " + doms[j];
+						tuples[i][j] = v == STAR ? STAR : doms[j].toIdx(v);
+					}
 				}
+				Arrays.sort(tuples, Utilities.lexComparatorInt);
+				int[][] distinctTuples = removeDuplicates(tuples); // useful for algorithms counting conflicts, as e.g., CTN
+				int[][] sortedTuples = isCompressible(distinctTuples.length)
+						? compress(distinctTuples, doms, firstRegisteredCtr().problem.head.control.extension.compressionTime)
+						: distinctTuples;
+				if (sortedTuples != distinctTuples)
+					this.starred = true; // the table has been compressed
+				this.nTuples = sortedTuples.length;
+				// tuples are recorded column-wise, with primitive types as small as possible (no object header and no reference per tuple)
+				this.columns = IntStream.range(0, doms.length).mapToObj(x -> Column.build(sortedTuples, x, doms[x].initSize())).toArray(Column[]::new);
 			}
+			if (file != null)
+				saveTo(file);
 		}
-		this.positive = positive;
-		Arrays.sort(this.tuples, Utilities.lexComparatorInt);
-		control(!starred || positive);
 		if (subtables != null)
 			buildSubtables();
 	}
 
+	/**
+	 * Returns the weights of the variables when tuples (with indexes) are encoded as long numbers in a mixed radix system (the radix for a variable being
+	 * its initial domain size plus 1, for STAR), or null if such an encoding may overflow. The first variable has the largest weight, so that comparing codes
+	 * amounts to comparing tuples lexicographically.
+	 */
+	private static long[] weights(Domain[] doms) {
+		long[] weights = new long[doms.length];
+		long product = 1;
+		for (int x = doms.length - 1; x >= 0; x--) {
+			weights[x] = product;
+			if (product > Long.MAX_VALUE / (doms[x].initSize() + 1))
+				return null;
+			product *= doms[x].initSize() + 1;
+		}
+		return weights;
+	}
+
+	/**
+	 * Returns true if the table, which is assumed to be currently built with the specified number of (positive) tuples, is a candidate for compression:
+	 * the constraint must be able to handle starred tables and the table must not be too large (budget on the compression effort)
+	 */
+	private boolean isCompressible(int nTuples) {
+		int limit = firstRegisteredCtr().problem.head.control.extension.compression;
+		return positive && !starred && firstRegisteredCtr() instanceof TagStarredCompatible && nTuples <= Math.min(limit, POSITION_MASK);
+	}
+
+	/**
+	 * Returns a starred table equivalent to the specified table (of supports, with indexes of values). Compression is greedy: for each variable x in turn,
+	 * tuples that only differ on x are gathered, and each group covering the whole (initial) domain of x is replaced by a single tuple with * for x. Columns
+	 * are considered repeatedly until no more merging is possible, or the time budget is exceeded (after each step, the current table is equivalent to the
+	 * initial one, and so can be safely returned). The specified table is returned when the compression is not significant (less than 10% of tuples saved),
+	 * as starred tables involve some overhead for propagators.
+	 * 
+	 * @param sortedTuples
+	 *            the tuples of a positive table, sorted and without any duplicate
+	 * @param doms
+	 *            the domains of the variables involved in the table
+	 * @param timeLimit
+	 *            the time budget (in milliseconds) for compression
+	 * @return a starred table equivalent to the specified table, or the table itself
+	 */
+	private static int[][] compress(int[][] sortedTuples, Domain[] doms, long timeLimit) {
+		long start = System.currentTimeMillis();
+		int r = doms.length;
+		long[] powers = new long[r];
+		powers[0] = 1;
+		for (int i = 1; i < r; i++)
+			powers[i] = powers[i - 1] * 1_000_003L;
+		int[][] m = sortedTuples;
+		for (boolean modified = true; modified;) {
+			modified = false;
+			// hashes[k] is a polynomial hash of the kth tuple; removing the contribution of x gives the hash of the tuple with * at x
+			long[] hashes = hashes(m, powers);
+			for (int x = r - 1; x >= 0 && System.currentTimeMillis() - start < timeLimit; x--) {
+				int domSize = doms[x].initSize();
+				// keys combine (high bits) the hash of the tuple with * at x and (low bits) the position of the tuple, so that sorting gathers groups
+				long[] keys = new long[m.length];
+				int nKeys = 0;
+				for (int k = 0; k < m.length; k++)
+					if (m[k][x] != STAR)
+						keys[nKeys++] = ((hashes[k] - m[k][x] * powers[x]) << POSITION_BITS) | k;
+				Arrays.sort(keys, 0, nKeys);
+				int[] firsts = Kit.repeat(-1, m.length); // firsts[k] is the first tuple of the (merged) group of the kth tuple, or -1
+				for (int i = 0, j = 0; i < nKeys; i = j) {
+					for (j = i + 1; j < nKeys && keys[j] >>> POSITION_BITS == keys[i] >>> POSITION_BITS; j++)
+						;
+					int first = (int) (keys[i] & POSITION_MASK);
+					// the group is merged if it covers the domain of x, and its tuples only differ on x (to guard against hash collisions)
+					boolean mergeable = j - i == domSize;
+					for (int l = i + 1; mergeable && l < j; l++)
+						mergeable = equalExcept(m[(int) (keys[l] & POSITION_MASK)], m[first], x);
+					if (mergeable)
+						for (int l = i; l < j; l++)
+							firsts[(int) (keys[l] & POSITION_MASK)] = first;
+				}
+				List<int[]> list = new ArrayList<>();
+				for (int k = 0; k < m.length; k++) {
+					if (firsts[k] == -1)
+						list.add(m[k]);
+					else if (firsts[k] == k) {
+						int[] t = m[k].clone();
+						t[x] = STAR;
+						list.add(t);
+					}
+				}
+				if (list.size() == m.length)
+					continue;
+				m = list.toArray(new int[0][]);
+				Arrays.sort(m, Utilities.lexComparatorInt);
+				m = removeDuplicates(m); // a starred tuple may already be present
+				hashes = hashes(m, powers);
+				modified = true;
+			}
+		}
+		return m.length <= sortedTuples.length * 0.9 ? m : sortedTuples;
+	}
+
+	private static final int POSITION_BITS = 24;
+
+	private static final long POSITION_MASK = (1L << POSITION_BITS) - 1;
+
+	private static long[] hashes(int[][] tuples, long[] powers) {
+		long[] hashes = new long[tuples.length];
+		for (int k = 0; k < tuples.length; k++)
+			for (int i = 0; i < powers.length; i++)
+				hashes[k] += tuples[k][i] * powers[i];
+		return hashes;
+	}
+
+	private static boolean equalExcept(int[] t1, int[] t2, int x) {
+		for (int i = 0; i < t1.length; i++)
+			if (i != x && t1[i] != t2[i])
+				return false;
+		return true;
+	}
+
+	private static int[][] removeDuplicates(int[][] sortedTuples) {
+		int cnt = sortedTuples.length == 0 ? 0 : 1;
+		for (int i = 1; i < sortedTuples.length; i++)
+			if (!Arrays.equals(sortedTuples[i], sortedTuples[cnt - 1]))
+				sortedTuples[cnt++] = sortedTuples[i];
+		return cnt == sortedTuples.length ? sortedTuples : Arrays.copyOf(sortedTuples, cnt);
+	}
+
 	@Override
 	public String toString() {
-		return "Tuples :\n" + Kit.join(tuples) + " (" + positive + ")";
+		return "Tuples :\n" + Kit.join(IntStream.range(0, nTuples).mapToObj(k -> tuple(k)).toArray(int[][]::new)) + " (" + positive + ")";
+	}
+
+	/**********************************************************************************************
+	 * Handling a persistent cache (on disk) of tables
+	 *********************************************************************************************/
+
+	/**
+	 * The version of the binary format used when caching tables on disk (to be incremented when the format changes)
+	 */
+	private static final int CACHE_VERSION = 1;
+
+	private static final int CACHE_MAGIC = 0x41434554;
+
+	private static void digest(MessageDigest md, ByteBuffer buffer, int v) {
+		if (buffer.remaining() < Integer.BYTES) {
+			md.update(buffer.array(), 0, buffer.position());
+			buffer.clear();
+		}
+		buffer.putInt(v);
+	}
+
+	/**
+	 * Returns the file where the table, built from the specified tuples, is (or must be) cached, or null if no cache directory has been specified. The name
+	 * of the file is given by a hash of the content of the table, including the (initial) domains of the variables, and of what decides whether the table
+	 * is compressed (the compression limit and the ability of the constraint to handle starred tables).
+	 * 
+	 * @param m
+	 *            the tuples (with values) of the table
+	 * @param positive
+	 *            indicates if the tuples are supports or conflicts
+	 * @return the file where the table is (or must be) cached, or null
+	 */
+	private File cacheFile(int[][] m, boolean positive) {
+		String dir = firstRegisteredCtr().problem.head.control.extension.cacheDir;
+		if (dir.length() == 0)
+			return null;
+		try {
+			MessageDigest md = MessageDigest.getInstance("SHA-256");
+			ByteBuffer buffer = ByteBuffer.allocate(1 << 12);
+			digest(md, buffer, CACHE_VERSION);
+			digest(md, buffer, positive ? 1 : 0);
+			digest(md, buffer, firstRegisteredCtr().problem.head.control.extension.compression);
+			digest(md, buffer, firstRegisteredCtr() instanceof TagStarredCompatible ? 1 : 0);
+			for (Domain dom : firstRegisteredCtr().doms) {
+				digest(md, buffer, dom.initSize());
+				for (int a = 0; a < dom.initSize(); a++)
+					digest(md, buffer, dom.toVal(a));
+			}
+			digest(md, buffer, m.length);
+			for (int[] t : m)
+				for (int v : t)
+					digest(md, buffer, v);
+			md.update(buffer.array(), 0, buffer.position());
+			StringBuilder sb = new StringBuilder();
+			for (byte b : md.digest())
+				sb.append(String.format("%02x", b));
+			new File(dir).mkdirs();
+			return new File(dir, sb.append(".tbl").toString());
+		} catch (NoSuchAlgorithmException e) {
+			return (File) Kit.exit(e);
+		}
+	}
+
+	/**
+	 * Loads the table from the specified file, and returns true if the operation succeeded. Although the file is mapped, columns are copied on the heap
+	 * (propagators read them as primitive arrays): the cache saves the conversion of tuples, sorting, removing duplicates and compressing, but not memory.
+	 * 
+	 * @param file
+	 *            a file where the table has been cached
+	 * @return true if the table has been loaded from the specified file
+	 */
+	private boolean loadFrom(File file) {
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if (buffer.getInt() != CACHE_MAGIC || buffer.getInt() != CACHE_VERSION)
+				return false;
+			this.positive = buffer.get() == 1;
+			this.starred = buffer.get() == 1;
+			if (starred && !(firstRegisteredCtr() instanceof TagStarredCompatible))
+				return false; // the propagator cannot handle the starred table that has been cached
+			this.nTuples = buffer.getInt();
+			int arity = buffer.getInt();
+			control(arity == firstRegisteredCtr().scp.length, "Bad cached table " + file);
+			this.columns = new Column[arity];
+			for (int x = 0; x < arity; x++)
+				columns[x] = Column.readFrom(buffer, nTuples);
+			return true;
+		} catch (IOException | RuntimeException e) {
+			Kit.log.warning("Impossible to load the cached table " + file + " " + e);
+			return false;
+		}
+	}
+
+	/**
+	 * Saves the table in the specified file. A temporary file is first written, and then atomically renamed, so that several runs can share the same cache
+	 * directory.
+	 * 
+	 * @param file
+	 *            the file where the table must be cached
+	 */
+	private void saveTo(File file) {
+		try {
+			File tmp = File.createTempFile("table", ".tmp", file.getParentFile());
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+				out.writeInt(CACHE_MAGIC);
+				out.writeInt(CACHE_VERSION);
+				out.writeByte(positive ? 1 : 0);
+				out.writeByte(starred ? 1 : 0);
+				out.writeInt(nTuples);
+				out.writeInt(columns.length);
+				for (Column column : columns)
+					column.writeTo(out);
+			}
+			Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			Kit.log.warning("Impossible to cache the table in " + file + " " + e);
+		}
 	}
 
 	/**********************************************************************************************
@@ -368,9 +834,11 @@ public class Table extends ExtensionStructure {
 	private void buildSubtables() {
 		Constraint c = firstRegisteredCtr();
 		List<int[]>[][] tmp = Variable.litterals(c.scp).listArray();
-		for (int i = 0; i < tuples.length; i++)
-			for (int j = 0; j < tuples[i].length; j++)
-				tmp[j][tuples[i][j]].add(tuples[i]);
+		for (int i = 0; i < nTuples; i++) {
+			int[] tuple = tuple(i);
+			for (int j = 0; j < tuple.length; j++)
+				tmp[j][tuple[j]].add(tuple);
+		}
 		subtables = new int[c.scp.length][][][];
 		for (int i = 0; i < subtables.length; i++) {
 			subtables[i] = new int[c.scp[i].dom.initSize()][][];
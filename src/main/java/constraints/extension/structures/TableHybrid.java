@@ -473,6 +473,35 @@ public final class TableHybrid extends ExtensionStructure {
 			return true;
 		}
 
+		/**
+		 * Returns true iff the specified index (of value) for the variable at the specified position is compatible with the hybrid tuple, when only
+		 * considering the underlying (starred) tuple and unary restrictions. Complex (binary, ternary and multiple) restrictions are ignored here: any index
+		 * is considered as compatible with them.
+		 * 
+		 * @param x
+		 *            a position in the scope of the constraint
+		 * @param a
+		 *            an index (of value) for the variable at position x
+		 * @return true iff (x,a) is compatible with the hybrid tuple, when ignoring complex restrictions
+		 */
+		public final boolean isCompatible(int x, int a) {
+			if (tuple[x] != STAR)
+				return tuple[x] == a;
+			Restriction restriction = whichRestrictions[x];
+			return restriction == null || restriction instanceof RestrictionComplex || restriction.isValidFor(a);
+		}
+
+		/**
+		 * Returns true iff the variable at the specified position is involved in a complex (binary, ternary or multiple) restriction of the hybrid tuple
+		 * 
+		 * @param x
+		 *            a position in the scope of the constraint
+		 * @return true iff the variable at position x is involved in a complex restriction
+		 */
+		public final boolean involvesComplexRestriction(int x) {
+			return whichRestrictions[x] instanceof RestrictionComplex;
+		}
+
 		/**
 		 * Returns true iff the the hybrid tuple is valid, considering the specified set of positions to check.
 		 */
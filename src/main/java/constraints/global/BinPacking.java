@@ -17,6 +17,7 @@ import java.util.stream.IntStream;
 
 import constraints.ConstraintGlobal;
 import interfaces.Observers.ObserverOnBacktracks.ObserverOnBacktracksSystematic;
+import interfaces.Tags.TagCallCompleteFiltering;
 import interfaces.Tags.TagNotAC;
 import interfaces.Tags.TagPostponableFiltering;
 import problem.Problem;
@@ -132,6 +133,285 @@ public abstract class BinPacking extends ConstraintGlobal implements TagNotAC {
 
 	}
 
+	/**
+	 * Filtering based on "A Constraint for Bin Packing", CP 2004: 648-662, by P. Shaw. The required load of each bin (sum of the sizes of the items
+	 * packed in it) is maintained incrementally, and restored when backtracking. From required and possible loads, bounds on the load of each bin are
+	 * derived, allowing us to eliminate or commit items. For bins whose load must increase, a knapsack reasoning (on the cardinality of the subsets of
+	 * candidate items) is also performed. Finally, a feasibility test is conducted with the lower bound L2 on the number of bins from "Lower bounds and
+	 * reduction procedures for the bin packing problem", Discrete Applied Mathematics 28(1): 59-70 (1990), by S. Martello and P. Toth.
+	 */
+	public static final class BinPackingShaw extends BinPacking implements TagCallCompleteFiltering, ObserverOnBacktracksSystematic {
+
+		@Override
+		public void afterProblemConstruction(int n) {
+			super.afterProblemConstruction(n);
+			this.freeItems = new SetSparseReversible(nItems, n + 1);
+		}
+
+		@Override
+		public void restoreBefore(int depth) {
+			int limit = freeItems.limit;
+			freeItems.restoreLimitAtLevel(depth);
+			for (int k = limit + 1; k <= freeItems.limit; k++) {
+				int i = freeItems.dense[k];
+				required[packedBins[i]] -= sizes[i];
+			}
+		}
+
+		/**
+		 * The set of items that are not packed yet (i.e., whose domains were not singletons at the last call)
+		 */
+		private SetSparseReversible freeItems;
+
+		/**
+		 * packedBins[i] is the bin where the ith item is packed (only relevant if the item is not free)
+		 */
+		private final int[] packedBins;
+
+		/**
+		 * required[j] is the sum of the sizes of the items packed in the jth bin
+		 */
+		private final long[] required;
+
+		/**
+		 * possible[j] is required[j] plus the sum of the sizes of the free items that can be put in the jth bin
+		 */
+		private final long[] possible;
+
+		/**
+		 * lowers[j] is the current lower bound of the load of the jth bin
+		 */
+		private final long[] lowers;
+
+		/**
+		 * uppers[j] is the current upper bound of the load of the jth bin
+		 */
+		private final long[] uppers;
+
+		/**
+		 * The items in decreasing order of their sizes
+		 */
+		private final int[] sortedItems;
+
+		/**
+		 * The sum of the sizes of all items
+		 */
+		private final long totalSize;
+
+		/**
+		 * The greatest capacity of bins
+		 */
+		private final int maxLimit;
+
+		/**
+		 * A temporary array used for collecting the items that can be put in a bin (in decreasing order of their sizes)
+		 */
+		private final int[] candidates;
+
+		/**
+		 * Two temporary arrays used when computing the lower bound L2 (sizes in increasing order, and their cumulated sums)
+		 */
+		private final int[] l2Sizes;
+
+		private final long[] l2Sums;
+
+		public BinPackingShaw(Problem pb, Variable[] scp, int[] sizes, int[] limits) {
+			super(pb, scp, sizes, limits);
+			this.packedBins = new int[nItems];
+			this.required = new long[nBins];
+			this.possible = new long[nBins];
+			this.lowers = new long[nBins];
+			this.uppers = new long[nBins];
+			this.sortedItems = IntStream.range(0, nItems).boxed().sorted((i, j) -> Integer.compare(sizes[j], sizes[i])).mapToInt(i -> i).toArray();
+			this.totalSize = IntStream.of(sizes).asLongStream().sum();
+			this.maxLimit = IntStream.of(limits).max().getAsInt();
+			this.candidates = new int[nItems];
+			this.l2Sizes = new int[nItems + nBins];
+			this.l2Sums = new long[nItems + nBins + 1];
+		}
+
+		public BinPackingShaw(Problem pb, Variable[] scp, int[] sizes, int limit) {
+			this(pb, scp, sizes, Kit.repeat(limit, scp[0].dom.initSize()));
+		}
+
+		/**
+		 * Returns true if no subset of the first n candidates (ignoring the one at the specified position, if not -1) has a sum in [alpha, beta]. As
+		 * in Shaw's paper, the reasoning is on cardinalities: if the k largest candidates sum to less than alpha and the k+1 smallest ones to more than
+		 * beta, no subset can fit.
+		 */
+		private boolean noSum(int n, int excluded, long alpha, long beta) {
+			if (alpha <= 0)
+				return alpha > beta;
+			int k = 0;
+			long sumLargest = 0;
+			for (int p = 0; p < n; p++) {
+				if (p == excluded)
+					continue;
+				if (sumLargest + sizes[candidates[p]] >= alpha)
+					break;
+				sumLargest += sizes[candidates[p]];
+				k++;
+			}
+			long sumSmallest = 0;
+			int cnt = 0;
+			for (int p = n - 1; p >= 0 && cnt <= k; p--) {
+				if (p == excluded)
+					continue;
+				sumSmallest += sizes[candidates[p]];
+				cnt++;
+			}
+			return cnt <= k || sumSmallest > beta; // if cnt <= k, all candidates together cannot reach alpha
+		}
+
+		/**
+		 * Returns the lower bound L2 of Martello and Toth for the first n sizes of l2Sizes (increasingly ordered) and the specified capacity
+		 */
+		private long lowerBoundL2(int n, int c) {
+			for (int p = 0; p < n; p++)
+				l2Sums[p + 1] = l2Sums[p] + l2Sizes[p];
+			int half = nbAtMost(n, c / 2);
+			long best = 0;
+			for (int p = -1; p < half; p++) {
+				if (p > 0 && l2Sizes[p] == l2Sizes[p - 1])
+					continue;
+				int K = p == -1 ? 0 : l2Sizes[p];
+				int big = nbAtMost(n, c - K), small = p == -1 ? 0 : p; // items with size < K are ignored
+				int n1 = n - big, n2 = big - half;
+				long sum2 = l2Sums[big] - l2Sums[half], sum3 = l2Sums[half] - l2Sums[small];
+				long rest = sum3 - (n2 * (long) c - sum2);
+				best = Math.max(best, n1 + n2 + (rest <= 0 ? 0 : (rest + c - 1) / c));
+			}
+			return best;
+		}
+
+		/**
+		 * Returns the number of sizes among the first n of l2Sizes that are less than or equal to the specified value
+		 */
+		private int nbAtMost(int n, int v) {
+			int low = 0, high = n; // binary search of the first position with a size > v
+			while (low < high) {
+				int mid = (low + high) >>> 1;
+				if (l2Sizes[mid] <= v)
+					low = mid + 1;
+				else
+					high = mid;
+			}
+			return low;
+		}
+
+		private boolean feasibleWrtL2() {
+			// each bin is seen as a bin of capacity maxLimit already containing an item of size required[j] + maxLimit - limits[j]
+			int nBinItems = 0;
+			for (int j = 0; j < nBins; j++)
+				if (required[j] + maxLimit - limits[j] > 0)
+					l2Sizes[nItems + nBinItems++] = (int) (required[j] + maxLimit - limits[j]);
+			Arrays.sort(l2Sizes, nItems, nItems + nBinItems);
+			// merging free items (taken in increasing order of their sizes) and bin items
+			int n = 0, q = nItems;
+			for (int k = nItems - 1; k >= 0; k--) {
+				int i = sortedItems[k];
+				if (!freeItems.contains(i))
+					continue;
+				while (q < nItems + nBinItems && l2Sizes[q] <= sizes[i])
+					l2Sizes[n++] = l2Sizes[q++];
+				l2Sizes[n++] = sizes[i];
+			}
+			while (q < nItems + nBinItems)
+				l2Sizes[n++] = l2Sizes[q++];
+			return lowerBoundL2(n, maxLimit) <= nBins;
+		}
+
+		@Override
+		public boolean runPropagator(Variable x) {
+			int depth = problem.solver.depth();
+			boolean changed = true;
+			while (changed) {
+				changed = false;
+				// packing items that have been assigned since the last pass
+				for (int k = freeItems.limit; k >= 0; k--) {
+					int i = freeItems.dense[k];
+					if (scp[i].dom.size() == 1) {
+						int j = scp[i].dom.single();
+						packedBins[i] = j;
+						required[j] += sizes[i];
+						freeItems.removeAtPosition(k, depth);
+						if (required[j] > limits[j])
+							return x.dom.fail();
+					}
+				}
+				if (freeItems.size() == 0)
+					return true;
+				// computing bounds on loads
+				System.arraycopy(required, 0, possible, 0, nBins);
+				for (int k = freeItems.limit; k >= 0; k--) {
+					int i = freeItems.dense[k];
+					Domain dom = scp[i].dom;
+					for (int a = dom.first(); a != -1; a = dom.next(a))
+						possible[a] += sizes[i];
+				}
+				long sumUppers = 0;
+				for (int j = 0; j < nBins; j++) {
+					uppers[j] = Math.min(limits[j], possible[j]);
+					sumUppers += uppers[j];
+				}
+				if (sumUppers < totalSize)
+					return x.dom.fail();
+				for (int j = 0; j < nBins; j++)
+					lowers[j] = Math.max(required[j], totalSize - (sumUppers - uppers[j]));
+				// eliminating and committing items
+				for (int k = freeItems.limit; k >= 0; k--) {
+					int i = freeItems.dense[k];
+					Domain dom = scp[i].dom;
+					int sizeBefore = dom.size(), commit = -1;
+					for (int a = dom.first(); commit == -1 && a != -1; a = dom.next(a))
+						if (possible[a] - sizes[i] < lowers[a])
+							commit = a; // without this item, the load of the bin cannot be reached
+					if (commit != -1) {
+						if (dom.reduceTo(commit) == false)
+							return false;
+					} else {
+						for (int a = dom.first(); a != -1; a = dom.next(a))
+							if (required[a] + sizes[i] > uppers[a])
+								dom.removeElementary(a);
+						if (dom.afterElementaryCalls(sizeBefore) == false)
+							return false;
+					}
+					changed = changed || dom.size() != sizeBefore;
+				}
+				if (changed)
+					continue;
+				// knapsack reasoning for bins whose load must increase
+				for (int j = 0; j < nBins; j++) {
+					long alpha = lowers[j] - required[j], beta = uppers[j] - required[j];
+					if (alpha <= 0)
+						continue;
+					int n = 0;
+					for (int i : sortedItems)
+						if (freeItems.contains(i) && scp[i].dom.contains(j))
+							candidates[n++] = i;
+					if (noSum(n, -1, alpha, beta))
+						return x.dom.fail();
+					for (int p = 0; p < n; p++) {
+						Domain dom = scp[candidates[p]].dom;
+						int size = sizes[candidates[p]];
+						if (noSum(n, p, alpha - size, beta - size)) {
+							if (dom.remove(j) == false)
+								return false;
+							changed = true;
+						} else if (noSum(n, p, alpha, beta)) {
+							if (dom.reduceTo(j) == false)
+								return false;
+							changed = true;
+						}
+					}
+					if (changed)
+						break;
+				}
+			}
+			return feasibleWrtL2() || x.dom.fail();
+		}
+	}
+
 	public static class BinPackingEnergetic extends BinPacking implements ObserverOnBacktracksSystematic, TagPostponableFiltering {
 
 		@Override
@@ -12,29 +12,29 @@ package constraints.global;
 
 import static utility.Kit.control;
 
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
 import constraints.ConstraintGlobal;
 import constraints.global.Matcher.MatcherCardinality;
 import interfaces.Observers.ObserverOnBacktracks.ObserverOnBacktracksSystematic;
 import interfaces.Tags.TagAC;
 import interfaces.Tags.TagCallCompleteFiltering;
+import interfaces.Tags.TagNotAC;
 import interfaces.Tags.TagPostponableFiltering;
 import interfaces.Tags.TagSymmetric;
 import problem.Problem;
 import utility.Kit;
+import variables.Domain;
 import variables.Variable;
 
 /**
- * This constraint Cardinality ensures that the number of occurrences of some values respect some conditions.
+ * This constraint Cardinality ensures that the number of occurrences of some values respect some conditions. This class is the root class of two filtering
+ * algorithms: a flow-based one enforcing (G)AC, and a cheaper one enforcing bounds consistency.
  * 
  * @author Christophe Lecoutre and Vincent Perradin
  */
-public final class Cardinality extends ConstraintGlobal
-		implements TagAC, TagCallCompleteFiltering, TagPostponableFiltering, TagSymmetric, ObserverOnBacktracksSystematic {
-
-	@Override
-	public void restoreBefore(int depth) {
-		matcher.restoreAtDepthBefore(depth);
-	}
+public abstract class Cardinality extends ConstraintGlobal implements TagSymmetric {
 
 	@Override
 	public boolean isSatisfiedBy(int[] t) {
@@ -52,22 +52,17 @@ public final class Cardinality extends ConstraintGlobal
 	/**
 	 * The values that must be counted
 	 */
-	private final int[] values;
+	protected final int[] values;
 
 	/**
 	 * minOccs[i] is the required minimal number of occurrences of the value values[i]
 	 */
-	private final int[] minOccs;
+	protected final int[] minOccs;
 
 	/**
 	 * maxOccs[i] is the required maximal number of occurrences of the value values[i]
 	 */
-	private final int[] maxOccs;
-
-	/**
-	 * The object used to compute a maximal matching, and to delete inconsistent values
-	 */
-	protected Matcher matcher;
+	protected final int[] maxOccs;
 
 	/**
 	 * Builds a constraint Cardinality for the specified problem
@@ -89,51 +84,323 @@ public final class Cardinality extends ConstraintGlobal
 		this.values = values;
 		this.minOccs = minOccs;
 		this.maxOccs = maxOccs;
-		this.matcher = new MatcherCardinality(this, values, minOccs, maxOccs);
 		defineKey(values, minOccs, maxOccs);
 	}
 
+	/**********************************************************************************************
+	 * CardinalityFlow
+	 *********************************************************************************************/
+
 	/**
-	 * Builds a constraint Cardinality for the specified problem
-	 * 
-	 * @param pb
-	 *            the problem to which the constraint is attached
-	 * @param scp
-	 *            the scope of the constraint
-	 * @param values
-	 *            the values that must be counted
-	 * @param nOccs
-	 *            the exact number of occurrences for each value
+	 * A complete filtering algorithm enforcing (G)AC, based on flows, as described in "Generalized Arc Consistency for Global Cardinality Constraint", AAAI
+	 * 1996: 209-215, by J.-C. Régin. The flow is kept from one call to the next (only the edges invalidated by removals are repaired).
 	 */
-	public Cardinality(Problem pb, Variable[] scp, int[] values, int[] nOccs) {
-		this(pb, scp, values, nOccs, nOccs);
+	public static final class CardinalityFlow extends Cardinality
+			implements TagAC, TagCallCompleteFiltering, TagPostponableFiltering, ObserverOnBacktracksSystematic {
+
+		@Override
+		public void restoreBefore(int depth) {
+			matcher.restoreAtDepthBefore(depth);
+		}
+
+		/**
+		 * The object used to compute a maximal matching, and to delete inconsistent values
+		 */
+		private final Matcher matcher;
+
+		/**
+		 * Builds a constraint Cardinality for the specified problem, with a flow-based filtering algorithm
+		 * 
+		 * @param pb
+		 *            the problem to which the constraint is attached
+		 * @param scp
+		 *            the scope of the constraint
+		 * @param values
+		 *            the values that must be counted
+		 * @param minOccs
+		 *            the minimal number of occurrences of each value
+		 * @param maxOccs
+		 *            the maximal number of occurrences of each value
+		 */
+		public CardinalityFlow(Problem pb, Variable[] scp, int[] values, int[] minOccs, int[] maxOccs) {
+			super(pb, scp, values, minOccs, maxOccs);
+			this.matcher = new MatcherCardinality(this, values, minOccs, maxOccs);
+		}
+
+		/**
+		 * Builds a constraint Cardinality for the specified problem, with a flow-based filtering algorithm
+		 * 
+		 * @param pb
+		 *            the problem to which the constraint is attached
+		 * @param scp
+		 *            the scope of the constraint
+		 * @param values
+		 *            the values that must be counted
+		 * @param nOccs
+		 *            the exact number of occurrences for each value
+		 */
+		public CardinalityFlow(Problem pb, Variable[] scp, int[] values, int[] nOccs) {
+			this(pb, scp, values, nOccs, nOccs);
+		}
+
+		/**
+		 * Builds a constraint Cardinality for the specified problem, with a flow-based filtering algorithm
+		 * 
+		 * @param pb
+		 *            the problem to which the constraint is attached
+		 * @param scp
+		 *            the scope of the constraint
+		 * @param values
+		 *            the values that must be counted
+		 * @param minOccs
+		 *            the minimal number of occurrences for each value
+		 * @param maxOccs
+		 *            the maximal number of occurrences for each value
+		 */
+		public CardinalityFlow(Problem pb, Variable[] scp, int[] values, int minOccs, int maxOccs) {
+			this(pb, scp, values, Kit.repeat(minOccs, values.length), Kit.repeat(maxOccs, values.length));
+		}
+
+		@Override
+		public boolean runPropagator(Variable x) {
+			if (!matcher.findMaximumMatching())
+				return x.dom.fail();
+			matcher.removeInconsistentValues();
+			return true;
+		}
 	}
 
+	/**********************************************************************************************
+	 * CardinalityBound
+	 *********************************************************************************************/
+
 	/**
-	 * 
-	 * @param pb
-	 *            the problem to which the constraint is attached
-	 * @param scp
-	 *            the problem to which the constraint is attached
-	 * @param values
-	 *            the values that must be counted
-	 * @param minOccs
-	 *            the minimal number of occurrences for each value
-	 * @param maxOccs
-	 *            the maximal number of occurrences for each value
+	 * A filtering algorithm enforcing bounds consistency, in the spirit of "An Efficient Bounds Consistency Algorithm for the Global Cardinality
+	 * Constraint", CP 2003: 600-614, by C.-G. Quimper, P. van Beek, A. López-Ortiz, A. Golynski and S.B. Sadjad. As shown in this paper, the constraint can be
+	 * decomposed into a constraint on maximal occurrences and a constraint on minimal occurrences. For maximal occurrences, Hall intervals are detected in
+	 * O(n log n) as for AllDifferentBound (with capacities of values being given by maximal occurrences; see HallIntervals). Values with a maximal number
+	 * of occurrences equal to 0 are removed from the domains when the constraint is built. For minimal occurrences, the bounds of each variable involved in
+	 * the matching of demanded values are checked with a greedy matching algorithm on intervals, instead of the linear algorithm based on stable and
+	 * unstable sets; this is simpler but more expensive (see filterMin). Nothing is stored from one call to the next (so, nothing must be restored when backtracking), and the cost is
+	 * independent of the sizes of the domains.
 	 */
-	public Cardinality(Problem pb, Variable[] scp, int[] values, int minOccs, int maxOccs) {
-		this(pb, scp, values, Kit.repeat(minOccs, values.length), Kit.repeat(maxOccs, values.length));
-	}
+	public static final class CardinalityBound extends Cardinality implements TagNotAC, TagCallCompleteFiltering {
 
-	@Override
-	public boolean runPropagator(Variable x) {
-		// System.out.println("running " + x + " at level " + problem.solver.depth());
-		if (!matcher.findMaximumMatching())
-			return x.dom.fail();
-		matcher.removeInconsistentValues();
+		/**
+		 * The counted values in increasing order, with the associated minimal and maximal numbers of occurrences
+		 */
+		private final int[] sortedValues, sortedMins, sortedMaxs;
 
-		return true;
-	}
+		/**
+		 * Prefix sums of sortedMaxs: prefixMaxs[k] is the sum of sortedMaxs[0..k-1]
+		 */
+		private final long[] prefixMaxs;
+
+		/**
+		 * The values whose minimal numbers of occurrences are strictly positive (in increasing order), and these numbers
+		 */
+		private final int[] demandedValues, demands;
+
+		/**
+		 * The object used to detect Hall intervals when reasoning on maximal numbers of occurrences; it also records the current bounds of the intervals of
+		 * the variables (possibly updated during filtering)
+		 */
+		private final HallIntervals hall;
+
+		/**
+		 * The bounds computed when reasoning on minimal numbers of occurrences (the intervals of all variables remaining unchanged during this reasoning)
+		 */
+		private final int[] newMins, newMaxs;
+
+		/**
+		 * matching[x] is the index (in demandedValues) of the value matched with the variable at index x in the current greedy matching of demanded values,
+		 * or -1
+		 */
+		private final int[] matching;
+
+		/**
+		 * A binary heap of variables (ordered by the maximal values of their intervals), used by the greedy matching algorithm
+		 */
+		private final int[] heap;
+
+		private int heapSize;
+
+		/**
+		 * Builds a constraint Cardinality for the specified problem, with a filtering algorithm enforcing bounds consistency
+		 * 
+		 * @param pb
+		 *            the problem to which the constraint is attached
+		 * @param scp
+		 *            the scope of the constraint
+		 * @param values
+		 *            the values that must be counted
+		 * @param minOccs
+		 *            the minimal number of occurrences of each value
+		 * @param maxOccs
+		 *            the maximal number of occurrences of each value
+		 */
+		public CardinalityBound(Problem pb, Variable[] scp, int[] values, int[] minOccs, int[] maxOccs) {
+			super(pb, scp, values, minOccs, maxOccs);
+			// values that cannot occur are definitively removed, and are no more counted (an interval of capacity 0 being not handled by HallIntervals)
+			int[] forbidden = IntStream.range(0, values.length).filter(i -> maxOccs[i] == 0).map(i -> values[i]).toArray();
+			if (forbidden.length > 0)
+				for (Variable x : scp)
+					x.dom.removeValuesAtConstructionTime(v -> Kit.isPresent(v, forbidden));
+			int[] order = IntStream.range(0, values.length).filter(i -> maxOccs[i] > 0).boxed().sorted((i, j) -> Integer.compare(values[i], values[j]))
+					.mapToInt(i -> i).toArray();
+			this.sortedValues = IntStream.of(order).map(i -> values[i]).toArray();
+			control(IntStream.range(1, sortedValues.length).allMatch(i -> sortedValues[i - 1] < sortedValues[i]));
+			this.sortedMins = IntStream.of(order).map(i -> minOccs[i]).toArray();
+			this.sortedMaxs = IntStream.of(order).map(i -> Math.min(maxOccs[i], scp.length)).toArray();
+			this.prefixMaxs = new long[sortedValues.length + 1];
+			for (int i = 0; i < sortedValues.length; i++)
+				prefixMaxs[i + 1] = prefixMaxs[i] + sortedMaxs[i];
+			int[] positives = IntStream.range(0, sortedValues.length).filter(i -> sortedMins[i] > 0).toArray();
+			this.demandedValues = IntStream.of(positives).map(i -> sortedValues[i]).toArray();
+			this.demands = IntStream.of(positives).map(i -> sortedMins[i]).toArray();
+			int n = scp.length;
+			this.hall = new HallIntervals(scp, this::capacity);
+			this.newMins = new int[n];
+			this.newMaxs = new int[n];
+			this.matching = new int[n];
+			this.heap = new int[n];
+		}
+
+		/**
+		 * Returns the index of the first counted value that is greater than or equal to v
+		 */
+		private int ceilingIndex(long v) {
+			int i = Arrays.binarySearch(sortedValues, (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, v)));
+			return i >= 0 ? i : -i - 1;
+		}
+
+		/**
+		 * Returns the maximal number of variables that can be assigned a value in [a,b]: values that are not counted can be assigned to all variables
+		 */
+		private long capacity(long a, long b) {
+			if (a > b)
+				return 0;
+			int i = ceilingIndex(a), j = ceilingIndex(b + 1);
+			return (b - a + 1 - (j - i)) * scp.length + prefixMaxs[j] - prefixMaxs[i];
+		}
+
+		private void heapPush(int x) {
+			int i = heapSize++;
+			for (; i > 0 && hall.maxs[heap[(i - 1) / 2]] > hall.maxs[x]; i = (i - 1) / 2)
+				heap[i] = heap[(i - 1) / 2];
+			heap[i] = x;
+		}
+
+		private int heapPop() {
+			int top = heap[0], x = heap[--heapSize];
+			int i = 0;
+			for (int child = 1; child < heapSize; child = 2 * i + 1) {
+				if (child + 1 < heapSize && hall.maxs[heap[child + 1]] < hall.maxs[heap[child]])
+					child++;
+				if (hall.maxs[heap[child]] >= hall.maxs[x])
+					break;
+				heap[i] = heap[child];
+				i = child;
+			}
+			heap[i] = x;
+			return top;
+		}
+
+		/**
+		 * Returns true if all minimal numbers of occurrences can be satisfied, while assuming that the variable at index excluded (if not -1) is assigned to
+		 * the demanded value at index k (if not -1) or to a value that is not demanded (otherwise). The greedy algorithm assigns, for each demanded value
+		 * in increasing order, the variables whose intervals end first. When record is true, the array matching is updated.
+		 */
+		private boolean matchDemands(int excluded, int k, boolean record) {
+			heapSize = 0;
+			for (int i = 0, p = 0; i < demandedValues.length; i++) {
+				int v = demandedValues[i];
+				for (; p < scp.length && hall.mins[hall.minSorted[p]] <= v; p++)
+					if (hall.minSorted[p] != excluded)
+						heapPush(hall.minSorted[p]);
+				for (int need = i == k ? demands[i] - 1 : demands[i]; need > 0; need--) {
+					while (heapSize > 0 && hall.maxs[heap[0]] < v)
+						heapPop(); // the interval of this variable ends before v
+					if (heapSize == 0)
+						return false;
+					int x = heapPop();
+					if (record)
+						matching[x] = i;
+				}
+			}
+			return true;
+		}
+
+		/**
+		 * Filters the bounds of the variables with respect to the minimal numbers of occurrences; returns false if an inconsistency is detected. For each
+		 * matched variable, the greedy matching is run again for each candidate new bound, until a supported one is found. Each run being in O(n log n),
+		 * the worst-case complexity is O(n^2.k.log n) where k is the number of demanded values (instead of O(n) after sorting for the algorithm of the
+		 * paper), the runs stopping as soon as a supported bound is found.
+		 */
+		private boolean filterMin() {
+			if (demandedValues.length == 0)
+				return true;
+			hall.sortMins();
+			Arrays.fill(matching, -1);
+			if (matchDemands(-1, -1, true) == false)
+				return false;
+			for (int x = 0; x < scp.length; x++) {
+				newMins[x] = hall.mins[x];
+				newMaxs[x] = hall.maxs[x];
+				if (matching[x] == -1)
+					continue; // the variable can be removed from the matching, and so can take any value of its interval
+				int lo = hall.mins[x], hi = hall.maxs[x], k = matching[x];
+				int newMin = demandedValues[k], newMax = newMin; // the matched value is obviously supported
+				// we look for the smallest and greatest values of [lo,hi] that are not demanded (if they exist)
+				int first = ceilingIndex(lo), last = ceilingIndex(hi + 1L) - 1; // indexes of counted values in [lo,hi]
+				int minFree = lo, maxFree = hi;
+				for (int i = first; i <= last && sortedValues[i] == minFree && sortedMins[i] > 0; i++)
+					minFree++;
+				for (int i = last; i >= first && sortedValues[i] == maxFree && sortedMins[i] > 0; i--)
+					maxFree--;
+				if ((minFree < newMin || maxFree > newMax) && minFree <= hi && matchDemands(x, -1, false)) { // x can take a value that is not demanded
+					newMin = Math.min(newMin, minFree);
+					newMax = Math.max(newMax, maxFree);
+				}
+				int from = Arrays.binarySearch(demandedValues, lo), to = Arrays.binarySearch(demandedValues, hi);
+				from = from >= 0 ? from : -from - 1;
+				to = to >= 0 ? to : -to - 2;
+				for (int i = from; i < k && demandedValues[i] < newMin; i++)
+					if (matchDemands(x, i, false)) {
+						newMin = demandedValues[i];
+						break;
+					}
+				for (int i = to; i > k && demandedValues[i] > newMax; i--)
+					if (matchDemands(x, i, false)) {
+						newMax = demandedValues[i];
+						break;
+					}
+				newMins[x] = newMin;
+				newMaxs[x] = newMax;
+			}
+			System.arraycopy(newMins, 0, hall.mins, 0, hall.mins.length);
+			System.arraycopy(newMaxs, 0, hall.maxs, 0, hall.maxs.length);
+			return true;
+		}
 
+		@Override
+		public boolean runPropagator(Variable dummy) {
+			boolean modified = true;
+			while (modified) { // because of holes in domains, and of the two kinds of reasoning, new bounds may be further reduced
+				modified = false;
+				hall.recordBounds();
+				if (hall.filter() == false || filterMin() == false)
+					return dummy.dom.fail();
+				for (int i = 0; i < scp.length; i++) {
+					Domain dom = scp[i].dom;
+					if (hall.mins[i] > dom.firstValue() || hall.maxs[i] < dom.lastValue()) {
+						if (dom.removeValuesLT(hall.mins[i]) == false || dom.removeValuesGT(hall.maxs[i]) == false)
+							return false;
+						modified = true;
+					}
+				}
+			}
+			return true;
+		}
+	}
 }
@@ -18,12 +18,16 @@ import java.util.stream.Stream;
 import constraints.global.AllDifferent.AllDifferentComplete;
 import problem.Problem;
 import sets.SetSparse;
+import variables.Domain;
 import variables.Variable;
 
 /**
  * The constraint Circuit ensures that the values taken by a sequence of variables <x0,x1, ...> forms a circuit, with the assumption that each pair (i,xi)
  * represents an arc. See for example "Introducing global constraints in CHIP", Mathematical and Computer Modelling, 20(12):97–123, 1994 by N. Beldiceanu and E.
- * Contejean.
+ * Contejean. <br />
+ * When reachability reasoning is activated, the successor graph (represented by bitsets) is also filtered in the spirit of "Improving the Asymmetric TSP by
+ * Considering Graph Structure", arXiv:1206.3437, 2012, by J.-G. Fages and X. Lorca: nodes that cannot be strongly connected with a node that must belong to
+ * the circuit are excluded from it, and arcs are pruned by computing dominators from this node in the graph and in its reverse graph.
  * 
  * @author Christophe Lecoutre
  */
@@ -53,6 +57,150 @@ public final class Circuit extends AllDifferentComplete {
 		return size == t.length - nLoops;
 	}
 
+	/**********************************************************************************************
+	 * Inner class for dominators
+	 *********************************************************************************************/
+
+	/**
+	 * A dominator tree computed from a root in a graph given by bitsets of successors and predecessors, with the iterative algorithm described in "A Simple,
+	 * Fast Dominance Algorithm", Software Practice and Experience, 4:1-10, 2001, by K. Cooper, T. Harvey and K. Kennedy. Nodes are then numbered by a
+	 * traversal of the tree, so that dominance between two nodes can be tested in constant time.
+	 */
+	private final class DominatorTree {
+
+		/**
+		 * idoms[i] is the immediate dominator of node i, or -1 if i is not reachable from the root
+		 */
+		private final int[] idoms = new int[scp.length];
+
+		/**
+		 * Postorder numbers of the nodes in a depth-first traversal of the graph, and the nodes in reverse postorder
+		 */
+		private final int[] postorder = new int[scp.length], order = new int[scp.length];
+
+		/**
+		 * Preorder and postorder numbers of the nodes in a depth-first traversal of the dominator tree
+		 */
+		private final int[] in = new int[scp.length], out = new int[scp.length];
+
+		/**
+		 * Children of the nodes in the dominator tree, as linked lists
+		 */
+		private final int[] firstChild = new int[scp.length], nextSibling = new int[scp.length];
+
+		/**
+		 * cursors[i] is the position from which the successors of node i must be looked for during the depth-first traversal of the graph
+		 */
+		private final int[] cursors = new int[scp.length];
+
+		private int nNodes;
+
+		private int intersect(int i, int j) {
+			while (i != j) {
+				while (postorder[i] < postorder[j])
+					i = idoms[i];
+				while (postorder[j] < postorder[i])
+					j = idoms[j];
+			}
+			return i;
+		}
+
+		/**
+		 * Computes the dominator tree of the specified graph from the specified root
+		 */
+		private void compute(long[][] succs, long[][] preds, int root) {
+			Arrays.fill(idoms, -1);
+			Arrays.fill(cursors, 0);
+			// iterative depth-first traversal of the graph, for computing postorder numbers
+			int top = -1, cnt = 0;
+			stack[++top] = root;
+			idoms[root] = root; // temporarily used for marking visited nodes
+			while (top >= 0) {
+				int i = stack[top], j = nextNode(succs[i], i);
+				if (j == -1) {
+					postorder[i] = cnt++;
+					top--;
+				} else {
+					idoms[j] = j;
+					stack[++top] = j;
+				}
+			}
+			nNodes = cnt;
+			for (int i = 0; i < scp.length; i++)
+				if (idoms[i] != -1)
+					order[nNodes - 1 - postorder[i]] = i;
+			Arrays.fill(idoms, -1);
+			idoms[root] = root;
+			for (boolean changed = true; changed;) {
+				changed = false;
+				for (int k = 1; k < nNodes; k++) {
+					int i = order[k], idom = -1;
+					long[] pred = preds[i];
+					for (int w = 0; w < pred.length; w++)
+						for (long word = pred[w]; word != 0; word &= word - 1) {
+							int j = w * 64 + Long.numberOfTrailingZeros(word);
+							if (idoms[j] != -1)
+								idom = idom == -1 ? j : intersect(j, idom);
+						}
+					if (idoms[i] != idom) {
+						idoms[i] = idom;
+						changed = true;
+					}
+				}
+			}
+			// numbering nodes in the dominator tree
+			Arrays.fill(firstChild, -1);
+			for (int k = nNodes - 1; k > 0; k--) {
+				int i = order[k];
+				nextSibling[i] = firstChild[idoms[i]];
+				firstChild[idoms[i]] = i;
+			}
+			top = -1;
+			cnt = 0;
+			stack[++top] = root;
+			in[root] = cnt++;
+			while (top >= 0) {
+				int i = stack[top];
+				int j = firstChild[i];
+				if (j == -1) {
+					out[i] = cnt++;
+					top--;
+				} else {
+					firstChild[i] = nextSibling[j]; // the child is consumed
+					in[j] = cnt++;
+					stack[++top] = j;
+				}
+			}
+		}
+
+		/**
+		 * Returns the next successor of i that has not been visited yet, or -1
+		 */
+		private int nextNode(long[] succ, int i) {
+			for (int w = cursors[i] >> 6; w < succ.length; w++)
+				for (long word = w == cursors[i] >> 6 ? succ[w] & (-1L << cursors[i]) : succ[w]; word != 0; word &= word - 1) {
+					int j = w * 64 + Long.numberOfTrailingZeros(word);
+					if (idoms[j] == -1) {
+						cursors[i] = j + 1;
+						return j;
+					}
+				}
+			cursors[i] = scp.length;
+			return -1;
+		}
+
+		/**
+		 * Returns true if i dominates j (i and j being reachable from the root)
+		 */
+		private boolean dominates(int i, int j) {
+			return in[i] <= in[j] && out[j] <= out[i];
+		}
+	}
+
+	/**********************************************************************************************
+	 * Class members
+	 *********************************************************************************************/
+
 	/**
 	 * A sparse set used during filtering
 	 */
@@ -63,6 +211,50 @@ public final class Circuit extends AllDifferentComplete {
 	 */
 	private final boolean[] tmp;
 
+	/**
+	 * Indicates if reachability reasoning (strong connectivity and dominators) is performed
+	 */
+	private final boolean reachability;
+
+	/**
+	 * succs[i] is the bitset of the possible successors of node i in the circuit (self-loops being excluded), and preds[i] the bitset of its possible
+	 * predecessors. These bitsets are maintained incrementally: they are updated from the values removed since the last call (see synchronize), and
+	 * restored from a trail when backtracking.
+	 */
+	private long[][] succs, preds;
+
+	/**
+	 * lastSizes[i] is the number of values of the domain of node i that are still taken into account in succs and preds (i.e., not yet recorded as removed
+	 * in the trail); -1 when the graph has not been built yet
+	 */
+	private int[] lastSizes;
+
+	/**
+	 * The trail of removed arcs: trail[k] is the arc (encoded as i * n + j) recorded at position k, and trailLevels[k] the level at which it was removed
+	 * (the arc may be a self-loop)
+	 */
+	private int[] trail, trailLevels;
+
+	/**
+	 * The number of arcs in the trail
+	 */
+	private int trailSize;
+
+	/**
+	 * Bitsets of the nodes reachable from the root, and of the nodes from which the root can be reached
+	 */
+	private long[] forward, backward;
+
+	/**
+	 * A stack (or queue) of nodes used during graph traversals
+	 */
+	private int[] stack;
+
+	/**
+	 * The dominator trees from the root, in the graph and in the reverse graph
+	 */
+	private DominatorTree dominators, postDominators;
+
 	/**
 	 * Build a constraint Circuit for the specified problem over the specified array of variables
 	 * 
@@ -70,12 +262,53 @@ public final class Circuit extends AllDifferentComplete {
 	 *            the problem to which the constraint is attached
 	 * @param scp
 	 *            the scope of the constraint
+	 * @param reachability
+	 *            indicates if reachability reasoning must be performed
 	 */
-	public Circuit(Problem pb, Variable[] scp) {
+	public Circuit(Problem pb, Variable[] scp, boolean reachability) {
 		super(pb, scp);
 		this.set = new SetSparse(scp.length);
 		this.tmp = new boolean[scp.length];
 		control(Stream.of(scp).allMatch(x -> 0 <= x.dom.firstValue() && x.dom.lastValue() < scp.length));
+		this.reachability = reachability;
+		if (reachability) {
+			int nWords = (scp.length + 63) / 64;
+			this.succs = new long[scp.length][nWords];
+			this.preds = new long[scp.length][nWords];
+			this.lastSizes = new int[scp.length];
+			this.lastSizes[0] = -1;
+			int nArcs = Stream.of(scp).mapToInt(x -> x.dom.initSize()).sum();
+			this.trail = new int[nArcs];
+			this.trailLevels = new int[nArcs];
+			this.forward = new long[nWords];
+			this.backward = new long[nWords];
+			this.stack = new int[scp.length];
+			this.dominators = new DominatorTree();
+			this.postDominators = new DominatorTree();
+		}
+	}
+
+	/**
+	 * Build a constraint Circuit for the specified problem over the specified array of variables
+	 * 
+	 * @param pb
+	 *            the problem to which the constraint is attached
+	 * @param scp
+	 *            the scope of the constraint
+	 */
+	public Circuit(Problem pb, Variable[] scp) {
+		this(pb, scp, false);
+	}
+
+	@Override
+	public void restoreBefore(int depth) {
+		super.restoreBefore(depth);
+		if (reachability)
+			for (; trailSize > 0 && trailLevels[trailSize - 1] >= depth; trailSize--) {
+				int i = trail[trailSize - 1] / scp.length;
+				addArc(i, trail[trailSize - 1] % scp.length);
+				lastSizes[i]++;
+			}
 	}
 
 	@Override
@@ -133,6 +366,133 @@ public final class Circuit extends AllDifferentComplete {
 		}
 		if (nSelfLoops == scp.length) // TODO: we should prune when all but two variables are self loops
 			return false;
+		return reachability ? filterReachability() : true;
+	}
+
+	private static boolean contains(long[] bitset, int i) {
+		return (bitset[i >> 6] & (1L << i)) != 0;
+	}
+
+	/**
+	 * Computes in the specified bitset the nodes reachable from the specified root in the graph given by the specified bitsets of successors
+	 */
+	private void reach(long[][] graph, int root, long[] reached) {
+		Arrays.fill(reached, 0L);
+		reached[root >> 6] |= 1L << root;
+		int head = 0, tail = 0;
+		stack[tail++] = root;
+		while (head < tail) {
+			long[] succ = graph[stack[head++]];
+			for (int w = 0; w < succ.length; w++)
+				for (long word = succ[w] & ~reached[w]; word != 0; word &= word - 1) {
+					reached[w] |= word & -word;
+					stack[tail++] = w * 64 + Long.numberOfTrailingZeros(word);
+				}
+		}
+	}
+
+	/**
+	 * Updates the bitsets of successors and predecessors with the values removed since the last synchronization, and records them in the trail. The
+	 * removed values being stacked in the domains, and the graph being restored from the trail when backtracking, the values that have not been recorded
+	 * yet are the last removed ones. The first time, the graph is built from all values that can be restored (before recording the removed ones).
+	 */
+	private void synchronize() {
+		if (lastSizes[0] == -1)
+			for (int i = 0; i < scp.length; i++) {
+				Domain dom = doms[i];
+				for (int a = dom.first(); a != -1; a = dom.next(a))
+					addArc(i, dom.toVal(a));
+				for (int a = dom.lastRemoved(); a != -1; a = dom.prevRemoved(a))
+					addArc(i, dom.toVal(a));
+				lastSizes[i] = dom.size() + dom.nRemoved();
+			}
+		int start = trailSize;
+		for (int i = 0; i < scp.length; i++) {
+			Domain dom = doms[i];
+			int nNew = lastSizes[i] - dom.size();
+			for (int cnt = 0, a = dom.lastRemoved(); cnt < nNew; cnt++, a = dom.prevRemoved(a)) {
+				int j = dom.toVal(a);
+				if (j != i) {
+					succs[i][j >> 6] &= ~(1L << j);
+					preds[j][i >> 6] &= ~(1L << i);
+				}
+				trail[trailSize] = i * scp.length + j;
+				trailLevels[trailSize++] = dom.removedLevelOf(a);
+			}
+			lastSizes[i] = dom.size();
+		}
+		// the new arcs are ordered by levels (they are usually all removed at the current level), so that backtracking pops them in the right order
+		for (int k = start + 1; k < trailSize; k++) {
+			int arc = trail[k], level = trailLevels[k], l = k - 1;
+			for (; l >= start && trailLevels[l] > level; l--) {
+				trail[l + 1] = trail[l];
+				trailLevels[l + 1] = trailLevels[l];
+			}
+			trail[l + 1] = arc;
+			trailLevels[l + 1] = level;
+		}
+	}
+
+	private void addArc(int i, int j) {
+		if (j != i) {
+			succs[i][j >> 6] |= 1L << j;
+			preds[j][i >> 6] |= 1L << i;
+		}
+	}
+
+	/**
+	 * Performs reachability reasoning from a node that must belong to the circuit. Nodes that do not belong to the strongly connected component of this
+	 * node are excluded from the circuit, nodes that dominate a mandatory node (in the graph or its reverse) become mandatory, and an arc (i,j) is removed
+	 * when j dominates i or i post-dominates j (since j, or i, would then occur twice in the circuit). Although the graph is maintained incrementally, the
+	 * strongly connected component and the two dominator trees are computed from scratch at each call.
+	 */
+	private boolean filterReachability() {
+		int root = -1;
+		for (int i = 0; i < scp.length && root == -1; i++)
+			if (!doms[i].containsValue(i))
+				root = i;
+		if (root == -1)
+			return true; // no node is known to belong to the circuit
+		synchronize();
+		reach(succs, root, forward);
+		reach(preds, root, backward);
+		for (int w = 0; w < forward.length; w++)
+			forward[w] &= backward[w]; // forward now denotes the strongly connected component of the root
+		for (int i = 0; i < scp.length; i++) {
+			Domain dom = doms[i];
+			if (contains(forward, i)) {
+				for (int a = dom.first(); a != -1; a = dom.next(a)) {
+					int j = dom.toVal(a);
+					if (j != i && !contains(forward, j) && dom.removeValue(j) == false)
+						return false;
+				}
+			} else if (dom.reduceToValue(i) == false)
+				return false; // because i was a mandatory node, or it cannot be excluded from the circuit anymore
+		}
+		synchronize(); // arcs that are not in the strongly connected component of the root have just been removed
+		dominators.compute(succs, preds, root);
+		postDominators.compute(preds, succs, root);
+		for (int i = 0; i < scp.length; i++) {
+			if (!contains(forward, i))
+				continue;
+			Domain dom = doms[i];
+			if (!dom.containsValue(i)) // i is mandatory: so are its dominators
+				for (int j = dominators.idoms[i]; j != root && doms[j].containsValue(j); j = dominators.idoms[j])
+					if (doms[j].removeValue(j) == false)
+						return false;
+			if (!dom.containsValue(i))
+				for (int j = postDominators.idoms[i]; j != root && doms[j].containsValue(j); j = postDominators.idoms[j])
+					if (doms[j].removeValue(j) == false)
+						return false;
+			long[] succ = succs[i];
+			for (int w = 0; w < succ.length; w++)
+				for (long word = succ[w]; word != 0; word &= word - 1) {
+					int j = w * 64 + Long.numberOfTrailingZeros(word);
+					if ((j != root && dominators.dominates(j, i)) || (i != root && postDominators.dominates(i, j)))
+						if (dom.removeValue(j) == false)
+							return false;
+				}
+		}
 		return true;
 	}
 
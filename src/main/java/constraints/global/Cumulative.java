@@ -23,7 +23,6 @@ import interfaces.Tags.TagCallCompleteFiltering;
 import interfaces.Tags.TagNotAC;
 import interfaces.Tags.TagPostponableFiltering;
 import problem.Problem;
-import sets.SetSparse;
 import sets.SetSparseReversible;
 import utility.Kit;
 import variables.Domain;
@@ -61,12 +60,13 @@ public abstract class Cumulative extends ConstraintGlobal
 	}
 
 	/**********************************************************************************************
-	 * Two inner classes for reasoning
+	 * Three inner classes for reasoning
 	 *********************************************************************************************/
 
 	/**
 	 * Filtering mainly based on "Simple and Scalable Time-Table Filtering for the Cumulative Constraint", CP 2015: 149-157, by S. Gay, R. Hartert and P.
-	 * Schaus.
+	 * Schaus. The timetable is built from the sorted starts and ends of mandatory parts, so that the space used is linear in the number of tasks (and
+	 * independent of the horizon).
 	 */
 	class TimetableReasoner {
 		class Slot {
@@ -87,14 +87,15 @@ public abstract class Cumulative extends ConstraintGlobal
 		private Slot[] slots;
 		private int nSlots;
 
-		private SetSparse ticks; // intermediary structure used when building slots
-		private int[] offsets; // intermediary structure used when building slots
+		private int[] events; // events (2*i for the start of the mandatory part of task i, 2*i+1 for its end), kept sorted from one call to the next
+		private int[] times; // times[e] is the current time of event e
+		private int[] offsets; // intermediary structure used when building slots (offsets of the relevant ticks)
 
 		private TimetableReasoner() {
-			int timeline = IntStream.range(0, nTasks).map(i -> starts[i].dom.lastValue() + maxWidth(i)).max().getAsInt() + 1;
-			this.slots = IntStream.range(0, timeline).mapToObj(i -> new Slot()).toArray(Slot[]::new);
-			this.ticks = new SetSparse(timeline);
-			this.offsets = new int[timeline];
+			this.slots = IntStream.range(0, 2 * nTasks).mapToObj(i -> new Slot()).toArray(Slot[]::new);
+			this.events = IntStream.range(0, 2 * nTasks).toArray();
+			this.times = new int[2 * nTasks];
+			this.offsets = new int[2 * nTasks];
 		}
 
 		private int mandatoryStart(int i) {
@@ -105,36 +106,48 @@ public abstract class Cumulative extends ConstraintGlobal
 			return starts[i].dom.firstValue() + wwidths[i];
 		}
 
-		private Boolean buildSlots() { // so, building the timetable
-			nSlots = 0;
-			ticks.clear();
+		private int offset(int e) {
+			int i = e / 2;
+			return times[e] == Integer.MAX_VALUE ? 0 : e % 2 == 0 ? wheights[i] : -wheights[i];
+		}
+
+		/**
+		 * Updates the times of events from the current mandatory parts, and sorts events accordingly
+		 */
+		private void sortEvents() {
 			for (int i = 0; i < nTasks; i++) {
-				// for (int j = relevantTasks.limit; j >= 0; j--) { // ok for Cst but for VarH does not seem correct
-				// int i = relevantTasks.dense[j];
 				int ms = mandatoryStart(i), me = mandatoryEnd(i);
-				if (me <= ms)
-					continue; // no mandatory part here
-				if (ticks.contains(ms) == false) {
-					ticks.add(ms);
-					offsets[ms] = 0;
-				}
-				offsets[ms] += wheights[i];
-				if (ticks.contains(me) == false) {
-					ticks.add(me);
-					offsets[me] = 0;
-				}
-				offsets[me] -= wheights[i];
+				boolean mandatory = ms < me;
+				times[2 * i] = mandatory ? ms : Integer.MAX_VALUE; // events of tasks without mandatory parts are put at the end
+				times[2 * i + 1] = mandatory ? me : Integer.MAX_VALUE;
+			}
+			// events are sorted by insertion, which is fast since only the events of the tasks whose mandatory parts have changed are moved
+			for (int j = 1; j < events.length; j++) {
+				int e = events[j], t = times[e], k = j - 1;
+				for (; k >= 0 && times[events[k]] > t; k--)
+					events[k + 1] = events[k];
+				events[k + 1] = e;
 			}
+		}
+
+		private Boolean buildSlots() { // so, building the timetable
+			nSlots = 0;
+			sortEvents();
 			int nRelevantTicks = 0;
-			for (int j = 0; j <= ticks.limit; j++)
-				if (offsets[ticks.dense[j]] != 0) // ticks with offset at 0 are not relevant (and so, are discarded)
-					slots[nRelevantTicks++].start = ticks.dense[j];
+			for (int j = 0; j < events.length && times[events[j]] != Integer.MAX_VALUE;) {
+				int t = times[events[j]], offset = 0;
+				for (; j < events.length && times[events[j]] == t; j++)
+					offset += offset(events[j]);
+				if (offset != 0) { // ticks with offset at 0 are not relevant (and so, are discarded)
+					offsets[nRelevantTicks] = offset;
+					slots[nRelevantTicks++].start = t;
+				}
+			}
 			if (nRelevantTicks == 0)
 				return Boolean.TRUE;
 
-			Arrays.sort(slots, 0, nRelevantTicks, (t1, t2) -> t1.start < t2.start ? -1 : t1.start > t2.start ? 1 : 0);
 			for (int k = 0, height = 0; k < nRelevantTicks - 1; k++) {
-				height += offsets[slots[k].start];
+				height += offsets[k];
 				if (height > limit)
 					return Boolean.FALSE;
 				slots[k].end = slots[k + 1].start;
@@ -282,6 +295,363 @@ public abstract class Cumulative extends ConstraintGlobal
 		}
 	}
 
+	/**
+	 * Filtering based on edge-finding and time-table edge-finding. Edge-finding follows "Edge Finding Filtering Algorithm for Discrete Cumulative Resources
+	 * in O(kn log n)", CP 2009: 802-816, by P. Vilím: precedences are detected with a Theta-Lambda-tree, and adjustments are computed with a Theta-tree
+	 * for each of the k distinct heights of the tasks for which a precedence has been detected. Time-table edge-finding follows "Timetable Edge Finding
+	 * Filtering Algorithm for Discrete Cumulative Resources", CPAIOR 2011: 230-245, by P. Vilím: the energy available in an interval [a,b) is computed by
+	 * considering the mandatory parts of all tasks (profile) and the free parts of the tasks that must be executed in [a,b). As it is not incremental (and
+	 * runs in O(n^3)), it is only performed on small sets of tasks. Minimal widths and heights are used when they are given by variables.
+	 */
+	class EdgeFindingReasoner {
+
+		private static final long MINUS_INFINITY = Long.MIN_VALUE / 4;
+
+		private static final int TIMETABLE_EDGE_FINDING_LIMIT = 32; // the maximal number of tasks for performing time-table edge-finding
+
+		private final int level; // 1 for edge-finding, 2 for both edge-finding and time-table edge-finding
+
+		private long[] est, lct, lst, ect; // working values for tasks (earliest/latest start/completion times)
+
+		private long[] bounds; // new bounds computed for tasks
+
+		private int[][] byEst, byLct; // byEst[m] and byLct[m]: tasks sorted by non-decreasing est and non-increasing lct (m = 1 for the mirrored problem)
+
+		private int[] ranks, positions; // ranks[i] is the rank of task i in byEst, and positions[i] its position in byLct
+
+		private int size; // the number of leaves of the Theta-Lambda-tree (power of 2)
+
+		private long[] e, env, eL, envL; // nodes of the Theta-Lambda-tree (as a heap, with leaves from size)
+
+		private long[] envc; // nodes of the Theta-tree giving envelopes with respect to a reduced capacity (used when computing updates)
+
+		private long[] updates; // updates[k] is the best earliest start time computed, for a given height, from the tasks at positions k or more in byLct
+
+		private int[] precs; // precs[i] is the position in byLct of the task from which the set that precedes task i starts, or -1
+
+		private long[] times, energies, heights; // the profile: breakpoints, with accumulated energies and heights at these points
+
+		private int nBreakpoints; // the number of breakpoints of the profile
+
+		private long[] lows, highs; // new bounds (earliest and latest start times) computed by time-table edge-finding
+
+		private EdgeFindingReasoner(int level) {
+			this.level = level;
+			this.est = new long[nTasks];
+			this.lct = new long[nTasks];
+			this.lst = new long[nTasks];
+			this.ect = new long[nTasks];
+			this.bounds = new long[nTasks];
+			this.byEst = new int[][] { IntStream.range(0, nTasks).toArray(), IntStream.range(0, nTasks).toArray() };
+			this.byLct = new int[][] { IntStream.range(0, nTasks).toArray(), IntStream.range(0, nTasks).toArray() };
+			this.ranks = new int[nTasks];
+			this.positions = new int[nTasks];
+			this.size = Integer.highestOneBit(nTasks) == nTasks ? nTasks : Integer.highestOneBit(nTasks) * 2;
+			this.e = new long[2 * size];
+			this.env = new long[2 * size];
+			this.eL = new long[2 * size];
+			this.envL = new long[2 * size];
+			this.envc = new long[2 * size];
+			this.updates = new long[nTasks];
+			this.precs = new int[nTasks];
+			this.times = new long[2 * nTasks];
+			this.energies = new long[2 * nTasks];
+			this.heights = new long[2 * nTasks];
+			this.lows = new long[nTasks];
+			this.highs = new long[nTasks];
+		}
+
+		/**
+		 * Sorts the specified tasks by insertion, according to the specified keys. This is fast since tasks are kept sorted from one call to the next.
+		 */
+		private void sort(int[] tasks, long[] keys, boolean increasing) {
+			for (int j = 1; j < tasks.length; j++) {
+				int i = tasks[j], k = j - 1;
+				long key = keys[i];
+				for (; k >= 0 && (increasing ? keys[tasks[k]] > key : keys[tasks[k]] < key); k--)
+					tasks[k + 1] = tasks[k];
+				tasks[k + 1] = i;
+			}
+		}
+
+		private boolean consuming(int i) {
+			return wwidths[i] > 0 && wheights[i] > 0;
+		}
+
+		private void setLeaf(int rank, long energy, long envelope, boolean gray) {
+			int v = size + rank;
+			e[v] = gray ? 0 : energy;
+			env[v] = gray ? MINUS_INFINITY : envelope;
+			eL[v] = energy;
+			envL[v] = envelope;
+			for (v = v / 2; v > 0; v = v / 2) {
+				int l = 2 * v, r = l + 1;
+				e[v] = e[l] + e[r];
+				env[v] = Math.max(env[l] + e[r], env[r]);
+				eL[v] = Math.max(eL[l] + e[r], e[l] + eL[r]);
+				envL[v] = Math.max(Math.max(envL[l] + e[r], env[l] + eL[r]), envL[r]);
+			}
+		}
+
+		private int responsibleForEL(int v) {
+			while (v < size)
+				v = eL[v] == eL[2 * v] + e[2 * v + 1] ? 2 * v : 2 * v + 1;
+			return v - size;
+		}
+
+		private int responsibleForEnvL(int v) {
+			while (v < size) {
+				int l = 2 * v, r = l + 1;
+				if (envL[v] == envL[r])
+					v = r;
+				else if (envL[v] == env[l] + eL[r])
+					return responsibleForEL(r);
+				else
+					v = l;
+			}
+			return v - size;
+		}
+
+		/**
+		 * Computes in bounds new earliest start times from the current values in est and lct (lst and ect are not used). Returns false if an overload is
+		 * detected.
+		 */
+		private boolean edgeFinding(boolean mirrored) {
+			int[] byEst = this.byEst[mirrored ? 1 : 0], byLct = this.byLct[mirrored ? 1 : 0];
+			sort(byEst, est, true);
+			sort(byLct, lct, false);
+			for (int k = 0; k < nTasks; k++) {
+				ranks[byEst[k]] = k;
+				positions[byLct[k]] = k;
+			}
+			Arrays.fill(e, 0);
+			Arrays.fill(env, MINUS_INFINITY);
+			Arrays.fill(eL, 0);
+			Arrays.fill(envL, MINUS_INFINITY);
+			for (int i = 0; i < nTasks; i++) {
+				bounds[i] = est[i];
+				precs[i] = -1;
+				if (consuming(i))
+					setLeaf(ranks[i], (long) wwidths[i] * wheights[i], limit * est[i] + (long) wwidths[i] * wheights[i], false);
+			}
+			// detection of precedences (the set of tasks not yet processed, called Theta, must be executed before detected tasks)
+			for (int k = 0; k < nTasks; k++) {
+				int j = byLct[k];
+				if (!consuming(j))
+					continue;
+				if (env[1] > limit * lct[j])
+					return false;
+				while (envL[1] > limit * lct[j]) {
+					int i = byEst[responsibleForEnvL(1)];
+					precs[i] = k;
+					setLeaf(ranks[i], 0, MINUS_INFINITY, true);
+				}
+				setLeaf(ranks[j], (long) wwidths[j] * wheights[j], limit * est[j] + (long) wwidths[j] * wheights[j], true);
+			}
+			// adjustments, computed once for each distinct height of the tasks for which a precedence has been detected
+			for (int i = 0; i < nTasks; i++) {
+				if (precs[i] == -1)
+					continue;
+				computeUpdates(byEst, byLct, wheights[i]);
+				for (int l = i; l < nTasks; l++)
+					if (precs[l] != -1 && wheights[l] == wheights[i]) {
+						bounds[l] = Math.max(bounds[l], updates[precs[l]]);
+						precs[l] = -1;
+					}
+			}
+			return true;
+		}
+
+		private void insert(int rank, long energy, long est, long c) {
+			int v = size + rank;
+			e[v] = energy;
+			env[v] = limit * est + energy;
+			envc[v] = (limit - c) * est + energy;
+			for (v = v / 2; v > 0; v = v / 2) {
+				int l = 2 * v, r = l + 1;
+				e[v] = e[l] + e[r];
+				env[v] = Math.max(env[l] + e[r], env[r]);
+				envc[v] = Math.max(envc[l] + e[r], envc[r]);
+			}
+		}
+
+		/**
+		 * Returns the rank of the rightmost leaf whose c-envelope (counting the energy of all leaves at its right) is greater than the specified value;
+		 * envc[1] must be greater than this value
+		 */
+		private int rightmostAbove(long value) {
+			int v = 1;
+			long right = 0; // energy of the leaves at the right of the current node
+			while (v < size) {
+				int r = 2 * v + 1;
+				if (envc[r] + right > value)
+					v = r;
+				else {
+					right += e[r];
+					v = 2 * v;
+				}
+			}
+			return v - size;
+		}
+
+		/**
+		 * Returns the envelope of the tree when only leaves at the specified rank, or before it, are considered as starting points (the energy of all leaves
+		 * being counted)
+		 */
+		private long envelopeUpTo(int rank) {
+			int v = size + rank;
+			long envelope = env[v];
+			for (; v > 1; v = v / 2)
+				envelope = v % 2 == 0 ? envelope + e[v + 1] : Math.max(env[v - 1] + e[v], envelope);
+			return envelope;
+		}
+
+		/**
+		 * Computes in updates, for each position k in byLct, the best earliest start time that can be derived for a task of height c that must be
+		 * executed after the tasks at positions k or more in byLct (i.e., with the smallest latest completion times). Tasks are inserted by non-decreasing
+		 * lct in a Theta-tree: for each of them, the rightmost est from which the tasks of the tree have some energy in excess (with respect to the
+		 * capacity limit-c) is found, and the update is derived from the envelope of the tree restricted to this est, which takes O(n log n) time.
+		 */
+		private void computeUpdates(int[] byEst, int[] byLct, long c) {
+			Arrays.fill(e, 0);
+			Arrays.fill(env, MINUS_INFINITY);
+			Arrays.fill(envc, MINUS_INFINITY);
+			long update = Long.MIN_VALUE;
+			for (int k = nTasks - 1; k >= 0; k--) {
+				int j = byLct[k];
+				if (consuming(j)) {
+					insert(ranks[j], (long) wwidths[j] * wheights[j], est[j], c);
+					long maxEnergy = (limit - c) * lct[j];
+					if (envc[1] > maxEnergy) {
+						long envelope = envelopeUpTo(rightmostAbove(maxEnergy));
+						update = Math.max(update, -Math.floorDiv(maxEnergy - envelope, c)); // ceil((envelope - maxEnergy) / c)
+					}
+				}
+				updates[k] = update;
+			}
+		}
+
+		private void snapshot(boolean mirrored) {
+			for (int i = 0; i < nTasks; i++) {
+				long first = starts[i].dom.firstValue(), last = starts[i].dom.lastValue();
+				est[i] = mirrored ? -(last + maxWidth(i)) : first;
+				lct[i] = mirrored ? -first : last + maxWidth(i);
+				lst[i] = last;
+				ect[i] = first + wwidths[i];
+			}
+		}
+
+		/**
+		 * Builds the profile of mandatory parts from the events of the timetable reasoner (kept sorted from one call to the next)
+		 */
+		private void buildProfile() {
+			timetableReasoner.sortEvents();
+			int[] events = timetableReasoner.events, ttimes = timetableReasoner.times;
+			// we store, in order, breakpoints with the energy accumulated before them, and the height just after them
+			nBreakpoints = 0;
+			for (int j = 0; j < events.length && ttimes[events[j]] != Integer.MAX_VALUE; j++) {
+				long t = ttimes[events[j]], h = timetableReasoner.offset(events[j]);
+				if (h == 0)
+					continue;
+				if (nBreakpoints > 0 && times[nBreakpoints - 1] == t) {
+					heights[nBreakpoints - 1] += h;
+					continue;
+				}
+				energies[nBreakpoints] = nBreakpoints == 0 ? 0 : energies[nBreakpoints - 1] + heights[nBreakpoints - 1] * (t - times[nBreakpoints - 1]);
+				heights[nBreakpoints] = (nBreakpoints == 0 ? 0 : heights[nBreakpoints - 1]) + h;
+				times[nBreakpoints++] = t;
+			}
+		}
+
+		/**
+		 * Returns the energy of the profile (mandatory parts) before the specified time
+		 */
+		private long profileEnergy(long time) {
+			int left = 0, right = nBreakpoints - 1, k = -1; // k is the last breakpoint at or before time
+			while (left <= right) {
+				int mid = (left + right) >>> 1;
+				if (times[mid] <= time) {
+					k = mid;
+					left = mid + 1;
+				} else
+					right = mid - 1;
+			}
+			return k == -1 ? 0 : energies[k] + heights[k] * (time - times[k]);
+		}
+
+		private long overlap(long s1, long e1, long s2, long e2) {
+			return Math.max(0, Math.min(e1, e2) - Math.max(s1, s2));
+		}
+
+		/**
+		 * Performs time-table edge-finding, from the current values in est, lct, lst and ect. Returns false if an inconsistency is detected. Intervals [a,b)
+		 * are considered for all pairs of est and lct, and the bounds of all tasks are checked against each interval, which gives a time complexity in
+		 * O(n^3) (no incremental computation, apart from the profile and the order of tasks, which are maintained from one call to the next).
+		 */
+		private boolean timetableEdgeFinding() {
+			buildProfile();
+			for (int i = 0; i < nTasks; i++) {
+				lows[i] = est[i];
+				highs[i] = lst[i];
+			}
+			int[] byEst = this.byEst[0];
+			sort(byEst, est, true);
+			for (int jb = 0; jb < nTasks; jb++) {
+				if (!consuming(jb))
+					continue;
+				long b = lct[jb], energyBeforeB = profileEnergy(b);
+				long free = 0; // free energy of the tasks that must be executed in [a,b)
+				for (int k = nTasks - 1; k >= 0; k--) { // by non-increasing est
+					int l = byEst[k];
+					if (consuming(l) && lct[l] <= b)
+						free += (long) wheights[l] * (wwidths[l] - Math.max(0, ect[l] - lst[l]));
+					long a = est[l];
+					if (a >= b || (k > 0 && est[byEst[k - 1]] == a))
+						continue; // a is not a relevant time point, or tasks with the same est must be taken into account before
+					long available = limit * (b - a) - (energyBeforeB - profileEnergy(a)) - free;
+					if (available < 0)
+						return false;
+					for (int i = 0; i < nTasks; i++) {
+						if (!consuming(i) || (a <= est[i] && lct[i] <= b))
+							continue;
+						long h = wheights[i], p = wwidths[i];
+						long reserve = available + (lst[i] < ect[i] ? h * overlap(lst[i], ect[i], a, b) : 0);
+						if (h * overlap(est[i], est[i] + p, a, b) > reserve)
+							lows[i] = Math.max(lows[i], Math.max(a, b - reserve / h));
+						if (h * overlap(lst[i], lst[i] + p, a, b) > reserve)
+							highs[i] = Math.min(highs[i], a - p + reserve / h);
+					}
+				}
+			}
+			for (int i = 0; i < nTasks; i++) {
+				if (lows[i] > est[i] && starts[i].dom.removeValuesLT(lows[i]) == false)
+					return false;
+				if (highs[i] < lst[i] && starts[i].dom.removeValuesGT(highs[i]) == false)
+					return false;
+			}
+			return true;
+		}
+
+		private boolean filter() {
+			snapshot(false);
+			if (!edgeFinding(false))
+				return false;
+			for (int i = 0; i < nTasks; i++)
+				if (bounds[i] > est[i] && starts[i].dom.removeValuesLT(bounds[i]) == false)
+					return false;
+			snapshot(true); // the mirrored problem, for computing new latest start times
+			if (!edgeFinding(true))
+				return false;
+			for (int i = 0; i < nTasks; i++)
+				if (bounds[i] > est[i] && starts[i].dom.removeValuesGT(-bounds[i] - wwidths[i]) == false)
+					return false; // the end of task i is at most -bounds[i], and its width at least wwidths[i]
+			if (level < 2 || nTasks > TIMETABLE_EDGE_FINDING_LIMIT)
+				return true;
+			snapshot(false);
+			return timetableEdgeFinding();
+		}
+	}
+
 	/**********************************************************************************************
 	 * Class members
 	 *********************************************************************************************/
@@ -358,6 +728,11 @@ public abstract class Cumulative extends ConstraintGlobal
 	 */
 	protected EnergeticReasoner energeticReasoner;
 
+	/**
+	 * The object that allows us to reason with edge-finding (and time-table edge-finding); null if not used
+	 */
+	protected EdgeFindingReasoner edgeFindingReasoner;
+
 	/**
 	 * The current margin (in term of volume) that we globally have
 	 */
@@ -419,6 +794,8 @@ public abstract class Cumulative extends ConstraintGlobal
 		this.limit = limit;
 		this.timetableReasoner = new TimetableReasoner();
 		this.energeticReasoner = new EnergeticReasoner();
+		int level = pb.head.control.global.cumulative;
+		this.edgeFindingReasoner = level > 0 ? new EdgeFindingReasoner(level) : null;
 	}
 
 	@Override
@@ -442,7 +819,9 @@ public abstract class Cumulative extends ConstraintGlobal
 		// if (b == Boolean.TRUE)
 		// return true;
 
-		return timetableReasoner.filter();
+		if (timetableReasoner.filter() == false)
+			return false;
+		return edgeFindingReasoner == null || edgeFindingReasoner.filter();
 	}
 
 	@Override
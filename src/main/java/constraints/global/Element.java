@@ -12,12 +12,14 @@ package constraints.global;
 
 import static utility.Kit.control;
 
+import java.util.Arrays;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 import org.xcsp.common.Utilities;
 
 import constraints.ConstraintGlobal;
+import interfaces.Observers.ObserverOnBacktracks.ObserverOnBacktracksSystematic;
 import interfaces.Tags.TagAC;
 import interfaces.Tags.TagCallCompleteFiltering;
 import interfaces.Tags.TagNotSymmetric;
@@ -47,6 +49,137 @@ public abstract class Element extends ConstraintGlobal implements TagAC, TagCall
 		super(pb, scp);
 	}
 
+	/**
+	 * Lists of watchers, used for recording sentinels: each watcher (e.g., an index) has a target (e.g., a value) as sentinel, and the watchers of each target
+	 * are doubly linked so that, when a target is no more valid, only the watchers of this target must be reconsidered. Watchers are not restored when
+	 * backtracking, because a sentinel that was valid at some depth remains valid at lower depths.
+	 */
+	static final class Watchers {
+
+		/**
+		 * targets[w] is the target (sentinel) of the watcher w, or -1
+		 */
+		final int[] targets;
+
+		/**
+		 * heads[t] is the first watcher of the target t, or -1
+		 */
+		private final int[] heads;
+
+		/**
+		 * nexts[w] and prevs[w] are the watchers following and preceding w in the list of its target, or -1
+		 */
+		private final int[] nexts, prevs;
+
+		Watchers(int nWatchers, int nTargets) {
+			this.targets = Kit.repeat(-1, nWatchers);
+			this.heads = Kit.repeat(-1, nTargets);
+			this.nexts = Kit.repeat(-1, nWatchers);
+			this.prevs = Kit.repeat(-1, nWatchers);
+		}
+
+		int first(int t) {
+			return heads[t];
+		}
+
+		int next(int w) {
+			return nexts[w];
+		}
+
+		/**
+		 * Records that the specified target is the sentinel of the specified watcher
+		 */
+		void watch(int w, int t) {
+			if (targets[w] == t)
+				return;
+			if (targets[w] != -1) { // unlinking w from the list of its current target
+				if (prevs[w] == -1)
+					heads[targets[w]] = nexts[w];
+				else
+					nexts[prevs[w]] = nexts[w];
+				if (nexts[w] != -1)
+					prevs[nexts[w]] = prevs[w];
+			}
+			targets[w] = t;
+			prevs[w] = -1;
+			nexts[w] = heads[t];
+			if (heads[t] != -1)
+				prevs[heads[t]] = w;
+			heads[t] = w;
+		}
+	}
+
+	/**
+	 * Domain sizes of the variables of a scope, as recorded at the last call of a constraint, with a trail of replaced sizes so as to restore them when
+	 * backtracking. The size of a variable is trailed at most once per depth, so that the trail grows with the number of modified variables only.
+	 */
+	static final class TrailedSizes {
+
+		/**
+		 * sizes[x] is the domain size of the variable at position x in the scope, as recorded at the last call
+		 */
+		final int[] sizes;
+
+		/**
+		 * depths[x] is the depth at which the size of the variable at position x was last trailed, or -1
+		 */
+		private final int[] depths;
+
+		/**
+		 * The trail: positions of variables, with their replaced sizes and the depths at which these sizes were previously trailed
+		 */
+		private int[] positions, oldSizes, oldDepths;
+
+		private int top = -1;
+
+		TrailedSizes(int n) {
+			this.sizes = new int[n];
+			this.depths = Kit.repeat(-1, n);
+			this.positions = new int[n];
+			this.oldSizes = new int[n];
+			this.oldDepths = new int[n];
+		}
+
+		/**
+		 * Records the specified size for the variable at position x, the current depth being the specified one
+		 */
+		void set(int x, int size, int depth) {
+			if (depths[x] != depth) {
+				if (++top == positions.length) {
+					positions = Arrays.copyOf(positions, 2 * top);
+					oldSizes = Arrays.copyOf(oldSizes, 2 * top);
+					oldDepths = Arrays.copyOf(oldDepths, 2 * top);
+				}
+				positions[top] = x;
+				oldSizes[top] = sizes[x];
+				oldDepths[top] = depths[x];
+				depths[x] = depth;
+			}
+			sizes[x] = size;
+		}
+
+		/**
+		 * Restores the sizes that were recorded before the specified depth
+		 */
+		void restoreBefore(int depth) {
+			for (; top >= 0 && depths[positions[top]] >= depth; top--) {
+				int x = positions[top];
+				sizes[x] = oldSizes[top];
+				depths[x] = oldDepths[top];
+			}
+		}
+
+		/**
+		 * Records the current domain sizes of the specified variables, while discarding the trail
+		 */
+		void reset(Variable[] scp) {
+			for (int x = 0; x < scp.length; x++)
+				sizes[x] = scp[x].dom.size();
+			Arrays.fill(depths, -1);
+			top = -1;
+		}
+	}
+
 	/**********************************************************************************************
 	 * Member
 	 *********************************************************************************************/
@@ -240,15 +373,29 @@ public abstract class Element extends ConstraintGlobal implements TagAC, TagCall
 		// ************************************************************************
 
 		/**
-		 * The constraint Element with an integer variable used as target value
+		 * The constraint Element with an integer variable used as target value. Each index i has a sentinel (a value index of vdom whose value is in the
+		 * domain of the ith variable of the list), and each value index of vdom has a sentinel (an index i such that the value is in the domain of the ith
+		 * variable of the list). Reverse lists (watchers) allow us to only consider, at each call, the removed indexes, removed values of vdom and values
+		 * removed from the domains of the list variables (deltas obtained from trailed domain sizes, the list variables modified since the last call being
+		 * identified by their timestamps).
 		 */
-		public final static class ElementVar extends ElementList {
+		public final static class ElementVar extends ElementList implements ObserverOnBacktracksSystematic {
 
 			@Override
 			public boolean checkIndexes(int[] t) {
 				return list[t[ipos]].dom.toVal(t[t[ipos]]) == vdom.toVal(t[vpos]);
 			}
 
+			@Override
+			public void restoreBefore(int depth) {
+				if (!synced)
+					return;
+				if (depth <= syncDepth)
+					synced = false; // sizes recorded by the full filtering are no more valid
+				else
+					lastSizes.restoreBefore(depth);
+			}
+
 			/**
 			 * The domain of the value variable
 			 */
@@ -260,86 +407,168 @@ public abstract class Element extends ConstraintGlobal implements TagAC, TagCall
 			private final int vpos;
 
 			/**
-			 * indexSentinels[i] stores, for the ith variable of the list (vector), a value that is both in its domain and in vdom
+			 * For each index i of the list (vector), the sentinel (target) is a value index b of vdom such that the value of b is in the domain of the ith
+			 * variable; watchers of b are the indexes whose sentinel is b
+			 */
+			private final Watchers indexSentinels;
+
+			/**
+			 * For each value index b of vdom, the sentinel (target) is an index i such that the value of b is in the domain of the ith variable of the
+			 * list; watchers of i are the value indexes whose sentinel is i
+			 */
+			private final Watchers valueSentinels;
+
+			/**
+			 * Indicates if filtering can be driven by deltas (not possible if the index or the value variable also occurs in the list)
+			 */
+			private final boolean incremental;
+
+			/**
+			 * The domain sizes of the variables of the scope recorded at the last call
+			 */
+			private final TrailedSizes lastSizes;
+
+			/**
+			 * Indicates if sentinels and recorded domain sizes have been established (by a full filtering)
 			 */
-			private final int[] indexSentinels;
+			private boolean synced;
 
 			/**
-			 * valueSentinels[a] stores, for each index a of a value v in vdom, the index i of a variable in list such that v is in the domain of this variable
+			 * The depth at which the last full filtering was performed
 			 */
-			private final int[] valueSentinels;
+			private int syncDepth;
 
 			public ElementVar(Problem pb, Variable[] list, Variable index, Variable value) {
 				super(pb, list, index, value);
 				this.vdom = value.dom;
 				this.vpos = IntStream.range(0, scp.length).filter(i -> scp[i] == value).findFirst().getAsInt();
-				this.valueSentinels = Kit.repeat(-1, value.dom.initSize());
-				this.indexSentinels = Kit.repeat(Integer.MIN_VALUE, list.length);
+				this.indexSentinels = new Watchers(list.length, vdom.initSize());
+				this.valueSentinels = new Watchers(vdom.initSize(), list.length);
+				this.incremental = ipos >= list.length && vpos >= list.length;
+				this.lastSizes = incremental ? new TrailedSizes(scp.length) : null;
 				// TODO control that each value in vdom is in at least one domain of the list?
 			}
 
 			private boolean validIndex(int i) {
-				int v = indexSentinels[i];
-				if (v != Integer.MIN_VALUE && list[i].dom.containsValue(v) && vdom.containsValue(v))
-					return true;
+				int b = indexSentinels.targets[i];
 				Domain dom = list[i].dom;
+				if (b != -1 && vdom.contains(b) && dom.containsValue(vdom.toVal(b)))
+					return true;
 				for (int a = dom.first(); a != -1; a = dom.next(a)) {
-					v = dom.toVal(a);
-					if (vdom.containsValue(v)) {
-						indexSentinels[i] = v;
+					b = vdom.toIdx(dom.toVal(a));
+					if (b >= 0 && vdom.contains(b)) {
+						indexSentinels.watch(i, b);
 						return true;
 					}
 				}
 				return false;
 			}
 
-			private boolean filterIndex() {
-				return idom.removeIndexesChecking(i -> !validIndex(i));
-			}
-
-			private boolean validValue(int a) {
-				int v = vdom.toVal(a);
-				int sentinel = valueSentinels[a];
-				if (sentinel != -1 && idom.contains(sentinel) && list[sentinel].dom.containsValue(v))
+			private boolean validValue(int b) {
+				int v = vdom.toVal(b), i = valueSentinels.targets[b];
+				if (i != -1 && idom.contains(i) && list[i].dom.containsValue(v))
 					return true;
-				for (int i = idom.first(); i != -1; i = idom.next(i)) {
+				for (i = idom.first(); i != -1; i = idom.next(i)) {
 					if (list[i].dom.containsValue(v)) {
-						valueSentinels[a] = i;
+						valueSentinels.watch(b, i);
 						return true;
 					}
 				}
 				return false;
 			}
 
+			private boolean filterIndex() {
+				return idom.removeIndexesChecking(i -> !validIndex(i));
+			}
+
 			private boolean filterValue() {
-				return vdom.removeIndexesChecking(a -> !validValue(a));
+				return vdom.removeIndexesChecking(b -> !validValue(b));
 			}
 
-			@Override
-			public boolean runPropagator(Variable dummy) {
-				// If idom is not singleton, we try to prune values :
-				// - in vdom, we prune the values which are not in any domain of the list variables
-				// - in idom, we prune the values i for which there is no v such that list[i].dom and vdom
-				// both contain v
-				if (idom.size() > 1) {
+			private boolean filterFully() {
+				// updating vdom (and valueSentinels)
+				if (filterValue() == false)
+					return false;
+				while (true) {
+					// updating idom (and indexSentinels)
+					int sizeBefore = idom.size();
+					if (filterIndex() == false)
+						return false;
+					if (sizeBefore == idom.size())
+						break;
 					// updating vdom (and valueSentinels)
+					sizeBefore = vdom.size();
 					if (filterValue() == false)
 						return false;
-					while (true) {
-						// updating idom (and indexSentinels)
-						int sizeBefore = idom.size();
-						if (filterIndex() == false)
-							return false;
-						if (sizeBefore == idom.size())
-							break;
-						// updating vdom (and valueSentinels)
-						sizeBefore = vdom.size();
-						if (filterValue() == false)
+					if (sizeBefore == vdom.size())
+						break;
+				}
+				return true;
+			}
+
+			private boolean filterFromDeltas() {
+				int depth = problem.solver.depth();
+				int[] sizes = lastSizes.sizes;
+				// values removed from the domains of list variables modified since the last call may invalidate some sentinels
+				int sizeBefore = idom.size();
+				for (int i = idom.first(); i != -1; i = idom.next(i)) {
+					Domain dom = list[i].dom;
+					if (list[i].time < time || sizes[i] == dom.size())
+						continue;
+					for (int cnt = sizes[i] - dom.size(), a = dom.lastRemoved(); cnt > 0; cnt--, a = dom.prevRemoved(a)) {
+						int b = vdom.toIdx(dom.toVal(a));
+						if (b >= 0 && valueSentinels.targets[b] == i && vdom.contains(b) && !validValue(b) && vdom.remove(b) == false)
 							return false;
-						if (sizeBefore == vdom.size())
-							break;
 					}
+					lastSizes.set(i, dom.size(), depth);
+					if (!validIndex(i))
+						idom.removeElementary(i);
+				}
+				if (idom.afterElementaryCalls(sizeBefore) == false)
+					return false;
+				// removed indexes and values are then handled until a fixpoint is reached (list variables are not modified meanwhile)
+				while (sizes[ipos] != idom.size() || sizes[vpos] != vdom.size()) {
+					// values whose sentinels are removed indexes must find new sentinels
+					for (int cnt = sizes[ipos] - idom.size(), i = idom.lastRemoved(); cnt > 0; cnt--, i = idom.prevRemoved(i)) {
+						for (int b = valueSentinels.first(i), next; b != -1; b = next) {
+							next = valueSentinels.next(b);
+							if (vdom.contains(b) && !validValue(b) && vdom.remove(b) == false)
+								return false;
+						}
+					}
+					lastSizes.set(ipos, idom.size(), depth);
+					// indexes whose sentinels are removed values must find new sentinels
+					for (int cnt = sizes[vpos] - vdom.size(), b = vdom.lastRemoved(); cnt > 0; cnt--, b = vdom.prevRemoved(b)) {
+						for (int i = indexSentinels.first(b), next; i != -1; i = next) {
+							next = indexSentinels.next(i);
+							if (idom.contains(i) && !validIndex(i) && idom.remove(i) == false)
+								return false;
+						}
+					}
+					lastSizes.set(vpos, vdom.size(), depth);
 				}
+				return true;
+			}
+
+			private boolean filterIncrementally() {
+				if (synced)
+					return filterFromDeltas();
+				if (filterFully() == false)
+					return false;
+				lastSizes.reset(scp);
+				syncDepth = problem.solver.depth();
+				synced = true;
+				return true;
+			}
+
+			@Override
+			public boolean runPropagator(Variable dummy) {
+				// If idom is not singleton, we try to prune values :
+				// - in vdom, we prune the values which are not in any domain of the list variables
+				// - in idom, we prune the values i for which there is no v such that list[i].dom and vdom
+				// both contain v
+				if (idom.size() > 1 && (incremental ? filterIncrementally() : filterFully()) == false)
+					return false;
 				// If index is singleton, we update dom(list[index]) and vdom so that they are both equal to the
 				// intersection of the two domains
 				if (idom.size() == 1) {
@@ -500,9 +729,11 @@ public abstract class Element extends ConstraintGlobal implements TagAC, TagCall
 		// ************************************************************************
 
 		/**
-		 * The matrix variant of the constraint Element with an integer variable used as target value
+		 * The matrix variant of the constraint Element with an integer variable used as target value. As for ElementVar, sentinels are recorded with
+		 * reverse lists (watchers), so that only deltas (removed row indexes, column indexes, values and values removed from the domains of the cells)
+		 * must be considered at each call; the cells modified since the last call are identified by their timestamps.
 		 */
-		public final static class ElementMatrixVar extends ElementMatrix {
+		public final static class ElementMatrixVar extends ElementMatrix implements ObserverOnBacktracksSystematic {
 
 			@Override
 			public boolean isSatisfiedBy(int[] t) {
@@ -510,6 +741,16 @@ public abstract class Element extends ConstraintGlobal implements TagAC, TagCall
 				return t[i * matrix[0].length + j] == t[vpos];
 			}
 
+			@Override
+			public void restoreBefore(int depth) {
+				if (!synced)
+					return;
+				if (depth <= syncDepth)
+					synced = false; // sizes recorded by the full filtering are no more valid
+				else
+					lastSizes.restoreBefore(depth);
+			}
+
 			/**
 			 * The domain of the value variable
 			 */
@@ -520,34 +761,73 @@ public abstract class Element extends ConstraintGlobal implements TagAC, TagCall
 			 */
 			private final int vpos;
 
-			private final int[] rindexColSentinels, rindexValSentinels;
-			private final int[] cindexRowSentinels, cindexValSentinels;
-			private final int[] valueRowSentinels, valueColSentinels;
+			/**
+			 * Sentinels of row indexes: a column index and a value index such that the value is in the domain of the corresponding cell
+			 */
+			private final Watchers rowColSentinels, rowValSentinels;
+
+			/**
+			 * Sentinels of column indexes: a row index and a value index such that the value is in the domain of the corresponding cell
+			 */
+			private final Watchers colRowSentinels, colValSentinels;
+
+			/**
+			 * Sentinels of value indexes: a row index and a column index such that the value is in the domain of the corresponding cell
+			 */
+			private final Watchers valueRowSentinels, valueColSentinels;
+
+			/**
+			 * Indicates if filtering can be driven by deltas (not possible if an index or the value variable also occurs in the matrix)
+			 */
+			private final boolean incremental;
+
+			/**
+			 * The domain sizes of the variables of the scope recorded at the last call
+			 */
+			private final TrailedSizes lastSizes;
+
+			/**
+			 * Indicates if sentinels and recorded domain sizes have been established (by a full filtering)
+			 */
+			private boolean synced;
+
+			/**
+			 * The depth at which the last full filtering was performed
+			 */
+			private int syncDepth;
 
 			public ElementMatrixVar(Problem pb, Variable[][] matrix, Variable rindex, Variable cindex, Variable value) {
 				super(pb, matrix, rindex, cindex, value);
 				this.vdom = value.dom;
 				this.vpos = IntStream.range(0, scp.length).filter(i -> scp[i] == value).findFirst().getAsInt();
-				int n = matrix.length, m = matrix[0].length, d = value.dom.initSize();
-				this.rindexColSentinels = Kit.repeat(-1, n);
-				this.rindexValSentinels = Kit.repeat(-1, n);
-				this.cindexRowSentinels = Kit.repeat(-1, m);
-				this.cindexValSentinels = Kit.repeat(-1, m);
-				this.valueRowSentinels = Kit.repeat(-1, d);
-				this.valueColSentinels = Kit.repeat(-1, d);
+				int n = rdom.initSize(), m = cdom.initSize(), d = vdom.initSize();
+				this.rowColSentinels = new Watchers(n, m);
+				this.rowValSentinels = new Watchers(n, d);
+				this.colRowSentinels = new Watchers(m, n);
+				this.colValSentinels = new Watchers(m, d);
+				this.valueRowSentinels = new Watchers(d, n);
+				this.valueColSentinels = new Watchers(d, m);
+				int nCells = matrix.length * matrix[0].length;
+				this.incremental = Stream.of(matrix).allMatch(t -> t.length == matrix[0].length) && rpos >= nCells && cpos >= nCells && vpos >= nCells
+						&& vpos != rpos && vpos != cpos;
+				this.lastSizes = incremental ? new TrailedSizes(scp.length) : null;
+			}
+
+			private Domain cell(int i, int j) {
+				return matrix[rdom.toVal(i)][cdom.toVal(j)].dom;
 			}
 
 			private boolean validRowIndex(int i) {
-				int j = rindexColSentinels[i], v = rindexValSentinels[i];
-				if (j != -1 && cdom.contains(j) && matrix[rdom.toVal(i)][cdom.toVal(j)].dom.containsValue(v) && vdom.containsValue(v))
+				int j = rowColSentinels.targets[i], b = rowValSentinels.targets[i];
+				if (j != -1 && cdom.contains(j) && vdom.contains(b) && cell(i, j).containsValue(vdom.toVal(b)))
 					return true;
 				for (j = cdom.first(); j != -1; j = cdom.next(j)) {
-					Domain dom = matrix[rdom.toVal(i)][cdom.toVal(j)].dom;
+					Domain dom = cell(i, j);
 					for (int a = dom.first(); a != -1; a = dom.next(a)) {
-						int va = dom.toVal(a);
-						if (vdom.containsValue(va)) {
-							rindexColSentinels[i] = j;
-							rindexValSentinels[i] = va;
+						b = vdom.toIdx(dom.toVal(a));
+						if (b >= 0 && vdom.contains(b)) {
+							rowColSentinels.watch(i, j);
+							rowValSentinels.watch(i, b);
 							return true;
 						}
 					}
@@ -556,16 +836,16 @@ public abstract class Element extends ConstraintGlobal implements TagAC, TagCall
 			}
 
 			private boolean validColIndex(int j) {
-				int i = cindexRowSentinels[j], v = cindexValSentinels[j];
-				if (i != -1 && rdom.contains(i) && matrix[rdom.toVal(i)][cdom.toVal(j)].dom.containsValue(v) && vdom.containsValue(v))
+				int i = colRowSentinels.targets[j], b = colValSentinels.targets[j];
+				if (i != -1 && rdom.contains(i) && vdom.contains(b) && cell(i, j).containsValue(vdom.toVal(b)))
 					return true;
 				for (i = rdom.first(); i != -1; i = rdom.next(i)) {
-					Domain dom = matrix[rdom.toVal(i)][cdom.toVal(j)].dom;
+					Domain dom = cell(i, j);
 					for (int a = dom.first(); a != -1; a = dom.next(a)) {
-						int va = dom.toVal(a);
-						if (vdom.containsValue(va)) {
-							cindexRowSentinels[j] = i;
-							cindexValSentinels[j] = va;
+						b = vdom.toIdx(dom.toVal(a));
+						if (b >= 0 && vdom.contains(b)) {
+							colRowSentinels.watch(j, i);
+							colValSentinels.watch(j, b);
 							return true;
 						}
 					}
@@ -577,16 +857,16 @@ public abstract class Element extends ConstraintGlobal implements TagAC, TagCall
 				return rdom.removeIndexesChecking(i -> !validRowIndex(i)) && cdom.removeIndexesChecking(j -> !validColIndex(j));
 			}
 
-			private boolean validValue(int a) {
-				int va = vdom.toVal(a);
-				int i = valueRowSentinels[a], j = valueColSentinels[a];
-				if (i != -1 && rdom.contains(i) && cdom.contains(j) && matrix[rdom.toVal(i)][cdom.toVal(j)].dom.containsValue(va))
+			private boolean validValue(int b) {
+				int v = vdom.toVal(b);
+				int i = valueRowSentinels.targets[b], j = valueColSentinels.targets[b];
+				if (i != -1 && rdom.contains(i) && cdom.contains(j) && cell(i, j).containsValue(v))
 					return true;
 				for (i = rdom.first(); i != -1; i = rdom.next(i))
 					for (j = cdom.first(); j != -1; j = cdom.next(j)) {
-						if (matrix[rdom.toVal(i)][cdom.toVal(j)].dom.containsValue(va)) {
-							valueRowSentinels[a] = i;
-							valueColSentinels[a] = j;
+						if (cell(i, j).containsValue(v)) {
+							valueRowSentinels.watch(b, i);
+							valueColSentinels.watch(b, j);
 							return true;
 						}
 					}
@@ -594,33 +874,128 @@ public abstract class Element extends ConstraintGlobal implements TagAC, TagCall
 			}
 
 			private boolean filterValue() {
-				return vdom.removeIndexesChecking(a -> !validValue(a));
+				return vdom.removeIndexesChecking(b -> !validValue(b));
 			}
 
-			@Override
-			public boolean runPropagator(Variable dummy) {
-				// If indexes are not both singleton, we try to prune values :
-				// - in vdom, we prune the values which are not in any of the domains of the list variables
-				// - in rdom and cdom, we prune the values that cannot lead to any value in vdom
-				if (rdom.size() > 1 || cdom.size() > 1) {
+			private boolean filterFully() {
+				// updating vdom (and some sentinels)
+				if (filterValue() == false)
+					return false;
+				while (true) {
+					// updating rdom,and cdom (and some sentinels)
+					int sizeBefore = rdom.size() + cdom.size();
+					if (filterIndex() == false)
+						return false;
+					if (sizeBefore == rdom.size() + cdom.size())
+						break;
 					// updating vdom (and some sentinels)
+					sizeBefore = vdom.size();
 					if (filterValue() == false)
 						return false;
-					while (true) {
-						// updating rdom,and cdom (and some sentinels)
-						int sizeBefore = rdom.size() + cdom.size();
-						if (filterIndex() == false)
+					if (sizeBefore == vdom.size())
+						break;
+				}
+				return true;
+			}
+
+			/**
+			 * Reconsiders the values of vdom watching (through the specified watchers) the specified target
+			 */
+			private boolean reconsiderValues(Watchers watchers, int t) {
+				for (int b = watchers.first(t), next; b != -1; b = next) {
+					next = watchers.next(b);
+					if (vdom.contains(b) && !validValue(b) && vdom.remove(b) == false)
+						return false;
+				}
+				return true;
+			}
+
+			private boolean filterFromDeltas() {
+				int depth = problem.solver.depth(), m = matrix[0].length;
+				int[] sizes = lastSizes.sizes;
+				// values removed from the domains of cells modified since the last call may invalidate some sentinels
+				for (int i = rdom.first(); i != -1; i = rdom.next(i))
+					for (int j = cdom.first(); j != -1 && rdom.contains(i); j = cdom.next(j)) {
+						int x = rdom.toVal(i) * m + cdom.toVal(j);
+						Domain dom = scp[x].dom;
+						if (scp[x].time < time || sizes[x] == dom.size())
+							continue;
+						for (int cnt = sizes[x] - dom.size(), a = dom.lastRemoved(); cnt > 0; cnt--, a = dom.prevRemoved(a)) {
+							int b = vdom.toIdx(dom.toVal(a));
+							if (b < 0)
+								continue;
+							if (valueRowSentinels.targets[b] == i && valueColSentinels.targets[b] == j && vdom.contains(b) && !validValue(b)
+									&& vdom.remove(b) == false)
+								return false;
+							if (rowColSentinels.targets[i] == j && rowValSentinels.targets[i] == b && rdom.contains(i) && !validRowIndex(i)
+									&& rdom.remove(i) == false)
+								return false;
+							if (colRowSentinels.targets[j] == i && colValSentinels.targets[j] == b && cdom.contains(j) && !validColIndex(j)
+									&& cdom.remove(j) == false)
+								return false;
+						}
+						lastSizes.set(x, dom.size(), depth);
+					}
+				// removed indexes and values are then handled until a fixpoint is reached (cells are not modified meanwhile)
+				while (sizes[rpos] != rdom.size() || sizes[cpos] != cdom.size() || sizes[vpos] != vdom.size()) {
+					// values and columns whose sentinels involve removed row indexes
+					for (int cnt = sizes[rpos] - rdom.size(), i = rdom.lastRemoved(); cnt > 0; cnt--, i = rdom.prevRemoved(i)) {
+						if (reconsiderValues(valueRowSentinels, i) == false)
 							return false;
-						if (sizeBefore == rdom.size() + cdom.size())
-							break;
-						// updating vdom (and some sentinels)
-						sizeBefore = vdom.size();
-						if (filterValue() == false)
+						for (int j = colRowSentinels.first(i), next; j != -1; j = next) {
+							next = colRowSentinels.next(j);
+							if (cdom.contains(j) && !validColIndex(j) && cdom.remove(j) == false)
+								return false;
+						}
+					}
+					lastSizes.set(rpos, rdom.size(), depth);
+					// values and rows whose sentinels involve removed column indexes
+					for (int cnt = sizes[cpos] - cdom.size(), j = cdom.lastRemoved(); cnt > 0; cnt--, j = cdom.prevRemoved(j)) {
+						if (reconsiderValues(valueColSentinels, j) == false)
 							return false;
-						if (sizeBefore == vdom.size())
-							break;
+						for (int i = rowColSentinels.first(j), next; i != -1; i = next) {
+							next = rowColSentinels.next(i);
+							if (rdom.contains(i) && !validRowIndex(i) && rdom.remove(i) == false)
+								return false;
+						}
 					}
+					lastSizes.set(cpos, cdom.size(), depth);
+					// rows and columns whose sentinels involve removed values
+					for (int cnt = sizes[vpos] - vdom.size(), b = vdom.lastRemoved(); cnt > 0; cnt--, b = vdom.prevRemoved(b)) {
+						for (int i = rowValSentinels.first(b), next; i != -1; i = next) {
+							next = rowValSentinels.next(i);
+							if (rdom.contains(i) && !validRowIndex(i) && rdom.remove(i) == false)
+								return false;
+						}
+						for (int j = colValSentinels.first(b), next; j != -1; j = next) {
+							next = colValSentinels.next(j);
+							if (cdom.contains(j) && !validColIndex(j) && cdom.remove(j) == false)
+								return false;
+						}
+					}
+					lastSizes.set(vpos, vdom.size(), depth);
 				}
+				return true;
+			}
+
+			private boolean filterIncrementally() {
+				if (synced)
+					return filterFromDeltas();
+				if (filterFully() == false)
+					return false;
+				lastSizes.reset(scp);
+				syncDepth = problem.solver.depth();
+				synced = true;
+				return true;
+			}
+
+			@Override
+			public boolean runPropagator(Variable dummy) {
+				// If indexes are not both singleton, we try to prune values :
+				// - in vdom, we prune the values which are not in any of the domains of the list variables
+				// - in rdom and cdom, we prune the values that cannot lead to any value in vdom
+				if ((rdom.size() > 1 || cdom.size() > 1) && (incremental ? filterIncrementally() : filterFully()) == false)
+					return false;
 				// If indexes are both singleton, we enforce value to the corresponding cell of the matrix
 				if (rdom.size() == 1 && cdom.size() == 1) {
 					if (AC.enforceEQ(matrix[rdom.singleValue()][cdom.singleValue()].dom, vdom) == false)
@@ -0,0 +1,546 @@
+/*
+ * This file is part of the constraint solver ACE (AbsCon Essence). 
+ *
+ * Copyright (c) 2021. All rights reserved.
+ * Christophe Lecoutre, CRIL, Univ. Artois and CNRS. 
+ * 
+ * Licensed under the MIT License.
+ * See LICENSE file in the project root for full license information.
+ */
+
+package constraints.global;
+
+import static utility.Kit.control;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import constraints.ConstraintGlobal;
+import interfaces.Tags.TagCallCompleteFiltering;
+import interfaces.Tags.TagNotAC;
+import interfaces.Tags.TagNotSymmetric;
+import problem.Problem;
+import utility.Kit;
+import variables.Domain;
+import variables.Variable;
+
+/**
+ * The constraint Flow ensures that the values of the variables of a list, each one being associated with an arc of a network, form a flow respecting
+ * the balance of each node (i.e., the outgoing flow minus the incoming flow). Filtering is performed on bounds: the balance is used as for a sum at each
+ * node, and a feasible flow (with respect to the current bounds) is maintained in the residual graph. This flow is kept between calls, and repaired along
+ * augmenting paths when bounds change. When weights are given, the flow is made of minimal cost (by canceling negative cycles) and the cost is
+ * bounded; arcs are then filtered with reduced costs.
+ *
+ * @author Christophe Lecoutre
+ */
+public abstract class Flow extends ConstraintGlobal implements TagNotAC, TagCallCompleteFiltering, TagNotSymmetric {
+
+	/**
+	 * Returns true if the flow conservation holds for each node, when considering the first values of the specified tuple as the values on arcs
+	 *
+	 * @param t
+	 *            a tuple of values
+	 * @return true if the flow conservation holds for each node
+	 */
+	protected boolean isConservative(int[] t) {
+		long[] differences = new long[balance.length];
+		for (int a = 0; a < tails.length; a++) {
+			differences[tails[a]] += t[a];
+			differences[heads[a]] -= t[a];
+		}
+		return IntStream.range(0, balance.length).allMatch(i -> differences[i] == balance[i]);
+	}
+
+	/**
+	 * Returns true if a Flow constraint can be posted for the specified variables (one per arc)
+	 *
+	 * @param list
+	 *            the variables associated with the arcs
+	 * @return true if a Flow constraint can be posted
+	 */
+	public static boolean isPostable(Variable[] list) {
+		return list.length > 1 && Stream.of(list).distinct().count() == list.length;
+	}
+
+	/**
+	 * The balance of each node, i.e., the required value of the outgoing flow minus the incoming flow
+	 */
+	protected final int[] balance;
+
+	/**
+	 * tails[a] and heads[a] are the (indexes of the) nodes at the extremities of the arc a (associated with the variable at index a in the scope)
+	 */
+	protected final int[] tails, heads;
+
+	/**
+	 * outs[i] and ins[i] are the arcs leaving and entering the node i (self-loops are not recorded, as they do not influence the balance)
+	 */
+	protected final int[][] outs, ins;
+
+	/**
+	 * The current bounds of the variables associated with arcs
+	 */
+	protected final long[] lo, hi;
+
+	/**
+	 * The flow currently associated with each arc. It is not restored on backtrack, and so, at each call, it is only used as a starting point (after
+	 * being moved inside the current bounds) for finding a feasible flow.
+	 */
+	protected final long[] flow;
+
+	/**
+	 * excess[i] is the flow that must still leave the node i (or enter it if negative) for the balance of i to be respected
+	 */
+	private final long[] excess;
+
+	/**
+	 * pred[i] is the residual arc used to reach node i during a search: a for an arc a taken forward, and ~a for an arc taken backward
+	 */
+	protected final int[] pred;
+
+	/**
+	 * Used during searches in the residual graph (stamps of the nodes already reached, and nodes to be processed)
+	 */
+	private final int[] stamps, queue;
+
+	private int stamp;
+
+	/**
+	 * Fields used by Tarjan algorithm to compute the strongly connected components of the residual graph
+	 */
+	private final int[] numbers, lowLinks, cursors, stack, callStack;
+
+	/**
+	 * components[i] is the number of the strongly connected component of the residual graph containing the node i
+	 */
+	protected final int[] components;
+
+	public Flow(Problem pb, Variable[] scp, int nArcs, int[] balance, int[][] arcs) {
+		super(pb, scp);
+		control(nArcs > 1 && nArcs == arcs.length && Stream.of(arcs).allMatch(arc -> arc.length == 2));
+		int n = balance.length, smallest = Stream.of(arcs).flatMapToInt(arc -> IntStream.of(arc)).min().getAsInt();
+		control(Stream.of(arcs).flatMapToInt(arc -> IntStream.of(arc)).allMatch(v -> v - smallest < n));
+		this.balance = balance;
+		this.tails = Stream.of(arcs).mapToInt(arc -> arc[0] - smallest).toArray();
+		this.heads = Stream.of(arcs).mapToInt(arc -> arc[1] - smallest).toArray();
+		this.outs = IntStream.range(0, n).mapToObj(i -> IntStream.range(0, nArcs).filter(a -> tails[a] == i && heads[a] != i).toArray()).toArray(int[][]::new);
+		this.ins = IntStream.range(0, n).mapToObj(i -> IntStream.range(0, nArcs).filter(a -> heads[a] == i && tails[a] != i).toArray()).toArray(int[][]::new);
+		this.lo = new long[nArcs];
+		this.hi = new long[nArcs];
+		this.flow = new long[nArcs];
+		this.excess = new long[n];
+		this.pred = new int[n];
+		this.stamps = new int[n];
+		this.queue = new int[n];
+		this.numbers = new int[n];
+		this.lowLinks = new int[n];
+		this.cursors = new int[n];
+		this.components = new int[n];
+		this.stack = new int[n];
+		this.callStack = new int[n];
+	}
+
+	/**
+	 * Returns the number of residual arcs that can be possibly traversed from the node i
+	 */
+	protected final int nNeighbours(int i) {
+		return outs[i].length + ins[i].length;
+	}
+
+	/**
+	 * Returns the code of the kth residual arc leaving the node i, or Integer.MAX_VALUE if this arc is saturated. The code is a for an arc a taken
+	 * forward (from its tail to its head), and ~a for an arc a taken backward.
+	 */
+	protected final int residualArc(int i, int k) {
+		if (k < outs[i].length) {
+			int a = outs[i][k];
+			return flow[a] < hi[a] ? a : Integer.MAX_VALUE;
+		}
+		int a = ins[i][k - outs[i].length];
+		return flow[a] > lo[a] ? ~a : Integer.MAX_VALUE;
+	}
+
+	/**
+	 * Returns the node reached by the residual arc whose code is specified
+	 */
+	protected final int target(int code) {
+		return code >= 0 ? heads[code] : tails[~code];
+	}
+
+	/**
+	 * Returns the node from which the residual arc whose code is specified starts
+	 */
+	protected final int source(int code) {
+		return code >= 0 ? tails[code] : heads[~code];
+	}
+
+	/**
+	 * Returns the residual capacity of the residual arc whose code is specified
+	 */
+	protected final long capacity(int code) {
+		return code >= 0 ? hi[code] - flow[code] : flow[~code] - lo[~code];
+	}
+
+	/**
+	 * Pushes the specified quantity of flow along the residual arc whose code is specified
+	 */
+	protected final void push(int code, long quantity) {
+		if (code >= 0)
+			flow[code] += quantity;
+		else
+			flow[~code] -= quantity;
+	}
+
+	/**
+	 * Returns the sum of the domain sizes of the variables in the scope
+	 */
+	protected final long sizes() {
+		long sum = 0;
+		for (Variable x : scp)
+			sum += x.dom.size();
+		return sum;
+	}
+
+	/**
+	 * Filters the bounds of arcs, by reasoning on the balance of each node (as for a sum). Returns false if an inconsistency is detected.
+	 */
+	protected final boolean filterNodes() {
+		for (int i = 0; i < balance.length; i++) {
+			long outMin = 0, outMax = 0, inMin = 0, inMax = 0;
+			for (int a : outs[i]) {
+				outMin += scp[a].dom.firstValue();
+				outMax += scp[a].dom.lastValue();
+			}
+			for (int a : ins[i]) {
+				inMin += scp[a].dom.firstValue();
+				inMax += scp[a].dom.lastValue();
+			}
+			for (int a : outs[i]) {
+				Domain dom = scp[a].dom;
+				long others = balance[i] + inMax - (outMin - dom.firstValue()), others2 = balance[i] + inMin - (outMax - dom.lastValue());
+				if (dom.removeValuesGT(others) == false || dom.removeValuesLT(others2) == false)
+					return false;
+			}
+			for (int a : ins[i]) {
+				Domain dom = scp[a].dom;
+				long others = outMax - balance[i] - (inMin - dom.firstValue()), others2 = outMin - balance[i] - (inMax - dom.lastValue());
+				if (dom.removeValuesGT(others) == false || dom.removeValuesLT(others2) == false)
+					return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Records the current bounds of the arcs, and moves the current flow inside them
+	 */
+	private void loadBounds() {
+		for (int a = 0; a < flow.length; a++) {
+			lo[a] = scp[a].dom.firstValue();
+			hi[a] = scp[a].dom.lastValue();
+			flow[a] = Math.max(lo[a], Math.min(hi[a], flow[a]));
+		}
+	}
+
+	/**
+	 * Looks for a path in the residual graph from the node s to a node with a negative excess. Returns this node, or -1 if there is none.
+	 */
+	private int augmentingPath(int s) {
+		stamp++;
+		stamps[s] = stamp;
+		int head = 0, tail = 0;
+		queue[tail++] = s;
+		while (head < tail) {
+			int i = queue[head++];
+			for (int k = nNeighbours(i) - 1; k >= 0; k--) {
+				int code = residualArc(i, k);
+				if (code == Integer.MAX_VALUE)
+					continue;
+				int j = target(code);
+				if (stamps[j] == stamp)
+					continue;
+				stamps[j] = stamp;
+				pred[j] = code;
+				if (excess[j] < 0)
+					return j;
+				queue[tail++] = j;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Computes a feasible flow with respect to the current bounds, starting from the flow of the previous call (moved inside the current bounds) and
+	 * repairing it along augmenting paths. Returns false if there is no feasible flow.
+	 */
+	protected final boolean findFeasibleFlow() {
+		loadBounds();
+		for (int i = 0; i < balance.length; i++) {
+			excess[i] = balance[i];
+			for (int a : outs[i])
+				excess[i] -= flow[a];
+			for (int a : ins[i])
+				excess[i] += flow[a];
+		}
+		for (int s = 0; s < balance.length; s++) {
+			while (excess[s] > 0) {
+				int t = augmentingPath(s);
+				if (t == -1)
+					return false;
+				long quantity = Math.min(excess[s], -excess[t]);
+				for (int j = t; j != s; j = source(pred[j]))
+					quantity = Math.min(quantity, capacity(pred[j]));
+				for (int j = t; j != s; j = source(pred[j]))
+					push(pred[j], quantity);
+				excess[s] -= quantity;
+				excess[t] += quantity;
+			}
+		}
+		for (int i = 0; i < balance.length; i++)
+			if (excess[i] != 0)
+				return false;
+		return true;
+	}
+
+	/**
+	 * Computes the strongly connected components of the residual graph (Tarjan algorithm, run iteratively)
+	 */
+	protected final void computeComponents() {
+		Arrays.fill(numbers, -1);
+		int number = 0, nComponents = 0, top = 0;
+		for (int r = 0; r < balance.length; r++) {
+			if (numbers[r] != -1)
+				continue;
+			int depth = 0;
+			callStack[depth++] = r;
+			numbers[r] = lowLinks[r] = number++;
+			cursors[r] = 0;
+			stack[top++] = r;
+			components[r] = -1;
+			while (depth > 0) {
+				int i = callStack[depth - 1];
+				if (cursors[i] < nNeighbours(i)) {
+					int code = residualArc(i, cursors[i]++);
+					if (code == Integer.MAX_VALUE)
+						continue;
+					int j = target(code);
+					if (numbers[j] == -1) {
+						numbers[j] = lowLinks[j] = number++;
+						cursors[j] = 0;
+						stack[top++] = j;
+						components[j] = -1;
+						callStack[depth++] = j;
+					} else if (components[j] == -1) // j is still on the stack
+						lowLinks[i] = Math.min(lowLinks[i], numbers[j]);
+				} else {
+					depth--;
+					if (lowLinks[i] == numbers[i]) {
+						int j;
+						do {
+							j = stack[--top];
+							components[j] = nComponents;
+						} while (j != i);
+						nComponents++;
+					}
+					if (depth > 0)
+						lowLinks[callStack[depth - 1]] = Math.min(lowLinks[callStack[depth - 1]], lowLinks[i]);
+				}
+			}
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "constraint flow: " + Kit.join(scp) + " balance=" + Kit.join(balance);
+	}
+
+	/**********************************************************************************************
+	 * Flow without costs
+	 *********************************************************************************************/
+
+	public static final class FlowSimple extends Flow {
+
+		@Override
+		public boolean isSatisfiedBy(int[] t) {
+			return isConservative(t);
+		}
+
+		public FlowSimple(Problem pb, Variable[] list, int[] balance, int[][] arcs) {
+			super(pb, list, list.length, balance, arcs);
+			defineKey(balance, arcs);
+		}
+
+		@Override
+		public boolean runPropagator(Variable dummy) {
+			while (true) {
+				long size = sizes();
+				if (filterNodes() == false)
+					return false;
+				if (findFeasibleFlow() == false)
+					return scp[0].dom.fail();
+				computeComponents();
+				// the flow on an arc whose extremities are in different components cannot be changed (such an arc is saturated in one direction)
+				for (int a = 0; a < scp.length; a++)
+					if (lo[a] < hi[a] && tails[a] != heads[a] && components[tails[a]] != components[heads[a]] && scp[a].dom.reduceToValue((int) flow[a]) == false)
+						return false;
+				if (sizes() == size)
+					return true;
+			}
+		}
+	}
+
+	/**********************************************************************************************
+	 * Flow with costs
+	 *********************************************************************************************/
+
+	/**
+	 * The variant where the cost of the flow, given by the weights of the arcs, must be less than or equal to a limit (a constant or a variable). The
+	 * minimal cost is computed by canceling negative cycles from the feasible flow (which is generally close to the flow of minimal cost found at the
+	 * previous call). The potentials obtained at the end give reduced costs, which are lower bounds of the cost of pushing one more unit of flow along
+	 * residual arcs. Since the minimal cost is a convex function of the flow on any arc, this bounds the variation of flow allowed by the slack between
+	 * the limit and the minimal cost (reduced-cost filtering, as in "Cost-Based Domain Filtering", CP 1999, by F. Focacci, A. Lodi and M. Milano).
+	 */
+	public static final class FlowWeighted extends Flow {
+
+		@Override
+		public boolean isSatisfiedBy(int[] t) {
+			long cost = 0;
+			for (int a = 0; a < weights.length; a++)
+				cost += weights[a] * (long) t[a];
+			return isConservative(t) && cost <= (limitVar == null ? limit : t[weights.length]);
+		}
+
+		/**
+		 * The weights (costs per unit of flow) of the arcs
+		 */
+		private final int[] weights;
+
+		/**
+		 * The limit for the cost of the flow, when given by a constant
+		 */
+		private final long limit;
+
+		/**
+		 * The limit for the cost of the flow, when given by a variable (null, otherwise)
+		 */
+		private final Variable limitVar;
+
+		/**
+		 * The potentials of nodes (as given by Bellman-Ford algorithm, once no more negative cycle exists in the residual graph)
+		 */
+		private final long[] potentials;
+
+		private FlowWeighted(Problem pb, Variable[] scp, Variable[] list, int[] balance, int[][] arcs, int[] weights, long limit, Variable limitVar) {
+			super(pb, scp, list.length, balance, arcs);
+			control(weights.length == list.length && (limitVar == null || scp.length == list.length + 1));
+			this.weights = weights;
+			this.limit = limit;
+			this.limitVar = limitVar;
+			this.potentials = new long[balance.length];
+			defineKey(balance, arcs, weights, limit);
+		}
+
+		public FlowWeighted(Problem pb, Variable[] list, int[] balance, int[][] arcs, int[] weights, long limit) {
+			this(pb, list, list, balance, arcs, weights, limit, null);
+		}
+
+		public FlowWeighted(Problem pb, Variable[] list, int[] balance, int[][] arcs, int[] weights, Variable limit) {
+			this(pb, pb.vars(list, limit), list, balance, arcs, weights, Long.MAX_VALUE, limit);
+		}
+
+		private long cost(int code) {
+			return code >= 0 ? weights[code] : -weights[~code];
+		}
+
+		private long reducedCost(int code) {
+			return cost(code) + potentials[source(code)] - potentials[target(code)];
+		}
+
+		/**
+		 * Makes the current (feasible) flow of minimal cost by canceling negative cycles, detected with Bellman-Ford algorithm. At the end, potentials
+		 * are such that all reduced costs of residual arcs are non-negative.
+		 */
+		private void cancelNegativeCycles() {
+			int n = balance.length;
+			while (true) {
+				Arrays.fill(potentials, 0); // as if a virtual source was connected to all nodes with arcs of cost 0
+				int last = -1;
+				for (int iteration = 0; iteration < n; iteration++) {
+					last = -1;
+					for (int i = 0; i < n; i++)
+						for (int k = nNeighbours(i) - 1; k >= 0; k--) {
+							int code = residualArc(i, k);
+							if (code == Integer.MAX_VALUE)
+								continue;
+							int j = target(code);
+							if (potentials[i] + cost(code) < potentials[j]) {
+								potentials[j] = potentials[i] + cost(code);
+								pred[j] = code;
+								last = j;
+							}
+						}
+					if (last == -1)
+						return;
+				}
+				for (int k = 0; k < n; k++) // going back n times to be sure to be on a (negative) cycle
+					last = source(pred[last]);
+				long quantity = Long.MAX_VALUE;
+				int j = last;
+				do {
+					quantity = Math.min(quantity, capacity(pred[j]));
+					j = source(pred[j]);
+				} while (j != last);
+				j = last;
+				do {
+					int code = pred[j];
+					j = source(code);
+					push(code, quantity);
+				} while (j != last);
+			}
+		}
+
+		@Override
+		public boolean runPropagator(Variable dummy) {
+			while (true) {
+				long size = sizes();
+				if (filterNodes() == false)
+					return false;
+				if (findFeasibleFlow() == false)
+					return scp[0].dom.fail();
+				// self-loops are independent of the rest of the network: their flow is set to the cheapest bound
+				for (int a = 0; a < weights.length; a++)
+					if (tails[a] == heads[a])
+						flow[a] = weights[a] >= 0 ? lo[a] : hi[a];
+				cancelNegativeCycles();
+				long minCost = 0;
+				for (int a = 0; a < weights.length; a++)
+					minCost += weights[a] * flow[a];
+				long max = limitVar == null ? limit : limitVar.dom.lastValue();
+				if (minCost > max)
+					return scp[0].dom.fail();
+				if (limitVar != null && limitVar.dom.removeValuesLT(minCost) == false)
+					return false;
+				long slack = max - minCost;
+				computeComponents();
+				for (int a = 0; a < weights.length; a++) {
+					if (lo[a] == hi[a])
+						continue;
+					Domain dom = scp[a].dom;
+					if (components[tails[a]] != components[heads[a]]) { // the flow on a cannot be changed
+						if (dom.reduceToValue((int) flow[a]) == false)
+							return false;
+						continue;
+					}
+					long cost = reducedCost(a); // a lower bound of the cost of increasing the flow on a (by one unit)
+					if (flow[a] < hi[a] && cost > 0 && dom.removeValuesGT(flow[a] + slack / cost) == false)
+						return false;
+					if (flow[a] > lo[a] && cost < 0 && dom.removeValuesLT(flow[a] - slack / -cost) == false)
+						return false;
+				}
+				if (sizes() == size)
+					return true;
+			}
+		}
+	}
+}
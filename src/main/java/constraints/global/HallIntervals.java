@@ -0,0 +1,223 @@
+/*
+ * This file is part of the constraint solver ACE (AbsCon Essence). 
+ *
+ * Copyright (c) 2021. All rights reserved.
+ * Christophe Lecoutre, CRIL, Univ. Artois and CNRS. 
+ * 
+ * Licensed under the MIT License.
+ * See LICENSE file in the project root for full license information.
+ */
+
+package constraints.global;
+
+import java.util.Arrays;
+import java.util.function.LongBinaryOperator;
+import java.util.stream.IntStream;
+
+import variables.Variable;
+
+/**
+ * This is the object used to detect Hall intervals on the bounds of the domains of some variables, and to reduce these bounds accordingly, as described in
+ * "A Fast and Simple Algorithm for Bounds Consistency of the AllDifferent Constraint", IJCAI 2003: 245-250, by A. López-Ortiz, C.-G. Quimper, J. Tromp and
+ * P. van Beek. Intervals are sorted in O(n log n), and Hall intervals are then detected with path compression on the sorted bounds. The number of variables
+ * that can be assigned a value in an interval is given by a capacity function (the size of the interval for AllDifferent, and a sum of maximal numbers of
+ * occurrences for Cardinality); it must be at least 1 for any non-empty interval. Nothing is stored from one call to the next.
+ * 
+ * @author Christophe Lecoutre
+ */
+public final class HallIntervals {
+
+	/**
+	 * The variables whose bounds are reasoned about
+	 */
+	private final Variable[] scp;
+
+	/**
+	 * capacity.applyAsLong(a,b) is the maximal number of variables that can be assigned a value in [a,b]
+	 */
+	private final LongBinaryOperator capacity;
+
+	/**
+	 * The current bounds of the intervals of the variables (possibly updated during filtering)
+	 */
+	final int[] mins, maxs;
+
+	/**
+	 * Ranks of the bounds of the intervals of the variables (in the array bounds)
+	 */
+	private final int[] minRanks, maxRanks;
+
+	/**
+	 * Variables sorted according to the minimal and maximal values of their domains
+	 */
+	final Integer[] minSorted, maxSorted;
+
+	/**
+	 * The sorted distinct values that are bounds (min and max+1) of the intervals; its effective size is nBounds + 2
+	 */
+	private final int[] bounds;
+
+	private int nBounds;
+
+	/**
+	 * Structures used for path compression: t for the tree of critical capacities, h for the tree of Hall intervals, and d for the capacities
+	 */
+	private final int[] t, h;
+
+	private final long[] d;
+
+	/**
+	 * Builds an object detecting Hall intervals for the specified variables
+	 * 
+	 * @param scp
+	 *            the variables whose bounds are reasoned about
+	 * @param capacity
+	 *            the function giving the maximal number of variables that can be assigned a value in an interval [a,b]
+	 */
+	public HallIntervals(Variable[] scp, LongBinaryOperator capacity) {
+		this.scp = scp;
+		this.capacity = capacity;
+		int n = scp.length;
+		this.mins = new int[n];
+		this.maxs = new int[n];
+		this.minRanks = new int[n];
+		this.maxRanks = new int[n];
+		this.minSorted = IntStream.range(0, n).boxed().toArray(Integer[]::new);
+		this.maxSorted = minSorted.clone();
+		this.bounds = new int[2 * n + 2];
+		this.t = new int[2 * n + 2];
+		this.h = new int[2 * n + 2];
+		this.d = new long[2 * n + 2];
+	}
+
+	/**
+	 * Records the current bounds of the domains of the variables
+	 */
+	void recordBounds() {
+		for (int i = 0; i < scp.length; i++) {
+			mins[i] = scp[i].dom.firstValue();
+			maxs[i] = scp[i].dom.lastValue();
+		}
+	}
+
+	/**
+	 * Sorts the variables according to the current minimal values of their intervals
+	 */
+	void sortMins() {
+		Arrays.sort(minSorted, (i, j) -> Integer.compare(mins[i], mins[j]));
+	}
+
+	private void sortBounds() {
+		sortMins();
+		Arrays.sort(maxSorted, (i, j) -> Integer.compare(maxs[i], maxs[j]));
+		int min = mins[minSorted[0]], max = maxs[maxSorted[0]] + 1, last = min - 2, nb = 0;
+		bounds[0] = last;
+		for (int i = 0, j = 0;;) {
+			if (i < scp.length && min <= max) {
+				if (min != last)
+					bounds[++nb] = last = min;
+				minRanks[minSorted[i]] = nb;
+				if (++i < scp.length)
+					min = mins[minSorted[i]];
+			} else {
+				if (max != last)
+					bounds[++nb] = last = max;
+				maxRanks[maxSorted[j]] = nb;
+				if (++j == scp.length)
+					break;
+				max = maxs[maxSorted[j]] + 1;
+			}
+		}
+		nBounds = nb;
+		bounds[nb + 1] = bounds[nb] + 2;
+	}
+
+	private static void pathSet(int[] tree, int start, int end, int to) {
+		for (int k = start, l = start; k != end; k = l) {
+			l = tree[k];
+			tree[k] = to;
+		}
+	}
+
+	private static int pathMin(int[] tree, int i) {
+		while (tree[i] < i)
+			i = tree[i];
+		return i;
+	}
+
+	private static int pathMax(int[] tree, int i) {
+		while (tree[i] > i)
+			i = tree[i];
+		return i;
+	}
+
+	private boolean filterLower() {
+		for (int i = 1; i <= nBounds + 1; i++) {
+			t[i] = h[i] = i - 1;
+			d[i] = capacity.applyAsLong(bounds[i - 1], bounds[i] - 1L);
+		}
+		for (int i = 0; i < scp.length; i++) {
+			int v = maxSorted[i], x = minRanks[v], y = maxRanks[v];
+			int z = pathMax(t, x + 1), j = t[z];
+			if (--d[z] == 0) {
+				t[z] = z + 1;
+				z = pathMax(t, t[z]);
+				t[z] = j;
+			}
+			pathSet(t, x + 1, z, z);
+			long c = capacity.applyAsLong(bounds[y], bounds[z] - 1L);
+			if (d[z] < c)
+				return false; // more variables than possible assignments
+			if (h[x] > x) {
+				int w = pathMax(h, h[x]);
+				mins[v] = bounds[w]; // the values before bounds[w] belong to a Hall interval
+				pathSet(h, x, w, w);
+			}
+			if (d[z] == c) { // a Hall interval is found
+				pathSet(h, h[y], j - 1, y);
+				h[y] = j - 1;
+			}
+		}
+		return true;
+	}
+
+	private boolean filterUpper() {
+		for (int i = 0; i <= nBounds; i++) {
+			t[i] = h[i] = i + 1;
+			d[i] = capacity.applyAsLong(bounds[i], bounds[i + 1] - 1L);
+		}
+		for (int i = scp.length - 1; i >= 0; i--) {
+			int v = minSorted[i], x = maxRanks[v], y = minRanks[v];
+			int z = pathMin(t, x - 1), j = t[z];
+			if (--d[z] == 0) {
+				t[z] = z - 1;
+				z = pathMin(t, t[z]);
+				t[z] = j;
+			}
+			pathSet(t, x - 1, z, z);
+			long c = capacity.applyAsLong(bounds[z], bounds[y] - 1L);
+			if (d[z] < c)
+				return false; // more variables than possible assignments
+			if (h[x] < x) {
+				int w = pathMin(h, h[x]);
+				maxs[v] = bounds[w] - 1; // the values from bounds[w] belong to a Hall interval
+				pathSet(h, x, w, w);
+			}
+			if (d[z] == c) { // a Hall interval is found
+				pathSet(h, h[y], j + 1, y);
+				h[y] = j + 1;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Sorts the intervals recorded in mins and maxs, and reduces them with respect to Hall intervals
+	 * 
+	 * @return false if an inconsistency is detected
+	 */
+	boolean filter() {
+		sortBounds();
+		return filterLower() && filterUpper();
+	}
+}
@@ -14,30 +14,83 @@ import static org.xcsp.common.Types.TypeOperatorRel.GT;
 import static org.xcsp.common.Types.TypeOperatorRel.LT;
 import static utility.Kit.control;
 
+import java.util.Arrays;
 import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 import constraints.ConstraintGlobal;
+import interfaces.Observers.ObserverOnBacktracks.ObserverOnBacktracksSystematic;
 import interfaces.Tags.TagCallCompleteFiltering;
+import interfaces.Tags.TagNotAC;
+import interfaces.Tags.TagNotSymmetric;
 import problem.Problem;
 import variables.Domain;
 import variables.Variable;
 
 /**
- * TO BE FINISHED (extending it to limits defined by variables)
- * 
+ * The constraint Knapsack ensures that the sum of the values of the variables of a list, weighted by some given weights, is less than or equal to a
+ * limit (capacity), while the sum weighted by some given profits is greater than or equal to another limit. Each limit is given either by a constant
+ * or by a variable. Filtering enforces GAC on the variables of the list (only bounds of limit variables are filtered) by means of the layered graph
+ * of "A dynamic programming approach for consistency and propagation for knapsack constraints", Annals of Operations Research 118: 73-84 (2003), by
+ * M. Trick: nodes at layer i are the weights that can be reached with the i first variables, and for each of them, the best profits of paths coming
+ * from the source and going to the sink are recorded. Layers are only recomputed from the first (for paths from the source) or until the last (for
+ * paths to the sink) variable whose domain has changed since the last call; when backtracking, only the layers depending on variables whose domains
+ * have been reduced at the undone depths are invalidated. Profits are stored as int (the layered graph is not used when they could overflow). When the
+ * layered graphs of all Knapsack constraints would be too large, a filtering on bounds is performed instead.
+ *
  * @author Christophe Lecoutre
  */
-public final class Knapsack extends ConstraintGlobal implements TagCallCompleteFiltering {
+public final class Knapsack extends ConstraintGlobal implements TagNotAC, TagCallCompleteFiltering, TagNotSymmetric, ObserverOnBacktracksSystematic {
 
 	@Override
 	public boolean isSatisfiedBy(int[] t) {
+		long wsum = 0, psum = 0;
+		for (int i = 0; i < list.length; i++) {
+			wsum += weights[i] * (long) t[i];
+			psum += profits[i] * (long) t[i];
+		}
+		return wsum <= (wvar == null ? wlimit : t[list.length]) && psum >= (pvar == null ? plimit : t[scp.length - 1]);
+	}
 
-		// TODO
-
-		return true;
+	@Override
+	public void restoreBefore(int depth) {
+		if (forward == null)
+			return;
+		for (int d = depth; d <= topDepth; d++) {
+			firstRestored = Math.min(firstRestored, minChanged[d]);
+			lastRestored = Math.max(lastRestored, maxChanged[d]);
+			minChanged[d] = list.length;
+			maxChanged[d] = -1;
+		}
+		topDepth = Math.min(topDepth, depth - 1);
+	}
 
+	/**
+	 * Returns true if a Knapsack constraint with a layered graph can be posted for the specified variables and weights (weights and values must be
+	 * non-negative, so that weights at each layer are bounded by the capacity)
+	 *
+	 * @param list
+	 *            the variables of the knapsack
+	 * @param weights
+	 *            the weights associated with the variables
+	 * @return true if a Knapsack constraint can be posted
+	 */
+	public static boolean isPostable(Variable[] list, int[] weights) {
+		return list.length > 1 && Stream.of(list).distinct().count() == list.length && Stream.of(list).allMatch(x -> x.dom.firstValue() >= 0)
+				&& IntStream.of(weights).allMatch(w -> w >= 0);
 	}
 
+	/**
+	 * The maximal number of nodes in the layered graphs of all Knapsack constraints of a problem (each constraint being given an equal share); beyond,
+	 * the filtering is performed on bounds only
+	 */
+	private static final long GRAPH_LIMIT = 1 << 21;
+
+	/**
+	 * Special value used in layers for weights that cannot be reached
+	 */
+	private static final int NONE = Integer.MIN_VALUE;
+
 	protected Variable[] list;
 
 	protected final int[] weights;
@@ -45,24 +98,24 @@ public final class Knapsack extends ConstraintGlobal implements TagCallCompleteF
 	protected final int[] profits;
 
 	/**
-	 * The widths of tasks; used as working values (either constants or minimal values in variable domains)
+	 * The capacity of the knapsack; used as working value (either a constant or the maximal value in the domain of wvar)
 	 */
 	protected int wlimit;
 
 	/**
-	 * heights of tasks; used as working values (either constants or minimal values in variable domains)
+	 * The profit to be reached; used as working value (either a constant or the minimal value in the domain of pvar)
 	 */
 	protected int plimit;
 
 	/**
-	 * indicates if wlimit is given by a variable (and not a constant)
+	 * The variable giving the capacity of the knapsack, or null if the capacity is a constant
 	 */
-	protected boolean movableWlimit;
+	protected final Variable wvar;
 
 	/**
-	 * indicates if plimit is given by a variable (and not a constant)
+	 * The variable giving the profit to be reached, or null if this profit is a constant
 	 */
-	protected boolean movablePlimit;
+	protected final Variable pvar;
 
 	protected long wmin;
 
@@ -74,20 +127,101 @@ public final class Knapsack extends ConstraintGlobal implements TagCallCompleteF
 
 	protected final int minWeight, maxWeight, minProfit, maxProfit;
 
-	public Knapsack(Problem pb, Variable[] list, int[] weights, int wlimit, int[] profits, int plimit) {
-		super(pb, list);
-		control(list.length > 1 && list.length == weights.length && list.length == profits.length);
+	/**
+	 * The greatest capacity that can be considered (i.e., the initial one), or -1 if the layered graph cannot be used because profits could overflow
+	 */
+	private final int maxCapacity;
+
+	/**
+	 * forward[i][w] is the best profit that can be obtained with the i first variables for a weight w, or NONE; null if the graph is not used (built
+	 * at the first call)
+	 */
+	private int[][] forward;
+
+	/**
+	 * backward[i][w] is the best profit that can be obtained with the variables from index i, when starting with a weight w (and not exceeding the
+	 * capacity), or NONE; null if the graph is not used (built at the first call)
+	 */
+	private int[][] backward;
+
+	/**
+	 * lastSizes[i] is the size of the domain of the ith variable when layers were last computed
+	 */
+	private final int[] lastSizes;
+
+	/**
+	 * minChanged[d] and maxChanged[d] are the smallest and greatest indexes of the variables whose domains were found reduced when computing layers at
+	 * depth d (all variables when layers were entirely computed)
+	 */
+	private int[] minChanged, maxChanged;
+
+	/**
+	 * The greatest depth at which some changes have been recorded in minChanged and maxChanged
+	 */
+	private int topDepth = -1;
+
+	/**
+	 * The smallest and greatest indexes of the variables whose domains may have been extended by backtracking since layers were last computed
+	 */
+	private int firstRestored, lastRestored;
+
+	private boolean firstCall = true;
+
+	/**
+	 * The capacity (bounded by the initial one) when layers were last computed
+	 */
+	private int lastCapacity;
+
+	/**
+	 * Indicates if layers can be updated (i.e., if they correspond to the current domains for variables whose size has not changed)
+	 */
+	private boolean valid;
+
+	/**
+	 * Builds a Knapsack constraint for the specified problem, variables, weights and profits
+	 *
+	 * @param pb
+	 *            the problem to which the constraint is attached
+	 * @param list
+	 *            the variables of the knapsack
+	 * @param weights
+	 *            the weights associated with the variables
+	 * @param wlimit
+	 *            the capacity of the knapsack (ignored if wvar is not null)
+	 * @param wvar
+	 *            the variable giving the capacity of the knapsack, or null
+	 * @param profits
+	 *            the profits associated with the variables
+	 * @param plimit
+	 *            the profit to be reached (ignored if pvar is not null)
+	 * @param pvar
+	 *            the variable giving the profit to be reached, or null
+	 */
+	public Knapsack(Problem pb, Variable[] list, int[] weights, int wlimit, Variable wvar, int[] profits, int plimit, Variable pvar) {
+		super(pb, Stream.concat(Stream.of(list), Stream.of(wvar, pvar).filter(x -> x != null)).toArray(Variable[]::new));
+		control(isPostable(list, weights) && list.length == weights.length && list.length == profits.length);
+		control(scp.length == list.length + (wvar == null ? 0 : 1) + (pvar == null ? 0 : 1));
 		this.list = list;
 		this.weights = weights;
 		this.profits = profits;
-		this.wlimit = wlimit;
-		this.plimit = plimit;
+		this.wvar = wvar;
+		this.pvar = pvar;
+		this.wlimit = wvar == null ? wlimit : wvar.dom.lastValue();
+		this.plimit = pvar == null ? plimit : pvar.dom.firstValue();
 		this.minWeight = IntStream.of(weights).min().getAsInt();
 		this.maxWeight = IntStream.of(weights).max().getAsInt();
 		this.minProfit = IntStream.of(profits).min().getAsInt();
 		this.maxProfit = IntStream.of(profits).max().getAsInt();
-		control(minWeight > 0 && minProfit > 0); // for the moment
-		defineKey(weights, wlimit, profits, plimit);
+		long maxProfitSum = IntStream.range(0, list.length).mapToLong(i -> Math.abs((long) profits[i]) * list[i].dom.lastValue()).sum();
+		this.maxCapacity = maxProfitSum + Math.abs((long) this.plimit) <= Integer.MAX_VALUE / 2 ? Math.max(0, this.wlimit) : -1;
+		this.lastSizes = new int[list.length];
+		this.firstRestored = list.length;
+		this.lastRestored = -1;
+		defineKey(weights, wvar == null ? wlimit : "v", profits, pvar == null ? plimit : "v");
+	}
+
+	public Knapsack(Problem pb, Variable[] list, int[] weights, int wlimit, int[] profits, int plimit) {
+		this(pb, list, weights, wlimit, null, profits, plimit, null);
 	}
 
 	protected final void recomputeBounds() {
@@ -96,35 +230,185 @@ public final class Knapsack extends ConstraintGlobal implements TagCallCompleteF
 			Domain dom = list[i].dom;
 			wmin += weights[i] * dom.firstValue();
 			wmax += weights[i] * dom.lastValue();
-			pmin += profits[i] * dom.firstValue();
-			pmax += profits[i] * dom.lastValue();
+			pmin += profits[i] * (profits[i] >= 0 ? dom.firstValue() : dom.lastValue());
+			pmax += profits[i] * (profits[i] >= 0 ? dom.lastValue() : dom.firstValue());
 		}
 	}
 
+	/**
+	 * Builds the layered graph if it is not too large, knowing that the limit is shared by all Knapsack constraints of the problem
+	 */
+	private void buildLayers() {
+		long nKnapsacks = Stream.of(problem.constraints).filter(c -> c instanceof Knapsack).count();
+		if (maxCapacity == -1 || (list.length + 1L) * (maxCapacity + 1L) * nKnapsacks > GRAPH_LIMIT)
+			return;
+		this.forward = new int[list.length + 1][maxCapacity + 1];
+		this.backward = new int[list.length + 1][maxCapacity + 1];
+		Arrays.fill(forward[0], NONE);
+		this.minChanged = new int[problem.variables.length + 1];
+		this.maxChanged = new int[problem.variables.length + 1];
+		Arrays.fill(minChanged, list.length);
+		Arrays.fill(maxChanged, -1);
+	}
+
 	@Override
 	public boolean runPropagator(Variable event) {
+		if (firstCall) {
+			firstCall = false;
+			buildLayers();
+		}
+		if (wvar != null)
+			wlimit = wvar.dom.lastValue();
+		if (pvar != null)
+			plimit = pvar.dom.firstValue();
 		recomputeBounds();
-		if (wmax <= wlimit && pmin >= plimit)
+		if (wmax <= (wvar == null ? wlimit : wvar.dom.firstValue()) && pmin >= (pvar == null ? plimit : pvar.dom.lastValue()))
 			return entailed();
 		if (wmin > wlimit || pmax < plimit)
 			return event == null ? false : event.dom.fail();
+		return forward == null ? filterBounds() : filterLayers();
+	}
+
+	/**********************************************************************************************
+	 * Filtering with the layered graph
+	 *********************************************************************************************/
+
+	/**
+	 * Computes the layer i+1 of forward from the layer i
+	 */
+	private void computeForward(int i, int capacity) {
+		int[] from = forward[i], to = forward[i + 1];
+		Arrays.fill(to, 0, capacity + 1, NONE);
+		Domain dom = list[i].dom;
+		for (int w = 0; w <= capacity; w++) {
+			if (from[w] == NONE)
+				continue;
+			for (int a = dom.first(); a != -1; a = dom.next(a)) {
+				int v = dom.toVal(a);
+				long nw = w + weights[i] * (long) v;
+				if (nw > capacity)
+					break; // because values are increasingly ordered
+				to[(int) nw] = Math.max(to[(int) nw], from[w] + profits[i] * v); // no possible overflow (see maxCapacity)
+			}
+		}
+	}
+
+	/**
+	 * Computes the layer i of backward from the layer i+1
+	 */
+	private void computeBackward(int i, int capacity) {
+		int[] from = backward[i + 1], to = backward[i];
+		Domain dom = list[i].dom;
+		for (int w = 0; w <= capacity; w++) {
+			int best = NONE;
+			for (int a = dom.first(); a != -1; a = dom.next(a)) {
+				int v = dom.toVal(a);
+				long nw = w + weights[i] * (long) v;
+				if (nw > capacity)
+					break;
+				if (from[(int) nw] != NONE)
+					best = Math.max(best, from[(int) nw] + profits[i] * v);
+			}
+			to[w] = best;
+		}
+	}
+
+	private boolean filterLayers() {
+		int n = list.length, capacity = Math.min(wlimit, maxCapacity), depth = problem.solver.depth();
+		int first = n, last = -1;
+		if (!valid || capacity != lastCapacity) {
+			first = 0;
+			last = n - 1;
+			forward[0][0] = 0;
+			Arrays.fill(backward[n], 0, capacity + 1, 0);
+		} else
+			for (int i = 0; i < n; i++)
+				if (list[i].dom.size() != lastSizes[i]) {
+					first = Math.min(first, i);
+					last = i;
+				}
+		if (first <= last) { // changes are recorded at the current depth, so as to know which layers must be recomputed when backtracking
+			minChanged[depth] = Math.min(minChanged[depth], first);
+			maxChanged[depth] = Math.max(maxChanged[depth], last);
+			topDepth = Math.max(topDepth, depth);
+		}
+		first = Math.min(first, firstRestored); // variables whose domains have been extended must also be considered
+		last = Math.max(last, lastRestored);
+		for (int i = first; i < n; i++)
+			computeForward(i, capacity);
+		for (int i = last; i >= 0; i--)
+			computeBackward(i, capacity);
+		for (int i = 0; i < n; i++)
+			lastSizes[i] = list[i].dom.size();
+		lastCapacity = capacity;
+		firstRestored = n;
+		lastRestored = -1;
+		valid = true;
+
+		int best = backward[0][0];
+		if (best == NONE || best < plimit)
+			return list[0].dom.fail();
+		if (pvar != null && pvar.dom.removeValuesGT(best) == false)
+			return false;
+		if (wvar != null) {
+			int w = 0;
+			while (forward[n][w] == NONE || forward[n][w] < plimit)
+				w++;
+			if (wvar.dom.removeValuesLT(w) == false)
+				return false;
+		}
+		for (int i = 0; i < n; i++) {
+			Domain dom = list[i].dom;
+			if (dom.size() == 1)
+				continue;
+			int[] from = forward[i], to = backward[i + 1];
+			for (int a = dom.first(); a != -1; a = dom.next(a)) {
+				int v = dom.toVal(a);
+				boolean supported = false;
+				for (int w = 0; !supported && w <= capacity; w++) {
+					if (from[w] == NONE)
+						continue;
+					long nw = w + weights[i] * (long) v;
+					if (nw > capacity)
+						break;
+					supported = to[(int) nw] != NONE && from[w] + profits[i] * (long) v + to[(int) nw] >= plimit;
+				}
+				if (!supported)
+					dom.remove(a); // no possible wipe-out since values on the best path are supported
+			}
+		}
+		return true;
+	}
+
+	/**********************************************************************************************
+	 * Filtering on bounds (when the layered graph would be too large)
+	 *********************************************************************************************/
+
+	private boolean filterBounds() {
+		if (pvar != null && pvar.dom.removeValuesGT(pmax) == false)
+			return false;
+		if (wvar != null && wvar.dom.removeValuesLT(wmin) == false)
+			return false;
+		boolean moves = minWeight > 0 && minProfit > 0; // if true, reasoning on the number of possible moves (of one unit) is possible
 		if (wmax > wlimit) { // otherwise nothing to do
 			for (int i = futvars.limit; i >= 0; i--) {
 				int x = futvars.dense[i];
+				if (x >= list.length)
+					continue;
 				Domain dom = scp[x].dom;
-				if (dom.size() == 1)
+				if (dom.size() == 1 || weights[x] == 0)
 					continue;
 				int wcoeff = weights[x];
 				int pcoeff = profits[x];
 				wmax -= wcoeff * dom.lastValue();
-				pmax -= pcoeff * dom.lastValue();
+				pmax -= pcoeff * (pcoeff >= 0 ? dom.lastValue() : dom.firstValue());
 				long wmini = wmin - wcoeff * dom.firstValue(); // we remove the contribution of the variable we consider
-				long pmini = pmin - pcoeff * dom.firstValue();
-				dom.removeValues(GT, wlimit - wmini, wcoeff);
-				assert dom.size() > 0;
-				while (true) {
+				long pmini = pmin - pcoeff * (pcoeff >= 0 ? dom.firstValue() : dom.lastValue());
+				if (dom.removeValues(GT, wlimit - wmini, wcoeff) == false)
+					return false;
+				while (moves) {
 					int v = dom.lastValue();
-					int nPossibleMoves = (int) Math.floor((wlimit - wmini - wcoeff * v) / minWeight);
+					long nPossibleMoves = (wlimit - wmini - wcoeff * v) / minWeight;
 					if (pmini + pcoeff * v + nPossibleMoves * maxProfit < plimit) {
 						if (dom.removeValue(v) == false)
 							return false;
@@ -132,16 +416,18 @@ public final class Knapsack extends ConstraintGlobal implements TagCallCompleteF
 						break;
 				}
 				wmax += wcoeff * dom.lastValue();
-				pmax += wcoeff * dom.lastValue();
+				pmax += pcoeff * (pcoeff >= 0 ? dom.lastValue() : dom.firstValue());
 				if (wmax <= wlimit)
 					break;
 			}
 		}
-		if (pmin < plimit) { // otherwise nothing to do
+		if (pmin < plimit && minProfit >= 0) { // otherwise nothing to do
 			for (int i = futvars.limit; i >= 0; i--) {
 				int x = futvars.dense[i];
+				if (x >= list.length)
+					continue;
 				Domain dom = scp[x].dom;
-				if (dom.size() == 1)
+				if (dom.size() == 1 || profits[x] == 0)
 					continue;
 				int wcoeff = weights[x];
 				int pcoeff = profits[x];
@@ -149,12 +435,12 @@ public final class Knapsack extends ConstraintGlobal implements TagCallCompleteF
 				pmin -= pcoeff * dom.firstValue();
 				long wmaxi = wmax - wcoeff * dom.lastValue(); // we remove the contribution of the variable we consider
 				long pmaxi = pmax - pcoeff * dom.lastValue();
-				dom.removeValues(LT, plimit - pmaxi, pcoeff);
-				assert dom.size() > 0;
-				while (true) {
+				if (dom.removeValues(LT, plimit - pmaxi, pcoeff) == false)
+					return false;
+				while (moves) {
 					int v = dom.firstValue();
-					int nPossibleMoves = (int) Math.floor((pmaxi + pcoeff * v - plimit) / minProfit);
-					if (wmaxi + wcoeff * v + nPossibleMoves * maxWeight > wlimit) {
+					long nPossibleMoves = (pmaxi + pcoeff * v - plimit) / minProfit;
+					if (wmaxi + wcoeff * v - nPossibleMoves * maxWeight > wlimit) {
 						if (dom.removeValue(v) == false)
 							return false;
 					} else
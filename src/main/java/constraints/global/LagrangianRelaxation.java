@@ -0,0 +1,306 @@
+/*
+ * This file is part of the constraint solver ACE (AbsCon Essence). 
+ *
+ * Copyright (c) 2021. All rights reserved.
+ * Christophe Lecoutre, CRIL, Univ. Artois and CNRS. 
+ * 
+ * Licensed under the MIT License.
+ * See LICENSE file in the project root for full license information.
+ */
+
+package constraints.global;
+
+import static utility.Kit.control;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import constraints.ConstraintGlobal;
+import constraints.global.Sum.SumSimple.SumSimpleEQ;
+import constraints.global.Sum.SumSimple.SumSimpleEQBoolean;
+import constraints.global.Sum.SumSimple.SumSimpleGE;
+import constraints.global.Sum.SumSimple.SumSimpleLE;
+import constraints.global.Sum.SumWeighted;
+import constraints.global.Sum.SumWeighted.SumWeightedEQ;
+import constraints.global.Sum.SumWeighted.SumWeightedGE;
+import constraints.global.Sum.SumWeighted.SumWeightedLE;
+import interfaces.Tags.TagCallCompleteFiltering;
+import interfaces.Tags.TagNotAC;
+import interfaces.Tags.TagNotSymmetric;
+import interfaces.Tags.TagPostponableFiltering;
+import optimization.Optimizer;
+import problem.Problem;
+import variables.Domain;
+import variables.Variable;
+
+/**
+ * This redundant constraint computes a lower bound (assuming minimization) of a linear objective by means of a Lagrangian relaxation of the linear
+ * constraints (Sum constraints) of the problem: each linear constraint is dualized with a multiplier, and the relaxed problem, only subject to the
+ * bounds of the variables, is solved trivially since it is separable. Multipliers are updated by a subgradient method (with Polyak steps), the best
+ * multipliers being kept from one call to another. The computed bound may prove that the current limit of the objective cannot be reached, allows
+ * reduced-cost filtering of the variables, and at the root node, tightens the bounding interval of the optimizer. See "The Lagrangian relaxation
+ * method for solving integer programming problems", Management Science 27(1): 1-18 (1981), by M. Fisher, and "Cost-based domain filtering", CP 1999:
+ * 189-203, by F. Focacci, A. Lodi and M. Milano.
+ * 
+ * @author Christophe Lecoutre
+ */
+public final class LagrangianRelaxation extends ConstraintGlobal implements TagNotAC, TagCallCompleteFiltering, TagNotSymmetric, TagPostponableFiltering {
+
+	@Override
+	public boolean isSatisfiedBy(int[] t) {
+		for (int i = 0; i < rowPositions.length; i++) {
+			long sum = 0;
+			for (int k = 0; k < rowPositions[i].length; k++)
+				sum += rowCoeffs[i][k] * (long) t[rowPositions[i][k]];
+			if (sum > rowLimits[i] || (rowEqs[i] && sum < rowLimits[i]))
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the coefficients of the specified Sum constraint
+	 * 
+	 * @param c
+	 *            a constraint SumSimple or SumWeighted
+	 * @return the coefficients of the constraint
+	 */
+	private static int[] coeffsOf(Sum c) {
+		return c instanceof SumWeighted ? ((SumWeighted) c).coeffs : IntStream.range(0, c.scp.length).map(i -> 1).toArray();
+	}
+
+	/**
+	 * Returns true if the specified constraint can be dualized (i.e., is a linear constraint with operator LE, GE or EQ)
+	 * 
+	 * @param c
+	 *            a constraint
+	 * @return true if the specified constraint can be dualized
+	 */
+	public static boolean isDualizable(Object c) {
+		return c instanceof SumSimpleLE || c instanceof SumSimpleGE || c instanceof SumSimpleEQ || c instanceof SumSimpleEQBoolean || c instanceof SumWeightedLE
+				|| c instanceof SumWeightedGE || c instanceof SumWeightedEQ;
+	}
+
+	/**
+	 * Tolerance used when rounding floating-point values (bounds and quotients)
+	 */
+	private static final double EPSILON = 1e-6;
+
+	/**
+	 * The optimizer of the problem
+	 */
+	private final Optimizer optimizer;
+
+	/**
+	 * objCoeffs[j] is the coefficient of the jth variable of the scope in the objective, seen as being minimized (coefficients are negated when
+	 * maximizing)
+	 */
+	private final int[] objCoeffs;
+
+	/**
+	 * rowPositions[i] gives the positions (in the scope) of the variables involved in the ith dualized constraint
+	 */
+	private final int[][] rowPositions;
+
+	/**
+	 * rowCoeffs[i] gives the coefficients of the ith dualized constraint, seen as being of the form "sum <= limit" or "sum = limit"
+	 */
+	private final int[][] rowCoeffs;
+
+	/**
+	 * rowLimits[i] is the limit (right-hand term) of the ith dualized constraint
+	 */
+	private final long[] rowLimits;
+
+	/**
+	 * rowEqs[i] is true if the ith dualized constraint is an equality (its multiplier is then not required to be non-negative)
+	 */
+	private final boolean[] rowEqs;
+
+	/**
+	 * The best multipliers found so far (used as starting point of the subgradient method at each call)
+	 */
+	private final double[] multipliers;
+
+	/**
+	 * The multipliers currently considered by the subgradient method
+	 */
+	private final double[] currMultipliers;
+
+	/**
+	 * The subgradient computed for the current multipliers
+	 */
+	private final double[] subgradient;
+
+	/**
+	 * reducedCosts[j] is the coefficient of the jth variable of the scope in the Lagrangian function, for the last evaluated multipliers
+	 */
+	private final double[] reducedCosts;
+
+	/**
+	 * The number of subgradient iterations performed at each call (ten times more at the root node)
+	 */
+	private final int nIterations;
+
+	/**
+	 * Builds a Lagrangian relaxation for the specified problem, the objective being given by the specified Sum constraint and the dualized
+	 * constraints being the specified Sum constraints
+	 * 
+	 * @param pb
+	 *            the problem to which the constraint is attached
+	 * @param objective
+	 *            the Sum constraint representing the objective
+	 * @param minimization
+	 *            true if the objective must be minimized
+	 * @param rows
+	 *            the Sum constraints to be dualized
+	 * @param nIterations
+	 *            the number of subgradient iterations performed at each call
+	 */
+	public LagrangianRelaxation(Problem pb, Sum objective, boolean minimization, List<Sum> rows, int nIterations) {
+		super(pb, scopeOf(objective, rows));
+		control(rows.size() > 0 && rows.stream().allMatch(c -> isDualizable(c)) && nIterations > 0);
+		this.optimizer = pb.optimizer;
+		Map<Variable, Integer> positions = new HashMap<>();
+		for (int j = 0; j < scp.length; j++)
+			positions.put(scp[j], j);
+		this.objCoeffs = new int[scp.length];
+		int[] coeffs = coeffsOf(objective);
+		for (int k = 0; k < objective.scp.length; k++)
+			objCoeffs[positions.get(objective.scp[k])] += minimization ? coeffs[k] : -coeffs[k];
+		this.rowPositions = new int[rows.size()][];
+		this.rowCoeffs = new int[rows.size()][];
+		this.rowLimits = new long[rows.size()];
+		this.rowEqs = new boolean[rows.size()];
+		for (int i = 0; i < rows.size(); i++) {
+			Sum c = rows.get(i);
+			boolean ge = c instanceof SumSimpleGE || c instanceof SumWeightedGE; // GE constraints are negated
+			int[] t = coeffsOf(c);
+			rowPositions[i] = Stream.of(c.scp).mapToInt(x -> positions.get(x)).toArray();
+			rowCoeffs[i] = IntStream.of(t).map(v -> ge ? -v : v).toArray();
+			rowLimits[i] = ge ? -c.limit() : c.limit();
+			rowEqs[i] = !(c instanceof SumSimpleLE || c instanceof SumWeightedLE || ge);
+		}
+		this.multipliers = new double[rows.size()];
+		this.currMultipliers = new double[rows.size()];
+		this.subgradient = new double[rows.size()];
+		this.reducedCosts = new double[scp.length];
+		this.nIterations = nIterations;
+	}
+
+	private static Variable[] scopeOf(Sum objective, List<Sum> rows) {
+		Set<Variable> set = new LinkedHashSet<>(Arrays.asList(objective.scp));
+		for (Sum c : rows)
+			set.addAll(Arrays.asList(c.scp));
+		return set.stream().toArray(Variable[]::new);
+	}
+
+	/**
+	 * Evaluates the Lagrangian function for the specified multipliers, with respect to the current bounds of the variables. Reduced costs are
+	 * recorded.
+	 * 
+	 * @param lambdas
+	 *            the multipliers
+	 * @return the value of the Lagrangian function, which is a lower bound of the objective
+	 */
+	private double evaluate(double[] lambdas) {
+		for (int j = 0; j < scp.length; j++)
+			reducedCosts[j] = objCoeffs[j];
+		double value = 0;
+		for (int i = 0; i < rowPositions.length; i++) {
+			if (lambdas[i] == 0)
+				continue;
+			for (int k = 0; k < rowPositions[i].length; k++)
+				reducedCosts[rowPositions[i][k]] += lambdas[i] * rowCoeffs[i][k];
+			value -= lambdas[i] * rowLimits[i];
+		}
+		for (int j = 0; j < scp.length; j++)
+			value += reducedCosts[j] * (reducedCosts[j] >= 0 ? doms[j].firstValue() : doms[j].lastValue());
+		return value;
+	}
+
+	/**
+	 * Computes the subgradient at the last evaluated multipliers (the relaxed solution is given by the signs of the reduced costs), projected so that
+	 * multipliers of inequalities remain non-negative.
+	 * 
+	 * @return the square of the norm of the subgradient
+	 */
+	private double computeSubgradient() {
+		double norm = 0;
+		for (int i = 0; i < rowPositions.length; i++) {
+			double g = -rowLimits[i];
+			for (int k = 0; k < rowPositions[i].length; k++) {
+				int j = rowPositions[i][k];
+				g += rowCoeffs[i][k] * (double) (reducedCosts[j] >= 0 ? doms[j].firstValue() : doms[j].lastValue());
+			}
+			subgradient[i] = !rowEqs[i] && currMultipliers[i] == 0 && g < 0 ? 0 : g;
+			norm += subgradient[i] * subgradient[i];
+		}
+		return norm;
+	}
+
+	/**
+	 * Runs the subgradient method from the best multipliers found so far, and returns the best computed lower bound. When returning, multipliers
+	 * contain the best multipliers, and reduced costs correspond to them.
+	 * 
+	 * @param limit
+	 *            the current limit of the objective (seen as being minimized)
+	 * @param nSteps
+	 *            the maximal number of subgradient iterations
+	 * @return the best lower bound computed for the objective
+	 */
+	private double runSubgradient(long limit, int nSteps) {
+		System.arraycopy(multipliers, 0, currMultipliers, 0, multipliers.length);
+		double best = evaluate(currMultipliers), value = best, theta = 2;
+		for (int step = 0; step < nSteps && best <= limit; step++) {
+			double norm = computeSubgradient();
+			if (norm == 0)
+				break; // the relaxed solution satisfies all dualized constraints
+			double t = theta * (limit + 1 - value) / norm;
+			for (int i = 0; i < currMultipliers.length; i++)
+				currMultipliers[i] = rowEqs[i] ? currMultipliers[i] + t * subgradient[i] : Math.max(0, currMultipliers[i] + t * subgradient[i]);
+			value = evaluate(currMultipliers);
+			if (value > best) {
+				best = value;
+				System.arraycopy(currMultipliers, 0, multipliers, 0, multipliers.length);
+			} else
+				theta /= 2;
+		}
+		return evaluate(multipliers);
+	}
+
+	@Override
+	public boolean runPropagator(Variable x) {
+		long limit = optimizer.minimization ? optimizer.cub.limit() : -optimizer.clb.limit();
+		boolean root = problem.solver.depth() == 0;
+		double value = runSubgradient(limit, root ? 10 * nIterations : nIterations);
+		double tolerance = EPSILON * Math.max(1, Math.abs(value));
+		long bound = (long) Math.ceil(value - tolerance);
+		if (bound > limit)
+			return x == null ? false : x.dom.fail();
+		if (root)
+			optimizer.updateWithRelaxedBound(optimizer.minimization ? bound : -bound);
+		double slack = limit - value + tolerance;
+		for (int i = futvars.limit; i >= 0; i--) { // reduced-cost filtering
+			int j = futvars.dense[i];
+			Domain dom = doms[j];
+			if (dom.size() == 1 || reducedCosts[j] == 0)
+				continue;
+			double shift = slack / Math.abs(reducedCosts[j]); // how far the variable can be moved from its best bound
+			if (shift >= (double) dom.lastValue() - dom.firstValue())
+				continue;
+			if (reducedCosts[j] > 0)
+				dom.removeValuesGT(dom.firstValue() + (int) Math.floor(shift + EPSILON));
+			else
+				dom.removeValuesLT(dom.lastValue() - (int) Math.floor(shift + EPSILON));
+			assert dom.size() > 0;
+		}
+		return true;
+	}
+}
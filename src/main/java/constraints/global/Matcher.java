@@ -30,7 +30,8 @@ import variables.Variable;
  * the flow graph, and prunes domains so as to reach (G)AC, as described in "The AllDifferent Constraint: An Empirical Survey" by I. Gent, I. Miguel, and P.
  * Nightingale, Artif. Intell. 172(18), 2008.
  * 
- * TODO : the code below is poorly incremental, and besides is recursive (how to avoid recursion?)
+ * The matching is kept from one call to the next (only the edges invalidated by removals are repaired), and strongly connected components are computed
+ * without recursion.
  * 
  * @author Vincent Perradin (refactoring by Christophe Lecoutre)
  */
@@ -115,6 +116,18 @@ public abstract class Matcher implements ObserverOnConstruction {
 	 */
 	private final SetSparse stackTarjan;
 
+	/**
+	 * stack of the nodes currently being explored by the DFS (used instead of recursive calls), with top the index of its last element
+	 */
+	private final int[] callStack;
+
+	private int top;
+
+	/**
+	 * nextNeighbor[n] is the index of the next neighbor of node n to be considered in the current DFS
+	 */
+	private final int[] nextNeighbor;
+
 	/**
 	 * neighborsOfValues[u] contains all neighbors of node u; we have possibly arity + 1 (for node T) such nodes
 	 */
@@ -176,6 +189,8 @@ public abstract class Matcher implements ObserverOnConstruction {
 		this.stackTarjan = new SetSparse(nNodes);
 		this.numDFS = new int[nNodes];
 		this.lowLink = new int[nNodes];
+		this.callStack = new int[nNodes];
+		this.nextNeighbor = new int[nNodes];
 
 		// this.data = new int[nNodes][2];
 
@@ -189,47 +204,73 @@ public abstract class Matcher implements ObserverOnConstruction {
 
 	protected abstract void computeNeighbors();
 
+	private int updateOrReturn(int node, int adjacentNode) {
+		if (visitTime[adjacentNode] != time)
+			return adjacentNode; // not visited yet
+		if (stackTarjan.contains(adjacentNode))
+			lowLink[node] = Math.min(lowLink[node], numDFS[adjacentNode]);
+		return -1;
+	}
+
 	/**
-	 * Computes Tarjan algorithm and prunes some values from the domains. Nodes are given a number as follows: a) i for the ith variable of the scope, b)
-	 * arity+v for a value v between minValue and maxValue, c) arity+intervalSize for node T
-	 * 
-	 * @param node
-	 *            starting vertex for the search
+	 * Returns the next node adjacent to the specified node that has not been visited yet by the current DFS, or -1. Adjacent nodes that are skipped (because
+	 * already visited) are used to update the low link of the specified node.
 	 */
-	protected final void tarjanRemoveValues(int node) {
+	private int nextUnvisitedNode(int node) {
+		if (node < arity) // node for a variable
+			return nextNeighbor[node]++ == 0 ? updateOrReturn(node, arity + varToVal[node]) : -1;
+		SetSparse neighbors = node < T ? neighborsOfValues[node - arity] : neighborsOfT;
+		int[] dense = neighbors.dense;
+		for (int i = nextNeighbor[node]; i <= neighbors.limit; i++) {
+			int adjacentNode = node < T ? (dense[i] == arity ? T : dense[i]) : arity + dense[i];
+			if (updateOrReturn(node, adjacentNode) != -1) {
+				nextNeighbor[node] = i + 1;
+				return adjacentNode;
+			}
+		}
+		nextNeighbor[node] = neighbors.limit + 1;
+		return -1;
+	}
+
+	private void enter(int node) {
 		assert visitTime[node] < time;
 		visitTime[node] = time;
 		numDFS[node] = lowLink[node] = ++nVisitedNodes;
+		nextNeighbor[node] = 0;
 		stackTarjan.add(node);
+		callStack[++top] = node;
+	}
 
-		if (node < arity) { // node for a variable
-			int adjacentNode = arity + varToVal[node];
-			if (visitTime[adjacentNode] != time) { // This code is repeated 3 times to save stacking (recursive calls)
-				tarjanRemoveValues(adjacentNode);
-				lowLink[node] = Math.min(lowLink[node], lowLink[adjacentNode]);
-			} else if (stackTarjan.contains(adjacentNode))
-				lowLink[node] = Math.min(lowLink[node], numDFS[adjacentNode]);
-		} else if (node < T) { // node for a value
-			SetSparse neighbors = neighborsOfValues[node - arity];
-			for (int i = 0; i <= neighbors.limit; i++) {
-				int adjacentNode = neighbors.dense[i] == arity ? T : neighbors.dense[i];
-				if (visitTime[adjacentNode] != time) {
-					tarjanRemoveValues(adjacentNode);
-					lowLink[node] = Math.min(lowLink[node], lowLink[adjacentNode]);
-				} else if (stackTarjan.contains(adjacentNode))
-					lowLink[node] = Math.min(lowLink[node], numDFS[adjacentNode]);
-			}
-		} else {
-			assert node == T; // node for T
-			for (int i = 0; i <= neighborsOfT.limit; i++) {
-				int adjacentNode = arity + neighborsOfT.dense[i];
-				if (visitTime[adjacentNode] != time) {
-					tarjanRemoveValues(adjacentNode);
-					lowLink[node] = Math.min(lowLink[node], lowLink[adjacentNode]);
-				} else if (stackTarjan.contains(adjacentNode))
-					lowLink[node] = Math.min(lowLink[node], numDFS[adjacentNode]);
+	/**
+	 * Computes Tarjan algorithm and prunes some values from the domains. Nodes are given a number as follows: a) i for the ith variable of the scope, b)
+	 * arity+v for a value v between minValue and maxValue, c) arity+intervalSize for node T. The DFS is iterative (an explicit stack is used instead of
+	 * recursive calls), so as to be safe with large scopes.
+	 * 
+	 * @param root
+	 *            starting vertex for the search
+	 */
+	protected final void tarjanRemoveValues(int root) {
+		top = -1;
+		enter(root);
+		while (top >= 0) {
+			int node = callStack[top];
+			int adjacentNode = nextUnvisitedNode(node);
+			if (adjacentNode != -1) {
+				enter(adjacentNode);
+				continue;
 			}
+			top--; // all adjacent nodes of node have been considered
+			removeValues(node);
+			if (top >= 0)
+				lowLink[callStack[top]] = Math.min(lowLink[callStack[top]], lowLink[node]);
 		}
+	}
+
+	/**
+	 * Called when all adjacent nodes of the specified node have been considered: if the node is the root of a SCC, the SCC is popped from the Tarjan stack
+	 * and values linking it with variables outside it are removed
+	 */
+	private void removeValues(int node) {
 		if (lowLink[node] == numDFS[node]) { // if node is the root of a SCC
 			splitSCC = splitSCC || lowLink[node] > 1 || nVisitedNodes < visitTime.length;
 			if (splitSCC) {
@@ -276,7 +317,6 @@ public abstract class Matcher implements ObserverOnConstruction {
 				}
 			}
 		}
-
 	}
 
 	protected boolean limited = false;
@@ -391,7 +431,9 @@ public abstract class Matcher implements ObserverOnConstruction {
 		public boolean findMaximumMatching() {
 			unmatchedVars.clear();
 			int depth = constraint.problem.solver.depth();
-			for (int x = 0; x < arity; x++) {
+			// fixed variables are discarded since their matched values cannot change (nor be involved in augmenting paths)
+			for (int j = unfixedVars.limit; j >= 0; j--) {
+				int x = unfixedVars.dense[j];
 				int nv = varToVal[x];
 				if (nv == -1)
 					unmatchedVars.add(x);
@@ -401,8 +443,8 @@ public abstract class Matcher implements ObserverOnConstruction {
 						varToVal[x] = valToVar[nv] = -1;
 						unmatchedVars.add(x);
 					}
-					if (scp[x].dom.size() == 1 && unfixedVars.contains(x))
-						unfixedVars.remove(x, depth);
+					if (scp[x].dom.size() == 1)
+						unfixedVars.removeAtPosition(j, depth);
 				}
 			}
 			while (!unmatchedVars.isEmpty())
@@ -631,7 +673,9 @@ public abstract class Matcher implements ObserverOnConstruction {
 		@Override
 		public boolean findMaximumMatching() {
 			// Make sure each variable is not matched with a value that is not in its domain anymore
-			for (int x = 0; x < arity; x++) {
+			// (fixed variables that have been discarded keep their matched values, which cannot be involved in augmenting paths)
+			for (int j = unfixedVars.limit; j >= 0; j--) {
+				int x = unfixedVars.dense[j];
 				Domain dom = scp[x].dom;
 				int u = varToVal[x];
 				if (u == -1 || !dom.containsValue(domainValueOf(u))) {
@@ -660,11 +704,12 @@ public abstract class Matcher implements ObserverOnConstruction {
 			}
 			int depth = constraint.problem.solver.depth();
 			unmatchedVars.clear();
-			for (int x = 0; x < arity; x++) {
+			for (int j = unfixedVars.limit; j >= 0; j--) {
+				int x = unfixedVars.dense[j];
 				if (varToVal[x] == -1)
 					unmatchedVars.add(x);
-				else if (scp[x].dom.size() == 1 && unfixedVars.contains(x))
-					unfixedVars.remove(x, depth);
+				else if (scp[x].dom.size() == 1)
+					unfixedVars.removeAtPosition(j, depth);
 			}
 			while (!unmatchedVars.isEmpty())
 				if (!findMatchingForVariable(unmatchedVars.pop()))
@@ -1,16 +1,39 @@
+/*
+ * This file is part of the constraint solver ACE (AbsCon Essence). 
+ *
+ * Copyright (c) 2021. All rights reserved.
+ * Christophe Lecoutre, CRIL, Univ. Artois and CNRS. 
+ * 
+ * Licensed under the MIT License.
+ * See LICENSE file in the project root for full license information.
+ */
+
 package constraints.global;
 
 import static utility.Kit.control;
 
+import java.util.Arrays;
 import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 import constraints.ConstraintGlobal;
+import interfaces.Tags.TagCallCompleteFiltering;
 import interfaces.Tags.TagNotAC;
+import interfaces.Tags.TagNotSymmetric;
 import problem.Problem;
-import sets.SetSparseReversible;
+import utility.Kit;
 import variables.Variable;
 
-public final class NoOverlap1 extends ConstraintGlobal implements TagNotAC {
+/**
+ * The constraint NoOverlap1 (unary resource, or disjunctive constraint) ensures that tasks, given by their starting times and (fixed) lengths, do not
+ * overlap. Filtering is performed on bounds, as described in "O(n log n) Filtering Algorithms for Unary Resource Constraint", CPAIOR 2004: 335-347, and
+ * "Unary Resource Constraint with Optional Activities", CP 2004: 62-76, by P. Vilím: overload checking, detectable precedences, not-first/not-last and
+ * edge-finding, all running in O(n log n) with Theta-trees and Theta-Lambda-trees. Rules are applied on the time line and on its mirror (for adjusting
+ * latest completion times), until a fixpoint is reached. Tasks of length 0 must have been discarded.
+ *
+ * @author Christophe Lecoutre
+ */
+public final class NoOverlap1 extends ConstraintGlobal implements TagNotAC, TagCallCompleteFiltering, TagNotSymmetric {
 
 	@Override
 	public boolean isSatisfiedBy(int[] tuple) {
@@ -21,39 +44,309 @@ public final class NoOverlap1 extends ConstraintGlobal implements TagNotAC {
 		return true;
 	}
 
-	private int[] widths;
+	/**********************************************************************************************
+	 * Inner class for Theta-Lambda-trees
+	 *********************************************************************************************/
+
+	/**
+	 * A balanced binary tree whose leaves are tasks sorted by their earliest starting times. Each task is either absent, white (in Theta) or gray (in
+	 * Lambda). Each node stores the total length and the earliest completion time of the white tasks of its subtree, and the same values when at most one
+	 * gray task of its subtree can be added.
+	 */
+	private final class ThetaLambdaTree {
+
+		private static final long MINUS_INFINITY = Long.MIN_VALUE / 4;
+
+		private final int size; // the number of leaves (power of 2)
+
+		private final long[] sum, ect, sumL, ectL; // nodes (as a heap, with leaves from size)
+
+		private ThetaLambdaTree() {
+			this.size = Integer.highestOneBit(scp.length) == scp.length ? scp.length : Integer.highestOneBit(scp.length) * 2;
+			this.sum = new long[2 * size];
+			this.ect = new long[2 * size];
+			this.sumL = new long[2 * size];
+			this.ectL = new long[2 * size];
+		}
+
+		private void clear() {
+			Arrays.fill(sum, 0);
+			Arrays.fill(ect, MINUS_INFINITY);
+			Arrays.fill(sumL, 0);
+			Arrays.fill(ectL, MINUS_INFINITY);
+		}
+
+		private void update(int node) {
+			for (node = node / 2; node > 0; node /= 2) {
+				int l = 2 * node, r = l + 1;
+				sum[node] = sum[l] + sum[r];
+				ect[node] = Math.max(ect[r], ect[l] + sum[r]);
+				sumL[node] = Math.max(sumL[l] + sum[r], sum[l] + sumL[r]);
+				ectL[node] = Math.max(ectL[r], Math.max(ect[l] + sumL[r], ectL[l] + sum[r]));
+			}
+		}
+
+		private void insert(int i) { // as a white task
+			int node = size + ranks[i];
+			sum[node] = sumL[node] = widths[i];
+			ect[node] = ectL[node] = est[i] + widths[i];
+			update(node);
+		}
+
+		private void gray(int i) {
+			int node = size + ranks[i];
+			sum[node] = 0;
+			ect[node] = MINUS_INFINITY;
+			update(node);
+		}
+
+		private void remove(int i) {
+			int node = size + ranks[i];
+			sum[node] = sumL[node] = 0;
+			ect[node] = ectL[node] = MINUS_INFINITY;
+			update(node);
+		}
+
+		private long ect() {
+			return ect[1];
+		}
+
+		private long ectL() {
+			return ectL[1];
+		}
+
+		/**
+		 * Returns the gray task responsible for the value of ectL at the root
+		 */
+		private int responsibleForEctL() {
+			int node = 1;
+			boolean forEct = false; // true if we look for the task responsible for sumL (and not ectL) in the current subtree
+			while (node < size) {
+				int l = 2 * node, r = l + 1;
+				if (forEct) {
+					if (sumL[node] == sumL[l] + sum[r])
+						node = l;
+					else
+						node = r;
+				} else if (ectL[node] == ectL[r])
+					node = r;
+				else if (ectL[node] == ect[l] + sumL[r]) {
+					node = r;
+					forEct = true;
+				} else
+					node = l;
+			}
+			return tasks[node - size];
+		}
+	}
+
+	/**********************************************************************************************
+	 * Class members
+	 *********************************************************************************************/
+
+	/**
+	 * The lengths of the tasks (whose starting times are given by the variables of the scope)
+	 */
+	private final int[] widths;
+
+	/**
+	 * Working values for tasks (earliest starting times and latest completion times), possibly mirrored
+	 */
+	private final long[] est, lct;
+
+	/**
+	 * New bounds computed for tasks on the current time line (earliest starting times and latest completion times)
+	 */
+	private final long[] newEst, newLct;
 
-	private SetSparseReversible relevantTasks; // currently relevant tasks
+	/**
+	 * Tasks sorted according to different criteria (earliest starting times, latest completion times, latest starting times and earliest completion
+	 * times)
+	 */
+	private final Integer[] byEst, byLct, byLst, byEct;
 
+	/**
+	 * ranks[i] is the rank of task i in byEst (and so, the position of its leaf in the tree), and tasks[r] the task whose rank is r
+	 */
+	private final int[] ranks, tasks;
+
+	private final ThetaLambdaTree tree;
+
+	/**
+	 * Builds a NoOverlap1 constraint (unary resource) for the specified problem, starting times and lengths
+	 *
+	 * @param pb
+	 *            the problem to which the constraint is attached
+	 * @param origins
+	 *            the variables denoting the starting times of tasks
+	 * @param widths
+	 *            the lengths of the tasks
+	 */
 	public NoOverlap1(Problem pb, Variable[] origins, int[] widths) {
 		super(pb, origins);
-		control(origins.length > 1 && origins.length == widths.length);
+		control(origins.length > 1 && origins.length == widths.length && scp.length == origins.length);
+		control(IntStream.of(widths).allMatch(w -> w > 0));
 		this.widths = widths;
+		int n = scp.length;
+		this.est = new long[n];
+		this.lct = new long[n];
+		this.newEst = new long[n];
+		this.newLct = new long[n];
+		this.byEst = IntStream.range(0, n).boxed().toArray(Integer[]::new);
+		this.byLct = byEst.clone();
+		this.byLst = byEst.clone();
+		this.byEct = byEst.clone();
+		this.ranks = new int[n];
+		this.tasks = new int[n];
+		this.tree = new ThetaLambdaTree();
+	}
+
+	private long lst(int i) {
+		return lct[i] - widths[i];
+	}
+
+	private long ect(int i) {
+		return est[i] + widths[i];
+	}
+
+	private void sort() {
+		Arrays.sort(byEst, (i, j) -> Long.compare(est[i], est[j]));
+		Arrays.sort(byLct, (i, j) -> Long.compare(lct[i], lct[j]));
+		Arrays.sort(byLst, (i, j) -> Long.compare(lst(i), lst(j)));
+		Arrays.sort(byEct, (i, j) -> Long.compare(ect(i), ect(j)));
+		for (int r = 0; r < byEst.length; r++) {
+			ranks[byEst[r]] = r;
+			tasks[r] = byEst[r];
+		}
+	}
+
+	/**
+	 * Overload checking and edge-finding: returns false if an overload is detected, and updates newEst otherwise
+	 */
+	private boolean edgeFinding() {
+		tree.clear();
+		for (int i = 0; i < scp.length; i++)
+			tree.insert(i);
+		for (int k = byLct.length - 1; k >= 0; k--) {
+			int j = byLct[k];
+			if (tree.ect() > lct[j])
+				return false;
+			tree.gray(j);
+			if (k == 0)
+				break;
+			long bound = lct[byLct[k - 1]];
+			if (tree.ect() > bound)
+				return false;
+			while (tree.ectL() > bound) {
+				int i = tree.responsibleForEctL();
+				newEst[i] = Math.max(newEst[i], tree.ect()); // the tasks in Theta must all precede i
+				tree.remove(i);
+			}
+		}
+		return true;
+	}
 
-		int horizon = IntStream.range(0, scp.length).map(i -> scp[i].dom.lastValue() + widths[i]).max().getAsInt();
+	/**
+	 * Detectable precedences: a task j must precede a task i when ect_i > lst_j; newEst is updated accordingly
+	 */
+	private void detectablePrecedences() {
+		tree.clear();
+		for (int k = 0, q = 0; k < byEct.length; k++) {
+			int i = byEct[k];
+			for (; q < byLst.length && ect(i) > lst(byLst[q]); q++)
+				tree.insert(byLst[q]);
+			boolean inside = ect(i) > lst(i); // i is necessarily in Theta (its mandatory part being not empty) in that case
+			if (inside)
+				tree.remove(i);
+			newEst[i] = Math.max(newEst[i], tree.ect());
+			if (inside)
+				tree.insert(i);
+		}
+	}
 
-		// this.volume = IntStream.of(widths).sum();
-		// this.margin = horizon - volume;
+	/**
+	 * Not-last: a task i cannot be the last one among the tasks whose latest starting times are before lct_i, if they cannot be all executed before
+	 * lst_i; newLct is updated accordingly
+	 */
+	private void notLast() {
+		tree.clear();
+		for (int k = 0, q = 0, last = -1; k < byLct.length; k++) {
+			int i = byLct[k];
+			for (; q < byLst.length && lct[i] > lst(byLst[q]); q++)
+				tree.insert(last = byLst[q]);
+			tree.remove(i); // i is necessarily in Theta since lst_i < lct_i
+			if (tree.ect() > lst(i))
+				newLct[i] = Math.min(newLct[i], lst(last));
+			tree.insert(i);
+		}
+	}
+
+	/**
+	 * Applies all rules on the current time line, and returns false if an inconsistency is detected
+	 */
+	private boolean filterOnTimeline() {
+		sort();
+		for (int i = 0; i < scp.length; i++) {
+			newEst[i] = est[i];
+			newLct[i] = lct[i];
+		}
+		if (edgeFinding() == false)
+			return false;
+		detectablePrecedences();
+		notLast();
+		return true;
 	}
 
 	@Override
-	public boolean runPropagator(Variable x) {
-		int depth = problem.solver.depth();
-
-		// we compute the relevant time bounds: minimum relevant start time and maximum relevant end time from current
-		// future variables
-		int smin = Integer.MAX_VALUE, emax = Integer.MIN_VALUE;
-		for (int j = futvars.limit; j >= 0; j--) {
-			int i = futvars.dense[j];
-			smin = Math.min(smin, scp[i].dom.firstValue());
-			emax = Math.max(emax, scp[i].dom.lastValue() + widths[i]);
-		}
-		// we update the set of relevant tasks to consider from (smin,emax)
-		for (int j = relevantTasks.limit; j >= 0; j--) {
-			int i = relevantTasks.dense[j];
-			if (scp[i].dom.size() == 1 && (scp[i].dom.lastValue() + widths[i] <= smin || emax <= scp[i].dom.firstValue()))
-				relevantTasks.removeAtPosition(j, depth);
+	public boolean runPropagator(Variable dummy) {
+		boolean modified = true;
+		while (modified) {
+			modified = false;
+			// on the time line
+			for (int i = 0; i < scp.length; i++) {
+				est[i] = scp[i].dom.firstValue();
+				lct[i] = scp[i].dom.lastValue() + widths[i];
+			}
+			if (filterOnTimeline() == false)
+				return scp[0].dom.fail();
+			for (int i = 0; i < scp.length; i++) {
+				int size = scp[i].dom.size();
+				if (scp[i].dom.removeValuesLT(newEst[i]) == false || scp[i].dom.removeValuesGT(newLct[i] - widths[i]) == false)
+					return false;
+				modified = modified || scp[i].dom.size() != size;
+			}
+			// on the mirrored time line
+			for (int i = 0; i < scp.length; i++) {
+				est[i] = -(scp[i].dom.lastValue() + widths[i]);
+				lct[i] = -scp[i].dom.firstValue();
+			}
+			if (filterOnTimeline() == false)
+				return scp[0].dom.fail();
+			for (int i = 0; i < scp.length; i++) {
+				int size = scp[i].dom.size();
+				if (scp[i].dom.removeValuesGT(-newEst[i] - widths[i]) == false || scp[i].dom.removeValuesLT(-newLct[i]) == false)
+					return false;
+				modified = modified || scp[i].dom.size() != size;
+			}
 		}
 		return true;
 	}
+
+	@Override
+	public String toString() {
+		return "constraint noOverlap: " + Kit.join(scp) + " lengths=" + Kit.join(widths);
+	}
+
+	/**
+	 * Returns true if a NoOverlap1 constraint can be posted for the specified starting times and lengths
+	 *
+	 * @param origins
+	 *            the variables denoting the starting times of tasks
+	 * @param widths
+	 *            the lengths of the tasks
+	 * @return true if a NoOverlap1 constraint can be posted for the specified starting times and lengths
+	 */
+	public static boolean isPostable(Variable[] origins, int[] widths) {
+		return origins.length > 1 && Stream.of(origins).distinct().count() == origins.length && IntStream.of(widths).allMatch(w -> w > 0);
+	}
 }
@@ -0,0 +1,221 @@
+/*
+ * This file is part of the constraint solver ACE (AbsCon Essence). 
+ *
+ * Copyright (c) 2021. All rights reserved.
+ * Christophe Lecoutre, CRIL, Univ. Artois and CNRS. 
+ * 
+ * Licensed under the MIT License.
+ * See LICENSE file in the project root for full license information.
+ */
+
+package constraints.global;
+
+import static utility.Kit.control;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import constraints.ConstraintGlobal;
+import interfaces.Tags.TagAC;
+import interfaces.Tags.TagCallCompleteFiltering;
+import interfaces.Tags.TagNotSymmetric;
+import problem.Problem;
+import variables.Domain;
+import variables.Variable;
+
+/**
+ * The constraint Stretch ensures that the sequence of values taken by the variables of the scope is composed of stretches (maximal subsequences of
+ * identical values) whose lengths are bounded, depending on the values, and possibly that some given patterns are respected for consecutive stretches.
+ * Filtering enforces GAC by means of dynamic programming over a layered graph whose nodes at each position are pairs (value, length of the current
+ * stretch), in the spirit of "A Domain Consistency Algorithm for the Stretch Constraint", CP 2004: 290-304, by L. Hellsten, G. Pesant and P. van Beek.
+ * Nodes are computed forward and backward, and a value is supported at a position if one of its nodes is reached in both directions.
+ * 
+ * @author Christophe Lecoutre
+ */
+public final class Stretch extends ConstraintGlobal implements TagAC, TagCallCompleteFiltering, TagNotSymmetric {
+
+	@Override
+	public boolean isSatisfiedBy(int[] t) {
+		int prev = -1, length = 0;
+		for (int p = 0; p <= t.length; p++) {
+			int i = p < t.length ? indexOf(t[p]) : -1;
+			if (p < t.length && i == -1)
+				return false;
+			if (i == prev) {
+				length++;
+				continue;
+			}
+			if (prev != -1 && (length < widthsMin[prev] || length > widthsMax[prev]))
+				return false;
+			if (prev != -1 && i != -1 && !patterns[prev][i])
+				return false;
+			prev = i;
+			length = 1;
+		}
+		return true;
+	}
+
+	/**
+	 * The values that can be taken by the variables of the scope
+	 */
+	private final int[] values;
+
+	/**
+	 * widthsMin[i] and widthsMax[i] are the minimal and maximal lengths of any stretch of the value values[i]
+	 */
+	private final int[] widthsMin, widthsMax;
+
+	/**
+	 * patterns[i][j] indicates if a stretch of values[j] can follow a stretch of values[i]
+	 */
+	private final boolean[][] patterns;
+
+	/**
+	 * indexes[p][i] is the index of values[i] in the domain of the variable at position p, or -1
+	 */
+	private final int[][] indexes;
+
+	/**
+	 * positions[p][a] is the index in values of the value at index a in the domain of the variable at position p, or -1
+	 */
+	private final int[][] positions;
+
+	/**
+	 * forward[p][i][l] indicates if the node (i,l) at position p can be reached from the first position: values[i] is assigned to the variable at
+	 * position p, and it ends a stretch of length l. Similarly, backward[p][i][l] indicates if the node (i,l) at position p can reach the last position.
+	 */
+	private final boolean[][][] forward, backward;
+
+	/**
+	 * A temporary array used to record the values that can end (or start) a stretch
+	 */
+	private final boolean[] flags;
+
+	/**
+	 * Builds a constraint Stretch for the specified problem
+	 * 
+	 * @param pb
+	 *            the problem to which the constraint is attached
+	 * @param list
+	 *            the involved variables
+	 * @param values
+	 *            the values that can be taken by the variables
+	 * @param widthsMin
+	 *            the minimal lengths of the stretches of each value
+	 * @param widthsMax
+	 *            the maximal lengths of the stretches of each value
+	 * @param patterns
+	 *            the pairs of values allowed for consecutive stretches, or null if there is no such restriction
+	 */
+	public Stretch(Problem pb, Variable[] list, int[] values, int[] widthsMin, int[] widthsMax, int[][] patterns) {
+		super(pb, list);
+		control(values.length > 0 && values.length == widthsMin.length && values.length == widthsMax.length);
+		control(IntStream.range(0, values.length).allMatch(i -> 0 < widthsMin[i] && widthsMin[i] <= widthsMax[i]));
+		control(IntStream.of(values).distinct().count() == values.length, "values must be distinct");
+		this.values = values;
+		this.widthsMin = widthsMin;
+		this.widthsMax = IntStream.of(widthsMax).map(w -> Math.min(w, list.length)).toArray();
+		this.patterns = new boolean[values.length][values.length];
+		for (int i = 0; i < values.length; i++)
+			for (int j = 0; j < values.length; j++)
+				this.patterns[i][j] = i != j && patterns == null;
+		if (patterns != null)
+			for (int[] pattern : patterns) {
+				int i = indexOf(pattern[0]), j = indexOf(pattern[1]);
+				control(i != -1 && j != -1, "pattern with a value not present in values");
+				this.patterns[i][j] = i != j;
+			}
+		this.indexes = Stream.of(list).map(x -> IntStream.of(values).map(v -> x.dom.toIdxIfPresent(v)).toArray()).toArray(int[][]::new);
+		this.positions = Stream.of(list).map(x -> IntStream.range(0, x.dom.initSize()).map(a -> indexOf(x.dom.toVal(a))).toArray()).toArray(int[][]::new);
+		this.forward = new boolean[list.length][values.length][];
+		this.backward = new boolean[list.length][values.length][];
+		for (int p = 0; p < list.length; p++)
+			for (int i = 0; i < values.length; i++) {
+				forward[p][i] = new boolean[this.widthsMax[i] + 1];
+				backward[p][i] = new boolean[this.widthsMax[i] + 1];
+			}
+		this.flags = new boolean[values.length];
+		defineKey(values, widthsMin, widthsMax, patterns == null ? "" : patterns);
+	}
+
+	private int indexOf(int v) {
+		for (int i = 0; i < values.length; i++)
+			if (values[i] == v)
+				return i;
+		return -1;
+	}
+
+	private boolean present(int p, int i) {
+		return indexes[p][i] != -1 && doms[p].contains(indexes[p][i]);
+	}
+
+	private void computeForward() {
+		int n = scp.length;
+		for (int i = 0; i < values.length; i++) {
+			Arrays.fill(forward[0][i], false);
+			forward[0][i][1] = present(0, i);
+		}
+		for (int p = 1; p < n; p++) {
+			for (int i = 0; i < values.length; i++) { // can a stretch of values[i] end at position p-1?
+				flags[i] = false;
+				for (int l = widthsMin[i]; l <= widthsMax[i] && !flags[i]; l++)
+					flags[i] = forward[p - 1][i][l];
+			}
+			for (int i = 0; i < values.length; i++) {
+				boolean[] current = forward[p][i], previous = forward[p - 1][i];
+				Arrays.fill(current, false);
+				if (!present(p, i))
+					continue;
+				for (int j = 0; j < values.length && !current[1]; j++)
+					current[1] = flags[j] && patterns[j][i];
+				for (int l = 2; l <= widthsMax[i]; l++)
+					current[l] = previous[l - 1];
+			}
+		}
+	}
+
+	private void computeBackward() {
+		int n = scp.length;
+		for (int i = 0; i < values.length; i++) {
+			Arrays.fill(backward[n - 1][i], false);
+			if (present(n - 1, i))
+				for (int l = widthsMin[i]; l <= widthsMax[i]; l++)
+					backward[n - 1][i][l] = true;
+		}
+		for (int p = n - 2; p >= 0; p--) {
+			for (int i = 0; i < values.length; i++) // can a stretch of values[i] start at position p+1?
+				flags[i] = backward[p + 1][i][1];
+			for (int i = 0; i < values.length; i++) {
+				boolean[] current = backward[p][i], next = backward[p + 1][i];
+				Arrays.fill(current, false);
+				if (!present(p, i))
+					continue;
+				boolean start = false; // can a stretch of another value start at position p+1 after a stretch of values[i]?
+				for (int j = 0; j < values.length && !start; j++)
+					start = flags[j] && patterns[i][j];
+				for (int l = 1; l <= widthsMax[i]; l++)
+					current[l] = (l < widthsMax[i] && next[l + 1]) || (start && l >= widthsMin[i]);
+			}
+		}
+	}
+
+	@Override
+	public boolean runPropagator(Variable dummy) {
+		computeForward();
+		computeBackward();
+		for (int p = 0; p < scp.length; p++) {
+			Domain dom = doms[p];
+			for (int a = dom.first(); a != -1; a = dom.next(a)) {
+				int i = positions[p][a];
+				boolean supported = false;
+				if (i != -1)
+					for (int l = 1; l <= widthsMax[i] && !supported; l++)
+						supported = forward[p][i][l] && backward[p][i][l];
+				if (!supported && dom.remove(a) == false)
+					return false;
+			}
+		}
+		return true;
+	}
+}
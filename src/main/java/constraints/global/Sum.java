@@ -35,6 +35,7 @@ import org.xcsp.common.predicates.XNode;
 import constraints.ConstraintGlobal;
 import constraints.global.Sum.SumViewWeighted.View.ViewTree01;
 import constraints.global.Sum.SumViewWeighted.View.ViewVariable;
+import interfaces.Observers.ObserverOnBacktracks.ObserverOnBacktracksSystematic;
 import interfaces.Tags.TagAC;
 import interfaces.Tags.TagCallCompleteFiltering;
 import interfaces.Tags.TagNotAC;
@@ -42,6 +43,7 @@ import interfaces.Tags.TagPostponableFiltering;
 import interfaces.Tags.TagSymmetric;
 import optimization.Optimizable;
 import problem.Problem;
+import sets.SetDense;
 import utility.Kit;
 import variables.Domain;
 import variables.DomainInfinite;
@@ -52,7 +54,17 @@ import variables.Variable;
  * 
  * @author Christophe Lecoutre
  */
-public abstract class Sum extends ConstraintGlobal implements TagCallCompleteFiltering, TagPostponableFiltering {
+public abstract class Sum extends ConstraintGlobal implements TagCallCompleteFiltering, TagPostponableFiltering, ObserverOnBacktracksSystematic {
+
+	@Override
+	public void restoreBefore(int depth) {
+		while (trailTop > 0 && trailLevels[trailTop - 1] >= depth) {
+			int lim = trailLimits[--trailTop];
+			for (int k = unfixed.limit + 1; k <= lim; k++)
+				fixedSum -= fixedContributions[unfixed.dense[k]];
+			unfixed.limit = lim;
+		}
+	}
 
 	/**
 	 * The limit (right-hand term) of the constraint
@@ -69,6 +81,38 @@ public abstract class Sum extends ConstraintGlobal implements TagCallCompleteFil
 	 */
 	protected long max;
 
+	/**
+	 * The greatest span (difference between the maximal and minimal contributions) of an unfixed variable, as computed when the bounds are recomputed; no
+	 * value can be pruned when the slack (with respect to the limit) is greater than or equal to it
+	 */
+	protected long maxSpan;
+
+	/**
+	 * The positions (in the scope) of the variables that were not fixed (i.e., with a singleton domain) when bounds were last recomputed; the positions
+	 * after the limit correspond to fixed variables, in the order they were detected
+	 */
+	protected final SetDense unfixed;
+
+	/**
+	 * The sum of the contributions of the fixed variables (i.e., whose positions are after the limit of unfixed); maintained incrementally
+	 */
+	protected long fixedSum;
+
+	/**
+	 * fixedContributions[i] is the contribution to fixedSum of the variable at position i in the scope (only relevant when this variable is fixed)
+	 */
+	private final long[] fixedContributions;
+
+	/**
+	 * The depths at which the limit of unfixed has been modified, and the limits before these modifications (stack of size trailTop)
+	 */
+	private final int[] trailLevels, trailLimits;
+
+	/**
+	 * The number of entries in the trail (trailLevels and trailLimits)
+	 */
+	private int trailTop;
+
 	public final long limit() {
 		return limit;
 	}
@@ -88,6 +132,29 @@ public abstract class Sum extends ConstraintGlobal implements TagCallCompleteFil
 	public Sum(Problem pb, Variable[] scp) {
 		super(pb, scp);
 		control(scp.length > 1);
+		this.unfixed = new SetDense(scp.length, true);
+		this.fixedContributions = new long[scp.length];
+		this.trailLevels = new int[scp.length];
+		this.trailLimits = new int[scp.length];
+	}
+
+	/**
+	 * Records that the variable at the specified position in unfixed is now fixed, with the specified contribution. This is trailed at the current depth.
+	 * 
+	 * @param k
+	 *            a position in the dense array of unfixed
+	 * @param contribution
+	 *            the contribution of the fixed variable to the sum
+	 */
+	protected final void fix(int k, long contribution) {
+		int depth = problem.solver.depth();
+		if (trailTop == 0 || trailLevels[trailTop - 1] != depth) {
+			trailLevels[trailTop] = depth;
+			trailLimits[trailTop++] = unfixed.limit;
+		}
+		fixedContributions[unfixed.dense[k]] = contribution;
+		fixedSum += contribution;
+		unfixed.removeAtPosition(k);
 	}
 
 	/**
@@ -186,16 +253,16 @@ public abstract class Sum extends ConstraintGlobal implements TagCallCompleteFil
 		}
 
 		public final long minCurrentObjectiveValue() {
-			long sum = 0;
-			for (Variable x : scp)
-				sum += x.dom.firstValue();
+			long sum = fixedSum;
+			for (int k = unfixed.limit; k >= 0; k--)
+				sum += doms[unfixed.dense[k]].firstValue();
 			return sum;
 		}
 
 		public final long maxCurrentObjectiveValue() {
-			long sum = 0;
-			for (Variable x : scp)
-				sum += x.dom.lastValue();
+			long sum = fixedSum;
+			for (int k = unfixed.limit; k >= 0; k--)
+				sum += doms[unfixed.dense[k]].lastValue();
 			return sum;
 		}
 
@@ -220,14 +287,25 @@ public abstract class Sum extends ConstraintGlobal implements TagCallCompleteFil
 		}
 
 		/**
-		 * Recomputes the minimal and maximal sums (seen as bounds) that can be obtained with respect to the current domains of the involved variables.
+		 * Recomputes the minimal and maximal sums (seen as bounds) that can be obtained with respect to the current domains of the involved variables. Only
+		 * variables that were not fixed are iterated over, the contributions of the other ones being trailed in fixedSum.
 		 */
 		protected final void recomputeBounds() {
 			min = max = 0;
-			for (Domain dom : doms) {
-				min += dom.firstValue();
-				max += dom.lastValue();
+			maxSpan = 0;
+			for (int k = unfixed.limit; k >= 0; k--) {
+				Domain dom = doms[unfixed.dense[k]];
+				if (dom.size() == 1)
+					fix(k, dom.singleValue());
+				else {
+					int first = dom.firstValue(), last = dom.lastValue();
+					min += first;
+					max += last;
+					maxSpan = Math.max(maxSpan, (long) last - first);
+				}
 			}
+			min += fixedSum; // fixedSum possibly updated in the loop
+			max += fixedSum;
 		}
 
 		// ************************************************************************
@@ -299,9 +377,11 @@ public abstract class Sum extends ConstraintGlobal implements TagCallCompleteFil
 					}
 					return x == null ? false : x.dom.fail();
 				}
-				for (int i = futvars.limit; i >= 0; i--) {
-					Domain dom = scp[futvars.dense[i]].dom;
-					if (dom.size() == 1)
+				if (maxSpan <= limit - min)
+					return true; // no value can be pruned
+				for (int k = unfixed.limit; k >= 0; k--) {
+					Domain dom = doms[unfixed.dense[k]];
+					if ((long) dom.lastValue() - dom.firstValue() <= limit - min)
 						continue;
 					max -= dom.lastValue();
 					dom.removeValuesGT(limit - (min - dom.firstValue()));
@@ -360,9 +440,11 @@ public abstract class Sum extends ConstraintGlobal implements TagCallCompleteFil
 					return entailed();
 				if (max < limit)
 					return x == null ? false : x.dom.fail();
-				for (int i = futvars.limit; i >= 0; i--) {
-					Domain dom = scp[futvars.dense[i]].dom;
-					if (dom.size() == 1)
+				if (maxSpan <= max - limit)
+					return true; // no value can be pruned
+				for (int k = unfixed.limit; k >= 0; k--) {
+					Domain dom = doms[unfixed.dense[k]];
+					if ((long) dom.lastValue() - dom.firstValue() <= max - limit)
 						continue;
 					min -= dom.firstValue();
 					dom.removeValuesLT(limit - (max - dom.lastValue()));
@@ -403,12 +485,12 @@ public abstract class Sum extends ConstraintGlobal implements TagCallCompleteFil
 				recomputeBounds();
 				if (limit < min || limit > max)
 					return evt.dom.fail();
-				if (futvars.size() > 0) {
-					int lastModified = futvars.limit, i = futvars.limit;
+				if (unfixed.size() > 0 && maxSpan > Math.min(limit - min, max - limit)) {
+					int lastModified = unfixed.limit, i = unfixed.limit;
 					do {
-						Domain dom = scp[futvars.dense[i]].dom;
+						Domain dom = doms[unfixed.dense[i]];
 						int sizeBefore = dom.size();
-						if (sizeBefore > 1) {
+						if (sizeBefore > 1 && (long) dom.lastValue() - dom.firstValue() > Math.min(limit - min, max - limit)) {
 							min -= dom.firstValue();
 							max -= dom.lastValue();
 							if (dom.removeValuesLT(limit - max) == false || dom.removeValuesGT(limit - min) == false)
@@ -418,7 +500,7 @@ public abstract class Sum extends ConstraintGlobal implements TagCallCompleteFil
 							min += dom.firstValue();
 							max += dom.lastValue();
 						}
-						i = i > 0 ? i - 1 : futvars.limit; // cyclic iteration
+						i = i > 0 ? i - 1 : unfixed.limit; // cyclic iteration
 					} while (lastModified != i);
 				}
 				assert controlFCLevel();
@@ -608,16 +690,20 @@ public abstract class Sum extends ConstraintGlobal implements TagCallCompleteFil
 		}
 
 		public final long minCurrentObjectiveValue() {
-			long sum = 0;
-			for (int i = 0; i < scp.length; i++)
-				sum += coeffs[i] * (coeffs[i] >= 0 ? scp[i].dom.firstValue() : scp[i].dom.lastValue());
+			long sum = fixedSum;
+			for (int k = unfixed.limit; k >= 0; k--) {
+				int i = unfixed.dense[k];
+				sum += coeffs[i] * (coeffs[i] >= 0 ? doms[i].firstValue() : doms[i].lastValue());
+			}
 			return sum;
 		}
 
 		public final long maxCurrentObjectiveValue() {
-			long sum = 0;
-			for (int i = 0; i < scp.length; i++)
-				sum += coeffs[i] * (coeffs[i] >= 0 ? scp[i].dom.lastValue() : scp[i].dom.firstValue());
+			long sum = fixedSum;
+			for (int k = unfixed.limit; k >= 0; k--) {
+				int i = unfixed.dense[k];
+				sum += coeffs[i] * (coeffs[i] >= 0 ? doms[i].lastValue() : doms[i].firstValue());
+			}
 			return sum;
 		}
 
@@ -655,14 +741,39 @@ public abstract class Sum extends ConstraintGlobal implements TagCallCompleteFil
 			return symmetryMatching;
 		}
 
+		/**
+		 * Returns the span of the contribution of the variable at the specified position in the scope, i.e., the difference between the maximal and
+		 * minimal values that the product of the variable and its coefficient can take
+		 * 
+		 * @param i
+		 *            a position in the scope
+		 * @return the span of the contribution of the ith variable
+		 */
+		protected final long span(int i) {
+			return Math.abs((long) coeffs[i]) * ((long) doms[i].lastValue() - doms[i].firstValue());
+		}
+
+		/**
+		 * Recomputes the minimal and maximal sums (seen as bounds) that can be obtained with respect to the current domains of the involved variables. Only
+		 * variables that were not fixed are iterated over, the contributions of the other ones being trailed in fixedSum.
+		 */
 		protected final void recomputeBounds() {
 			min = max = 0;
-			for (int i = 0; i < scp.length; i++) {
-				Domain dom = scp[i].dom;
+			maxSpan = 0;
+			for (int k = unfixed.limit; k >= 0; k--) {
+				int i = unfixed.dense[k];
+				Domain dom = doms[i];
 				int coeff = coeffs[i];
-				min += coeff * (coeff >= 0 ? dom.firstValue() : dom.lastValue());
-				max += coeff * (coeff >= 0 ? dom.lastValue() : dom.firstValue());
+				if (dom.size() == 1)
+					fix(k, coeff * (long) dom.singleValue());
+				else {
+					min += coeff * (coeff >= 0 ? dom.firstValue() : dom.lastValue());
+					max += coeff * (coeff >= 0 ? dom.lastValue() : dom.firstValue());
+					maxSpan = Math.max(maxSpan, span(i));
+				}
 			}
+			min += fixedSum; // fixedSum possibly updated in the loop
+			max += fixedSum;
 		}
 
 		// ************************************************************************
@@ -736,15 +847,14 @@ public abstract class Sum extends ConstraintGlobal implements TagCallCompleteFil
 					}
 					return x == null ? false : x.dom.fail();
 				}
-				// boolean test = false;
-				// if (test)
-				for (int i = futvars.limit; i >= 0; i--) {
-					// if (futvars.dense[i] == 0)
-					// continue; // TTTTTTT just test
-					Domain dom = scp[futvars.dense[i]].dom;
-					if (dom.size() == 1)
+				if (maxSpan <= limit - min)
+					return true; // no value can be pruned
+				for (int k = unfixed.limit; k >= 0; k--) {
+					int i = unfixed.dense[k];
+					if (span(i) <= limit - min)
 						continue;
-					int coeff = coeffs[futvars.dense[i]];
+					Domain dom = doms[i];
+					int coeff = coeffs[i];
 					if (coeff >= 0) {
 						max -= dom.lastValue() * coeff;
 						dom.removeValues(GT, limit - (min - dom.firstValue() * coeff), coeff);
@@ -793,11 +903,14 @@ public abstract class Sum extends ConstraintGlobal implements TagCallCompleteFil
 					return entailed();
 				if (max < limit)
 					return x == null ? false : x.dom.fail();
-				for (int i = futvars.limit; i >= 0; i--) {
-					Domain dom = scp[futvars.dense[i]].dom;
-					if (dom.size() == 1)
+				if (maxSpan <= max - limit)
+					return true; // no value can be pruned
+				for (int k = unfixed.limit; k >= 0; k--) {
+					int i = unfixed.dense[k];
+					if (span(i) <= max - limit)
 						continue;
-					int coeff = coeffs[futvars.dense[i]];
+					Domain dom = doms[i];
+					int coeff = coeffs[i];
 					if (coeff >= 0) {
 						min -= dom.firstValue() * coeff;
 						dom.removeValues(LT, limit - (max - dom.lastValue() * coeff), coeff);
@@ -850,13 +963,13 @@ public abstract class Sum extends ConstraintGlobal implements TagCallCompleteFil
 				if (limit < min || limit > max)
 					return x.dom.fail();
 				// if (!degraded || Variable.nValidValuesFor(scp) <= RUNNING_LIMIT)
-				if (futvars.size() > 0) {
-					int lastModified = futvars.limit, i = futvars.limit;
+				if (unfixed.size() > 0 && maxSpan > Math.min(limit - min, max - limit)) {
+					int lastModified = unfixed.limit, k = unfixed.limit;
 					do {
-						Domain dom = scp[futvars.dense[i]].dom;
+						Domain dom = doms[unfixed.dense[k]];
 						int sizeBefore = dom.size();
-						if (sizeBefore > 1) {
-							int coeff = coeffs[futvars.dense[i]];
+						if (sizeBefore > 1 && span(unfixed.dense[k]) > Math.min(limit - min, max - limit)) {
+							int coeff = coeffs[unfixed.dense[k]];
 							min -= coeff * (coeff >= 0 ? dom.firstValue() : dom.lastValue());
 							max -= coeff * (coeff >= 0 ? dom.lastValue() : dom.firstValue());
 							if (dom.removeValues(LT, limit - max, coeff) == false || dom.removeValues(GT, limit - min, coeff) == false)
@@ -867,8 +980,8 @@ public abstract class Sum extends ConstraintGlobal implements TagCallCompleteFil
 							min += coeff * (coeff >= 0 ? dom.firstValue() : dom.lastValue());
 							max += coeff * (coeff >= 0 ? dom.lastValue() : dom.firstValue());
 						}
-						i = i > 0 ? i - 1 : futvars.limit; // cyclic iteration
-					} while (lastModified != i);
+						k = k > 0 ? k - 1 : unfixed.limit; // cyclic iteration
+					} while (lastModified != k);
 				}
 				assert controlFCLevel();
 				return true;
@@ -0,0 +1,665 @@
+/*
+ * This file is part of the constraint solver ACE (AbsCon Essence). 
+ *
+ * Copyright (c) 2021. All rights reserved.
+ * Christophe Lecoutre, CRIL, Univ. Artois and CNRS. 
+ * 
+ * Licensed under the MIT License.
+ * See LICENSE file in the project root for full license information.
+ */
+
+package constraints.intension;
+
+import static org.xcsp.common.Types.TypeExpr.ABS;
+import static org.xcsp.common.Types.TypeExpr.ADD;
+import static org.xcsp.common.Types.TypeExpr.EQ;
+import static org.xcsp.common.Types.TypeExpr.IN;
+import static org.xcsp.common.Types.TypeExpr.LE;
+import static org.xcsp.common.Types.TypeExpr.LONG;
+import static org.xcsp.common.Types.TypeExpr.LT;
+import static org.xcsp.common.Types.TypeExpr.MAX;
+import static org.xcsp.common.Types.TypeExpr.MIN;
+import static org.xcsp.common.Types.TypeExpr.MUL;
+import static org.xcsp.common.Types.TypeExpr.NE;
+import static org.xcsp.common.Types.TypeExpr.NEG;
+import static org.xcsp.common.Types.TypeExpr.NOTIN;
+import static org.xcsp.common.Types.TypeExpr.SQR;
+import static org.xcsp.common.Types.TypeExpr.VAR;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.xcsp.common.IVar;
+import org.xcsp.common.Types.TypeExpr;
+import org.xcsp.common.Utilities;
+import org.xcsp.common.predicates.XNode;
+import org.xcsp.common.predicates.XNodeLeaf;
+import org.xcsp.common.predicates.XNodeParent;
+
+import constraints.Constraint;
+import constraints.ConstraintIntension.IntensionStructure;
+import interfaces.SpecificPropagator;
+import interfaces.Tags.TagCallCompleteFiltering;
+import interfaces.Tags.TagNotAC;
+import interfaces.Tags.TagNotSymmetric;
+import problem.Problem;
+import variables.Domain;
+import variables.Variable;
+
+/**
+ * This is the code for a generic bounds propagator of intension constraints, in the spirit of HC4-revise: Frédéric Benhamou, Frédéric Goualard, Laurent
+ * Granvilliers, Jean-François Puget: Revising Hull and Box Consistency. ICLP 1999: 230-244. <br />
+ * The expression tree is flattened into an array of nodes (each node being after its sons). Intervals are first computed bottom-up (forward evaluation),
+ * and then narrowed top-down (backward projection) from the root that must be true. The bounds of the domains of the variables are finally updated, and
+ * the process is repeated until no more bound is modified (or a limit is reached). Each pass is linear in the size of the tree.
+ *
+ * @author Christophe Lecoutre
+ */
+public final class HC4 extends Constraint implements SpecificPropagator, TagNotAC, TagCallCompleteFiltering, TagNotSymmetric {
+
+	/**
+	 * The value used for representing infinity (bounds are saturated to -INFINITY and +INFINITY, so that sums never overflow)
+	 */
+	private static final long INFINITY = 1L << 61;
+
+	/**
+	 * The maximum number of forward/backward passes performed at each call to the propagator
+	 */
+	private static final int PASS_LIMIT = 16;
+
+	/**
+	 * Returns true if the specified tree can be handled by the propagator, i.e., if it only involves variables, integers and operators for which interval
+	 * reasoning is implemented
+	 *
+	 * @param node
+	 *            a node of an expression tree
+	 * @return true if the specified tree can be handled by the propagator
+	 */
+	public static boolean canFilter(XNode<? extends IVar> node) {
+		switch (node.type) {
+		case VAR:
+		case LONG:
+			return true;
+		case NEG:
+		case ABS:
+		case SQR:
+		case NOT:
+		case ADD:
+		case SUB:
+		case MUL:
+		case DIV:
+		case MOD:
+		case DIST:
+		case MIN:
+		case MAX:
+		case LT:
+		case LE:
+		case GE:
+		case GT:
+		case EQ:
+		case NE:
+		case IFF:
+		case AND:
+		case OR:
+		case IMP:
+		case IF:
+			return Stream.of(node.sons).allMatch(son -> canFilter(son));
+		case XOR:
+			return node.sons.length == 2 && Stream.of(node.sons).allMatch(son -> canFilter(son));
+		case IN:
+		case NOTIN:
+			return node.sons.length == 2 && canFilter(node.sons[0]) && node.sons[1].type == TypeExpr.SET
+					&& Stream.of(node.sons[1].sons).allMatch(son -> son.type == LONG);
+		default:
+			return false;
+		}
+	}
+
+	private static long clamp(long v) {
+		return v < -INFINITY ? -INFINITY : v > INFINITY ? INFINITY : v;
+	}
+
+	private static long addLow(long a, long b) {
+		return a == -INFINITY || b == -INFINITY ? -INFINITY : clamp(a + b);
+	}
+
+	private static long addHigh(long a, long b) {
+		return a == INFINITY || b == INFINITY ? INFINITY : clamp(a + b);
+	}
+
+	private static long mul(long a, long b) {
+		if (a == 0 || b == 0)
+			return 0;
+		if (Math.abs(a) == INFINITY || Math.abs(b) == INFINITY || Math.multiplyHigh(a, b) != ((a * b) >> 63))
+			return (a < 0) == (b < 0) ? INFINITY : -INFINITY;
+		return clamp(a * b);
+	}
+
+	private static boolean finite(long... values) {
+		for (long v : values)
+			if (Math.abs(v) == INFINITY)
+				return false;
+		return true;
+	}
+
+	private static long floorSqrt(long v) {
+		long r = (long) Math.sqrt(v);
+		while (r * r > v)
+			r--;
+		while ((r + 1) * (r + 1) <= v)
+			r++;
+		return r;
+	}
+
+	private static long ceilSqrt(long v) {
+		long r = floorSqrt(v);
+		return r * r == v ? r : r + 1;
+	}
+
+	/**********************************************************************************************
+	 * Class members
+	 *********************************************************************************************/
+
+	@Override
+	public boolean isSatisfiedBy(int[] t) {
+		return evaluator.isSatisfiedBy(t);
+	}
+
+	/**
+	 * The object used to check tuples (complete instantiations)
+	 */
+	private final IntensionStructure evaluator;
+
+	/**
+	 * types[i] is the type of the ith node of the flattened tree; after flattening, the only types are VAR, LONG, NEG, ABS, SQR, NOT, ADD, MUL (binary), DIV,
+	 * MOD, MIN, MAX, LT, LE, EQ, NE (binary relational operators), IF, IN and NOTIN
+	 */
+	private final TypeExpr[] types;
+
+	/**
+	 * sons[i] gives the indexes of the sons of the ith node (always smaller than i)
+	 */
+	private final int[][] sons;
+
+	/**
+	 * values[i] is the value of the ith node if it is a constant (type LONG), the position of the variable in the scope if it is a variable (type VAR)
+	 */
+	private final long[] values;
+
+	/**
+	 * sets[i] is the sorted array of values of the ith node if it is of type IN or NOTIN, null otherwise
+	 */
+	private final long[][] sets;
+
+	/**
+	 * The current lower bounds of the nodes
+	 */
+	private final long[] lows;
+
+	/**
+	 * The current upper bounds of the nodes
+	 */
+	private final long[] highs;
+
+	/**
+	 * The indexes of the nodes that are variables
+	 */
+	private final int[] leaves;
+
+	/**
+	 * Builds a bounds propagator (HC4) for the specified problem, with the specified scope and for the specified Boolean expression tree
+	 *
+	 * @param pb
+	 *            the problem to which the constraint is attached
+	 * @param scp
+	 *            the scope of the constraint
+	 * @param tree
+	 *            the Boolean expression tree giving the semantics of the constraint
+	 */
+	public HC4(Problem pb, Variable[] scp, XNodeParent<IVar> tree) {
+		super(pb, scp);
+		assert tree.exactlyVars(scp) && canFilter(tree);
+		this.evaluator = new IntensionStructure(tree, pb.head.control.intension.compile);
+		Flattener flattener = new Flattener(tree.vars());
+		flattener.flatten(tree);
+		int n = flattener.types.size();
+		this.types = flattener.types.toArray(new TypeExpr[0]);
+		this.sons = flattener.sons.toArray(new int[0][]);
+		this.values = flattener.values.stream().mapToLong(v -> v).toArray();
+		this.sets = flattener.sets.toArray(new long[0][]);
+		this.lows = new long[n];
+		this.highs = new long[n];
+		this.leaves = IntStream.range(0, n).filter(i -> types[i] == VAR).toArray();
+	}
+
+	/**
+	 * A class for flattening trees while normalizing operators (for example, x - y becomes x + (-y) and x > y becomes y < x)
+	 */
+	private static class Flattener {
+		private final IVar[] vars;
+		private final List<TypeExpr> types = new ArrayList<>();
+		private final List<int[]> sons = new ArrayList<>();
+		private final List<Long> values = new ArrayList<>();
+		private final List<long[]> sets = new ArrayList<>();
+
+		private Flattener(IVar[] vars) {
+			this.vars = vars;
+		}
+
+		private int add(TypeExpr type, long value, long[] set, int... sons) {
+			types.add(type);
+			this.sons.add(sons);
+			values.add(value);
+			sets.add(set);
+			return types.size() - 1;
+		}
+
+		private int add(TypeExpr type, int... sons) {
+			return add(type, 0, null, sons);
+		}
+
+		private int chain(TypeExpr type, int[] t, boolean swap) {
+			int[] pairs = new int[t.length - 1];
+			for (int i = 0; i < pairs.length; i++)
+				pairs[i] = swap ? add(type, t[i + 1], t[i]) : add(type, t[i], t[i + 1]);
+			return pairs.length == 1 ? pairs[0] : add(MIN, pairs);
+		}
+
+		private int flatten(XNode<? extends IVar> node) {
+			if (node.type == VAR)
+				return add(VAR, Utilities.indexOf(((XNodeLeaf<?>) node).value, vars), null);
+			if (node.type == LONG)
+				return add(LONG, (Long) ((XNodeLeaf<?>) node).value, null);
+			if (node.type == IN || node.type == NOTIN) {
+				long[] set = Stream.of(node.sons[1].sons).mapToLong(son -> (Long) ((XNodeLeaf<?>) son).value).sorted().distinct().toArray();
+				return add(node.type, 0, set, flatten(node.sons[0]));
+			}
+			int[] t = Stream.of(node.sons).mapToInt(son -> flatten(son)).toArray();
+			switch (node.type) {
+			case SUB:
+				return add(ADD, t[0], add(NEG, t[1]));
+			case DIST:
+				return add(ABS, add(ADD, t[0], add(NEG, t[1])));
+			case MUL:
+				int k = t[0];
+				for (int i = 1; i < t.length; i++)
+					k = add(MUL, k, t[i]);
+				return k;
+			case AND: // and is min, or is max (when sons are Boolean)
+				return add(MIN, t);
+			case OR:
+				return add(MAX, t);
+			case IMP:
+				return add(MAX, add(TypeExpr.NOT, t[0]), t[1]);
+			case XOR:
+				return add(NE, t);
+			case LT:
+			case LE:
+				return chain(node.type, t, false);
+			case GT:
+				return chain(LT, t, true);
+			case GE:
+				return chain(LE, t, true);
+			case EQ:
+			case IFF:
+				return chain(EQ, t, false);
+			case NE:
+				if (t.length == 2)
+					return add(NE, t);
+				List<Integer> pairs = new ArrayList<>();
+				for (int i = 0; i < t.length; i++)
+					for (int j = i + 1; j < t.length; j++)
+						pairs.add(add(NE, t[i], t[j]));
+				return add(MIN, pairs.stream().mapToInt(i -> i).toArray());
+			default:
+				return add(node.type, t);
+			}
+		}
+	}
+
+	/**
+	 * Computes the interval of the ith node from the intervals of its sons (forward evaluation)
+	 *
+	 * @param i
+	 *            the index of a node
+	 */
+	private void forward(int i) {
+		int[] s = sons[i];
+		long low, high;
+		switch (types[i]) {
+		case VAR:
+			Domain dom = scp[(int) values[i]].dom;
+			low = dom.firstValue();
+			high = dom.lastValue();
+			break;
+		case LONG:
+			low = high = values[i];
+			break;
+		case NEG:
+			low = -highs[s[0]];
+			high = -lows[s[0]];
+			break;
+		case NOT:
+			low = addLow(1, -highs[s[0]]);
+			high = addHigh(1, -lows[s[0]]);
+			break;
+		case ABS:
+		case SQR:
+			long l = lows[s[0]], h = highs[s[0]];
+			low = l >= 0 ? l : h <= 0 ? -h : 0;
+			high = Math.max(-l, h);
+			if (types[i] == SQR) {
+				low = mul(low, low);
+				high = mul(high, high);
+			}
+			break;
+		case ADD:
+			low = high = 0;
+			for (int j : s) {
+				low = addLow(low, lows[j]);
+				high = addHigh(high, highs[j]);
+			}
+			break;
+		case MUL:
+			long c1 = mul(lows[s[0]], lows[s[1]]), c2 = mul(lows[s[0]], highs[s[1]]), c3 = mul(highs[s[0]], lows[s[1]]), c4 = mul(highs[s[0]], highs[s[1]]);
+			low = Math.min(Math.min(c1, c2), Math.min(c3, c4));
+			high = Math.max(Math.max(c1, c2), Math.max(c3, c4));
+			break;
+		case DIV:
+			low = INFINITY;
+			high = -INFINITY;
+			l = lows[s[0]];
+			h = highs[s[0]];
+			if (!finite(l, h, lows[s[1]], highs[s[1]])) {
+				low = -INFINITY;
+				high = INFINITY;
+				break;
+			}
+			// truncated division is monotonic in each argument on both parts of the divisor not containing 0
+			for (long[] part : new long[][] { { lows[s[1]], Math.min(highs[s[1]], -1) }, { Math.max(lows[s[1]], 1), highs[s[1]] } })
+				if (part[0] <= part[1])
+					for (long v : new long[] { l / part[0], l / part[1], h / part[0], h / part[1] }) {
+						low = Math.min(low, v);
+						high = Math.max(high, v);
+					}
+			break;
+		case MOD:
+			long m = Math.max(Math.abs(lows[s[1]]), Math.abs(highs[s[1]])) - 1; // the largest absolute value of a remainder
+			l = lows[s[0]];
+			h = highs[s[0]];
+			low = l >= 0 ? 0 : Math.max(l, -m);
+			high = h <= 0 ? 0 : Math.min(h, m);
+			break;
+		case MIN:
+			low = high = INFINITY;
+			for (int j : s) {
+				low = Math.min(low, lows[j]);
+				high = Math.min(high, highs[j]);
+			}
+			break;
+		case MAX:
+			low = high = -INFINITY;
+			for (int j : s) {
+				low = Math.max(low, lows[j]);
+				high = Math.max(high, highs[j]);
+			}
+			break;
+		case LT:
+			low = highs[s[0]] < lows[s[1]] ? 1 : 0;
+			high = lows[s[0]] >= highs[s[1]] ? 0 : 1;
+			break;
+		case LE:
+			low = highs[s[0]] <= lows[s[1]] ? 1 : 0;
+			high = lows[s[0]] > highs[s[1]] ? 0 : 1;
+			break;
+		case EQ:
+		case NE:
+			boolean disjoint = highs[s[0]] < lows[s[1]] || highs[s[1]] < lows[s[0]];
+			boolean fixed = lows[s[0]] == highs[s[0]] && lows[s[1]] == highs[s[1]] && lows[s[0]] == lows[s[1]];
+			low = types[i] == EQ ? (fixed ? 1 : 0) : (disjoint ? 1 : 0);
+			high = types[i] == EQ ? (disjoint ? 0 : 1) : (fixed ? 0 : 1);
+			break;
+		case IF:
+			if (lows[s[0]] == 1 && highs[s[0]] == 1) {
+				low = lows[s[1]];
+				high = highs[s[1]];
+			} else if (lows[s[0]] > 1 || highs[s[0]] < 1) {
+				low = lows[s[2]];
+				high = highs[s[2]];
+			} else {
+				low = Math.min(lows[s[1]], lows[s[2]]);
+				high = Math.max(highs[s[1]], highs[s[2]]);
+			}
+			break;
+		case IN:
+		case NOTIN:
+			int first = firstIn(sets[i], lows[s[0]]);
+			boolean none = first == sets[i].length || sets[i][first] > highs[s[0]];
+			boolean all = lows[s[0]] == highs[s[0]] && !none;
+			low = types[i] == IN ? (all ? 1 : 0) : (none ? 1 : 0);
+			high = types[i] == IN ? (none ? 0 : 1) : (all ? 0 : 1);
+			break;
+		default:
+			throw new AssertionError();
+		}
+		lows[i] = low;
+		highs[i] = high;
+	}
+
+	/**
+	 * Returns the index of the first value in the specified sorted array that is greater than or equal to the specified value
+	 */
+	private static int firstIn(long[] set, long value) {
+		int p = Arrays.binarySearch(set, value);
+		return p >= 0 ? p : -p - 1;
+	}
+
+	/**
+	 * Narrows the interval of the ith node with the specified bounds, and returns false if it becomes empty
+	 */
+	private boolean narrow(int i, long low, long high) {
+		if (low > lows[i])
+			lows[i] = low;
+		if (high < highs[i])
+			highs[i] = high;
+		return lows[i] <= highs[i];
+	}
+
+	/**
+	 * Narrows the intervals of the sons of the ith node, given the interval of this node (backward projection). Returns false if an empty interval is
+	 * obtained.
+	 *
+	 * @param i
+	 *            the index of a node
+	 * @return false if an empty interval is obtained
+	 */
+	private boolean backward(int i) {
+		int[] s = sons[i];
+		long low = lows[i], high = highs[i];
+		switch (types[i]) {
+		case NEG:
+			return narrow(s[0], -high, -low);
+		case NOT:
+			return narrow(s[0], addLow(1, -high), addHigh(1, -low));
+		case ABS:
+		case SQR:
+			long l = types[i] == ABS ? low : ceilSqrt(Math.max(low, 0)), h = types[i] == ABS || high == INFINITY ? high : floorSqrt(high);
+			// the son must belong to [-h,-l] U [l,h]
+			long sl = lows[s[0]], sh = highs[s[0]];
+			boolean negative = sl <= -l && -h <= sh, positive = sl <= h && l <= sh;
+			if (!negative && !positive)
+				return false;
+			return narrow(s[0], negative ? Math.max(sl, -h) : Math.max(sl, l), positive ? Math.min(sh, h) : Math.min(sh, -l));
+		case ADD:
+			long sumLows = 0, sumHighs = 0;
+			int infLows = 0, infHighs = 0; // number of infinite bounds
+			for (int j : s) {
+				if (lows[j] == -INFINITY)
+					infLows++;
+				else
+					sumLows += lows[j];
+				if (highs[j] == INFINITY)
+					infHighs++;
+				else
+					sumHighs += highs[j];
+				if (Math.abs(sumLows) > INFINITY || Math.abs(sumHighs) > INFINITY)
+					return true; // no projection (to avoid overflows)
+			}
+			for (int j : s) {
+				boolean othersLowsFinite = infLows - (lows[j] == -INFINITY ? 1 : 0) == 0, othersHighsFinite = infHighs - (highs[j] == INFINITY ? 1 : 0) == 0;
+				long newLow = othersHighsFinite ? addLow(low, -(sumHighs - (highs[j] == INFINITY ? 0 : highs[j]))) : -INFINITY;
+				long newHigh = othersLowsFinite ? addHigh(high, -(sumLows - (lows[j] == -INFINITY ? 0 : lows[j]))) : INFINITY;
+				if (!narrow(j, newLow, newHigh))
+					return false;
+			}
+			return true;
+		case MUL:
+			for (int k = 0; k < 2; k++) {
+				int j = s[k], o = s[1 - k]; // j is the son to be narrowed and o the other son
+				if (lows[o] > 0 || highs[o] < 0) {
+					if (finite(low, high, lows[o], highs[o])) {
+						long c1 = Math.floorDiv(low, lows[o]), c2 = Math.floorDiv(low, highs[o]), c3 = Math.floorDiv(high, lows[o]), c4 = Math.floorDiv(high, highs[o]);
+						long d1 = -Math.floorDiv(-low, lows[o]), d2 = -Math.floorDiv(-low, highs[o]), d3 = -Math.floorDiv(-high, lows[o]),
+								d4 = -Math.floorDiv(-high, highs[o]);
+						if (!narrow(j, Math.min(Math.min(d1, d2), Math.min(d3, d4)), Math.max(Math.max(c1, c2), Math.max(c3, c4))))
+							return false;
+					}
+				}
+				if (low > 0 || high < 0) // the son cannot be 0
+					if ((lows[j] == 0 && !narrow(j, 1, highs[j])) || (highs[j] == 0 && !narrow(j, lows[j], -1)))
+						return false;
+			}
+			return true;
+		case MIN:
+			int candidate = -1; // the unique son that may be less than or equal to high, if any
+			for (int j : s) {
+				if (!narrow(j, low, INFINITY))
+					return false;
+				if (lows[j] <= high)
+					candidate = candidate == -1 ? j : -2;
+			}
+			return candidate == -1 ? false : candidate == -2 || narrow(candidate, -INFINITY, high);
+		case MAX:
+			candidate = -1; // the unique son that may be greater than or equal to low, if any
+			for (int j : s) {
+				if (!narrow(j, -INFINITY, high))
+					return false;
+				if (highs[j] >= low)
+					candidate = candidate == -1 ? j : -2;
+			}
+			return candidate == -1 ? false : candidate == -2 || narrow(candidate, low, INFINITY);
+		case LT:
+		case LE:
+		case EQ:
+		case NE:
+			if (low == high)
+				return relation(types[i], low == 1, s[0], s[1]);
+			return true;
+		case IF:
+			int c = s[0];
+			if (highs[s[1]] < low || high < lows[s[1]]) { // the condition cannot be true
+				if ((lows[c] == 1 && !narrow(c, 2, highs[c])) || (highs[c] == 1 && !narrow(c, lows[c], 0)))
+					return false;
+			}
+			if (highs[s[2]] < low || high < lows[s[2]]) // the condition must be true
+				if (!narrow(c, 1, 1))
+					return false;
+			if (lows[c] == 1 && highs[c] == 1)
+				return narrow(s[1], low, high);
+			if (lows[c] > 1 || highs[c] < 1)
+				return narrow(s[2], low, high);
+			return true;
+		case IN:
+		case NOTIN:
+			if (low != high)
+				return true;
+			long[] set = sets[i];
+			int j = s[0];
+			if ((low == 1) == (types[i] == IN)) { // the son must take a value in the set
+				int first = firstIn(set, lows[j]);
+				if (first == set.length)
+					return false;
+				int last = firstIn(set, highs[j] + 1) - 1;
+				return last >= 0 && narrow(j, set[first], set[last]);
+			}
+			// the son must take a value outside the set
+			long newLow = lows[j], newHigh = highs[j];
+			for (int p = firstIn(set, newLow); p < set.length && set[p] == newLow; p++)
+				newLow++;
+			for (int p = firstIn(set, newHigh); p >= 0 && p < set.length && set[p] == newHigh; p--)
+				newHigh--;
+			return narrow(j, newLow, newHigh);
+		default:
+			return true; // no projection for VAR, LONG, DIV and MOD
+		}
+	}
+
+	/**
+	 * Narrows the intervals of the two specified nodes so that the relation of the specified type holds (or does not hold, if the specified Boolean is
+	 * false) between them. Returns false if an empty interval is obtained.
+	 */
+	private boolean relation(TypeExpr type, boolean holding, int a, int b) {
+		if (!holding) { // we reason with the negation of the relation
+			if (type == LT || type == LE)
+				return relation(type == LT ? LE : LT, true, b, a);
+			return relation(type == EQ ? NE : EQ, true, a, b);
+		}
+		switch (type) {
+		case LT:
+			return narrow(a, -INFINITY, addHigh(highs[b], -1)) && narrow(b, addLow(lows[a], 1), INFINITY);
+		case LE:
+			return narrow(a, -INFINITY, highs[b]) && narrow(b, lows[a], INFINITY);
+		case EQ:
+			return narrow(a, lows[b], highs[b]) && narrow(b, lows[a], highs[a]);
+		default: // NE
+			for (int k = 0; k < 2; k++) {
+				int j = k == 0 ? a : b, o = k == 0 ? b : a;
+				if (lows[o] == highs[o]) {
+					long v = lows[o];
+					if ((lows[j] == v && !narrow(j, v + 1, highs[j])) || (highs[j] == v && !narrow(j, lows[j], v - 1)))
+						return false;
+				}
+			}
+			return true;
+		}
+	}
+
+	@Override
+	public boolean runPropagator(Variable dummy) {
+		int root = types.length - 1;
+		for (int pass = 0; pass < PASS_LIMIT; pass++) {
+			for (int i = 0; i <= root; i++) {
+				forward(i);
+				if (lows[i] > highs[i])
+					return dummy.dom.fail();
+			}
+			if (lows[root] == 1 && highs[root] == 1)
+				return entailed();
+			if (!narrow(root, 1, 1))
+				return dummy.dom.fail();
+			for (int i = root; i >= 0; i--)
+				if (!backward(i))
+					return dummy.dom.fail();
+			boolean modified = false;
+			for (int i : leaves) {
+				Domain dom = scp[(int) values[i]].dom;
+				if (lows[i] > dom.firstValue()) {
+					if (dom.removeValuesLT(lows[i]) == false)
+						return false;
+					modified = true;
+				}
+				if (highs[i] < dom.lastValue()) {
+					if (dom.removeValuesGT(highs[i]) == false)
+						return false;
+					modified = true;
+				}
+			}
+			if (!modified)
+				break;
+		}
+		return true;
+	}
+}
@@ -0,0 +1,293 @@
+/*
+ * This file is part of the constraint solver ACE (AbsCon Essence). 
+ *
+ * Copyright (c) 2021. All rights reserved.
+ * Christophe Lecoutre, CRIL, Univ. Artois and CNRS. 
+ * 
+ * Licensed under the MIT License.
+ * See LICENSE file in the project root for full license information.
+ */
+
+package constraints.intension;
+
+import static java.lang.invoke.MethodType.methodType;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Arrays;
+import java.util.stream.Stream;
+
+import org.xcsp.common.IVar;
+import org.xcsp.common.Types.TypeExpr;
+import org.xcsp.common.Utilities;
+import org.xcsp.common.predicates.XNode;
+import org.xcsp.common.predicates.XNodeLeaf;
+
+/**
+ * A class useful to compile expression trees (of intension constraints) into method handles of type (int[])long. Method handles are built with
+ * combinators only (no interpretation of a stack of evaluators), so that the JIT compiler can specialize them into straight-line code once they are hot.
+ * The semantics is the same as the one of TreeEvaluator, with the difference that logical operators and the ternary operator if are evaluated
+ * lazily. Variables are associated with their positions in the array returned by vars() on the root node of the tree.
+ *
+ * @author Christophe Lecoutre
+ */
+public final class TreeCompiler {
+
+	/**
+	 * The type of compiled trees: a tuple of values is given, and a long is returned (1 for true and 0 for false when the tree is Boolean)
+	 */
+	private static final MethodType TYPE = methodType(long.class, int[].class);
+
+	/**
+	 * The maximal size of the trees to be compiled (method handles being nested, very large trees are better interpreted)
+	 */
+	private static final int SIZE_LIMIT = 500;
+
+	private static final MethodHandle GETTER = MethodHandles.arrayElementGetter(int[].class);
+
+	private static final MethodHandle NEG, ABS, SQR, NOT, ADD, SUB, MUL, DIV, MOD, POW, DIST, MIN, MAX, LT, LE, GE, GT, NE, EQ, XOR, IN, NOTIN, IS_TRUE;
+
+	static {
+		try {
+			MethodHandles.Lookup lookup = MethodHandles.lookup();
+			MethodType unary = methodType(long.class, long.class), binary = methodType(long.class, long.class, long.class);
+			NEG = lookup.findStatic(TreeCompiler.class, "neg", unary);
+			ABS = lookup.findStatic(Math.class, "abs", unary);
+			SQR = lookup.findStatic(TreeCompiler.class, "sqr", unary);
+			NOT = lookup.findStatic(TreeCompiler.class, "not", unary);
+			ADD = lookup.findStatic(TreeCompiler.class, "add", binary);
+			SUB = lookup.findStatic(TreeCompiler.class, "sub", binary);
+			MUL = lookup.findStatic(TreeCompiler.class, "mul", binary);
+			DIV = lookup.findStatic(TreeCompiler.class, "div", binary);
+			MOD = lookup.findStatic(TreeCompiler.class, "mod", binary);
+			POW = lookup.findStatic(TreeCompiler.class, "pow", binary);
+			DIST = lookup.findStatic(TreeCompiler.class, "dist", binary);
+			MIN = lookup.findStatic(Math.class, "min", binary);
+			MAX = lookup.findStatic(Math.class, "max", binary);
+			LT = lookup.findStatic(TreeCompiler.class, "lt", binary);
+			LE = lookup.findStatic(TreeCompiler.class, "le", binary);
+			GE = lookup.findStatic(TreeCompiler.class, "ge", binary);
+			GT = lookup.findStatic(TreeCompiler.class, "gt", binary);
+			NE = lookup.findStatic(TreeCompiler.class, "ne", binary);
+			EQ = lookup.findStatic(TreeCompiler.class, "eq", binary);
+			XOR = lookup.findStatic(TreeCompiler.class, "xor", binary);
+			IN = lookup.findStatic(TreeCompiler.class, "in", methodType(long.class, long[].class, long.class));
+			NOTIN = lookup.findStatic(TreeCompiler.class, "notin", methodType(long.class, long[].class, long.class));
+			IS_TRUE = lookup.findStatic(TreeCompiler.class, "isTrue", methodType(boolean.class, long.class));
+		} catch (NoSuchMethodException | IllegalAccessException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+	private static long neg(long a) {
+		return -a;
+	}
+
+	private static long sqr(long a) {
+		return a * a;
+	}
+
+	private static long not(long a) {
+		return 1 - a;
+	}
+
+	private static long add(long a, long b) {
+		return a + b;
+	}
+
+	private static long sub(long a, long b) {
+		return a - b;
+	}
+
+	private static long mul(long a, long b) {
+		return a * b;
+	}
+
+	private static long div(long a, long b) {
+		return a / b;
+	}
+
+	private static long mod(long a, long b) {
+		return a % b;
+	}
+
+	private static long pow(long a, long b) {
+		return (long) Math.pow(a, b);
+	}
+
+	private static long dist(long a, long b) {
+		return Math.abs(a - b);
+	}
+
+	private static long lt(long a, long b) {
+		return a < b ? 1 : 0;
+	}
+
+	private static long le(long a, long b) {
+		return a <= b ? 1 : 0;
+	}
+
+	private static long ge(long a, long b) {
+		return a >= b ? 1 : 0;
+	}
+
+	private static long gt(long a, long b) {
+		return a > b ? 1 : 0;
+	}
+
+	private static long ne(long a, long b) {
+		return a != b ? 1 : 0;
+	}
+
+	private static long eq(long a, long b) {
+		return a == b ? 1 : 0;
+	}
+
+	private static long xor(long a, long b) {
+		return (a == 1) != (b == 1) ? 1 : 0;
+	}
+
+	private static long in(long[] sortedValues, long a) {
+		return Arrays.binarySearch(sortedValues, a) >= 0 ? 1 : 0;
+	}
+
+	private static long notin(long[] sortedValues, long a) {
+		return Arrays.binarySearch(sortedValues, a) >= 0 ? 0 : 1;
+	}
+
+	private static boolean isTrue(long a) {
+		return a == 1;
+	}
+
+	/**
+	 * Returns a method handle of type (int[])long that computes the specified operation on the values of the two specified method handles
+	 */
+	private static MethodHandle combine(MethodHandle operation, MethodHandle h1, MethodHandle h2) {
+		return MethodHandles.permuteArguments(MethodHandles.filterArguments(operation, 0, h1, h2), TYPE, 0, 0);
+	}
+
+	private static MethodHandle constant(long value) {
+		return MethodHandles.dropArguments(MethodHandles.constant(long.class, value), 0, int[].class);
+	}
+
+	private static MethodHandle test(MethodHandle h) {
+		return MethodHandles.filterReturnValue(h, IS_TRUE);
+	}
+
+	private static MethodHandle fold(MethodHandle operation, MethodHandle[] hs) {
+		MethodHandle h = hs[0];
+		for (int i = 1; i < hs.length; i++)
+			h = combine(operation, h, hs[i]);
+		return h;
+	}
+
+	/**
+	 * Returns a method handle checking that the specified relational operation holds for any two consecutive method handles (chaining)
+	 */
+	private static MethodHandle chain(MethodHandle operation, MethodHandle[] hs) {
+		MethodHandle h = constant(1);
+		for (int i = hs.length - 2; i >= 0; i--)
+			h = MethodHandles.guardWithTest(test(combine(operation, hs[i], hs[i + 1])), h, constant(0));
+		return h;
+	}
+
+	/**
+	 * Returns a method handle of type (int[])long for the specified expression tree, or null if the tree is too large or an operator is not handled
+	 *
+	 * @param tree
+	 *            an expression tree
+	 * @return a method handle of type (int[])long for the specified tree, or null
+	 */
+	public static MethodHandle compile(XNode<? extends IVar> tree) {
+		return tree.size() > SIZE_LIMIT ? null : compile(tree, tree.vars());
+	}
+
+	private static MethodHandle compile(XNode<? extends IVar> node, IVar[] vars) {
+		if (node instanceof XNodeLeaf) {
+			Object value = ((XNodeLeaf<?>) node).value;
+			if (node.type == TypeExpr.VAR)
+				return MethodHandles.insertArguments(GETTER, 1, Utilities.indexOf(value, vars)).asType(TYPE);
+			if (node.type == TypeExpr.LONG)
+				return constant((Long) value);
+			return null; // symbols, parameters, ...
+		}
+		TypeExpr type = node.type;
+		if (type == TypeExpr.IN || type == TypeExpr.NOTIN) {
+			if (node.sons.length != 2 || node.sons[1].type != TypeExpr.SET || Stream.of(node.sons[1].sons).anyMatch(son -> son.type != TypeExpr.LONG))
+				return null;
+			MethodHandle h = compile(node.sons[0], vars);
+			long[] values = Stream.of(node.sons[1].sons).mapToLong(son -> (Long) ((XNodeLeaf<?>) son).value).sorted().toArray();
+			return h == null ? null : MethodHandles.filterReturnValue(h, MethodHandles.insertArguments(type == TypeExpr.IN ? IN : NOTIN, 0, values));
+		}
+		MethodHandle[] hs = new MethodHandle[node.sons.length];
+		for (int i = 0; i < hs.length; i++)
+			if ((hs[i] = compile(node.sons[i], vars)) == null)
+				return null;
+		switch (type) {
+		case NEG:
+			return MethodHandles.filterReturnValue(hs[0], NEG);
+		case ABS:
+			return MethodHandles.filterReturnValue(hs[0], ABS);
+		case SQR:
+			return MethodHandles.filterReturnValue(hs[0], SQR);
+		case NOT:
+			return MethodHandles.filterReturnValue(hs[0], NOT);
+		case ADD:
+			return fold(ADD, hs);
+		case MUL:
+			return fold(MUL, hs);
+		case MIN:
+			return fold(MIN, hs);
+		case MAX:
+			return fold(MAX, hs);
+		case SUB:
+			return combine(SUB, hs[0], hs[1]);
+		case DIV:
+			return combine(DIV, hs[0], hs[1]);
+		case MOD:
+			return combine(MOD, hs[0], hs[1]);
+		case POW:
+			return combine(POW, hs[0], hs[1]);
+		case DIST:
+			return combine(DIST, hs[0], hs[1]);
+		case LT:
+			return hs.length == 2 ? combine(LT, hs[0], hs[1]) : chain(LT, hs);
+		case LE:
+			return hs.length == 2 ? combine(LE, hs[0], hs[1]) : chain(LE, hs);
+		case GE:
+			return hs.length == 2 ? combine(GE, hs[0], hs[1]) : chain(GE, hs);
+		case GT:
+			return hs.length == 2 ? combine(GT, hs[0], hs[1]) : chain(GT, hs);
+		case EQ:
+		case IFF:
+			return hs.length == 2 ? combine(EQ, hs[0], hs[1]) : chain(EQ, hs);
+		case NE:
+			if (hs.length == 2)
+				return combine(NE, hs[0], hs[1]);
+			MethodHandle h = constant(1); // all values must be different
+			for (int i = 0; i < hs.length; i++)
+				for (int j = i + 1; j < hs.length; j++)
+					h = MethodHandles.guardWithTest(test(combine(NE, hs[i], hs[j])), h, constant(0));
+			return h;
+		case AND:
+			h = hs[hs.length - 1];
+			for (int i = hs.length - 2; i >= 0; i--)
+				h = MethodHandles.guardWithTest(test(hs[i]), h, constant(0));
+			return h;
+		case OR:
+			h = hs[hs.length - 1];
+			for (int i = hs.length - 2; i >= 0; i--)
+				h = MethodHandles.guardWithTest(test(hs[i]), constant(1), h);
+			return h;
+		case XOR:
+			return fold(XOR, hs);
+		case IMP:
+			return MethodHandles.guardWithTest(test(hs[0]), hs[1], constant(1));
+		case IF:
+			return MethodHandles.guardWithTest(test(hs[0]), hs[1], hs[2]);
+		default:
+			return null;
+		}
+	}
+}
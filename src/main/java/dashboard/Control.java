@@ -482,11 +482,13 @@ public final class Control {
 		public final boolean replaceObjVar = addB("replaceObjVar", "rov", true,
 				"Must we replace the objective variable by an objective constraint, when possible?");
 		public final int boundDescentCoeff = addI("boundDescentCoeff", "bdc", 1, "Bound descent coefficient");
+		public final int lagrangian = addI("lagrangian", "lag", 0,
+				"Number of subgradient iterations per call for a Lagrangian bound of a sum objective (0: no bound); ten times more at the root");
 	}
 
 	public class OptionsExtension extends OptionGroup {
-		public final Extension positive = addE("positive", "", Extension.CT, "Algorithm for (non-binary) positive table constraints");
-		public final Extension negative = addE("negative", "", Extension.V, "Algorithm for (non-binary) negative table constraint");
+		public final Extension positive = addE("positive", "", Extension.CT, "Algorithm for (non-binary) positive table constraints (AUTO for a choice per constraint)");
+		public final Extension negative = addE("negative", "", Extension.V, "Algorithm for (non-binary) negative table constraint (AUTO for a choice per constraint)");
 		public final boolean generic2 = addB("generic2", "", true, "Must we use a generic filtering scheme for binary table constraints?");
 		public final String structureClass2 = addS("structureClass2", "sc2", Bits.class, null, "Structures to be used for binary table constraints");
 		public final String structureClass3 = addS("structureClass3", "sc3", Matrix3D.class, null, "Structures to be used for ternary table constraints");
@@ -495,7 +497,12 @@ public final class Control {
 		public final int variant = addI("variant", "extv", 0, "Variant to be used for some algorithms (e.g., VA or CMDD)");
 		public final boolean decremental = addB("decremental", "extd", true, "Must we use a decremental mode for some algorithms (e.g., STR2, CT or CMDD)");
 		public final int small = addI("small", "exts", 16, "table size threshold for considering a special propagator");
+		public final int largeNegative = addI("largeNegative", "extln", 1000, "table size threshold for using CTN instead of V (-1 for never)");
+		public final int largeHybrid = addI("largeHybrid", "extlh", 64, "table size threshold for using CTHybrid instead of CHybridSTR (-1 for never)");
+		public final int compression = addI("compression", "extc", -1, "table size limit for compressing positive tables into starred tables (-1 for never)");
+		public final int compressionTime = addI("compressionTime", "extct", 500, "time limit (in ms) for compressing a table into a starred table");
 		public final boolean toMDD = addB("toMDD", "tomdd", false, "Must we attempt to convert extension constraints into MDDs (if possible)");
+		public final String cacheDir = addS("cacheDir", "extcd", "", "Directory where tables are cached on disk, and loaded from on later runs (no cache if empty)");
 
 		public boolean reverse(int arity, boolean positive) {
 			return (positive && arity <= arityLimitToNegative) || (!positive && arity <= arityLimitToPositive);
@@ -522,12 +529,21 @@ public final class Control {
 		public final int arityForClauseHybridTrees = addI("arityForClauseHybridTrees", "acht", PLUS_INFINITY_INT,
 				"Arity for recognizing clauses on hybrid tree expressions");
 		public final boolean toHybrid = addB("toHybrid", "toh", false, "Must we convert toward hybrid tables, when possible?");
+		public final boolean compile = addB("compile", "ic", true, "Must we compile expression trees (into method handles) instead of interpreting them?");
+		public final boolean shareSubterms = addB("shareSubterms", "shs", false, "Must we share (by means of auxiliary variables) arithmetic subterms occurring several times?");
+		public final int memoizationLimit = addI("memoizationLimit", "iml", 30, "Limit on tree size for memoizing evaluations of tuples (-1 for never)");
+		public final int spaceLimitToBounds = addI("spaceLimitToBounds", "slb", -1,
+				"Limit on space beyond which intension constraints are filtered on bounds (HC4), when possible (-1 for never)");
 
 		public boolean toExtension(Variable[] vars, XNode<IVar> tree) {
 			Variable[] t = tree == null || !(tree instanceof XNodeParent) || !((XNodeParent<?>) tree).isEqVar() ? vars
 					: IntStream.range(0, vars.length - 1).mapToObj(i -> vars[i]).toArray(Variable[]::new);
 			return t.length <= arityLimitToExtension && Constraint.howManyVariablesWithin(t, spaceLimitToExtension) == Constants.ALL;
 		}
+
+		public boolean toBounds(Variable[] vars) {
+			return spaceLimitToBounds != -1 && Constraint.howManyVariablesWithin(vars, spaceLimitToBounds) != Constants.ALL;
+		}
 	}
 
 	public class OptionsGlobal extends OptionGroup {
@@ -538,14 +554,22 @@ public final class Control {
 		public final int allEqual = addI("allEqual", "g_ae", 0, "Algorithm for AllEqual");
 		public final boolean redundantSumForCounts = addB("redundantSumForCounts", "rcs", true,
 				"Must we try to post redudant sums for several counts acting as cardinality?");
+		public final int cardinality = addI("cardinality", "g_card", 0, "Algorithm for Cardinality (0: flow-based, enforcing GAC, 1: bounds consistency)");
 		public final int element = addI("element", "g_elt", 0, "Algorithm for Element");
-		public final int circuit = addI("circuit", "g_circ", 0, "Algorithm for Circuit");
+		public final int flow = addI("flow", "g_flow", 0, "Algorithm for Flow (0: dedicated propagator, 1: decomposition into sums)");
+		public final int knapsack = addI("knapsack", "g_kn", 0, "Algorithm for Knapsack (0: dedicated propagator, 1: decomposition into sums)");
+		public final int circuit = addI("circuit", "g_circ", 0,
+				"Algorithm for Circuit (0: AllDifferent and chains, 1: under development, 2: with reachability reasoning)");
+		public final int cumulative = addI("cumulative", "g_cu", 0,
+				"Algorithm for Cumulative (0: timetable, 1: with edge-finding, 2: with edge-finding and time-table edge-finding)");
 		public final int cumulativeAux = addI("cumulativeAux", "g_cua", 0, "Limit for introducing aux variables for Cumulative");
-		public final int noOverlap1 = addI("noOverlap1", "g_no1", 0, "Algorithm for NoOverlap 1D");
+		public final int noOverlap1 = addI("noOverlap1", "g_no1", 0,
+				"Algorithm for NoOverlap 1D (0: pairwise disjunctive constraints, 1: decomposition, 2: global unary resource, 12: hybrid tables)");
 		public final int noOverlap2 = addI("noOverlap2", "g_no2", 0, "Algorithm for NoOverlap 2D");
 		public final boolean noOverlapAux = addB("noOverlapAux", "g_noa", true, "Introducing aux variables for NoOverlap (when relevant)?");
 		public final int noOverlapRedundLimit = addI("noOverlapRedundLimit", "g_nor", 10, "Arity limit for posting redundant constraints for NoOverlap?");
-		public final int binpacking = addI("binpacking", "g_bp", 0, "Algorithm for BinPacking");
+		public final int binpacking = addI("binpacking", "g_bp", 0,
+				"Algorithm for BinPacking (0: energetic reasoning, 1: decomposition into sums, 2: loads with knapsack reasoning and L2 bound)");
 		public final boolean binpackingRedun = addB("binpackingRedun", "g_bpr", false, "Redundant constraints for for BinPacking");
 		public final boolean viewForSum = addB("viewForSum", "vs", false, "Must we use views for Sum constraints, when possible?");
 		public final boolean eqDecForSum = addB("eqDecForSum", "eqs", false,
@@ -161,6 +161,17 @@ public abstract class Optimizer implements ObserverOnRuns {
 		return value() + gapBound;
 	}
 
+	/**
+	 * Possibly tightens the bounding interval with the specified bound, computed for example by a relaxation at the root node: assuming minimization, no
+	 * solution can have a cost smaller than it. By default, nothing is done, since the limits of the two objective constraints are managed by the
+	 * strategy.
+	 * 
+	 * @param bound
+	 *            a lower bound (when minimizing) or an upper bound (when maximizing) of the objective
+	 */
+	public void updateWithRelaxedBound(long bound) {
+	}
+
 	protected abstract void shiftLimitWhenSuccess();
 
 	protected abstract void shiftLimitWhenFailure();
@@ -203,6 +214,18 @@ public abstract class Optimizer implements ObserverOnRuns {
 			// nothing to do
 		}
 
+		@Override
+		public void updateWithRelaxedBound(long bound) {
+			// the limit of the secondary constraint (clb when minimizing) is never modified by this strategy, so it can be tightened
+			if (minimization && bound > minBound) {
+				minBound = bound;
+				clb.limit(minBound);
+			} else if (!minimization && bound < maxBound) {
+				maxBound = bound;
+				cub.limit(maxBound);
+			}
+		}
+
 		@Override
 		protected void shiftLimitWhenFailure() {
 			throw new AssertionError("should not be called");
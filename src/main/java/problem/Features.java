@@ -287,7 +287,7 @@ public final class Features {
 			// ctrTypes.add(c.getClass().getSimpleName() + (arity == 1 && !(c instanceof Extension1) ? "u"
 			// : (c instanceof ConstraintExtension ? "-" + c.extStructure().getClass().getSimpleName() : "")));
 			// if (c.extStructure() instanceof Table)
-			// tableSizes.add(((Table) c.extStructure()).tuples.length);
+			// tableSizes.add(((Table) c.extStructure()).nTuples);
 			// if (c instanceof CHybrid)
 			// tableSizes.add(((TableHybrid) c.extStructure()).hybridTuples.length);
 			return num;
@@ -311,7 +311,7 @@ public final class Features {
 				ctrTypes.add(c.getClass().getSimpleName() + (arity == 1 && !(c instanceof Extension1) ? "_1"
 						: (c instanceof ConstraintExtension ? "-" + c.extStructure().getClass().getSimpleName() : "")));
 				if (c.extStructure() instanceof Table)
-					tableSizes.add(((Table) c.extStructure()).tuples.length);
+					tableSizes.add(((Table) c.extStructure()).nTuples);
 				if (c instanceof CHybrid)
 					tableSizes.add(((TableHybrid) c.extStructure()).hybridTuples.length);
 				if (c.extStructure() instanceof MDD)
@@ -13,6 +13,7 @@ package problem;
 import static constraints.Constraint.howManyVariablesWithin;
 import static java.util.stream.Collectors.groupingBy;
 import static java.util.stream.Collectors.summingLong;
+import static java.util.stream.Collectors.toList;
 import static org.xcsp.common.Constants.PLUS_INFINITY_INT;
 import static org.xcsp.common.Constants.STAR;
 import static org.xcsp.common.Constants.STAR_SYMBOL;
@@ -146,11 +147,14 @@ import constraints.ConstraintExtension;
 import constraints.ConstraintExtension.Extension1;
 import constraints.ConstraintIntension;
 import constraints.extension.CHybrid;
+import constraints.extension.CHybrid.CHybridSTR;
 import constraints.extension.CMDD.CMDDO;
 import constraints.extension.CMDD.CMDDS;
+import constraints.extension.CTHybrid;
 import constraints.extension.structures.Table;
 import constraints.extension.structures.TableHybrid.HybridTuple;
 import constraints.global.AllDifferent;
+import constraints.global.AllDifferent.AllDifferentBound;
 import constraints.global.AllDifferent.AllDifferentComplete;
 import constraints.global.AllDifferent.AllDifferentCounting;
 import constraints.global.AllDifferent.AllDifferentExceptWeak;
@@ -160,7 +164,9 @@ import constraints.global.AllEqual;
 import constraints.global.Among;
 import constraints.global.BinPacking.BinPackingEnergetic;
 import constraints.global.BinPacking.BinPackingEnergeticLoad;
-import constraints.global.Cardinality;
+import constraints.global.BinPacking.BinPackingShaw;
+import constraints.global.Cardinality.CardinalityBound;
+import constraints.global.Cardinality.CardinalityFlow;
 import constraints.global.Circuit;
 import constraints.global.Circuit2;
 import constraints.global.ClauseUnaryTrees;
@@ -198,15 +204,23 @@ import constraints.global.Extremum.ExtremumVar.Maximum;
 import constraints.global.Extremum.ExtremumVar.Minimum;
 import constraints.global.ExtremumArg.ExtremumArgVar.MaximumArg;
 import constraints.global.ExtremumArg.ExtremumArgVar.MinimumArg;
+import constraints.global.Flow;
+import constraints.global.Flow.FlowSimple;
+import constraints.global.Flow.FlowWeighted;
+import constraints.global.Knapsack;
+import constraints.global.LagrangianRelaxation;
 import constraints.global.Lexicographic;
 import constraints.global.NValues.NValuesCst;
 import constraints.global.NValues.NValuesCst.NValuesCstGE;
 import constraints.global.NValues.NValuesCst.NValuesCstLE;
 import constraints.global.NValues.NValuesVar;
 import constraints.global.NoOverlap;
+import constraints.global.NoOverlap1;
 import constraints.global.Precedence;
 import constraints.global.Product.ProductSimple;
+import constraints.global.Stretch;
 import constraints.global.SubsetAllDifferent;
+import constraints.global.Sum;
 import constraints.global.Sum.SumSimple;
 import constraints.global.Sum.SumSimple.SumSimpleGE;
 import constraints.global.Sum.SumSimple.SumSimpleLE;
@@ -218,6 +232,7 @@ import constraints.global.Sum.SumWeighted.SumWeightedLE;
 import constraints.global.SumScalarBoolean.SumScalarBooleanCst;
 import constraints.global.SumScalarBoolean.SumScalarBooleanVar;
 import constraints.global.Xor;
+import constraints.intension.HC4;
 import constraints.intension.Nogood;
 import constraints.intension.Primitive2;
 import constraints.intension.Primitive2.PrimitiveBinaryNoCst;
@@ -281,6 +296,7 @@ public final class Problem extends ProblemIMP implements ObserverOnConstruction
 
 	public static final int DEFAULT = 0;
 	public static final int DECOMPOSITION = 1;
+	public static final int GLOBAL = 2;
 
 	public static final int TABLE_ORDINARY = 10;
 	public static final int TABLE_STARRED = 11;
@@ -630,6 +646,14 @@ public final class Problem extends ProblemIMP implements ObserverOnConstruction
 					sum(vars.stream().toArray(Var[]::new), Kit.repeat(1, vars.size()), Condition.buildFrom(EQ, list.length));
 			}
 		}
+		if (head.control.optimization.lagrangian > 0 && optimizer != null && (optimizer.ctr instanceof SumSimple || optimizer.ctr instanceof SumWeighted)) {
+			List<Sum> rows = constraints.stream().filter(c -> c != optimizer.clb && c != optimizer.cub && LagrangianRelaxation.isDualizable(c)).map(c -> (Sum) c)
+					.collect(toList());
+			if (rows.size() > 0) {
+				post(new LagrangianRelaxation(this, (Sum) optimizer.ctr, optimizer.minimization, rows, head.control.optimization.lagrangian));
+				features.nAddedCtrs++;
+			}
+		}
 	}
 
 	/**
@@ -784,6 +808,7 @@ public final class Problem extends ProblemIMP implements ObserverOnConstruction
 		loadData(data, dataFormat, dataSaving);
 		head.output.afterData();
 		api.model();
+		postTreesWithSubterms();
 		if (subsetAllDifferentScopes.size() > 0)
 			post(new SubsetAllDifferent(this, subsetAllDifferentScopes.stream().toArray(Variable[][]::new), null));
 		if (subsetAllDifferentExceptScopes.size() > 0)
@@ -1164,8 +1189,90 @@ public final class Problem extends ProblemIMP implements ObserverOnConstruction
 		return x_relop_k.matches(tree) || k_relop_x.matches(tree) || x_setop_vals.matches(tree) || x_relop_y.matches(tree);
 	}
 
+	/**
+	 * The number of occurrences of (canonized) arithmetic subterms in the trees of intension constraints; used when sharing subterms. Keys are string
+	 * representations because trees (and so, subterms) are modified when sharing.
+	 */
+	private Map<String, Integer> subtermsOccurrences = new LinkedHashMap<>();
+
+	/**
+	 * The (canonized) trees of intension constraints involving shareable subterms. These constraints are posted once the model is built, so that all
+	 * occurrences of the subterms are known (see postTreesWithSubterms). This field is null when intension constraints are directly posted.
+	 */
+	private List<XNodeParent<IVar>> treesWithSubterms = new ArrayList<>();
+
+	private boolean isShareable(XNode<IVar> node) {
+		if (node.type == VAR || node.type == LONG)
+			return true;
+		return node instanceof XNodeParent && node.type.isArithmeticOperator() && Stream.of(node.sons).allMatch(son -> isShareable(son));
+	}
+
+	/**
+	 * Counts the occurrences of the arithmetic subterms of the specified tree that could be replaced by auxiliary variables
+	 * 
+	 * @param node
+	 *            a (canonized) tree expression
+	 * @return true if the tree involves at least one shareable subterm
+	 */
+	private boolean countSubterms(XNode<IVar> node) {
+		boolean found = false;
+		for (XNode<IVar> son : node.sons) {
+			if (!(son instanceof XNodeParent) || son.type == SET)
+				continue;
+			if (isShareable(son) && son.vars().length > 0
+					&& Constraint.howManyVariablesWithin((Variable[]) son.vars(), head.control.intension.spaceLimitToExtension) == Constants.ALL) {
+				subtermsOccurrences.merge(son.toString(), 1, Integer::sum);
+				found = true;
+			}
+			found = countSubterms(son) || found;
+		}
+		return found;
+	}
+
+	/**
+	 * Replaces, in the specified tree, the arithmetic subterms occurring several times (in this tree or in other ones) by auxiliary variables. Any such
+	 * auxiliary variable is introduced only once (see replaceByVariable), so that its defining constraint is shared by all trees involving the subterm.
+	 * 
+	 * @param node
+	 *            a (canonized) tree expression
+	 */
+	private void shareSubterms(XNode<IVar> node) {
+		for (int i = 0; i < node.sons.length; i++) {
+			XNode<IVar> son = node.sons[i];
+			if (!(son instanceof XNodeParent) || son.type == SET)
+				continue;
+			Integer cnt = subtermsOccurrences.get(son.toString());
+			if (cnt != null && cnt > 1)
+				node.sons[i] = new XNodeLeaf<>(VAR, replaceByVariable(son));
+			else
+				shareSubterms(son);
+		}
+	}
+
+	/**
+	 * Posts the intension constraints whose trees involve shareable subterms, after having shared the subterms occurring several times
+	 */
+	private void postTreesWithSubterms() {
+		List<XNodeParent<IVar>> trees = treesWithSubterms;
+		treesWithSubterms = null; // from now on, intension constraints are directly posted
+		for (XNodeParent<IVar> tree : trees) {
+			shareSubterms(tree);
+			intensionWithoutSharing(tree);
+		}
+	}
+
 	@Override
 	public final CtrEntity intension(XNodeParent<IVar> treeRoot) {
+		if (treesWithSubterms == null || !head.control.intension.shareSubterms || Stream.of(treeRoot.vars()).anyMatch(x -> !(x instanceof VariableInteger)))
+			return intensionWithoutSharing(treeRoot);
+		XNodeParent<IVar> tree = (XNodeParent<IVar>) treeRoot.canonization();
+		if (!countSubterms(tree))
+			return intensionWithoutSharing(tree);
+		treesWithSubterms.add(tree);
+		return ctrEntities.new CtrAloneDummy("Intension constraint posted after sharing subterms");
+	}
+
+	private CtrEntity intensionWithoutSharing(XNodeParent<IVar> treeRoot) {
 		OptionsIntension options = head.control.intension;
 
 		XNodeParent<IVar> tree = (XNodeParent<IVar>) treeRoot.canonization(); // first, the tree is canonized
@@ -1578,6 +1685,8 @@ public final class Problem extends ProblemIMP implements ObserverOnConstruction
 			return extension(tree);
 		}
 		//System.out.println("Tree remaining " + tree);
+		if (options.toBounds(scp) && scp[0] instanceof VariableInteger && HC4.canFilter(tree))
+			return post(new HC4(this, scp, tree));
 		return post(new ConstraintIntension(this, scp, tree));
 	}
 
@@ -1782,12 +1891,11 @@ public final class Problem extends ProblemIMP implements ObserverOnConstruction
 			return null;
 		}
 
-		int cnt = (int) Stream.of(scp).filter(x -> x.dom.size() >= 2 * scp.length).count();
-		if (cnt * 4 > 3 * scp.length) // if 75% of the domains are larger than two times the arity
-			return post(new AllDifferentWeak(this, scp, false)); // we avoid the complete algorithm as its practical interest is likely to be limited
-
 		switch (head.control.global.allDifferent) {
 		case DEFAULT:
+			int cnt = (int) Stream.of(scp).filter(x -> x.dom.size() >= 2 * scp.length).count();
+			if (cnt * 4 > 3 * scp.length) // if 75% of the domains are larger than two times the arity
+				return post(new AllDifferentWeak(this, scp, false)); // we avoid the complete algorithm as its practical interest is likely to be limited
 			if (head.control.global.permutation && AllDifferentPermutation.isElligible(scp))
 				return post(new AllDifferentPermutation(this, scp));
 			return post(new AllDifferentComplete(this, scp));
@@ -1802,7 +1910,8 @@ public final class Problem extends ProblemIMP implements ObserverOnConstruction
 			return post(new AllDifferentWeak(this, scp, true)); // return post(new AllDifferentExceptWeak(this, scp, null, true));
 		case 3:
 			return post(new AllDifferentCounting(this, scp));
-		// case 4: return post(new AllDifferentBound(this, scp));
+		case 4:
+			return post(new AllDifferentBound(this, scp));
 		default:
 			throw new AssertionError("Invalid mode");
 		}
@@ -1854,7 +1963,7 @@ public final class Problem extends ProblemIMP implements ObserverOnConstruction
 			Set<Integer> values = Variable.setOfvaluesIn(scp);
 			for (int v : exceptValues)
 				values.remove(v);
-			return post(new Cardinality(this, scp, values.stream().mapToInt(i -> i).sorted().toArray(), 0, 1));
+			return post(new CardinalityFlow(this, scp, values.stream().mapToInt(i -> i).sorted().toArray(), 0, 1));
 		case DECOMPOSITION:
 			return forall(range(scp.length).range(scp.length), (i, j) -> {
 				if (i < j)
@@ -2503,7 +2612,9 @@ public final class Problem extends ProblemIMP implements ObserverOnConstruction
 		// }
 		if ((closed || mustBeClosed) && IntStream.of(occs).allMatch(v -> v == 1))
 			return allDifferent(scp);
-		return post(new Cardinality(this, scp, vals, occs));
+		if (head.control.global.cardinality == 1)
+			return post(new CardinalityBound(this, scp, vals, occs, occs));
+		return post(new CardinalityFlow(this, scp, vals, occs));
 	}
 
 	@Override
@@ -2538,7 +2649,9 @@ public final class Problem extends ProblemIMP implements ObserverOnConstruction
 		// TODO posting two sums from occsMin and occsMax ?
 		if ((closed || mustBeClosed) && IntStream.range(0, vals.length).allMatch(i -> occsMax[i] <= 1))
 			return allDifferent(scp);
-		return post(new Cardinality(this, scp, vals, occsMin, occsMax));
+		if (head.control.global.cardinality == 1)
+			return post(new CardinalityBound(this, scp, vals, occsMin, occsMax));
+		return post(new CardinalityFlow(this, scp, vals, occsMin, occsMax));
 	}
 
 	@Override
@@ -2971,7 +3084,7 @@ public final class Problem extends ProblemIMP implements ObserverOnConstruction
 		control(values.length == widthsMin.length && values.length == widthsMax.length);
 		control(IntStream.range(0, values.length).allMatch(i -> widthsMin[i] <= widthsMax[i]));
 		control(patterns == null || Stream.of(patterns).allMatch(t -> t.length == 2));
-		return unimplemented("stretch");
+		return post(new Stretch(this, duplicateMultiOccurrentVariables(list), values, widthsMin, widthsMax, patterns));
 	}
 
 	// ************************************************************************
@@ -3002,6 +3115,13 @@ public final class Problem extends ProblemIMP implements ObserverOnConstruction
 		// if (origins.length >= options.noOverlapRedundLimit)
 		// cumulative(origins, lengths, null, Kit.repeat(1, origins.length), api.condition(LE, 1)); // TODO is that relevant? and recursivity pb
 
+		if (options.noOverlap1 == GLOBAL) { // tasks of length 0 are discarded since zeroIgnored
+			int[] positives = IntStream.range(0, origins.length).filter(i -> lengths[i] > 0).toArray();
+			Variable[] scp = IntStream.of(positives).mapToObj(i -> (Variable) origins[i]).toArray(Variable[]::new);
+			int[] widths = IntStream.of(positives).map(i -> lengths[i]).toArray();
+			if (NoOverlap1.isPostable(scp, widths))
+				return post(new NoOverlap1(this, scp, widths));
+		}
 		for (int i = 0; i < origins.length; i++)
 			for (int j = i + 1; j < origins.length; j++) {
 				Variable xi = (Variable) origins[i], xj = (Variable) origins[j];
@@ -3373,6 +3493,8 @@ public final class Problem extends ProblemIMP implements ObserverOnConstruction
 			control(op == LT || op == LE);
 			int limit = Utilities.safeInt(((ConditionVal) condition).k) - (op == LT ? 1 : 0); // limit for EQ;
 			// return post(new BinPackingSimple(this, vars, sizes, limit));
+			if (head.control.global.binpacking == 2)
+				return post(new BinPackingShaw(this, new_list, new_sizes, limit));
 			return post(new BinPackingEnergetic(this, new_list, new_sizes, limit));
 			// TODO add nValues ? other ?
 		}
@@ -3389,6 +3511,8 @@ public final class Problem extends ProblemIMP implements ObserverOnConstruction
 			control(0 <= bins[0] && bins[bins.length - 1] < capacities.length);
 			return forall(range(bins.length), i -> sum(Stream.of(list).map(x -> api.eq(x, bins[i])), sizes, Condition.buildFrom(op, capacities[bins[i]])));
 		}
+		if (head.control.global.binpacking == 2)
+			return post(new BinPackingShaw(this, vars, sizes, capacities));
 		return post(new BinPackingEnergetic(this, vars, sizes, capacities)); // TODO add nValues ? other ?
 	}
 
@@ -3432,16 +3556,36 @@ public final class Problem extends ProblemIMP implements ObserverOnConstruction
 	// ************************************************************************
 
 	public final CtrEntity knapsack(Var[] list, int[] weights, Condition wcondition, int[] profits, Condition pcondition) {
-		// for the moment, no dedicated propagator (just decomposition)
-
+		Variable[] scp = translate(list);
+		if (head.control.global.knapsack == DEFAULT && Knapsack.isPostable(scp, weights) && wcondition instanceof ConditionRel
+				&& pcondition instanceof ConditionRel) {
+			TypeConditionOperatorRel wop = ((ConditionRel) wcondition).operator, pop = ((ConditionRel) pcondition).operator;
+			Variable wvar = wcondition instanceof ConditionVar ? (Variable) ((ConditionVar) wcondition).x : null;
+			Variable pvar = pcondition instanceof ConditionVar ? (Variable) ((ConditionVar) pcondition).x : null;
+			boolean wok = wvar == null ? wop.oneOf(LT, LE, EQ) : wop.oneOf(LE, EQ) && Stream.of(scp).noneMatch(x -> x == wvar);
+			boolean pok = pvar == null ? pop.oneOf(GT, GE, EQ) : pop.oneOf(GE, EQ) && Stream.of(scp).noneMatch(x -> x == pvar) && pvar != wvar;
+			if (wok && pok) {
+				// the capacity is an upper bound and the profit a lower bound for the propagator; sums are posted for the other sides if necessary
+				int wlimit = wvar == null ? safeInt(((ConditionVal) wcondition).k - (wop == LT ? 1 : 0)) : 0;
+				int plimit = pvar == null ? safeInt(((ConditionVal) pcondition).k + (pop == GT ? 1 : 0)) : 0;
+				CtrEntity entity = post(new Knapsack(this, scp, weights, wlimit, wvar, profits, plimit, pvar));
+				if (wop == EQ)
+					entity = sum(list, weights, wcondition);
+				if (pop == EQ)
+					entity = sum(list, profits, pcondition);
+				return entity;
+			}
+		}
 		sum(list, weights, wcondition);
 		return sum(list, profits, pcondition);
 	}
 
 	public final CtrEntity flow(Var[] list, int[] balance, int[][] arcs) {
-		// for the moment, no dedicated propagator (just decomposition)
 		int[] nodes = IntStream.range(0, arcs.length).flatMap(t -> IntStream.of(arcs[t])).distinct().sorted().toArray();
 		control(nodes.length == balance.length);
+		Variable[] scp = translate(list);
+		if (head.control.global.flow == DEFAULT && Flow.isPostable(scp))
+			return post(new FlowSimple(this, scp, balance, arcs));
 		int sm = nodes[0];
 		List<Var>[] preds = (List<Var>[]) IntStream.range(0, nodes.length).mapToObj(i -> new ArrayList<>()).toArray(List<?>[]::new);
 		List<Var>[] succs = (List<Var>[]) IntStream.range(0, nodes.length).mapToObj(i -> new ArrayList<>()).toArray(List<?>[]::new);
@@ -3458,7 +3602,18 @@ public final class Problem extends ProblemIMP implements ObserverOnConstruction
 	}
 
 	public final CtrEntity flow(Var[] list, int[] balance, int[][] arcs, int[] weights, Condition condition) {
-		// for the moment, no dedicated propagator (just decomposition)
+		Variable[] scp = translate(list);
+		if (head.control.global.flow == DEFAULT && Flow.isPostable(scp) && condition instanceof ConditionRel) {
+			// the cost is bounded from above by the propagator; a sum is still posted when the cost is also bounded from below
+			TypeConditionOperatorRel op = ((ConditionRel) condition).operator;
+			CtrEntity entity = null;
+			if (condition instanceof ConditionVal && op.oneOf(LT, LE, EQ))
+				entity = post(new FlowWeighted(this, scp, balance, arcs, weights, ((ConditionVal) condition).k - (op == LT ? 1 : 0)));
+			else if (condition instanceof ConditionVar && op.oneOf(LE, EQ) && Stream.of(scp).noneMatch(x -> x == ((ConditionVar) condition).x))
+				entity = post(new FlowWeighted(this, scp, balance, arcs, weights, (Variable) ((ConditionVar) condition).x));
+			if (entity != null)
+				return op == EQ ? sum(list, weights, condition) : entity;
+		}
 		flow(list, balance, arcs);
 		return sum(list, weights, condition);
 	}
@@ -3471,7 +3626,16 @@ public final class Problem extends ProblemIMP implements ObserverOnConstruction
 	public CtrEntity circuit(Var[] list, int startIndex) {
 		unimplementedIf(startIndex != 0, "circuit");
 		Variable[] vars = translate(list);
-		return post(head.control.global.circuit == DEFAULT ? new Circuit(this, vars) : new Circuit2(this, vars));
+		switch (head.control.global.circuit) {
+		case DEFAULT:
+			return post(new Circuit(this, vars));
+		case 1:
+			return post(new Circuit2(this, vars));
+		case 2:
+			return post(new Circuit(this, vars, true));
+		default:
+			throw new AssertionError("Invalid mode");
+		}
 	}
 
 	@Override
@@ -3558,11 +3722,13 @@ public final class Problem extends ProblemIMP implements ObserverOnConstruction
 
 	/** Builds and returns a smart constraint. */
 	public final CtrAlone hybrid(IVar[] scp, HybridTuple... hybridTuples) {
-		return post(new CHybrid(this, translate(scp), hybridTuples));
+		int limit = head.control.extension.largeHybrid;
+		boolean compact = limit != -1 && hybridTuples.length >= Math.max(limit, 1);
+		return post(compact ? new CTHybrid(this, translate(scp), hybridTuples) : new CHybridSTR(this, translate(scp), hybridTuples));
 	}
 
 	public final CtrAlone hybrid(IVar[] scp, Stream<HybridTuple> hybridTuples) {
-		return post(new CHybrid(this, translate(scp), hybridTuples));
+		return hybrid(scp, hybridTuples.toArray(HybridTuple[]::new));
 	}
 
 	/**********************************************************************************************
@@ -0,0 +1,167 @@
+/*
+ * This file is part of the constraint solver ACE (AbsCon Essence). 
+ *
+ * Copyright (c) 2021. All rights reserved.
+ * Christophe Lecoutre, CRIL, Univ. Artois and CNRS. 
+ * 
+ * Licensed under the MIT License.
+ * See LICENSE file in the project root for full license information.
+ */
+
+package sets;
+
+import java.util.Arrays;
+
+import utility.Bit;
+
+/**
+ * A reversible sparse bit-set, as used by Compact-Table: a bit vector (array of words) whose non-zero words are recorded in a reversible dense set, and whose
+ * modified words are stacked (once per level) so as to be restored when backtracking. See "Compact-Table: Efficiently Filtering Table Constraints with
+ * Reversible Sparse Bit-Sets", CP 2016: 207-223.
+ *
+ * @author Christophe Lecoutre
+ */
+public final class SetBitReversible {
+
+	/**
+	 * The words of the bit vector
+	 */
+	public final long[] words;
+
+	/**
+	 * Reversible dense set indicating the words that are currently not 0
+	 */
+	public final SetDenseReversible nonZeros;
+
+	/**
+	 * A constant to be used with the last word
+	 */
+	private final long lastWord0Then1;
+
+	private int factorStacked = 10, factorStack = 10; // factors used for enlarging arrays when necessary
+	private long[] stackedWords; // stores the values of the words that have been stacked
+	private int[] stackedIndexes; // stores the indexes of the words that have been stacked
+	private int[] stackStructure; // stores, in sequence, pairs (d,nb) with d the depth where nb words have been stacked
+	private int topStacked = -1, topStack = -1;
+
+	/**
+	 * modifiedWords[i] indicates if the ith word has already been modified (and stored for future use when backtracking)
+	 */
+	private final boolean[] modifiedWords;
+
+	/**
+	 * A number used to determine whether modifiedWords must be reset
+	 */
+	private long lastSafeNumber = -1;
+
+	/**
+	 * Builds a reversible sparse bit-set with the specified capacity (number of bits) and the specified number of possible levels. Initially, all bits are
+	 * set to 1.
+	 *
+	 * @param capacity
+	 *            the number of bits of the set
+	 * @param nLevels
+	 *            the number of different levels at which the set can be handled
+	 */
+	public SetBitReversible(int capacity, int nLevels) {
+		int nWords = (int) Math.ceil(capacity / 64.0);
+		this.words = new long[nWords];
+		Arrays.fill(words, Bit.ALL_LONG_BITS_TO_1);
+		words[nWords - 1] = capacity % 64 != 0 ? Bit.bitsAt1To(capacity % 64) : Bit.ALL_LONG_BITS_TO_1;
+		this.lastWord0Then1 = capacity % 64 != 0 ? Bit.bitsAt1From(capacity % 64) : 0L;
+		this.nonZeros = new SetDenseReversible(nWords, nLevels);
+		this.stackedWords = new long[nWords * factorStacked];
+		this.stackedIndexes = new int[nWords * factorStacked];
+		this.stackStructure = new int[nWords * factorStack];
+		this.modifiedWords = new boolean[nWords];
+	}
+
+	/**
+	 * Sets to 0 the words of the specified bit vector that correspond to non-zero words of this set; the bits after the capacity are set to 1 in the last
+	 * word (so as to be discarded when the vector is inverted).
+	 *
+	 * @param t
+	 *            a bit vector with the same number of words as this set
+	 */
+	public void fillTo0(long[] t) {
+		for (int i = nonZeros.limit; i >= 0; i--)
+			t[nonZeros.dense[i]] = 0L;
+		t[t.length - 1] = lastWord0Then1;
+	}
+
+	/**
+	 * Resets, when the specified safe number has changed, the flags indicating which words have already been stacked at the specified depth
+	 *
+	 * @param safeNumber
+	 *            a number that changes each time the search may have left the current node
+	 * @param depth
+	 *            the current depth
+	 */
+	public void resetModifiedWords(long safeNumber, int depth) {
+		if (lastSafeNumber != safeNumber) {
+			for (int i = nonZeros.limit; i >= 0; i--)
+				modifiedWords[nonZeros.dense[i]] = false;
+			if (topStack != -1 && stackStructure[topStack - 1] == depth)
+				for (int i = stackStructure[topStack] - 1; i >= 0; i--)
+					modifiedWords[stackedIndexes[topStacked - i]] = true;
+			lastSafeNumber = safeNumber;
+		}
+	}
+
+	private void wordModified(int index, long oldValue, int depth) {
+		if (modifiedWords[index])
+			return;
+		if (topStack == -1 || stackStructure[topStack - 1] != depth) {
+			if (topStack + 3 >= stackStructure.length)
+				stackStructure = Arrays.copyOf(stackStructure, words.length * (factorStack *= 2));
+			stackStructure[++topStack] = depth;
+			stackStructure[++topStack] = 1; // first modified word at this level
+		} else
+			stackStructure[topStack]++; // another modified word at this level
+		if (topStacked + 3 >= stackedWords.length) {
+			stackedWords = Arrays.copyOf(stackedWords, words.length * (factorStacked *= 2));
+			stackedIndexes = Arrays.copyOf(stackedIndexes, words.length * factorStacked);
+		}
+		stackedWords[++topStacked] = oldValue;
+		stackedIndexes[topStacked] = index;
+		modifiedWords[index] = true;
+	}
+
+	/**
+	 * Replaces the word at the specified position in nonZeros by the specified word, stacking the old word if necessary, and removing the word from nonZeros
+	 * if it becomes 0
+	 *
+	 * @param i
+	 *            a position in nonZeros
+	 * @param word
+	 *            the new value of the word
+	 * @param depth
+	 *            the current depth
+	 */
+	public void updateWord(int i, long word, int depth) {
+		int j = nonZeros.dense[i];
+		if (words[j] != word) {
+			wordModified(j, words[j], depth);
+			words[j] = word;
+			if (word == 0L)
+				nonZeros.removeAtPosition(i, depth);
+		}
+	}
+
+	/**
+	 * Restores the words modified at the specified depth, and the non-zero words at that depth
+	 *
+	 * @param depth
+	 *            the depth where the search backtracks
+	 */
+	public void restoreBefore(int depth) {
+		if (topStack != -1 && stackStructure[topStack - 1] == depth) {
+			for (int i = stackStructure[topStack] - 1; i >= 0; i--)
+				words[stackedIndexes[topStacked - i]] = stackedWords[topStacked - i];
+			topStacked -= stackStructure[topStack];
+			topStack -= 2;
+		}
+		nonZeros.restoreLimitAtLevel(depth);
+		lastSafeNumber = -1;
+	}
+}
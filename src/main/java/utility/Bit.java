@@ -314,6 +314,47 @@ public final class Bit {
 		return cnt;
 	}
 
+	/**
+	 * Counts and returns the number of bits at 1 in the specified bit vector, when only considering the words at
+	 * indexes given by the specified dense set.
+	 *
+	 * @param t
+	 *            a bit vector defined by the sequence of bits over an array of long
+	 * @param set
+	 *            a dense set with the indexes of words (long) that are relevant for the bit vector
+	 * @return the number of bits at 1 in the specified bit vector (when only considering relevant words)
+	 */
+	public static int count1(long[] t, SetDense set) {
+		int[] dense = set.dense;
+		int cnt = 0;
+		for (int i = set.limit; i >= 0; i--)
+			cnt += Long.bitCount(t[dense[i]]);
+		return cnt;
+	}
+
+	/**
+	 * Counts and returns the number of bits at 1 in the intersection of the two specified bit vectors, when only
+	 * considering the words at indexes given by the specified dense set. Mask compression is not supported for t2.
+	 *
+	 * @param t1
+	 *            a first bit vector defined by the sequence of bits over an array of long
+	 * @param t2
+	 *            a second bit vector defined by the sequence of bits over an array of long
+	 * @param set
+	 *            a dense set with the indexes of words (long) that are relevant for the bit vectors
+	 * @return the number of bits at 1 in the intersection of the two specified bit vectors
+	 */
+	public static int count1Intersection(long[] t1, long[] t2, SetDense set) {
+		assert t1.length == t2.length;
+		int[] dense = set.dense;
+		int cnt = 0;
+		for (int i = set.limit; i >= 0; i--) {
+			int j = dense[i];
+			cnt += Long.bitCount(t1[j] & t2[j]);
+		}
+		return cnt;
+	}
+
 	/**
 	 * @param t
 	 *            a bit vector defined by the sequence of bits over an array of longs
@@ -3,10 +3,12 @@ package problems;
 import static org.junit.Assert.assertEquals;
 import static problems.UtilityForTests.runResolution;
 
+import java.io.File;
 import java.net.URL;
 import java.util.Collection;
 import java.util.LinkedList;
 
+import org.junit.AfterClass;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.Parameterized;
@@ -24,6 +26,11 @@ public class TestAllSolutions {
 
 	static Collection<Object[]> collection = new LinkedList<>();
 
+	/**
+	 * The directory where tables are saved, and then reloaded, by two runs on the same instance
+	 */
+	static File cacheDir = new File(System.getProperty("java.io.tmpdir"), "aceTables" + System.nanoTime());
+
 	static void add(Object instance, String variant, String data, String options, int nSolutions) {
 		String s = null;
 		if (instance instanceof Class<?>)
@@ -51,30 +58,36 @@ public class TestAllSolutions {
 	@Parameters(name = "{index}: {0} has {1} solutions")
 	public static Collection<Object[]> data() {
 		add("/csp/Agatha", 4);
+		add("/csp/Agatha", null, null, "-slb=0", 4);
 		add("/csp/Allergy", 1);
 		add("/csp/Alpha", 1);
 		add("/csp/Alpha-var", 1);
 		add("/csp/LabeledDice", 48);
 		add("/csp/NFractions", 22);
+		add("/csp/NFractions", null, null, "-slb=0", 22);
 		add("/csp/Picnic", 1);
 		add("/csp/Purdey", 1);
 		add("/csp/Sandwich", 8);
+		add("/csp/Sandwich", null, null, "-slb=0", 8);
 		add("/csp/SendMore", 1);
 		add("/csp/TrafficLights", 4);
 		add("/csp/Zebra", 48);
 
 		add("/csp/AllInterval-10", 148);
+		add("/csp/AllInterval-10", null, null, "-g_ad=4", 148);
 		add("/csp/AllInterval-aux-10", 104);
 		add("/csp/Bibd-6-0-0-3-8", null, null, "-valh=Rand", 494);
 		add("/csp/Bibd-aux-6-0-0-3-8", null, null, "-valh=Rand", 494);
 		add("/csp/ColouredQueens-6", 0);
 		add("/csp/CostasArray-10", 2160);
 		add("/csp/CryptoPuzzle-carry-SEND-MORE-MONEY", 1);
+		add("/csp/CryptoPuzzle-carry-SEND-MORE-MONEY", null, null, "-shs", 1);
 		add("/csp/CryptoPuzzle-DONALD-GERALD-ROBERT", 1);
 		add("/csp/CryptoPuzzle-SEND-MORE-MONEY", 1);
 		add("/csp/DeBruijnSequence-2-5", 2048);
 		add("/csp/DiamondFree-8", 17);
 		add("/csp/Dubois-10", 0);
+		add("/csp/ElementMatrix-latin-4", 6400);
 		add("/csp/Langford-3-10", 10);
 		add("/csp/LangfordBin-8", 300);
 		add("/csp/MagicSequence-10", 1);
@@ -96,8 +109,10 @@ public class TestAllSolutions {
 		add("/csp/SocialGolfers-01-4-4-5", 2);
 		add("/csp/SocialGolfers-4-4-5", 2);
 		add("/csp/SportsScheduling-6", 10);
+		add("/csp/SportsScheduling-6", null, null, "-g_card=1", 10);
 		add("/csp/SportsScheduling-dummy-6", 10);
 		add("/csp/Steiner3-7", 151200);
+		add("/csp/Stretch-12", 561);
 		add("/csp/Talisman-4-2", 34714);
 
 		add("/csp/Areas-Areas-3-3-3", 7);
@@ -108,14 +123,21 @@ public class TestAllSolutions {
 		add("/csp/Futoshiki-Futoshiki_futo3_0", 1);
 		add("/csp/Kakuro-Kakuro_easy-000", 1);
 		add("/csp/Kakuro-table-Kakuro_easy-000", 1);
+		add("/csp/Kakuro-table-Kakuro_easy-000", null, null, "-extcd=" + cacheDir, 1);
+		add("/csp/Kakuro-table-Kakuro_easy-000", null, null, "-extcd=" + cacheDir, 1);
+		add("/csp/Kakuro-table-Kakuro_easy-000", null, null, "-extcd=" + cacheDir + " -extc=100000", 1);
+		add("/csp/Kakuro-table-Kakuro_easy-000", null, null, "-extcd=" + cacheDir + " -positive=STR3", 1);
 		add("/csp/LatinSquare2-LatinSquare2_7-2-0", 480);
 		add("/csp/Lightup-Lightup_example", 1);
 		add("/csp/Lits-Lits-example", 1636);
+		add("/csp/Lits-Lits-example", null, null, "-generic2=false -negative=CTN", 1636);
 		add("/csp/MagicSquare-4-None", 7040);
 		add("/csp/MarketSplit-MarketSplit_04", 1); // long
 		add("/csp/Nonogram-Nonogram_example", 1);
 		add("/csp/Nonogram-table-Nonogram_example", 1);
 		add("/csp/RoomMate-RoomMate_sr0006", 2);
+		add("/csp/RoomMate-RoomMate_sr0006", null, null, "-ic=false", 2);
+		add("/csp/RoomMate-RoomMate_sr0006", null, null, "-iml=0", 2);
 		add("/csp/Sat-clause-Sat_flat30-16", 1482);
 		add("/csp/Sat-dual-Sat_flat30-16", 1482);
 		add("/csp/Sat-sum-Sat_flat30-16", 1482);
@@ -127,6 +149,7 @@ public class TestAllSolutions {
 		add("/csp/VesselLoading-VesselLoading-inst1", 8);
 
 		add("/csp/CarSequencing-CarSequencing_dingbas", 6);
+		add("/csp/CarSequencing-CarSequencing_dingbas", null, null, "-g_card=1", 6);
 		add("/csp/CarSequencing-table-CarSequencing_dingbas", 6);
 		add("/csp/MisteryShopper-MisteryShopper_04", 501552); // long
 		add("/csp/SolitaireBattleship-SolitaireBattleship-battleship_instances-00113", 1);
@@ -135,6 +158,7 @@ public class TestAllSolutions {
 		add("/csp/Wwtpp-Wwtpp_ex04400", 0);
 
 		add("/csp/Domino-200-200", 1);
+		add("/csp/Domino-200-200", null, null, "-acht=2 -extlh=1", 1);
 		add("/csp/Domino-table-200-200", 1);
 		add("/csp/Knights-16-4", 8096);
 		add("/csp/Pigeons-6", 0);
@@ -184,6 +208,15 @@ public class TestAllSolutions {
 	@Parameter(1)
 	public int nSolutions;
 
+	@AfterClass
+	public static void deleteCacheDir() {
+		File[] files = cacheDir.listFiles();
+		if (files != null)
+			for (File file : files)
+				file.delete();
+		cacheDir.delete();
+	}
+
 	@Test
 	public void test() {
 		assertEquals(nSolutions, runResolution(args).solver.solutions.found);
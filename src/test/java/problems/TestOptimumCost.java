@@ -23,7 +23,11 @@ public class TestOptimumCost {
 	static Collection<Object[]> collection = new LinkedList<>();
 
 	static void add(Object instance, String variant, String data, int value) {
-		String pars = " -ev";
+		add(instance, variant, data, "", value);
+	}
+
+	static void add(Object instance, String variant, String data, String options, int value) {
+		String pars = " -ev" + (options.length() > 0 ? " " + options : "");
 		if (instance instanceof Class<?>) {
 			variant = variant != null ? " -variant=" + variant : "";
 			data = data != null ? " -data=" + data : "";
@@ -79,6 +83,7 @@ public class TestOptimumCost {
 		add("/cop/Ramsey-10", 2);
 		add("/cop/StillLife-7-7", 28);
 		add("/cop/StillLife-wastage-8-8", 36);
+		add("/cop/StillLife-wastage-8-8", null, null, "-extc=10000", 36);
 		add("/cop/WaterBucket-8-5-3-4-4-0-8", 7);
 
 		add("/cop/Amaze-Amaze_simple", 12);
@@ -86,6 +91,8 @@ public class TestOptimumCost {
 		add("/cop/BinPacking-BinPacking_example", 5);
 		add("/cop/BinPacking-BinPacking_n1c1w4a", 5);
 		add("/cop/BinPacking-table-BinPacking_n1c1w4a", 5);
+		add("/cop/BinPacking-global-30", 14);
+		add("/cop/BinPacking-global-30", null, null, "-g_bp=2", 14);
 		add("/cop/Bugs-Bugs_example", 5);
 		add("/cop/BusScheduling-BusScheduling_t1", 7);
 		add("/cop/Coloring-Coloring_rand1", 2);
@@ -93,6 +100,8 @@ public class TestOptimumCost {
 		add("/cop/Fastfood-Fastfood_example", 3050);
 		add("/cop/Fastfood-Fastfood_ff01", 3050);
 		add("/cop/Fastfood-table-Fastfood_ff01", 3050);
+		add("/cop/Flow-grid-4", 70);
+		add("/cop/Flow-grid-4", null, null, "-g_flow=1", 70);
 		add("/cop/GraphColoring-GraphColoring_1-fullins-3", 3);
 		add("/cop/GraphColoring-GraphColoring_qwhdec-o18-h120-1", 17);
 		add("/cop/GraphColoring-sum-GraphColoring_1-fullins-3", 24);
@@ -101,12 +110,17 @@ public class TestOptimumCost {
 		add("/cop/GraphMaxAcyclic-GraphMaxAcyclic_example", 44);
 		add("/cop/HCPizza-HCPizza_tiny", 15);
 		add("/cop/Knapsack-Knapsack_20-50-00", 583);
+		add("/cop/Knapsack-Knapsack_20-50-00", null, null, "-lag=10", 583);
+		add("/cop/Knapsack-joint-20", 780);
+		add("/cop/Knapsack-joint-20", null, null, "-g_kn=1", 780);
 		add("/cop/Mario-Mario_easy-2", 628);
+		add("/cop/Mario-Mario_easy-2", null, null, "-g_circ=2", 628);
 		add("/cop/Mario-table-Mario_easy-2", 628);
 		// add("/cop/OpenStacks-m1-OpenStacks_example", 45); // long
 		add("/cop/OpenStacks-m2-OpenStacks_example", 45);
 		add("/cop/ProgressiveParty-ProgressiveParty_example", 5);
 		add("/cop/PseudoBoolean-PseudoBoolean_example", 20);
+		add("/cop/PseudoBoolean-PseudoBoolean_example", null, null, "-lag=10", 20);
 		add("/cop/Sonet-Sonet_sonet1", 8);
 		add("/cop/Sonet-Sonet_sonet3-4", 12);
 		add("/cop/TravelingSalesman-table-TravelingSalesman_10-20-0", 47);
@@ -118,6 +132,7 @@ public class TestOptimumCost {
 		// add("/cop/Bacp-m2-d-Bacp_10", 1); // very long
 		add("/cop/Fapp-Fapp_ex2", 13871);
 		add("/cop/Fapp-short-Fapp_ex2", 13871);
+		add("/cop/Fapp-short-Fapp_ex2", null, null, "-extc=10000", 13871);
 		add("/cop/League-League_010-03-04", 92);
 		add("/cop/NurseRostering-NurseRostering_00", 1202);
 		add("/cop/PizzaVoucher-PizzaVoucher_pizza6", 210);
@@ -125,12 +140,15 @@ public class TestOptimumCost {
 		add("/cop/QuadraticAssignment-QuadraticAssignment_qap", 4776);
 		add("/cop/Rack-Rack_r2", 1100);
 		add("/cop/Rcpsp-Rcpsp_j30-01-01", 43);
+		add("/cop/Rcpsp-Rcpsp_j30-01-01", null, null, "-g_cu=2", 43);
 		add("/cop/Rlfap-card-Rlfap_card-scen-04", 46);
 		add("/cop/Rlfap-span-Rlfap_span-scen-05", 792);
 		add("/cop/SchedulingFS-SchedulingFS-Taillard-os-04-04-0", 302);
+		add("/cop/SchedulingFS-SchedulingFS-Taillard-os-04-04-0", null, null, "-g_no1=2", 302);
 		// add("/cop/Tal-Tal-frobserved-7-15-11-13-9-1-11-7-4_1", 142); // long
 		// add("/cop/TemplateDesign-TemplateDesign_catfood_2", 2); // very long
 		add("/cop/TravelingPurchaser-TravelingPurchaser-7-5-30-1", 124);
+		add("/cop/TravelingPurchaser-TravelingPurchaser-7-5-30-1", null, null, "-g_circ=2", 124);
 		add("/cop/TravelingTournament-a2-TravelingTournament_galaxy04", 517);
 		add("/cop/TravelingTournament-a3-TravelingTournament_galaxy04", 416);
 		// add("/cop/TravelingTournamentWithPredefinedVenues-a2-Ttppv_circ8bbal", 94); // long
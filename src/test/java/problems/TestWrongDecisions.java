@@ -41,6 +41,7 @@ public class TestWrongDecisions {
 		add("/csp/Crossword-lex-vg-5-6", 9199, "-varh=DdegOnDom -positive=str2");
 		add("/csp/Crossword-lex-vg-5-6", 9199, "-varh=DdegOnDom -positive=str3");
 		add("/csp/Crossword-lex-vg-5-6", 9199, "-varh=DdegOnDom -positive=cmddo");
+		add("/csp/Crossword-lex-vg-5-6", 9199, "-varh=DdegOnDom -positive=auto");
 		return collection;
 	}
 